@@ -0,0 +1,80 @@
+package com.chatop.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark de la sérialisation JSON de GET /api/rentals
+ * pour différents volumes d'annonces
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RentalsListSerializationBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    public int rentals;
+
+    private ObjectMapper objectMapper;
+    private RentalsListResponse response;
+
+    @Setup
+    public void setUp() {
+        // Même configuration que spring.jackson.* dans application.properties
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .simpleDateFormat("yyyy/MM/dd")
+                .timeZone(TimeZone.getTimeZone("Europe/Paris"))
+                .build();
+
+        LocalDateTime now = LocalDateTime.now();
+        List<RentalResponse> list = new ArrayList<>(rentals);
+        for (long i = 1; i <= rentals; i++) {
+            list.add(new RentalResponse(
+                    i,
+                    "Appartement " + i,
+                    new BigDecimal("65.5"),
+                    new BigDecimal("850.00"),
+                    "http://localhost:3001/uploads/" + i + ".jpg",
+                    Map.of("320", "http://localhost:3001/uploads/" + i + "_w320.jpg",
+                            "640", "http://localhost:3001/uploads/" + i + "_w640.jpg",
+                            "1280", "http://localhost:3001/uploads/" + i + "_w1280.jpg"),
+                    "Bel appartement T3 avec balcon, proche transports",
+                    i % 1000,
+                    now,
+                    now,
+                    1,
+                    null
+            ));
+        }
+        response = new RentalsListResponse(list);
+    }
+
+    @Benchmark
+    public void serialize() throws IOException {
+        objectMapper.writeValue(OutputStream.nullOutputStream(), response);
+    }
+}
@@ -0,0 +1,98 @@
+package com.chatop.service;
+
+import com.chatop.repository.StoredFileRepository;
+import com.chatop.storage.LocalStorageBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Benchmark de l'upload d'images sur disque pour différentes tailles de fichier, par le chemin
+ * des requêtes : receive() (réception en une passe depuis le flux, SHA-256, détection du type)
+ * puis commit() (renommage dans l'arborescence adressée par le contenu) et discard()
+ *
+ * Base de données simulée (mocks) : le benchmark mesure le disque et le CPU, pas les requêtes SQL.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileStorageServiceBenchmark {
+
+    // Tailles en Ko : miniature, photo mobile, photo haute résolution, limite de 10MB
+    @Param({"50", "500", "2048", "10240"})
+    public int sizeKb;
+
+    private Path uploadDir;
+    private FileStorageService fileStorageService;
+    private byte[] content;
+    private long invocation;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        uploadDir = Files.createTempDirectory("chatop-bench-uploads");
+        LocalStorageBackend storage = new LocalStorageBackend(uploadDir, "http://localhost:3001/uploads/");
+        fileStorageService = new FileStorageService(new SimpleMeterRegistry(),
+                new ThumbnailService(storage, uploadDir.toString(), new int[]{320, 640}, 0.82f, 2, 1000),
+                mock(StoredFileRepository.class), storage, mock(StorageQuotaService.class),
+                mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(fileStorageService, "uploadPath", uploadDir.toString());
+
+        content = new byte[sizeKb * 1024];
+        new Random(42).nextBytes(content);
+        // En-tête JPEG : le type est vérifié d'après le contenu
+        content[0] = (byte) 0xFF;
+        content[1] = (byte) 0xD8;
+        content[2] = (byte) 0xFF;
+    }
+
+    @Benchmark
+    public String receiveAndCommit() throws IOException {
+        // Contenu unique à chaque appel : mesure l'écriture, pas la déduplication
+        ByteBuffer.wrap(content).putLong(ImageType.HEADER_LENGTH, invocation++);
+        FileStorageService.ReceivedFile received = fileStorageService.receive(new ByteArrayInputStream(content));
+        try {
+            return fileStorageService.commit(received);
+        } finally {
+            fileStorageService.discard(received);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void cleanUploads() throws IOException {
+        // Évite de mesurer un dossier qui grossit indéfiniment
+        FileSystemUtils.deleteRecursively(uploadDir);
+        Files.createDirectories(uploadDir);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(uploadDir);
+    }
+}
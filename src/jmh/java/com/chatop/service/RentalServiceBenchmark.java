@@ -0,0 +1,59 @@
+package com.chatop.service;
+
+import com.chatop.dto.RentalResponse;
+import com.chatop.model.Rental;
+import com.chatop.storage.LocalStorageBackend;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark de la conversion entité Rental vers RentalResponse
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RentalServiceBenchmark {
+
+    private RentalService rentalService;
+    private Rental rental;
+
+    @Setup
+    public void setUp() {
+        // Seul ThumbnailService (URLs des miniatures) est utilisé par la conversion
+        rentalService = new RentalService(null, null, null,
+                new ThumbnailService(new LocalStorageBackend(Paths.get("uploads/"), "http://localhost:3001/uploads/"),
+                        "uploads/", new int[]{320, 640, 1280}, 0.82f, 1, 1), null, null, null, null, null, null);
+
+        rental = new Rental();
+        rental.setId(42L);
+        rental.setName("Appartement lumineux centre ville");
+        rental.setSurface(new BigDecimal("65.5"));
+        rental.setPrice(new BigDecimal("850.00"));
+        rental.setPicture("http://localhost:3001/uploads/2f1c0b7e-7d4e-4a39-9f0a-3b8f3c6a1d2e.jpg");
+        rental.setDescription("Bel appartement T3 avec balcon, proche transports");
+        rental.setOwnerId(7L);
+        rental.setCreatedAt(LocalDateTime.now());
+        rental.setUpdatedAt(LocalDateTime.now());
+    }
+
+    @Benchmark
+    public RentalResponse convertToResponse() {
+        return rentalService.convertToResponse(rental, 1920);
+    }
+}
@@ -0,0 +1,39 @@
+package com.chatop.config;
+
+import com.chatop.notification.LoggingNotificationSink;
+import com.chatop.notification.WebhookNotificationSink;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * Configuration du canal de notification des propriétaires (nouveaux messages)
+ *
+ * notification.sink=log (défaut) : notifications écrites dans les logs
+ * notification.sink=webhook : POST JSON vers notification.webhook.url (service d'envoi d'emails ou de push)
+ */
+@Configuration
+public class NotificationConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "notification.sink", havingValue = "log", matchIfMissing = true)
+    public LoggingNotificationSink loggingNotificationSink() {
+        return new LoggingNotificationSink();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "notification.sink", havingValue = "webhook")
+    public WebhookNotificationSink webhookNotificationSink(
+            ObjectMapper objectMapper,
+            @Value("${notification.webhook.url}") String url,
+            @Value("${notification.webhook.token:}") String token,
+            @Value("${notification.webhook.timeout:5s}") Duration timeout
+    ) {
+        return new WebhookNotificationSink(objectMapper, URI.create(url), token, timeout);
+    }
+}
@@ -1,6 +1,8 @@
 package com.chatop.config;
 
 import com.chatop.security.JwtAuthenticationFilter;
+import com.chatop.security.TimedPasswordEncoder;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -10,6 +12,7 @@ import org.springframework.security.authentication.dao.DaoAuthenticationProvider
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.annotation.web.configuration.WebSecurityCustomizer;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -34,6 +37,7 @@ public class SecurityConfig {
 
     private final JwtAuthenticationFilter jwtAuthFilter;
     private final UserDetailsService userDetailsService;
+    private final MeterRegistry meterRegistry;
 
     /**
      * Configuration de la chaîne de filtres de sécurité
@@ -49,7 +53,9 @@ public class SecurityConfig {
                         // Routes publiques (pas besoin de token)
                         .requestMatchers("/api/auth/register").permitAll()
                         .requestMatchers("/api/auth/login").permitAll()
-                        .requestMatchers("/uploads/**").permitAll()
+                        // Sondes et scraping Prometheus : Actuator n'est servi que sur le port de gestion
+                        // (management.server.port, non publié), jamais sur le port de l'API
+                        .requestMatchers("/actuator/health/**", "/actuator/prometheus").permitAll()
                         // Routes Swagger (documentation) - chemins par défaut
                         .requestMatchers("/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html").permitAll()
 
@@ -71,6 +77,15 @@ public class SecurityConfig {
         return http.build();
     }
 
+    /**
+     * Les images (/uploads/**) sont publiques et immuables :
+     * elles sortent entièrement de la chaîne Spring Security (aucun filtre, aucun contexte de sécurité)
+     */
+    @Bean
+    public WebSecurityCustomizer webSecurityCustomizer() {
+        return web -> web.ignoring().requestMatchers("/uploads/**");
+    }
+
     /**
      * Bean pour encoder les mots de passe avec BCrypt
      *
@@ -78,10 +93,12 @@ public class SecurityConfig {
      * - Unidirectionnel (on ne peut pas retrouver le mot de passe original)
      * - Salt aléatoire (chaque hash est unique même pour le même mot de passe)
      * - Lent (protection contre le brute force)
+     *
+     * L'encoder est chronométré (timer "chatop.password")
      */
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new TimedPasswordEncoder(new BCryptPasswordEncoder(), meterRegistry);
     }
 
     /**
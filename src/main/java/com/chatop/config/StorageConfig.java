@@ -0,0 +1,101 @@
+package com.chatop.config;
+
+import com.chatop.storage.LocalStorageBackend;
+import com.chatop.storage.S3StorageBackend;
+import com.chatop.storage.StorageBackend;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.net.URI;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * Configuration du stockage des images
+ *
+ * storage.backend=local (défaut) : dossier upload.path, servi par ImageServlet
+ * storage.backend=s3 : stockage objet compatible S3, partagé entre les nœuds
+ *
+ * Pour S3, les identifiants viennent de storage.s3.access-key/secret-key
+ * ou, à défaut, de la chaîne standard AWS (variables d'environnement, profil, rôle IAM).
+ */
+@Configuration
+public class StorageConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "storage.backend", havingValue = "local", matchIfMissing = true)
+    public LocalStorageBackend localStorageBackend(
+            @Value("${upload.path}") String uploadPath,
+            @Value("${upload.url}") String uploadUrl
+    ) {
+        return new LocalStorageBackend(Paths.get(uploadPath), uploadUrl);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "storage.backend", havingValue = "s3")
+    public S3Client s3Client(
+            @Value("${storage.s3.region}") String region,
+            @Value("${storage.s3.endpoint:}") String endpoint,
+            @Value("${storage.s3.path-style:false}") boolean pathStyle,
+            @Value("${storage.s3.access-key:}") String accessKey,
+            @Value("${storage.s3.secret-key:}") String secretKey
+    ) {
+        S3ClientBuilder builder = S3Client.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentials(accessKey, secretKey))
+                .forcePathStyle(pathStyle);
+        if (!endpoint.isEmpty()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        return builder.build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "storage.backend", havingValue = "s3")
+    public S3Presigner s3Presigner(
+            @Value("${storage.s3.region}") String region,
+            @Value("${storage.s3.endpoint:}") String endpoint,
+            @Value("${storage.s3.path-style:false}") boolean pathStyle,
+            @Value("${storage.s3.access-key:}") String accessKey,
+            @Value("${storage.s3.secret-key:}") String secretKey
+    ) {
+        S3Presigner.Builder builder = S3Presigner.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentials(accessKey, secretKey))
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(pathStyle).build());
+        if (!endpoint.isEmpty()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        return builder.build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "storage.backend", havingValue = "s3")
+    public S3StorageBackend s3StorageBackend(
+            S3Client s3Client,
+            S3Presigner s3Presigner,
+            @Value("${storage.s3.bucket}") String bucket,
+            @Value("${storage.s3.public-url}") String publicUrl,
+            @Value("${storage.s3.presign-duration:10m}") Duration presignDuration
+    ) {
+        return new S3StorageBackend(s3Client, s3Presigner, bucket, publicUrl, presignDuration);
+    }
+
+    private static AwsCredentialsProvider credentials(String accessKey, String secretKey) {
+        if (accessKey.isEmpty()) {
+            return DefaultCredentialsProvider.create();
+        }
+        return StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+    }
+}
@@ -1,30 +1,57 @@
 package com.chatop.config;
 
+import com.chatop.model.StoredFile;
+import com.chatop.repository.StoredFileRepository;
+import com.chatop.storage.LocalStorageBackend;
+import com.chatop.web.ImageCache;
+import com.chatop.web.ImageServlet;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
-import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.util.unit.DataSize;
 
-import java.nio.file.Paths;
+import java.time.Duration;
 
 /**
  * Configuration pour servir les fichiers statiques uploadés
  *
  * Permet d'accéder aux images via :
  * http://localhost:3001/uploads/nom-fichier.jpg
+ *
+ * Les images sont servies par ImageServlet (hors DispatcherServlet
+ * et hors Spring Security) avec envoi zero-copy et cache longue durée.
+ * Avec le stockage S3, les images sont servies par le stockage lui-même (voir StorageConfig).
+ *
+ * Cache mémoire optionnel des images les plus demandées : image-cache.enabled=true
  */
 @Configuration
-public class WebConfig implements WebMvcConfigurer {
+public class WebConfig {
 
-    @Value("${upload.path}")
-    private String uploadPath;
-
-    @Override
-    public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        // Convertir le chemin relatif en chemin absolu
-        String absolutePath = "file:" + Paths.get(uploadPath).toAbsolutePath() + "/";
+    @Bean
+    @ConditionalOnProperty(name = "storage.backend", havingValue = "local", matchIfMissing = true)
+    public ServletRegistrationBean<ImageServlet> imageServlet(LocalStorageBackend localStorageBackend,
+                                                             ObjectProvider<ImageCache> imageCache,
+                                                             StoredFileRepository storedFileRepository) {
+        ServletRegistrationBean<ImageServlet> registration = new ServletRegistrationBean<>(
+                new ImageServlet(localStorageBackend.getRoot(), imageCache.getIfAvailable(),
+                        hash -> storedFileRepository.findById(hash).map(StoredFile::getPath).orElse(null)),
+                "/uploads/*");
+        registration.setName("imageServlet");
+        return registration;
+    }
 
-        registry.addResourceHandler("/uploads/**")
-                .addResourceLocations(absolutePath);
+    @Bean
+    @ConditionalOnProperty(name = "image-cache.enabled", havingValue = "true")
+    public ImageCache imageCache(
+            @Value("${image-cache.max-size:64MB}") DataSize maxSize,
+            @Value("${image-cache.max-entry-size:512KB}") DataSize maxEntrySize,
+            @Value("${image-cache.max-age:10m}") Duration maxAge,
+            MeterRegistry meterRegistry
+    ) {
+        return new ImageCache(maxSize.toBytes(), maxEntrySize.toBytes(), maxAge, meterRegistry);
     }
-}
\ No newline at end of file
+}
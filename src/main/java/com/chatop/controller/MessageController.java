@@ -1,8 +1,15 @@
 package com.chatop.controller;
 
+import com.chatop.dto.InboxResponse;
 import com.chatop.dto.MessageRequest;
+import com.chatop.dto.MessagesPageResponse;
+import com.chatop.service.InboxService;
+import com.chatop.service.MessageRejectedException;
 import com.chatop.service.MessageService;
+import com.chatop.web.IdempotencyGuard;
+import com.chatop.web.MessagePushHub;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -12,9 +19,13 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -24,6 +35,14 @@ import java.util.Map;
  *
  * Routes disponibles (protégées par JWT) :
  * - POST /api/messages : Envoyer un message sur une location
+ * - GET /api/messages/sent : Messages envoyés par l'utilisateur connecté (paginés)
+ * - GET /api/messages/received : Messages reçus sur ses locations (paginés)
+ * - GET /api/messages/search : Recherche plein texte dans les messages reçus (paginée)
+ * - GET /api/messages/inbox : Boîte de réception (messages non lus par location)
+ * - POST /api/messages/inbox/{rentalId}/read : Marquer les messages d'une location comme lus
+ * - GET /api/messages/stream : Nouveaux messages reçus sur ses locations, en temps réel (SSE)
+ *
+ * Les messages reçus sur une location : GET /api/rentals/{id}/messages (RentalController)
  */
 @RestController
 @RequestMapping("/api/messages")
@@ -32,6 +51,9 @@ import java.util.Map;
 public class MessageController {
 
     private final MessageService messageService;
+    private final MessagePushHub messagePushHub;
+    private final InboxService inboxService;
+    private final IdempotencyGuard idempotencyGuard;
 
     /**
      * POST /api/messages
@@ -50,8 +72,12 @@ public class MessageController {
                     
                     **⚠️ Route protégée** : Nécessite un token JWT valide.
                     
-                    **Note** : Le message est enregistré en base de données mais aucune notification
-                    n'est envoyée dans cette version (à implémenter : emails, notifications push, etc.).
+                    **Note** : Le propriétaire connecté à GET /api/messages/stream reçoit le message
+                    en temps réel. En mode d'enregistrement différé, la réponse est 202 (message accepté)
+                    et 503 si trop de messages sont en attente.
+                    
+                    **Renvoi après un timeout** : envoyer le même en-tête Idempotency-Key ; la réponse
+                    d'origine est retournée (en-tête Idempotent-Replayed) sans créer de doublon.
                     """,
             security = @SecurityRequirement(name = "Bearer Authentication")
     )
@@ -70,6 +96,10 @@ public class MessageController {
                             )
                     )
             ),
+            @ApiResponse(
+                    responseCode = "202",
+                    description = "Message accepté, enregistré de façon différée (message.ingest.write-behind=true)"
+            ),
             @ApiResponse(
                     responseCode = "400",
                     description = "Requête invalide - Données manquantes, rental_id ou user_id inexistant",
@@ -87,6 +117,22 @@ public class MessageController {
             @ApiResponse(
                     responseCode = "401",
                     description = "Non autorisé - Token manquant ou invalide"
+            ),
+            @ApiResponse(
+                    responseCode = "409",
+                    description = "Une requête avec la même clé Idempotency-Key est en cours de traitement"
+            ),
+            @ApiResponse(
+                    responseCode = "422",
+                    description = "Clé Idempotency-Key déjà utilisée pour une autre requête"
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "Enregistrement différé : journal des messages impossible à écrire"
+            ),
+            @ApiResponse(
+                    responseCode = "503",
+                    description = "Enregistrement différé : trop de messages en attente - Réessayer après Retry-After"
             )
     })
     public ResponseEntity<?> sendMessage(
@@ -106,18 +152,35 @@ public class MessageController {
                             )
                     )
             )
-            @Valid @RequestBody MessageRequest request,Authentication authentication //récupération du user depuis le JWT
+            @Valid @RequestBody MessageRequest request,
+            @Parameter(description = "Clé unique choisie par le client : un renvoi avec la même clé (24 h) "
+                    + "retourne la réponse d'origine sans créer de nouveau message")
+            @RequestHeader(value = IdempotencyGuard.HEADER, required = false) String idempotencyKey,
+            Authentication authentication //récupération du user depuis le JWT
     ) {
-        try {
-            // Extraction de l'email depuis le token JWT
-            String userEmail = authentication.getName();
+        // Extraction de l'email depuis le token JWT
+        String userEmail = authentication.getName();
 
-            // Envoi du message avec l'email authentifié
-            messageService.sendMessage(request,userEmail);
+        // Empreinte : une clé réutilisée pour un autre message est refusée (422)
+        String fingerprint = request.getRentalId() + "\n" + request.getMessage();
+        return idempotencyGuard.execute("POST /api/messages", userEmail, idempotencyKey, fingerprint,
+                () -> send(request, userEmail));
+    }
 
+    private ResponseEntity<?> send(MessageRequest request, String userEmail) {
+        try {
             // Réponse au format Mockoon
             Map<String, String> response = new HashMap<>();
             response.put("message", "Message send with success");
+
+            // Enregistrement différé : le message est accepté, enregistré par lot dans quelques ms
+            if (messageService.isWriteBehind()) {
+                messageService.acceptMessage(request, userEmail);
+                return ResponseEntity.accepted().body(response);
+            }
+
+            // Envoi du message avec l'email authentifié
+            messageService.sendMessage(request,userEmail);
             return ResponseEntity.ok(response);
 
         } catch (IllegalArgumentException e) {
@@ -126,9 +189,309 @@ public class MessageController {
             error.put("error", e.getMessage());
             return ResponseEntity.badRequest().body(error);
 
+        } catch (MessageRejectedException e) {
+            // Enregistrement différé : file pleine (503) ou journal en erreur (500)
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            ResponseEntity.BodyBuilder response = ResponseEntity.status(e.getStatus());
+            if (e.getStatus() == HttpStatus.SERVICE_UNAVAILABLE) {
+                response.header(HttpHeaders.RETRY_AFTER, "1");
+            }
+            return response.body(error);
+
         } catch (Exception e) {
             // Autre erreur
             return ResponseEntity.badRequest().body(new HashMap<>());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * GET /api/messages/sent?before=...&limit=20
+     * Messages envoyés par l'utilisateur connecté
+     */
+    @GetMapping("/sent")
+    @Operation(
+            summary = "Messages envoyés",
+            description = """
+                    Retourne les messages envoyés par l'utilisateur connecté, du plus récent au plus ancien.
+                    
+                    **Pagination** : passer next_cursor de la réponse dans le paramètre before
+                    pour obtenir la page suivante (next_cursor vaut null sur la dernière page).
+                    
+                    **⚠️ Route protégée** : Nécessite un token JWT valide.
+                    """,
+            security = @SecurityRequirement(name = "Bearer Authentication")
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Page de messages",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = MessagesPageResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Requête invalide - Curseur ou taille de page invalide"
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Non autorisé - Token manquant ou invalide"
+            )
+    })
+    public ResponseEntity<?> getSentMessages(
+            @RequestParam(value = "before", required = false) String before,
+            @RequestParam(value = "limit", defaultValue = "20") int limit,
+            Authentication authentication
+    ) {
+        try {
+            return ResponseEntity.ok(messageService.getSentMessages(before, limit, authentication.getName()));
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    /**
+     * GET /api/messages/received?before=...&limit=20
+     * Messages reçus sur l'ensemble des locations de l'utilisateur connecté
+     */
+    @GetMapping("/received")
+    @Operation(
+            summary = "Messages reçus",
+            description = """
+                    Retourne les messages reçus sur toutes les locations de l'utilisateur connecté,
+                    du plus récent au plus ancien.
+                    
+                    **Pagination** : passer next_cursor de la réponse dans le paramètre before
+                    pour obtenir la page suivante (next_cursor vaut null sur la dernière page).
+                    
+                    **⚠️ Route protégée** : Nécessite un token JWT valide.
+                    """,
+            security = @SecurityRequirement(name = "Bearer Authentication")
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Page de messages",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = MessagesPageResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Requête invalide - Curseur ou taille de page invalide"
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Non autorisé - Token manquant ou invalide"
+            )
+    })
+    public ResponseEntity<?> getReceivedMessages(
+            @RequestParam(value = "before", required = false) String before,
+            @RequestParam(value = "limit", defaultValue = "20") int limit,
+            Authentication authentication
+    ) {
+        try {
+            return ResponseEntity.ok(messageService.getReceivedMessages(before, limit, authentication.getName()));
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    /**
+     * GET /api/messages/search?q=...&before=...&limit=20
+     * Recherche dans les messages reçus sur l'ensemble des locations de l'utilisateur connecté
+     */
+    @GetMapping("/search")
+    @Operation(
+            summary = "Recherche dans les messages reçus",
+            description = """
+                    Retourne les messages reçus sur les locations de l'utilisateur connecté qui contiennent
+                    tous les mots recherchés, du plus récent au plus ancien. Archives comprises.
+                    
+                    **Syntaxe** : mots séparés par des espaces (tous requis), "expression exacte",
+                    préfixe* (au moins 2 caractères). Casse et accents ignorés.
+                    Exemple : `"place de parking" dispo*`
+                    
+                    **Pagination** : passer next_cursor de la réponse dans le paramètre before
+                    pour obtenir la page suivante (next_cursor vaut null sur la dernière page).
+                    
+                    **⚠️ Route protégée** : Nécessite un token JWT valide.
+                    """,
+            security = @SecurityRequirement(name = "Bearer Authentication")
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Page de messages trouvés",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = MessagesPageResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Requête invalide - Recherche vide ou trop longue, préfixe trop court, curseur ou taille de page invalide"
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Non autorisé - Token manquant ou invalide"
+            ),
+            @ApiResponse(
+                    responseCode = "503",
+                    description = "Index de recherche indisponible sur ce nœud - Réessayer après Retry-After"
+            )
+    })
+    public ResponseEntity<?> searchReceivedMessages(
+            @Parameter(description = "Recherche (200 caractères au plus)", example = "\"place de parking\" dispo*")
+            @RequestParam(value = "q", required = false) String query,
+            @RequestParam(value = "before", required = false) String before,
+            @RequestParam(value = "limit", defaultValue = "20") int limit,
+            Authentication authentication
+    ) {
+        try {
+            return ResponseEntity.ok(messageService.searchReceivedMessages(query, before, limit, authentication.getName()));
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        } catch (IllegalStateException e) {
+            // Index verrouillé ou inaccessible : nouvelle tentative d'ouverture toutes les 30 s
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "30").body(error);
+        }
+    }
+
+    /**
+     * GET /api/messages/inbox
+     * Boîte de réception de l'utilisateur connecté
+     */
+    @GetMapping("/inbox")
+    @Operation(
+            summary = "Boîte de réception",
+            description = """
+                    Retourne, pour chaque location de l'utilisateur ayant reçu des messages, le nombre
+                    de messages non lus et la date du dernier message (location la plus récemment active
+                    en premier), ainsi que le total des messages non lus.
+                    
+                    **⚠️ Route protégée** : Nécessite un token JWT valide.
+                    """,
+            security = @SecurityRequirement(name = "Bearer Authentication")
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Boîte de réception",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = InboxResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Non autorisé - Token manquant ou invalide"
+            )
+    })
+    public ResponseEntity<?> getInbox(Authentication authentication) {
+        try {
+            return ResponseEntity.ok(inboxService.getInbox(authentication.getName()));
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    /**
+     * POST /api/messages/inbox/{rentalId}/read
+     * Marque comme lus les messages reçus sur une location
+     */
+    @PostMapping("/inbox/{rentalId}/read")
+    @Operation(
+            summary = "Marquer les messages d'une location comme lus",
+            description = """
+                    Remet à zéro le nombre de messages non lus de la location dans la boîte de réception.
+                    
+                    **⚠️ Route protégée** : Nécessite un token JWT valide (propriétaire de la location).
+                    """,
+            security = @SecurityRequirement(name = "Bearer Authentication")
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "204",
+                    description = "Messages marqués comme lus"
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Aucun message reçu sur cette location, ou location d'un autre propriétaire"
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Non autorisé - Token manquant ou invalide"
+            )
+    })
+    public ResponseEntity<?> markAsRead(@PathVariable Long rentalId, Authentication authentication) {
+        try {
+            inboxService.markAsRead(rentalId, authentication.getName());
+            return ResponseEntity.noContent().build();
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    /**
+     * GET /api/messages/stream
+     * Nouveaux messages reçus sur les locations de l'utilisateur, en temps réel
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+            summary = "Flux temps réel des messages reçus",
+            description = """
+                    Connexion Server-Sent Events : chaque nouveau message envoyé sur une location
+                    de l'utilisateur est poussé dès son enregistrement (événement "message",
+                    données au format de GET /api/rentals/{id}/messages).
+                    
+                    Un commentaire "heartbeat" est envoyé en l'absence de message. Après une coupure,
+                    se reconnecter et relire GET /api/rentals/{id}/messages pour les messages manqués.
+                    
+                    **⚠️ Route protégée** : Nécessite un token JWT valide (en-tête Authorization).
+                    """,
+            security = @SecurityRequirement(name = "Bearer Authentication")
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Flux ouvert (text/event-stream)"
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Non autorisé - Token manquant ou invalide"
+            ),
+            @ApiResponse(
+                    responseCode = "503",
+                    description = "Trop de connexions temps réel ouvertes"
+            )
+    })
+    public ResponseEntity<SseEmitter> streamMessages(Authentication authentication) {
+        try {
+            Long userId = messageService.getUserId(authentication.getName());
+            return ResponseEntity.ok(messagePushHub.subscribe(userId));
+
+        } catch (IllegalArgumentException e) {
+            // Réponse sans corps : le flux n'accepte que text/event-stream
+            return ResponseEntity.badRequest().build();
+
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+}
@@ -1,12 +1,23 @@
 package com.chatop.controller;
 
+import com.chatop.dto.MessagesPageResponse;
+import com.chatop.dto.PictureOrderRequest;
+import com.chatop.dto.RentalPictureResponse;
 import com.chatop.dto.RentalRequest;
 import com.chatop.dto.RentalResponse;
+import com.chatop.dto.RentalUploadForm;
 import com.chatop.dto.RentalsListResponse;
-import com.chatop.model.User;
-import com.chatop.repository.UserRepository;
+import com.chatop.service.FileStorageService;
+import com.chatop.service.MessageService;
+import com.chatop.service.RentalPictureService;
 import com.chatop.service.RentalService;
+import com.chatop.service.StorageQuotaService;
+import com.chatop.service.UploadAdmissionService;
+import com.chatop.service.UploadRejectedException;
+import com.chatop.service.UploadSessionService;
+import com.chatop.web.IdempotencyGuard;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -15,17 +26,33 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
+import org.apache.commons.fileupload2.core.DiskFileItem;
+import org.apache.commons.fileupload2.core.DiskFileItemFactory;
+import org.apache.commons.fileupload2.core.FileItemInput;
+import org.apache.commons.fileupload2.core.FileItemInputIterator;
+import org.apache.commons.fileupload2.jakarta.servlet6.JakartaServletFileUpload;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Contrôleur REST pour la gestion des locations
@@ -37,7 +64,21 @@ import java.util.Map;
 @Tag(name = "Rentals", description = "Gestion des annonces de location immobilière")
 public class RentalController {
 
+    // Taille maximale d'un champ texte du formulaire (la description fait au plus 2000 caractères)
+    private static final int MAX_FIELD_BYTES = 8 * 1024;
+
     private final RentalService rentalService;
+    private final RentalPictureService rentalPictureService;
+    private final MessageService messageService;
+    private final FileStorageService fileStorageService;
+    private final UploadSessionService uploadSessionService;
+    private final UploadAdmissionService uploadAdmissionService;
+    private final StorageQuotaService storageQuotaService;
+    private final Validator validator;
+    private final IdempotencyGuard idempotencyGuard;
+
+    @Value("${spring.servlet.multipart.max-request-size:10MB}")
+    private DataSize maxRequestSize;
 
     /**
      * GET /api/rentals
@@ -109,6 +150,55 @@ public class RentalController {
         }
     }
 
+    /**
+     * GET /api/rentals/:id/messages?before=...&limit=20
+     * Messages reçus sur une location (propriétaire uniquement)
+     */
+    @GetMapping("/{id}/messages")
+    @Operation(
+            summary = "Messages reçus sur une location",
+            description = """
+                    Retourne les messages envoyés sur la location, du plus récent au plus ancien.
+                    
+                    **Pagination** : passer next_cursor de la réponse dans le paramètre before
+                    pour obtenir la page suivante (next_cursor vaut null sur la dernière page).
+                    Le temps de réponse ne dépend pas du nombre de messages de la location.
+                    
+                    **Restriction** : Seul le propriétaire de l'annonce peut lire ses messages.
+                    
+                    **⚠️ Route protégée** : Nécessite un token JWT valide.
+                    """,
+            security = @SecurityRequirement(name = "Bearer Authentication")
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Page de messages",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = MessagesPageResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Location inconnue, utilisateur non autorisé, curseur ou taille de page invalide"
+            )
+    })
+    public ResponseEntity<?> getRentalMessages(
+            @PathVariable Long id,
+            @RequestParam(value = "before", required = false) String before,
+            @RequestParam(value = "limit", defaultValue = "20") int limit,
+            Authentication authentication
+    ) {
+        try {
+            return ResponseEntity.ok(messageService.getRentalMessages(id, before, limit, authentication.getName()));
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
     /**
      * POST /api/rentals
      * Créer une nouvelle location AVEC upload d'image
@@ -127,12 +217,26 @@ public class RentalController {
                     - price (number, requis) : Prix mensuel en euros
                     - description (string, optionnel) : Description détaillée
                     - picture (file, optionnel) : Image de la location (jpg, png, etc.)
+                    - picture_key (string, optionnel) : Clé d'une image envoyée par upload direct
+                      (POST /api/uploads/presign), à la place de picture
+                    - upload_id (string, optionnel) : Identifiant d'un upload en plusieurs morceaux
+                      finalisé (POST /api/uploads), à la place de picture
+                    
+                    L'image est lue en streaming et écrite directement sur disque (une seule copie).
                     
                     Le propriétaire (owner_id) est automatiquement défini comme l'utilisateur connecté.
                     
                     ** Route protégée** : Nécessite un token JWT valide.
                     """,
-            security = @SecurityRequirement(name = "Bearer Authentication")
+            security = @SecurityRequirement(name = "Bearer Authentication"),
+            requestBody = @RequestBody(
+                    description = "Formulaire de la location avec l'image",
+                    required = true,
+                    content = @Content(
+                            mediaType = MediaType.MULTIPART_FORM_DATA_VALUE,
+                            schema = @Schema(implementation = RentalUploadForm.class)
+                    )
+            )
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -152,26 +256,85 @@ public class RentalController {
             @ApiResponse(
                     responseCode = "400",
                     description = "Requête invalide - Données manquantes ou image invalide"
+            ),
+            @ApiResponse(
+                    responseCode = "429",
+                    description = "Trop d'uploads en cours - Réessayer après le délai Retry-After"
+            ),
+            @ApiResponse(
+                    responseCode = "507",
+                    description = "Quota de stockage atteint"
+            ),
+            @ApiResponse(
+                    responseCode = "409",
+                    description = "Une requête avec la même clé Idempotency-Key est en cours de traitement "
+                            + "(au plus idempotency.pending-lease, 5 min par défaut)"
             )
     })
     public ResponseEntity<?> createRental(
-            @RequestParam("name") String name,
-            @RequestParam("surface") BigDecimal surface,
-            @RequestParam("price") BigDecimal price,
-            @RequestParam(value = "description", required = false) String description,
-            @RequestParam(value = "picture", required = false) MultipartFile picture,
+            HttpServletRequest httpRequest,
+            @Parameter(description = "Clé unique choisie par le client : un renvoi avec la même clé (24 h) "
+                    + "retourne la réponse d'origine sans relire le formulaire ni créer de nouvelle location. "
+                    + "Le formulaire n'étant pas lu, son contenu n'est pas comparé : la même clé envoyée avec "
+                    + "un autre formulaire retourne aussi la réponse d'origine (pas de 422 sur cette route) ; "
+                    + "utiliser une nouvelle clé pour chaque nouvelle location")
+            @RequestHeader(value = IdempotencyGuard.HEADER, required = false) String idempotencyKey,
             Authentication authentication
     ) {
+        // Répétition : réponse d'origine avant la lecture du corps (aucun octet d'image reçu)
+        // Pas d'empreinte : le formulaire n'est connu qu'en le lisant (limite documentée sur l'en-tête)
+        return idempotencyGuard.execute("POST /api/rentals", authentication.getName(), idempotencyKey, null,
+                () -> create(httpRequest, authentication));
+    }
+
+    private ResponseEntity<?> create(HttpServletRequest httpRequest, Authentication authentication) {
+        FileStorageService.ReceivedFile picture = null;
+        String uploadId = null;
+        UploadAdmissionService.Permit permit = null;
         try {
             // extraction de l'email depuis le JWT
             String userEmail = authentication.getName();
 
-            // Création du DTO
+            // Refus rapide avant de lire le corps : quota (507), puis place disponible (429)
+            long contentLength = httpRequest.getContentLengthLong();
+            storageQuotaService.checkAvailable(userEmail, contentLength);
+            permit = uploadAdmissionService.admit(contentLength);
+
+            // Lecture du formulaire en streaming : l'image va directement du réseau au disque
             RentalRequest request = new RentalRequest();
-            request.setName(name);
-            request.setSurface(surface);
-            request.setPrice(price);
-            request.setDescription(description);
+            JakartaServletFileUpload<DiskFileItem, DiskFileItemFactory> upload = new JakartaServletFileUpload<>();
+            upload.setSizeMax(maxRequestSize.toBytes());
+            FileItemInputIterator items = upload.getItemIterator(httpRequest);
+            while (items.hasNext()) {
+                FileItemInput item = items.next();
+                try (InputStream input = item.getInputStream()) {
+                    if (item.isFormField() && "picture_key".equals(item.getFieldName())) {
+                        // Image déjà envoyée au stockage par upload direct
+                        if (picture == null) {
+                            picture = fileStorageService.receiveUploaded(readValue(item.getFieldName(), input).trim());
+                        }
+                    } else if (item.isFormField() && "upload_id".equals(item.getFieldName())) {
+                        // Upload en plusieurs morceaux : rattaché après la validation du formulaire
+                        uploadId = readValue(item.getFieldName(), input).trim();
+                    } else if (item.isFormField()) {
+                        readField(request, item.getFieldName(), input);
+                    } else if ("picture".equals(item.getFieldName()) && item.getName() != null
+                            && !item.getName().isEmpty() && picture == null) {
+                        picture = fileStorageService.receive(input);
+                    }
+                }
+            }
+
+            // Validation du DTO (mêmes règles que @Valid)
+            Set<ConstraintViolation<RentalRequest>> violations = validator.validate(request);
+            if (!violations.isEmpty()) {
+                throw new IllegalArgumentException(violations.iterator().next().getMessage());
+            }
+
+            // Upload reprenable : la session n'est consommée qu'avec un formulaire valide
+            if (picture == null && uploadId != null && !uploadId.isEmpty()) {
+                picture = uploadSessionService.receive(uploadId, userEmail);
+            }
 
             // Création de la location avec l'email (le service récupère l'ownerId)
             rentalService.createRental(request, picture, userEmail);
@@ -181,16 +344,68 @@ public class RentalController {
             response.put("message", "Rental created !");
             return ResponseEntity.ok(response);
 
+        } catch (UploadRejectedException e) {
+            return rejected(e);
+
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
             error.put("error", e.getMessage());
             return ResponseEntity.badRequest().body(error);
+
+        } finally {
+            // Image non rattachée (erreur) : le fichier temporaire est supprimé
+            if (picture != null) {
+                fileStorageService.discard(picture);
+            }
+            if (permit != null) {
+                permit.close();
+            }
         }
     }
 
+    /**
+     * Réponse d'un upload refusé (429 avec Retry-After, ou 507)
+     */
+    static ResponseEntity<Map<String, String>> rejected(UploadRejectedException e) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", e.getMessage());
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(e.getStatus());
+        if (e.getStatus() == HttpStatus.TOO_MANY_REQUESTS) {
+            response.header(HttpHeaders.RETRY_AFTER, "1");
+        }
+        return response.body(error);
+    }
+
+    /**
+     * Lit un champ texte du formulaire multipart dans le DTO
+     */
+    private void readField(RentalRequest request, String fieldName, InputStream input) throws IOException {
+        String value = readValue(fieldName, input);
+        switch (fieldName) {
+            case "name" -> request.setName(value);
+            case "surface" -> request.setSurface(new BigDecimal(value.trim()));
+            case "price" -> request.setPrice(new BigDecimal(value.trim()));
+            case "description" -> request.setDescription(value);
+            default -> {
+                // Champ inconnu ignoré
+            }
+        }
+    }
+
+    /**
+     * Lit la valeur d'un champ texte (taille limitée)
+     */
+    private String readValue(String fieldName, InputStream input) throws IOException {
+        byte[] bytes = input.readNBytes(MAX_FIELD_BYTES + 1);
+        if (bytes.length > MAX_FIELD_BYTES) {
+            throw new IllegalArgumentException("Le champ " + fieldName + " est trop long");
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
     /**
      * PUT /api/rentals/:id
-     * Modifier une location existante (SANS modification de l'image)
+     * Modifier une location existante (les photos se gèrent par la galerie)
      */
     @PutMapping(value = "/{id}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @Operation(
@@ -198,7 +413,7 @@ public class RentalController {
             description = """
                     Met à jour les informations d'une annonce de location existante.
                     
-                    **Note** : L'image ne peut pas être modifiée (on garde l'ancienne).
+                    **Note** : Les photos se gèrent par les routes /api/rentals/{id}/pictures.
                     
                     **Format** : multipart/form-data
                     
@@ -261,4 +476,204 @@ public class RentalController {
             return ResponseEntity.badRequest().body(error);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * POST /api/rentals/:id/pictures
+     * Ajouter une photo à la galerie d'une location
+     */
+    @PostMapping(value = "/{id}/pictures", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(
+            summary = "Ajout d'une photo à la galerie",
+            description = """
+                    Ajoute une photo à la fin de la galerie de la location.
+                    La première photo d'une location sans image devient sa couverture.
+                    
+                    **Format** : multipart/form-data, un seul de ces champs :
+                    - picture (file) : Image (jpg, png, etc.), lue en streaming
+                    - picture_key (string) : Clé d'une image envoyée par upload direct (POST /api/uploads/presign)
+                    - upload_id (string) : Identifiant d'un upload en plusieurs morceaux finalisé (POST /api/uploads)
+                    
+                    **Restriction** : Seul le propriétaire de l'annonce peut modifier sa galerie.
+                    
+                    **⚠️ Route protégée** : Nécessite un token JWT valide.
+                    """,
+            security = @SecurityRequirement(name = "Bearer Authentication")
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Photo ajoutée",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = RentalPictureResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Requête invalide - Image manquante ou invalide, galerie pleine ou utilisateur non autorisé"
+            ),
+            @ApiResponse(
+                    responseCode = "429",
+                    description = "Trop d'uploads en cours - Réessayer après le délai Retry-After"
+            ),
+            @ApiResponse(
+                    responseCode = "507",
+                    description = "Quota de stockage atteint"
+            )
+    })
+    public ResponseEntity<?> addPicture(
+            @PathVariable Long id,
+            HttpServletRequest httpRequest,
+            Authentication authentication
+    ) {
+        FileStorageService.ReceivedFile picture = null;
+        UploadAdmissionService.Permit permit = null;
+        try {
+            String userEmail = authentication.getName();
+
+            long contentLength = httpRequest.getContentLengthLong();
+            storageQuotaService.checkAvailable(userEmail, contentLength);
+            permit = uploadAdmissionService.admit(contentLength);
+
+            // Lecture du formulaire en streaming : la première image trouvée est retenue
+            JakartaServletFileUpload<DiskFileItem, DiskFileItemFactory> upload = new JakartaServletFileUpload<>();
+            upload.setSizeMax(maxRequestSize.toBytes());
+            FileItemInputIterator items = upload.getItemIterator(httpRequest);
+            while (items.hasNext() && picture == null) {
+                FileItemInput item = items.next();
+                try (InputStream input = item.getInputStream()) {
+                    if (item.isFormField() && "picture_key".equals(item.getFieldName())) {
+                        picture = fileStorageService.receiveUploaded(readValue(item.getFieldName(), input).trim());
+                    } else if (item.isFormField() && "upload_id".equals(item.getFieldName())) {
+                        picture = uploadSessionService.receive(readValue(item.getFieldName(), input).trim(), userEmail);
+                    } else if ("picture".equals(item.getFieldName()) && item.getName() != null && !item.getName().isEmpty()) {
+                        picture = fileStorageService.receive(input);
+                    }
+                }
+            }
+            if (picture == null) {
+                throw new IllegalArgumentException("L'image est obligatoire");
+            }
+
+            return ResponseEntity.ok(rentalPictureService.addPicture(id, picture, userEmail));
+
+        } catch (UploadRejectedException e) {
+            return rejected(e);
+
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+
+        } finally {
+            if (picture != null) {
+                fileStorageService.discard(picture);
+            }
+            if (permit != null) {
+                permit.close();
+            }
+        }
+    }
+
+    /**
+     * DELETE /api/rentals/:id/pictures/:pictureId
+     * Supprimer une photo de la galerie
+     */
+    @DeleteMapping("/{id}/pictures/{pictureId}")
+    @Operation(
+            summary = "Suppression d'une photo de la galerie",
+            description = """
+                    Retire une photo de la galerie. Si c'était la couverture, la photo suivante la remplace.
+                    
+                    **Restriction** : Seul le propriétaire de l'annonce peut modifier sa galerie.
+                    
+                    **⚠️ Route protégée** : Nécessite un token JWT valide.
+                    """,
+            security = @SecurityRequirement(name = "Bearer Authentication")
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Photo supprimée",
+                    content = @Content(
+                            mediaType = "application/json",
+                            examples = @ExampleObject(
+                                    value = """
+                                            {
+                                              "message": "Picture deleted !"
+                                            }
+                                            """
+                            )
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Photo inconnue ou utilisateur non autorisé"
+            )
+    })
+    public ResponseEntity<?> deletePicture(
+            @PathVariable Long id,
+            @PathVariable Long pictureId,
+            Authentication authentication
+    ) {
+        try {
+            rentalPictureService.deletePicture(id, pictureId, authentication.getName());
+
+            Map<String, String> response = new HashMap<>();
+            response.put("message", "Picture deleted !");
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    /**
+     * PUT /api/rentals/:id/pictures/order
+     * Réordonner la galerie (la première photo devient la couverture)
+     */
+    @PutMapping("/{id}/pictures/order")
+    @Operation(
+            summary = "Réordonnancement de la galerie",
+            description = """
+                    Fixe l'ordre d'affichage des photos. La première devient la couverture
+                    (champ picture de GET /api/rentals).
+                    
+                    **Restriction** : Seul le propriétaire de l'annonce peut modifier sa galerie.
+                    
+                    **⚠️ Route protégée** : Nécessite un token JWT valide.
+                    """,
+            security = @SecurityRequirement(name = "Bearer Authentication")
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Galerie réordonnée",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = RentalPictureResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Liste invalide ou utilisateur non autorisé"
+            )
+    })
+    public ResponseEntity<?> reorderPictures(
+            @PathVariable Long id,
+            @Valid @org.springframework.web.bind.annotation.RequestBody PictureOrderRequest request,
+            Authentication authentication
+    ) {
+        try {
+            List<RentalPictureResponse> pictures = rentalPictureService.reorder(id, request.getPictureIds(), authentication.getName());
+            return ResponseEntity.ok(pictures);
+
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.chatop.controller;
+
+import com.chatop.dto.DirectUploadRequest;
+import com.chatop.dto.DirectUploadResponse;
+import com.chatop.dto.UploadSessionRequest;
+import com.chatop.dto.UploadSessionResponse;
+import com.chatop.service.FileStorageService;
+import com.chatop.service.StorageQuotaService;
+import com.chatop.service.UploadAdmissionService;
+import com.chatop.service.UploadRejectedException;
+import com.chatop.service.UploadSessionService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Contrôleur REST pour l'upload direct des images
+ *
+ * Routes disponibles (protégées par JWT) :
+ * - POST /api/uploads/presign : Préparer l'envoi d'une image directement au stockage
+ * - POST /api/uploads : Ouvrir un upload en plusieurs morceaux (reprenable)
+ * - PUT /api/uploads/{id}?offset=N : Envoyer un morceau
+ * - GET /api/uploads/{id} : Offset à partir duquel reprendre
+ * - POST /api/uploads/{id}/complete : Finaliser l'upload
+ */
+@RestController
+@RequestMapping("/api/uploads")
+@RequiredArgsConstructor
+@Tag(name = "Uploads", description = "Upload direct des images vers le stockage")
+public class UploadController {
+
+    private final FileStorageService fileStorageService;
+    private final UploadSessionService uploadSessionService;
+    private final UploadAdmissionService uploadAdmissionService;
+    private final StorageQuotaService storageQuotaService;
+
+    /**
+     * POST /api/uploads/presign
+     * Préparer un upload direct (URL pré-signée)
+     */
+    @PostMapping("/presign")
+    @Operation(
+            summary = "Préparation d'un upload direct d'image",
+            description = """
+                    Retourne une URL pré-signée pour envoyer une image directement au stockage (S3),
+                    sans faire transiter les octets par l'API.
+                    
+                    **Étapes** :
+                    1. Calculer le SHA-256 du fichier et appeler cette route
+                    2. Si exists = false : envoyer le fichier avec la méthode, l'URL et les en-têtes retournés
+                    3. Créer la location (POST /api/rentals) avec le champ picture_key = key
+                    
+                    Le stockage refuse tout fichier dont le SHA-256 ou la taille diffère de ceux annoncés.
+                    Non disponible avec le stockage local (storage.backend=local).
+                    
+                    **⚠️ Route protégée** : Nécessite un token JWT valide.
+                    """,
+            security = @SecurityRequirement(name = "Bearer Authentication")
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Upload préparé",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = DirectUploadResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Requête invalide - Type, taille ou SHA-256 invalide, ou stockage sans upload direct"
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Non autorisé - Token manquant ou invalide"
+            ),
+            @ApiResponse(
+                    responseCode = "507",
+                    description = "Quota de stockage atteint"
+            )
+    })
+    public ResponseEntity<?> presign(@Valid @RequestBody DirectUploadRequest request, Authentication authentication) {
+        try {
+            storageQuotaService.checkAvailable(authentication.getName(), request.getSize());
+            DirectUploadResponse response = fileStorageService.prepareDirectUpload(
+                    request.getContentType(), request.getSize(), request.getSha256());
+            return ResponseEntity.ok(response);
+
+        } catch (UploadRejectedException e) {
+            return RentalController.rejected(e);
+        } catch (IllegalArgumentException | IOException e) {
+            return error(e);
+        }
+    }
+
+    /**
+     * POST /api/uploads
+     * Ouvrir un upload en plusieurs morceaux
+     */
+    @PostMapping
+    @Operation(
+            summary = "Ouverture d'un upload d'image reprenable",
+            description = """
+                    Ouvre un upload en plusieurs morceaux : une connexion coupée ne fait perdre
+                    que le morceau en cours.
+                    
+                    **Étapes** :
+                    1. Appeler cette route avec la taille totale du fichier
+                    2. Envoyer les morceaux (PUT /api/uploads/{id}?offset=N, corps application/octet-stream)
+                    3. Après une coupure : GET /api/uploads/{id} puis reprendre à l'offset retourné
+                    4. Finaliser (POST /api/uploads/{id}/complete)
+                    5. Créer la location (POST /api/rentals) avec le champ upload_id
+                    
+                    **⚠️ Route protégée** : Nécessite un token JWT valide.
+                    """,
+            security = @SecurityRequirement(name = "Bearer Authentication")
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Upload ouvert",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = UploadSessionResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Requête invalide - Taille invalide ou trop grande"
+            ),
+            @ApiResponse(
+                    responseCode = "507",
+                    description = "Quota de stockage atteint"
+            )
+    })
+    public ResponseEntity<?> createUpload(@Valid @RequestBody UploadSessionRequest request, Authentication authentication) {
+        try {
+            storageQuotaService.checkAvailable(authentication.getName(), request.getSize());
+            return ResponseEntity.ok(uploadSessionService.create(request.getSize(), authentication.getName()));
+        } catch (UploadRejectedException e) {
+            return RentalController.rejected(e);
+        } catch (IllegalArgumentException | IOException e) {
+            return error(e);
+        }
+    }
+
+    /**
+     * PUT /api/uploads/:id?offset=N
+     * Envoyer un morceau
+     */
+    @PutMapping(value = "/{id}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @Operation(
+            summary = "Envoi d'un morceau d'upload",
+            description = """
+                    Écrit le corps de la requête à l'offset donné. L'offset doit être au plus égal
+                    à l'offset retourné par la dernière réponse (pas de trou).
+                    
+                    **⚠️ Route protégée** : Nécessite un token JWT valide.
+                    """,
+            security = @SecurityRequirement(name = "Bearer Authentication")
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Morceau reçu",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = UploadSessionResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Requête invalide - Upload inconnu ou finalisé, offset invalide ou morceau trop gros"
+            ),
+            @ApiResponse(
+                    responseCode = "429",
+                    description = "Trop d'uploads en cours - Réessayer après le délai Retry-After"
+            )
+    })
+    public ResponseEntity<?> uploadChunk(
+            @PathVariable String id,
+            @RequestParam("offset") long offset,
+            HttpServletRequest httpRequest,
+            Authentication authentication
+    ) {
+        try (UploadAdmissionService.Permit permit = uploadAdmissionService.admit(httpRequest.getContentLengthLong())) {
+            return ResponseEntity.ok(uploadSessionService.writeChunk(id, offset, httpRequest.getInputStream(), authentication.getName()));
+        } catch (UploadRejectedException e) {
+            return RentalController.rejected(e);
+        } catch (IllegalArgumentException | IOException e) {
+            return error(e);
+        }
+    }
+
+    /**
+     * GET /api/uploads/:id
+     * État d'un upload (offset de reprise)
+     */
+    @GetMapping("/{id}")
+    @Operation(
+            summary = "État d'un upload",
+            description = """
+                    Retourne l'offset à partir duquel reprendre l'envoi.
+                    
+                    **⚠️ Route protégée** : Nécessite un token JWT valide.
+                    """,
+            security = @SecurityRequirement(name = "Bearer Authentication")
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "État de l'upload",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = UploadSessionResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Upload non trouvé"
+            )
+    })
+    public ResponseEntity<?> getUpload(@PathVariable String id, Authentication authentication) {
+        try {
+            return ResponseEntity.ok(uploadSessionService.status(id, authentication.getName()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * POST /api/uploads/:id/complete
+     * Finaliser un upload
+     */
+    @PostMapping("/{id}/complete")
+    @Operation(
+            summary = "Finalisation d'un upload",
+            description = """
+                    Vérifie que le fichier est complet et que c'est bien une image.
+                    L'identifiant peut ensuite être envoyé dans le champ upload_id de POST /api/rentals.
+                    
+                    **⚠️ Route protégée** : Nécessite un token JWT valide.
+                    """,
+            security = @SecurityRequirement(name = "Bearer Authentication")
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Upload finalisé",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = UploadSessionResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Requête invalide - Upload inconnu, incomplet ou pas une image"
+            )
+    })
+    public ResponseEntity<?> completeUpload(@PathVariable String id, Authentication authentication) {
+        try {
+            return ResponseEntity.ok(uploadSessionService.complete(id, authentication.getName()));
+        } catch (IllegalArgumentException | IOException e) {
+            return error(e);
+        }
+    }
+
+    private static ResponseEntity<Map<String, String>> error(Exception e) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", e.getMessage());
+        return ResponseEntity.badRequest().body(error);
+    }
+}
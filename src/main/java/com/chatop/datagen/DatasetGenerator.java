@@ -0,0 +1,285 @@
+package com.chatop.datagen;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Générateur de jeu de données pour les tests à grande échelle
+ *
+ * Actif uniquement avec le profil "datagen" :
+ * ./mvnw spring-boot:run -Dspring-boot.run.profiles=datagen \
+ *     -Dspring-boot.run.arguments="--datagen.users=100000 --datagen.rentals=1000000 --datagen.messages=5000000"
+ *
+ * Caractéristiques :
+ * - Déterministe : le même seed produit exactement les mêmes lignes et les mêmes images
+ *   (dates comptées depuis datagen.origin, jamais depuis l'heure courante)
+ * - Distributions réalistes (Zipf) : propriétaires avec beaucoup d'annonces, annonces "chaudes"
+ * - Insertion par lots JDBC (réécrits en INSERT multi-lignes par le driver MySQL)
+ * - Ids explicites à partir de datagen.id-offset + 1 : les clés étrangères logiques sont connues sans relecture ;
+ *   les tables doivent être vides au-delà de cet offset (sinon la génération est refusée)
+ * - Images de substitution générées dans le dossier d'upload et référencées par RENTALS.picture
+ */
+@Component
+@Profile("datagen")
+@RequiredArgsConstructor
+@Slf4j
+public class DatasetGenerator implements ApplicationRunner {
+
+    private static final String[] CITIES = {"Paris", "Lyon", "Marseille", "Bordeaux", "Lille", "Nantes",
+            "Toulouse", "Nice", "Rennes", "Strasbourg", "Montpellier", "Grenoble"};
+    private static final String[] KINDS = {"Studio", "Appartement T2", "Appartement T3", "Maison",
+            "Loft", "Duplex", "Chambre", "Villa"};
+    private static final String[] ADJECTIVES = {"lumineux", "calme", "rénové", "spacieux", "moderne",
+            "charmant", "meublé", "traversant"};
+    private static final String[] FEATURES = {"balcon", "parking", "cave", "ascenseur", "jardin",
+            "terrasse", "fibre", "proche transports", "vue dégagée", "cuisine équipée"};
+    private static final String[] QUESTIONS = {
+            "Bonjour, la location est-elle toujours disponible ?",
+            "Est-il possible de visiter ce week-end ?",
+            "Y a-t-il une place de parking ?",
+            "Les charges sont-elles comprises dans le loyer ?",
+            "Les animaux sont-ils acceptés ?",
+            "Quelle est la date de disponibilité ?",
+            "Le logement est-il meublé ?"};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PasswordEncoder passwordEncoder;
+
+    @Value("${datagen.seed:42}")
+    private long seed;
+
+    @Value("${datagen.users:10000}")
+    private int userCount;
+
+    @Value("${datagen.rentals:100000}")
+    private int rentalCount;
+
+    @Value("${datagen.messages:1000000}")
+    private int messageCount;
+
+    // Asymétrie des annonces par propriétaire et des messages par annonce
+    @Value("${datagen.owner-skew:1.1}")
+    private double ownerSkew;
+
+    @Value("${datagen.rental-skew:1.2}")
+    private double rentalSkew;
+
+    // Nombre d'images distinctes (partagées entre les annonces)
+    @Value("${datagen.images:500}")
+    private int imageCount;
+
+    // Période couverte par les dates de création, à partir d'une origine fixe
+    @Value("${datagen.origin:2024-01-01T00:00:00}")
+    private String originDate;
+
+    @Value("${datagen.days:365}")
+    private int days;
+
+    // Ids générés à partir de idOffset + 1 (0 : tables vides)
+    @Value("${datagen.id-offset:0}")
+    private long idOffset;
+
+    @Value("${datagen.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${upload.path}")
+    private String uploadPath;
+
+    @Value("${upload.url}")
+    private String uploadUrl;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        long start = System.currentTimeMillis();
+        log.info("Génération du jeu de données (seed={}) : {} utilisateurs, {} locations, {} messages",
+                seed, userCount, rentalCount, messageCount);
+
+        // Ids et dates fixés par la configuration : deux exécutions produisent les mêmes lignes
+        checkIdsAvailable("USERS", "RENTALS", "MESSAGES", "MESSAGES_ARCHIVE");
+        long firstUserId = idOffset + 1;
+        long firstRentalId = idOffset + 1;
+        long firstMessageId = idOffset + 1;
+        LocalDateTime origin = LocalDateTime.parse(originDate);
+
+        // Un flux aléatoire par table : changer un volume ne modifie pas les autres tables
+
+        List<String> pictures = generateImages(new SplittableRandom(seed ^ 0x1A6E5L));
+        generateUsers(firstUserId, origin, new SplittableRandom(seed ^ 0x05E5L));
+        int[] rentalOwners = new int[rentalCount];
+        int[] rentalCreatedAt = generateRentals(firstRentalId, firstUserId, origin, pictures, rentalOwners,
+                new SplittableRandom(seed ^ 0x2E47A1L));
+        generateMessages(firstMessageId, firstRentalId, firstUserId, origin, rentalCreatedAt, rentalOwners,
+                new SplittableRandom(seed ^ 0x3E55A6EL));
+
+        log.info("Jeu de données généré en {} s", (System.currentTimeMillis() - start) / 1000);
+    }
+
+    /**
+     * Vérifie qu'aucune ligne n'occupe déjà les ids générés
+     *
+     * @throws IllegalStateException si une table contient un id supérieur à datagen.id-offset
+     */
+    private void checkIdsAvailable(String... tables) {
+        for (String table : tables) {
+            Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+            if (max != null && max > idOffset) {
+                throw new IllegalStateException("La table " + table + " contient déjà l'id " + max
+                        + " : vider les tables ou relancer avec --datagen.id-offset=" + max);
+            }
+        }
+    }
+
+    /**
+     * Génère les images de substitution (800x600) dans le dossier d'upload
+     *
+     * @return les URLs publiques des images
+     */
+    private List<String> generateImages(SplittableRandom random) throws IOException {
+        Path uploadDir = Paths.get(uploadPath);
+        Files.createDirectories(uploadDir);
+
+        List<String> urls = new ArrayList<>(imageCount);
+        for (int i = 0; i < imageCount; i++) {
+            String filename = "datagen-" + seed + "-" + i + ".jpg";
+            Path file = uploadDir.resolve(filename);
+            if (!Files.exists(file)) {
+                ImageIO.write(placeholder(i, random), "jpg", file.toFile());
+            } else {
+                // Consomme le même nombre de tirages pour rester déterministe
+                placeholderColors(random);
+            }
+            urls.add(uploadUrl + filename);
+        }
+        log.info("{} images de substitution dans {}", imageCount, uploadDir.toAbsolutePath());
+        return urls;
+    }
+
+    private BufferedImage placeholder(int index, SplittableRandom random) {
+        Color[] colors = placeholderColors(random);
+        BufferedImage image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, colors[0], 800, 600, colors[1]));
+        graphics.fillRect(0, 0, 800, 600);
+        graphics.setColor(Color.WHITE);
+        graphics.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 48));
+        graphics.drawString("ChâTop #" + index, 60, 320);
+        graphics.dispose();
+        return image;
+    }
+
+    private Color[] placeholderColors(SplittableRandom random) {
+        return new Color[]{new Color(random.nextInt(0x1000000)), new Color(random.nextInt(0x1000000))};
+    }
+
+    private void generateUsers(long firstId, LocalDateTime origin, SplittableRandom random) {
+        // Un seul hash BCrypt (mot de passe "password123") : hasher des millions de lignes prendrait des heures
+        String hash = passwordEncoder.encode("password123");
+        String sql = "INSERT INTO USERS (id, name, email, password, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < userCount; i++) {
+            long id = firstId + i;
+            Timestamp createdAt = Timestamp.valueOf(origin.plusSeconds(random.nextLong(days * 86_400L)));
+            batch.add(new Object[]{id, "Utilisateur " + id, "user" + id + "@datagen.chatop", hash, createdAt, createdAt});
+            flushIfFull(sql, batch, "USERS", i + 1, userCount);
+        }
+        flush(sql, batch);
+    }
+
+    /**
+     * @param rentalOwners rempli avec le propriétaire de chaque location (rang de l'utilisateur)
+     * @return la date de création de chaque location (secondes depuis l'origine)
+     */
+    private int[] generateRentals(long firstId, long firstUserId, LocalDateTime origin, List<String> pictures,
+                                  int[] rentalOwners, SplittableRandom random) {
+        ZipfDistribution owners = new ZipfDistribution(userCount, ownerSkew, random.split());
+        int[] createdAt = new int[rentalCount];
+        String sql = "INSERT INTO RENTALS (id, name, surface, price, picture, description, owner_id, created_at, updated_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < rentalCount; i++) {
+            long id = firstId + i;
+            int surface = 10 + (int) Math.abs(random.nextGaussian() * 40 + 40);
+            int pricePerSquareMeter = 10 + random.nextInt(30);
+            createdAt[i] = random.nextInt(days * 86_400);
+            rentalOwners[i] = owners.sample(random);
+            Timestamp timestamp = Timestamp.valueOf(origin.plusSeconds(createdAt[i]));
+
+            String kind = KINDS[random.nextInt(KINDS.length)];
+            String name = kind + " " + ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " à "
+                    + CITIES[random.nextInt(CITIES.length)];
+            String description = kind + " de " + surface + " m² avec " + FEATURES[random.nextInt(FEATURES.length)]
+                    + " et " + FEATURES[random.nextInt(FEATURES.length)] + ".";
+
+            batch.add(new Object[]{id, name, BigDecimal.valueOf(surface),
+                    BigDecimal.valueOf((long) surface * pricePerSquareMeter),
+                    pictures.isEmpty() ? null : pictures.get(i % pictures.size()),
+                    description, firstUserId + rentalOwners[i], timestamp, timestamp});
+            flushIfFull(sql, batch, "RENTALS", i + 1, rentalCount);
+        }
+        flush(sql, batch);
+        return createdAt;
+    }
+
+    private void generateMessages(long firstId, long firstRentalId, long firstUserId, LocalDateTime origin,
+                                  int[] rentalCreatedAt, int[] rentalOwners, SplittableRandom random) {
+        ZipfDistribution hotRentals = new ZipfDistribution(rentalCount, rentalSkew, random.split());
+        int period = days * 86_400;
+        String sql = "INSERT INTO MESSAGES (id, rental_id, user_id, owner_id, message, created_at, updated_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < messageCount; i++) {
+            int rental = hotRentals.sample(random);
+            // Un message est toujours postérieur à la création de la location
+            int offset = rentalCreatedAt[rental] + random.nextInt(Math.max(1, period - rentalCreatedAt[rental]));
+            Timestamp createdAt = Timestamp.valueOf(origin.plusSeconds(offset));
+
+            batch.add(new Object[]{firstId + i, firstRentalId + rental, firstUserId + random.nextInt(userCount),
+                    firstUserId + rentalOwners[rental], QUESTIONS[random.nextInt(QUESTIONS.length)], createdAt, createdAt});
+            flushIfFull(sql, batch, "MESSAGES", i + 1, messageCount);
+        }
+        flush(sql, batch);
+    }
+
+    private void flushIfFull(String sql, List<Object[]> batch, String table, int done, int total) {
+        if (batch.size() >= batchSize) {
+            flush(sql, batch);
+            if (done % (batchSize * 100) == 0) {
+                log.info("{} : {}/{}", table, done, total);
+            }
+        }
+    }
+
+    private void flush(String sql, List<Object[]> batch) {
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, batch);
+            batch.clear();
+        }
+    }
+}
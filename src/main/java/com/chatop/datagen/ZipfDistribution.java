@@ -0,0 +1,58 @@
+package com.chatop.datagen;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Distribution de Zipf sur [0, n) : quelques éléments très fréquents, une longue traîne
+ *
+ * Sert à reproduire l'asymétrie réelle des données :
+ * - quelques agences possèdent beaucoup d'annonces
+ * - quelques annonces "chaudes" reçoivent la majorité des messages
+ *
+ * Les rangs sont permutés : l'élément le plus fréquent n'est pas toujours le premier id.
+ */
+final class ZipfDistribution {
+
+    private final double[] cumulative;
+    private final int[] permutation;
+
+    /**
+     * @param n nombre d'éléments
+     * @param exponent asymétrie (0 = uniforme, 1 = Zipf classique, plus grand = plus concentré)
+     * @param random source déterministe utilisée pour la permutation des rangs
+     */
+    ZipfDistribution(int n, double exponent, SplittableRandom random) {
+        this.cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < n; rank++) {
+            cumulative[rank] /= sum;
+        }
+
+        this.permutation = new int[n];
+        for (int i = 0; i < n; i++) {
+            permutation[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = tmp;
+        }
+    }
+
+    /**
+     * Tire un élément dans [0, n)
+     */
+    int sample(SplittableRandom random) {
+        int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+        if (rank < 0) {
+            rank = -rank - 1;
+        }
+        return permutation[Math.min(rank, permutation.length - 1)];
+    }
+}
@@ -0,0 +1,37 @@
+package com.chatop.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+
+/**
+ * DTO pour la préparation d'un upload direct d'image
+ * Utilisé pour POST /api/uploads/presign
+ */
+@Data
+@Schema(description = "Image à envoyer directement au stockage")
+public class DirectUploadRequest {
+
+    @Schema(description = "Type MIME de l'image", example = "image/jpeg", required = true)
+    @NotBlank(message = "Le type de l'image est obligatoire")
+    @JsonProperty("content_type")
+    private String contentType;
+
+    @Schema(description = "Taille exacte du fichier en octets", example = "245760", required = true)
+    @NotNull(message = "La taille est obligatoire")
+    @Positive(message = "La taille doit être positive")
+    private Long size;
+
+    @Schema(
+            description = "SHA-256 du fichier (hexadécimal), vérifié par le stockage à la réception",
+            example = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08",
+            required = true
+    )
+    @NotBlank(message = "Le SHA-256 est obligatoire")
+    @Pattern(regexp = "[0-9a-fA-F]{64}", message = "Le SHA-256 doit comporter 64 caractères hexadécimaux")
+    private String sha256;
+}
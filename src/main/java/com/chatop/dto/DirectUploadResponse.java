@@ -0,0 +1,41 @@
+package com.chatop.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * DTO pour la réponse de POST /api/uploads/presign
+ *
+ * La clé est ensuite envoyée dans le champ picture_key de POST /api/rentals
+ */
+@Data
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Upload direct pré-signé d'une image")
+public class DirectUploadResponse {
+
+    @Schema(description = "Clé de l'image, à envoyer dans picture_key", example = "9f/86/9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08.jpg")
+    private String key;
+
+    @Schema(description = "true si l'image est déjà stockée : aucun upload nécessaire", example = "false")
+    private boolean exists;
+
+    @Schema(description = "Méthode HTTP de l'upload", example = "PUT")
+    private String method;
+
+    @Schema(description = "URL pré-signée vers laquelle envoyer le fichier")
+    private String url;
+
+    @Schema(description = "En-têtes à envoyer à l'identique avec le fichier")
+    private Map<String, String> headers;
+
+    @Schema(description = "Date d'expiration de l'URL")
+    @JsonProperty("expires_at")
+    private Instant expiresAt;
+}
@@ -0,0 +1,34 @@
+package com.chatop.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO pour une location de la boîte de réception
+ * Utilisé dans InboxResponse
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Messages reçus sur une location")
+public class InboxEntryResponse {
+
+    @Schema(description = "ID de la location", example = "1")
+    @JsonProperty("rental_id")
+    private Long rentalId;
+
+    @Schema(description = "Nombre de messages non lus", example = "2")
+    @JsonProperty("unread_count")
+    private int unreadCount;
+
+    @Schema(description = "Date du dernier message reçu", example = "2024/12/09 14:32:05")
+    @JsonProperty("last_message_at")
+    @JsonFormat(pattern = "yyyy/MM/dd HH:mm:ss")
+    private LocalDateTime lastMessageAt;
+}
@@ -0,0 +1,31 @@
+package com.chatop.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO pour la boîte de réception d'un propriétaire
+ * Utilisé pour GET /api/messages/inbox
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Boîte de réception : messages reçus par location, la plus récemment active en premier")
+public class InboxResponse {
+
+    @Schema(description = "Nombre total de messages non lus", example = "5")
+    @JsonProperty("unread_total")
+    private long unreadTotal;
+
+    @Schema(description = "Nombre de locations ayant des messages non lus", example = "3")
+    @JsonProperty("unread_rentals")
+    private int unreadRentals;
+
+    @Schema(description = "Locations ayant reçu des messages")
+    private List<InboxEntryResponse> rentals;
+}
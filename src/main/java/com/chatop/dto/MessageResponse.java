@@ -0,0 +1,40 @@
+package com.chatop.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO pour la réponse contenant un message
+ * Utilisé dans MessagesPageResponse
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Message envoyé sur une location")
+public class MessageResponse {
+
+    @Schema(description = "Identifiant unique du message", example = "42")
+    private Long id;
+
+    @Schema(description = "ID de la location", example = "1")
+    @JsonProperty("rental_id")
+    private Long rentalId;
+
+    @Schema(description = "ID de l'expéditeur", example = "2")
+    @JsonProperty("user_id")
+    private Long userId;
+
+    @Schema(description = "Contenu du message", example = "Bonjour, la location est-elle toujours disponible ?")
+    private String message;
+
+    @Schema(description = "Date d'envoi", example = "2024/12/09 14:32:05")
+    @JsonProperty("created_at")
+    @JsonFormat(pattern = "yyyy/MM/dd HH:mm:ss")
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,28 @@
+package com.chatop.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO pour une page de messages (pagination par curseur)
+ * Utilisé pour GET /api/rentals/:id/messages et GET /api/messages/sent
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Page de messages, du plus récent au plus ancien")
+public class MessagesPageResponse {
+
+    @Schema(description = "Messages de la page")
+    private List<MessageResponse> messages;
+
+    @Schema(description = "Curseur de la page suivante (paramètre before), null sur la dernière page",
+            example = "MjAyNC0xMi0wOVQxNDozMjowNS4xMjM0NTZfNDI")
+    @JsonProperty("next_cursor")
+    private String nextCursor;
+}
@@ -0,0 +1,23 @@
+package com.chatop.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * DTO pour réordonner la galerie d'une location
+ * Utilisé pour PUT /api/rentals/:id/pictures/order
+ */
+@Data
+@Schema(description = "Nouvel ordre des photos d'une location")
+public class PictureOrderRequest {
+
+    @Schema(description = "Identifiants de toutes les photos dans le nouvel ordre (la première devient la couverture)",
+            example = "[14, 12, 13]", required = true)
+    @NotEmpty(message = "La liste des photos est obligatoire")
+    @JsonProperty("picture_ids")
+    private List<Long> pictureIds;
+}
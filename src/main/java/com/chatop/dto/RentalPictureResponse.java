@@ -0,0 +1,38 @@
+package com.chatop.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * DTO pour une photo de la galerie d'une location
+ * Utilisé dans GET /api/rentals/:id et pour les routes /api/rentals/:id/pictures
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Photo de la galerie d'une location")
+public class RentalPictureResponse {
+
+    @Schema(description = "Identifiant de la photo (null pour une ancienne image sans galerie)", example = "12")
+    private Long id;
+
+    @Schema(description = "Position dans la galerie (0 = couverture)", example = "0")
+    private Integer position;
+
+    @Schema(description = "URL de l'image", example = "http://localhost:3001/uploads/9f/86/9f86d0...0a08.jpg")
+    private String url;
+
+    @Schema(description = "Largeur en pixels (null tant que l'image n'a pas été analysée)", example = "1920")
+    private Integer width;
+
+    @Schema(description = "Hauteur en pixels (null tant que l'image n'a pas été analysée)", example = "1080")
+    private Integer height;
+
+    @Schema(description = "URLs des miniatures JPEG par largeur en pixels",
+            example = "{\"320\": \"http://localhost:3001/uploads/9f/86/9f86d0...0a08_w320.jpg\"}")
+    private Map<String, String> variants;
+}
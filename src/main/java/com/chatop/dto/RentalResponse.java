@@ -1,6 +1,7 @@
 package com.chatop.dto;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.AllArgsConstructor;
@@ -9,10 +10,13 @@ import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 /**
  * DTO pour la réponse contenant les informations d'une location
  * Utilisé pour les réponses GET /api/rentals et GET /api/rentals/:id
+ * La liste ne contient que la couverture (picture) ; la galerie (pictures) n'est que dans le détail
  */
 @Data
 @AllArgsConstructor
@@ -32,9 +36,14 @@ public class RentalResponse {
     @Schema(description = "Prix mensuel en euros", example = "850.00")
     private BigDecimal price;
 
-    @Schema(description = "URL de l'image de la location", example = "http://localhost:3001/uploads/image123.jpg")
+    @Schema(description = "URL de l'image de couverture de la location", example = "http://localhost:3001/uploads/image123.jpg")
     private String picture;
 
+    @Schema(description = "URLs des miniatures JPEG par largeur en pixels",
+            example = "{\"320\": \"http://localhost:3001/uploads/image123_w320.jpg\", \"640\": \"http://localhost:3001/uploads/image123_w640.jpg\"}")
+    @JsonProperty("picture_variants")
+    private Map<String, String> pictureVariants;
+
     @Schema(description = "Description détaillée", example = "Bel appartement T3")
     private String description;
 
@@ -51,4 +60,12 @@ public class RentalResponse {
     @JsonProperty("updated_at")
     @JsonFormat(pattern = "yyyy/MM/dd")
     private LocalDateTime updatedAt;
-}
\ No newline at end of file
+
+    @Schema(description = "Nombre de photos de la galerie", example = "5")
+    @JsonProperty("picture_count")
+    private Integer pictureCount;
+
+    @Schema(description = "Galerie complète dans l'ordre d'affichage (seulement dans GET /api/rentals/:id)")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<RentalPictureResponse> pictures;
+}
@@ -0,0 +1,43 @@
+package com.chatop.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Formulaire multipart de création d'une location (documentation OpenAPI uniquement)
+ *
+ * Le contrôleur lit ce formulaire en streaming (sans MultipartFile) :
+ * cette classe décrit les champs attendus pour Swagger UI.
+ */
+@Data
+@Schema(description = "Formulaire multipart de création d'une annonce de location")
+public class RentalUploadForm {
+
+    @Schema(description = "Nom/titre de l'annonce", example = "Appartement lumineux centre ville", required = true)
+    private String name;
+
+    @Schema(description = "Surface en m²", example = "65.5", required = true)
+    private BigDecimal surface;
+
+    @Schema(description = "Prix par mois en euros", example = "850.00", required = true)
+    private BigDecimal price;
+
+    @Schema(description = "Description détaillée de la location", maxLength = 2000)
+    private String description;
+
+    @Schema(description = "Image de la location (jpg, png, gif, webp, bmp)", type = "string", format = "binary")
+    private String picture;
+
+    @Schema(description = "Clé d'une image envoyée par upload direct (POST /api/uploads/presign), à la place de picture",
+            example = "9f/86/9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08.jpg")
+    @JsonProperty("picture_key")
+    private String pictureKey;
+
+    @Schema(description = "Identifiant d'un upload en plusieurs morceaux finalisé (POST /api/uploads), à la place de picture",
+            example = "3f1c2b9a-5e7d-4c1a-9b2e-8d6f0a4c7e21")
+    @JsonProperty("upload_id")
+    private String uploadId;
+}
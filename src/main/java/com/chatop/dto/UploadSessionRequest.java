@@ -0,0 +1,20 @@
+package com.chatop.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+
+/**
+ * DTO pour la création d'un upload en plusieurs morceaux
+ * Utilisé pour POST /api/uploads
+ */
+@Data
+@Schema(description = "Upload d'image reprenable")
+public class UploadSessionRequest {
+
+    @Schema(description = "Taille totale du fichier en octets", example = "24117248", required = true)
+    @NotNull(message = "La taille est obligatoire")
+    @Positive(message = "La taille doit être positive")
+    private Long size;
+}
@@ -0,0 +1,30 @@
+package com.chatop.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * DTO pour l'état d'un upload en plusieurs morceaux
+ *
+ * L'identifiant est ensuite envoyé dans le champ upload_id de POST /api/rentals
+ */
+@Data
+@AllArgsConstructor
+@Schema(description = "État d'un upload d'image reprenable")
+public class UploadSessionResponse {
+
+    @Schema(description = "Identifiant de l'upload", example = "3f1c2b9a-5e7d-4c1a-9b2e-8d6f0a4c7e21")
+    @JsonProperty("upload_id")
+    private String uploadId;
+
+    @Schema(description = "Taille totale du fichier en octets", example = "24117248")
+    private long size;
+
+    @Schema(description = "Octets déjà reçus : le prochain morceau commence à cet offset", example = "8388608")
+    private long offset;
+
+    @Schema(description = "true une fois l'upload finalisé (POST /api/uploads/{id}/complete)", example = "false")
+    private boolean complete;
+}
@@ -0,0 +1,49 @@
+package com.chatop.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * Aspect qui chronomètre toutes les méthodes publiques des services
+ *
+ * Chaque appel d'une méthode publique d'une classe *Service du package
+ * com.chatop.service est enregistré dans le timer "chatop.service"
+ * avec les tags :
+ * - class : nom simple du service
+ * - method : nom de la méthode
+ * - exception : classe de l'exception levée ("none" si succès)
+ *
+ * Les controllers sont couverts par http.server.requests et les
+ * repositories par spring.data.repository.invocations (Actuator).
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class ServiceMetricsAspect {
+
+    private final MeterRegistry meterRegistry;
+
+    @Around("execution(public * com.chatop.service.*Service.*(..))")
+    public Object timeServiceMethod(ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String exception = "none";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable t) {
+            exception = t.getClass().getSimpleName();
+            throw t;
+        } finally {
+            sample.stop(Timer.builder("chatop.service")
+                    .description("Durée des méthodes publiques des services")
+                    .tag("class", joinPoint.getSignature().getDeclaringType().getSimpleName())
+                    .tag("method", joinPoint.getSignature().getName())
+                    .tag("exception", exception)
+                    .register(meterRegistry));
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.chatop.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entité ArchivedMessage représentant un message archivé (plus lu que rarement)
+ * Liée à la table MESSAGES_ARCHIVE en base de données
+ *
+ * Mêmes colonnes et mêmes IDs que MESSAGES : les messages y sont déplacés par MessageArchiveService
+ * et restent lisibles par les routes paginées, qui poursuivent dans l'archive après le dernier message actif.
+ */
+@Entity
+@Table(name = "MESSAGES_ARCHIVE", indexes = {
+        @Index(name = "idx_messages_archive_rental_created", columnList = "rental_id, created_at, id"),
+        @Index(name = "idx_messages_archive_user_created", columnList = "user_id, created_at, id"),
+        @Index(name = "idx_messages_archive_owner_created", columnList = "owner_id, created_at, id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchivedMessage {
+
+    @Id
+    private Long id;
+
+    @Column(name = "rental_id", nullable = false)
+    private Long rentalId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "owner_id")
+    private Long ownerId;
+
+    @Column(length = 2000, nullable = false)
+    private String message;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,46 @@
+package com.chatop.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entité IdempotencyRecord représentant une requête reçue avec un en-tête Idempotency-Key
+ * Liée à la table IDEMPOTENCY_KEYS en base de données
+ *
+ * La ligne est créée avant le traitement (status_code nul : en cours), puis complétée avec la réponse,
+ * rejouée telle quelle pour les répétitions de la même clé jusqu'à expires_at.
+ */
+@Entity
+@Table(name = "IDEMPOTENCY_KEYS", indexes = {
+        @Index(name = "idx_idempotency_keys_expires", columnList = "expires_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord {
+
+    // SHA-256 (hexadécimal) de l'utilisateur, de la route et de la clé
+    @Id
+    @Column(name = "key_hash", length = 64)
+    private String keyHash;
+
+    // SHA-256 du contenu de la requête : une clé réutilisée pour une autre requête est refusée
+    @Column(name = "request_hash", length = 64)
+    private String requestHash;
+
+    @Column(name = "status_code")
+    private Integer statusCode;
+
+    @Column(name = "response_body", length = 4000)
+    private String responseBody;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,45 @@
+package com.chatop.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entité InboxSummary représentant la boîte de réception d'une location pour son propriétaire
+ * Liée à la table INBOX_SUMMARY en base de données
+ *
+ * Tenue à jour à chaque message (dans la transaction d'envoi) et à chaque lecture :
+ * la boîte de réception d'un propriétaire se lit sans parcourir MESSAGES.
+ * Une ligne par location ayant reçu au moins un message.
+ */
+@Entity
+@Table(name = "INBOX_SUMMARY", indexes = {
+        @Index(name = "idx_inbox_summary_owner", columnList = "owner_id, last_message_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InboxSummary {
+
+    @Id
+    @Column(name = "rental_id")
+    private Long rentalId;
+
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    @Column(name = "unread_count", nullable = false)
+    private Integer unreadCount;
+
+    @Column(name = "last_message_at")
+    private LocalDateTime lastMessageAt;
+
+    @Column(name = "last_read_at")
+    private LocalDateTime lastReadAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
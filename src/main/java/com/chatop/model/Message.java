@@ -13,9 +13,19 @@ import java.time.LocalDateTime;
 /**
  * Entité Message représentant un message envoyé sur une location
  * Liée à la table MESSAGES en base de données
+ *
+ * Index composites pour la lecture paginée par clé (voir MessageRepository)
+ *
+ * owner_id est dénormalisé depuis la location (le propriétaire ne change pas) : les messages reçus
+ * par un propriétaire se lisent sur l'index (owner_id, created_at, id), sans jointure avec RENTALS.
+ * Nul pour les messages antérieurs, jusqu'à leur rattrapage (MessageOwnerBackfill).
  */
 @Entity
-@Table(name = "MESSAGES")
+@Table(name = "MESSAGES", indexes = {
+        @Index(name = "idx_messages_rental_created", columnList = "rental_id, created_at, id"),
+        @Index(name = "idx_messages_user_created", columnList = "user_id, created_at, id"),
+        @Index(name = "idx_messages_owner_created", columnList = "owner_id, created_at, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -33,6 +43,9 @@ public class Message {
     @Column(name = "user_id", nullable = false)
     private Long userId;
 
+    @Column(name = "owner_id")
+    private Long ownerId;
+
     @NotBlank(message = "Le message est obligatoire")
     @Size(max = 2000, message = "Le message ne peut pas dépasser 2000 caractères")
     @Column(length = 2000, nullable = false)
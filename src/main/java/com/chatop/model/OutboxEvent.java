@@ -0,0 +1,58 @@
+package com.chatop.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entité OutboxEvent représentant une notification de message en attente d'envoi au propriétaire
+ * Liée à la table OUTBOX_EVENTS en base de données
+ *
+ * Écrite dans la transaction du message (transactional outbox) : une notification existe si et seulement si
+ * le message a été enregistré. Supprimée une fois délivrée ; next_attempt_at nul : abandonnée après
+ * outbox.max-attempts tentatives.
+ */
+@Entity
+@Table(name = "OUTBOX_EVENTS", indexes = {
+        @Index(name = "idx_outbox_events_next_attempt", columnList = "next_attempt_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "message_id", nullable = false)
+    private Long messageId;
+
+    @Column(name = "rental_id", nullable = false)
+    private Long rentalId;
+
+    @Column(name = "sender_id", nullable = false)
+    private Long senderId;
+
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    // Début du message (aperçu de la notification)
+    @Column(length = 200)
+    private String excerpt;
+
+    @Column(nullable = false)
+    private Integer attempts;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+}
@@ -16,7 +16,7 @@ import java.time.LocalDateTime;
  * Liée à la table RENTALS en base de données
  */
 @Entity
-@Table(name = "RENTALS")
+@Table(name = "RENTALS", indexes = @Index(name = "idx_rentals_picture", columnList = "picture"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
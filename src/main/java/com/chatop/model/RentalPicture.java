@@ -0,0 +1,48 @@
+package com.chatop.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entité RentalPicture représentant une photo de la galerie d'une location
+ * Liée à la table RENTAL_PICTURES en base de données
+ *
+ * La photo en position 0 est la couverture, recopiée dans RENTALS.picture :
+ * la liste des locations n'a jamais besoin de lire cette table.
+ * Les dimensions sont celles du contenu (STORED_FILES), les miniatures se déduisent de l'URL.
+ */
+@Entity
+@Table(name = "RENTAL_PICTURES", indexes = {
+        @Index(name = "idx_rental_pictures_rental_position", columnList = "rental_id, position"),
+        @Index(name = "idx_rental_pictures_url", columnList = "url")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RentalPicture {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "rental_id", nullable = false)
+    private Long rentalId;
+
+    // Ordre d'affichage (0 = couverture)
+    @Column(nullable = false)
+    private Integer position;
+
+    @Column(nullable = false, length = 255)
+    private String url;
+
+    // Taille imputée au quota du propriétaire (rendue à la suppression)
+    @Column(nullable = false)
+    private Long size;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+}
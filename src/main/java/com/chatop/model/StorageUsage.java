@@ -0,0 +1,33 @@
+package com.chatop.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entité StorageUsage représentant l'espace de stockage utilisé par un utilisateur
+ * Liée à la table STORAGE_USAGE en base de données
+ *
+ * Tenue à jour à chaque image rattachée à une location (pas de parcours du stockage) :
+ * chaque location compte la taille de son image, même si le contenu est dédupliqué.
+ */
+@Entity
+@Table(name = "STORAGE_USAGE")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StorageUsage {
+
+    @Id
+    @Column(name = "owner_id")
+    private Long ownerId;
+
+    @Column(name = "used_bytes", nullable = false)
+    private Long usedBytes;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
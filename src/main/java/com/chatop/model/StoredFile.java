@@ -0,0 +1,46 @@
+package com.chatop.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entité StoredFile représentant un fichier uploadé, adressé par son contenu
+ * Liée à la table STORED_FILES en base de données
+ *
+ * Un même contenu (même SHA-256) n'est stocké qu'une fois :
+ * refCount compte les annonces et photos de galerie qui le référencent.
+ */
+@Entity
+@Table(name = "STORED_FILES", indexes = @Index(name = "idx_stored_files_width", columnList = "width, created_at"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredFile {
+
+    // SHA-256 du contenu en hexadécimal
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    // Chemin relatif au dossier d'upload (ex : ab/cd/abcd...ef.jpg)
+    @Column(nullable = false, length = 255)
+    private String path;
+
+    @Column(nullable = false)
+    private Long size;
+
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount;
+
+    // Dimensions en pixels, renseignées par la génération des miniatures (null avant, 0 si format illisible)
+    private Integer width;
+
+    private Integer height;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+}
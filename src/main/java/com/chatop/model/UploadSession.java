@@ -0,0 +1,55 @@
+package com.chatop.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entité UploadSession représentant un upload d'image en plusieurs morceaux (reprenable)
+ * Liée à la table UPLOAD_SESSIONS en base de données
+ *
+ * Les morceaux sont écrits dans upload.path/.tmp/{id}.part ;
+ * received est la longueur déjà reçue sans trou depuis le début du fichier.
+ */
+@Entity
+@Table(name = "UPLOAD_SESSIONS", indexes = {
+        @Index(name = "idx_upload_sessions_updated_at", columnList = "updated_at"),
+        @Index(name = "idx_upload_sessions_owner_id", columnList = "owner_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSession {
+
+    // Identifiant aléatoire (UUID)
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    // Taille totale annoncée à la création
+    @Column(nullable = false)
+    private Long size;
+
+    // Octets reçus sans trou depuis le début
+    @Column(nullable = false)
+    private Long received;
+
+    // SHA-256 et type détecté, renseignés une fois l'upload terminé
+    @Column(length = 64)
+    private String hash;
+
+    @Column(name = "content_type", length = 50)
+    private String contentType;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
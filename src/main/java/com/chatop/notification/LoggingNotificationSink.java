@@ -0,0 +1,18 @@
+package com.chatop.notification;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+/**
+ * Notifications écrites dans les logs (développement, ou en attendant un canal réel)
+ */
+@Slf4j
+public class LoggingNotificationSink implements NotificationSink {
+
+    @Override
+    public void send(Long ownerId, List<MessageNotification> messages) {
+        log.info("Notification au propriétaire {} : {} nouveau(x) message(s) (dernier sur la location {})",
+                ownerId, messages.size(), messages.get(messages.size() - 1).rentalId());
+    }
+}
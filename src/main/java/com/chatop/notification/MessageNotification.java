@@ -0,0 +1,15 @@
+package com.chatop.notification;
+
+import java.time.LocalDateTime;
+
+/**
+ * Nouveau message à signaler au propriétaire d'une location
+ *
+ * @param messageId l'ID du message
+ * @param rentalId l'ID de la location
+ * @param senderId l'ID de l'expéditeur
+ * @param excerpt le début du message
+ * @param createdAt la date d'envoi
+ */
+public record MessageNotification(Long messageId, Long rentalId, Long senderId, String excerpt, LocalDateTime createdAt) {
+}
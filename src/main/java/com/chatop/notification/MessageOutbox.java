@@ -0,0 +1,88 @@
+package com.chatop.notification;
+
+import com.chatop.service.MessageCreatedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Écriture des notifications dans la table OUTBOX_EVENTS, dans la transaction du message
+ *
+ * Message et notification sont enregistrés ensemble ou pas du tout : un message enregistré est toujours
+ * notifié (par OutboxDispatcher), un message annulé ne l'est jamais. La requête d'envoi ne paie qu'un INSERT,
+ * jamais l'envoi lui-même.
+ *
+ * Les notifications d'une même transaction (lot de MessageIngestService) sont écrites ensemble juste avant
+ * le commit, en un seul lot JDBC (INSERT multi-lignes avec rewriteBatchedStatements)
+ */
+@Component
+@RequiredArgsConstructor
+public class MessageOutbox {
+
+    private static final int EXCERPT_LENGTH = 200;
+    private static final String INSERT_SQL = "INSERT INTO OUTBOX_EVENTS "
+            + "(message_id, rental_id, sender_id, owner_id, excerpt, attempts, next_attempt_at, created_at) "
+            + "VALUES (?, ?, ?, ?, ?, 0, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Un message du propriétaire sur sa propre location ne lui est pas notifié
+     * Sans transaction (aucun appelant), le message est ignoré comme avec un écouteur BEFORE_COMMIT
+     */
+    @EventListener
+    public void onMessageCreated(MessageCreatedEvent event) {
+        if (event.ownerId().equals(event.senderId()) || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        List<MessageCreatedEvent> pending = (List<MessageCreatedEvent>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            List<MessageCreatedEvent> events = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, events);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    insert(events);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(MessageOutbox.this);
+                }
+            });
+            pending = events;
+        }
+        pending.add(event);
+    }
+
+    private void insert(List<MessageCreatedEvent> events) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(events.size());
+        for (MessageCreatedEvent event : events) {
+            rows.add(new Object[]{event.messageId(), event.rentalId(), event.senderId(), event.ownerId(),
+                    excerpt(event.message()), now, now});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+    }
+
+    private static String excerpt(String message) {
+        if (message == null || message.length() <= EXCERPT_LENGTH) {
+            return message;
+        }
+        int end = EXCERPT_LENGTH - 1;
+        // Jamais de demi-caractère (emoji) : refusé par la colonne utf8mb4
+        if (Character.isHighSurrogate(message.charAt(end - 1))) {
+            end--;
+        }
+        return message.substring(0, end) + "…";
+    }
+}
@@ -0,0 +1,26 @@
+package com.chatop.notification;
+
+import java.util.List;
+
+/**
+ * Canal d'envoi des notifications aux propriétaires (email, push...)
+ *
+ * Implémentations : LoggingNotificationSink (notification.sink=log, défaut)
+ * et WebhookNotificationSink (notification.sink=webhook).
+ *
+ * Appelé par OutboxDispatcher, jamais pendant une requête HTTP : la latence du canal
+ * ne s'ajoute pas à l'envoi des messages.
+ */
+public interface NotificationSink {
+
+    /**
+     * Envoie à un propriétaire un récapitulatif de ses nouveaux messages (un envoi pour tout le lot)
+     * Un même message peut être envoyé deux fois (nouvelle tentative après un arrêt brutal) :
+     * le destinataire peut dédoublonner par messageId.
+     *
+     * @param ownerId l'ID du propriétaire
+     * @param messages les nouveaux messages, du plus ancien au plus récent
+     * @throws Exception si l'envoi a échoué (nouvelle tentative plus tard)
+     */
+    void send(Long ownerId, List<MessageNotification> messages) throws Exception;
+}
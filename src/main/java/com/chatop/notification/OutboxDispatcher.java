@@ -0,0 +1,209 @@
+package com.chatop.notification;
+
+import com.chatop.model.OutboxEvent;
+import com.chatop.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Envoi des notifications de la table OUTBOX_EVENTS (écrites par MessageOutbox)
+ *
+ * Toutes les outbox.poll-interval, hors de toute requête HTTP :
+ * 1. Un lot de outbox.batch-size notifications dues est réservé (SELECT ... FOR UPDATE SKIP LOCKED) :
+ *    next_attempt_at est repoussé de outbox.lease, et la transaction est aussitôt validée.
+ *    Plusieurs nœuds se partagent la file sans envoyer deux fois la même notification ;
+ *    celles d'un nœud arrêté en plein envoi sont reprises à l'expiration du bail.
+ * 2. Les notifications sont regroupées par propriétaire (un envoi par propriétaire et par lot),
+ *    les propriétaires étant servis en parallèle (virtual threads), sans transaction ouverte.
+ * 3. Envoyées : supprimées. En échec : nouvelle tentative après outbox.initial-backoff, doublé à chaque
+ *    échec jusqu'à outbox.max-backoff ; abandonnées après outbox.max-attempts tentatives
+ *    (next_attempt_at nul, conservées pour analyse).
+ *
+ * Livraison au moins une fois : après un arrêt entre l'envoi et la suppression, la notification est renvoyée.
+ *
+ * Métriques : chatop.outbox.notifications (result=delivered, retried, dead), chatop.outbox.lag
+ * (délai entre l'envoi du message et la notification).
+ */
+@Component
+@Slf4j
+public class OutboxDispatcher {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final NotificationSink notificationSink;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration lease;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final int maxAttempts;
+
+    private final Counter delivered;
+    private final Counter retried;
+    private final Counter dead;
+    private final Timer lag;
+
+    public OutboxDispatcher(
+            OutboxEventRepository outboxEventRepository,
+            NotificationSink notificationSink,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${outbox.enabled:true}") boolean enabled,
+            @Value("${outbox.batch-size:200}") int batchSize,
+            @Value("${outbox.lease:PT1M}") Duration lease,
+            @Value("${outbox.initial-backoff:PT5S}") Duration initialBackoff,
+            @Value("${outbox.max-backoff:PT1H}") Duration maxBackoff,
+            @Value("${outbox.max-attempts:10}") int maxAttempts
+    ) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.notificationSink = notificationSink;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.lease = lease;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.maxAttempts = maxAttempts;
+        this.delivered = counter(meterRegistry, "delivered");
+        this.retried = counter(meterRegistry, "retried");
+        this.dead = counter(meterRegistry, "dead");
+        this.lag = Timer.builder("chatop.outbox.lag")
+                .description("Délai entre l'envoi d'un message et la notification du propriétaire")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Envoie les notifications dues, lot après lot tant que la file n'est pas vide
+     */
+    @Scheduled(fixedDelayString = "${outbox.poll-interval:PT1S}")
+    public void poll() {
+        if (!enabled) {
+            return;
+        }
+        int claimed;
+        do {
+            claimed = dispatchBatch();
+        } while (claimed == batchSize);
+    }
+
+    /**
+     * Réserve, envoie et solde un lot de notifications
+     *
+     * @return le nombre de notifications réservées
+     */
+    int dispatchBatch() {
+        List<OutboxEvent> events = transactionTemplate.execute(status -> claim(LocalDateTime.now()));
+        if (events == null || events.isEmpty()) {
+            return 0;
+        }
+
+        Map<Long, List<OutboxEvent>> byOwner = new LinkedHashMap<>();
+        for (OutboxEvent event : events) {
+            byOwner.computeIfAbsent(event.getOwnerId(), ownerId -> new ArrayList<>()).add(event);
+        }
+        Map<Long, String> failures = new ConcurrentHashMap<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            byOwner.forEach((ownerId, ownerEvents) -> executor.submit(() -> send(ownerId, ownerEvents, failures)));
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> deliveredIds = new ArrayList<>();
+        List<OutboxEvent> failed = new ArrayList<>();
+        for (OutboxEvent event : events) {
+            String error = failures.get(event.getOwnerId());
+            if (error == null) {
+                deliveredIds.add(event.getId());
+                delivered.increment();
+                if (event.getCreatedAt() != null) {
+                    lag.record(Duration.between(event.getCreatedAt(), now));
+                }
+            } else {
+                reschedule(event, error, now);
+                failed.add(event);
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!deliveredIds.isEmpty()) {
+                outboxEventRepository.deleteAllByIdInBatch(deliveredIds);
+            }
+            if (!failed.isEmpty()) {
+                outboxEventRepository.saveAll(failed);
+            }
+        });
+        return events.size();
+    }
+
+    /**
+     * Réserve les notifications dues (modifications enregistrées au commit)
+     */
+    private List<OutboxEvent> claim(LocalDateTime now) {
+        List<OutboxEvent> events = outboxEventRepository.findDueForUpdate(now, Limit.of(batchSize));
+        for (OutboxEvent event : events) {
+            event.setAttempts(event.getAttempts() + 1);
+            event.setNextAttemptAt(now.plus(lease));
+        }
+        return events;
+    }
+
+    private void send(Long ownerId, List<OutboxEvent> events, Map<Long, String> failures) {
+        List<MessageNotification> notifications = events.stream()
+                .map(event -> new MessageNotification(event.getMessageId(), event.getRentalId(), event.getSenderId(),
+                        event.getExcerpt(), event.getCreatedAt()))
+                .toList();
+        try {
+            notificationSink.send(ownerId, notifications);
+        } catch (Exception e) {
+            String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+            failures.put(ownerId, error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+        }
+    }
+
+    private void reschedule(OutboxEvent event, String error, LocalDateTime now) {
+        event.setLastError(error);
+        if (event.getAttempts() >= maxAttempts) {
+            event.setNextAttemptAt(null);
+            dead.increment();
+            log.error("Notification du message {} abandonnée après {} tentatives : {}",
+                    event.getMessageId(), event.getAttempts(), error);
+            return;
+        }
+        event.setNextAttemptAt(now.plus(backoff(event.getAttempts())));
+        retried.increment();
+        log.warn("Notification du message {} en échec (tentative {}) : {}", event.getMessageId(), event.getAttempts(), error);
+    }
+
+    /**
+     * Délai avant la tentative suivante : initial-backoff, doublé à chaque échec, plafonné à max-backoff
+     */
+    Duration backoff(int attempts) {
+        Duration delay = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("chatop.outbox.notifications")
+                .description("Notifications de nouveaux messages traitées")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
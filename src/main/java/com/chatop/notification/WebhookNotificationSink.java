@@ -0,0 +1,65 @@
+package com.chatop.notification;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Notifications envoyées en JSON (POST) à un service d'envoi d'emails ou de push
+ *
+ * Corps : {"owner_id": ..., "messages": [{"message_id", "rental_id", "sender_id", "excerpt", "created_at"}]}
+ * Toute réponse hors 2xx est un échec : le lot est renvoyé plus tard.
+ */
+public class WebhookNotificationSink implements NotificationSink {
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final URI url;
+    private final String token;
+    private final Duration timeout;
+
+    public WebhookNotificationSink(ObjectMapper objectMapper, URI url, String token, Duration timeout) {
+        this.httpClient = HttpClient.newBuilder().connectTimeout(timeout).build();
+        this.objectMapper = objectMapper;
+        this.url = url;
+        this.token = token;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void send(Long ownerId, List<MessageNotification> messages) throws IOException, InterruptedException {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("owner_id", ownerId);
+        body.put("messages", messages.stream().map(WebhookNotificationSink::toJson).toList());
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(url)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+        if (!token.isEmpty()) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        HttpResponse<Void> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("Réponse HTTP " + response.statusCode() + " de " + url);
+        }
+    }
+
+    private static Map<String, Object> toJson(MessageNotification notification) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("message_id", notification.messageId());
+        json.put("rental_id", notification.rentalId());
+        json.put("sender_id", notification.senderId());
+        json.put("excerpt", notification.excerpt());
+        json.put("created_at", notification.createdAt() != null ? notification.createdAt().toString() : null);
+        return json;
+    }
+}
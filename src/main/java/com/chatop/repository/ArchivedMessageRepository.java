@@ -0,0 +1,45 @@
+package com.chatop.repository;
+
+import com.chatop.model.ArchivedMessage;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository pour l'entité ArchivedMessage
+ *
+ * Mêmes lectures par clé que MessageRepository, curseur facultatif (null : les plus récents de l'archive).
+ * Chemin lent : sollicité seulement quand une page n'a pas pu être remplie par MESSAGES.
+ */
+@Repository
+public interface ArchivedMessageRepository extends JpaRepository<ArchivedMessage, Long> {
+
+    @Query("SELECT m FROM ArchivedMessage m WHERE m.rentalId = :rentalId "
+            + "AND (:createdAt IS NULL OR m.createdAt < :createdAt OR (m.createdAt = :createdAt AND m.id < :id)) "
+            + "ORDER BY m.createdAt DESC, m.id DESC")
+    List<ArchivedMessage> findByRentalIdBefore(@Param("rentalId") Long rentalId,
+                                               @Param("createdAt") LocalDateTime createdAt,
+                                               @Param("id") Long id,
+                                               Limit limit);
+
+    @Query("SELECT m FROM ArchivedMessage m WHERE m.userId = :userId "
+            + "AND (:createdAt IS NULL OR m.createdAt < :createdAt OR (m.createdAt = :createdAt AND m.id < :id)) "
+            + "ORDER BY m.createdAt DESC, m.id DESC")
+    List<ArchivedMessage> findByUserIdBefore(@Param("userId") Long userId,
+                                             @Param("createdAt") LocalDateTime createdAt,
+                                             @Param("id") Long id,
+                                             Limit limit);
+
+    @Query("SELECT m FROM ArchivedMessage m WHERE m.ownerId = :ownerId "
+            + "AND (:createdAt IS NULL OR m.createdAt < :createdAt OR (m.createdAt = :createdAt AND m.id < :id)) "
+            + "ORDER BY m.createdAt DESC, m.id DESC")
+    List<ArchivedMessage> findByOwnerIdBefore(@Param("ownerId") Long ownerId,
+                                              @Param("createdAt") LocalDateTime createdAt,
+                                              @Param("id") Long id,
+                                              Limit limit);
+}
@@ -0,0 +1,78 @@
+package com.chatop.repository;
+
+import com.chatop.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repository pour l'entité IdempotencyRecord
+ * Chaque opération est une requête atomique dans sa propre transaction : la clé est réservée
+ * avant le traitement de la requête et complétée après, hors de sa transaction
+ */
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    /**
+     * Réserve une clé jusqu'à expiresAt (bail de traitement, prolongé par complete)
+     * Deux requêtes simultanées avec la même clé : une seule insertion réussit (clé primaire)
+     *
+     * @throws org.springframework.dao.DataIntegrityViolationException si la clé existe déjà
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO IDEMPOTENCY_KEYS (key_hash, request_hash, created_at, expires_at) "
+            + "VALUES (:keyHash, :requestHash, :now, :expiresAt)", nativeQuery = true)
+    int claim(@Param("keyHash") String keyHash,
+              @Param("requestHash") String requestHash,
+              @Param("now") LocalDateTime now,
+              @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * Enregistre la réponse d'une clé réservée, conservée jusqu'à expiresAt
+     * Sans effet si la réservation (claimedAt) a expiré et a été reprise par une autre tentative
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE IdempotencyRecord r SET r.statusCode = :statusCode, r.responseBody = :responseBody, "
+            + "r.expiresAt = :expiresAt "
+            + "WHERE r.keyHash = :keyHash AND r.createdAt = :claimedAt AND r.statusCode IS NULL")
+    int complete(@Param("keyHash") String keyHash,
+                 @Param("claimedAt") LocalDateTime claimedAt,
+                 @Param("statusCode") int statusCode,
+                 @Param("responseBody") String responseBody,
+                 @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * Libère une clé dont le traitement a échoué (une nouvelle tentative sera traitée)
+     * Seule la réservation faite à claimedAt est libérée, pas celle d'une tentative qui l'a reprise
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r "
+            + "WHERE r.keyHash = :keyHash AND r.createdAt = :claimedAt AND r.statusCode IS NULL")
+    int release(@Param("keyHash") String keyHash, @Param("claimedAt") LocalDateTime claimedAt);
+
+    /**
+     * Supprime une clé expirée, pour qu'elle puisse être réservée à nouveau :
+     * réponse au-delà de idempotency.ttl, ou réservation au-delà de idempotency.pending-lease
+     * (traitement interrompu sans libérer la clé : arrêt du nœud, réponse non enregistrée...)
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.keyHash = :keyHash AND r.expiresAt < :now")
+    int deleteIfExpired(@Param("keyHash") String keyHash, @Param("now") LocalDateTime now);
+
+    /**
+     * Purge des clés expirées (index idx_idempotency_keys_expires)
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,68 @@
+package com.chatop.repository;
+
+import com.chatop.model.InboxSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository pour l'entité InboxSummary
+ * Les compteurs sont modifiés par des requêtes atomiques (messages simultanés sur une même location)
+ */
+@Repository
+public interface InboxSummaryRepository extends JpaRepository<InboxSummary, Long> {
+
+    /**
+     * Boîte de réception d'un propriétaire, location la plus récemment active en premier
+     * (index idx_inbox_summary_owner : une ligne par location, jamais de parcours des messages)
+     */
+    List<InboxSummary> findByOwnerIdOrderByLastMessageAtDesc(Long ownerId);
+
+    /**
+     * Compte un nouveau message : crée la ligne de la location ou met à jour ses compteurs
+     *
+     * @param unread 1 si le message est à lire par le propriétaire, 0 s'il l'a envoyé lui-même
+     */
+    @Modifying
+    @Query(value = "INSERT INTO INBOX_SUMMARY (rental_id, owner_id, unread_count, last_message_at, updated_at) "
+            + "VALUES (:rentalId, :ownerId, :unread, :createdAt, :now) "
+            + "ON DUPLICATE KEY UPDATE unread_count = unread_count + :unread, "
+            + "last_message_at = GREATEST(COALESCE(last_message_at, :createdAt), :createdAt), updated_at = :now",
+            nativeQuery = true)
+    int recordMessage(@Param("rentalId") Long rentalId,
+                      @Param("ownerId") Long ownerId,
+                      @Param("unread") int unread,
+                      @Param("createdAt") LocalDateTime createdAt,
+                      @Param("now") LocalDateTime now);
+
+    /**
+     * Marque les messages d'une location comme lus, si l'utilisateur en est le propriétaire
+     *
+     * @return 1 si la ligne a été mise à jour, 0 si elle n'existe pas ou appartient à un autre propriétaire
+     */
+    @Modifying
+    @Query("UPDATE InboxSummary s SET s.unreadCount = 0, s.lastReadAt = :now, s.updatedAt = :now "
+            + "WHERE s.rentalId = :rentalId AND s.ownerId = :ownerId")
+    int markAsRead(@Param("rentalId") Long rentalId, @Param("ownerId") Long ownerId, @Param("now") LocalDateTime now);
+
+    /**
+     * Complète la table à partir des messages existants (considérés comme lus)
+     * Sans effet sur les locations déjà présentes (y compris créées en concurrence : ON DUPLICATE KEY)
+     *
+     * @return le nombre de locations ajoutées
+     */
+    @Modifying
+    @Query(value = "INSERT INTO INBOX_SUMMARY (rental_id, owner_id, unread_count, last_message_at, updated_at) "
+            + "SELECT r.id, r.owner_id, 0, MAX(m.created_at), :now FROM RENTALS r "
+            + "JOIN MESSAGES m ON m.rental_id = r.id "
+            + "WHERE NOT EXISTS (SELECT 1 FROM INBOX_SUMMARY s WHERE s.rental_id = r.id) "
+            + "GROUP BY r.id, r.owner_id "
+            + "ON DUPLICATE KEY UPDATE rental_id = INBOX_SUMMARY.rental_id",
+            nativeQuery = true)
+    int initializeFromMessages(@Param("now") LocalDateTime now);
+}
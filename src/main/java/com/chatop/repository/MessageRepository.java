@@ -1,32 +1,128 @@
 package com.chatop.repository;
 
 import com.chatop.model.Message;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository pour l'entité Message
  * JpaRepository fournit automatiquement les méthodes CRUD
+ *
+ * Lectures paginées par clé (keyset) : du plus récent au plus ancien, chaque page reprend
+ * après le dernier message (created_at, id) de la précédente. Les index composites
+ * (rental_id, created_at, id) et (user_id, created_at, id) servent directement l'ordre :
+ * le coût d'une page ne dépend pas du nombre de messages de la location, contrairement à un OFFSET.
  */
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long> {
 
     /**
-     * Trouve tous les messages d'une location
-     * Méthode dérivée automatiquement par Spring Data JPA
+     * Première page des messages d'une location (les plus récents)
      *
      * @param rentalId l'ID de la location
-     * @return liste des messages de la location
+     * @param limit le nombre maximal de messages
+     * @return les messages, du plus récent au plus ancien
      */
-    List<Message> findByRentalId(Long rentalId);
+    @Query("SELECT m FROM Message m WHERE m.rentalId = :rentalId ORDER BY m.createdAt DESC, m.id DESC")
+    List<Message> findByRentalId(@Param("rentalId") Long rentalId, Limit limit);
 
     /**
-     * Trouve tous les messages envoyés par un utilisateur
+     * Page suivante des messages d'une location : messages antérieurs au curseur (createdAt, id)
+     */
+    @Query("SELECT m FROM Message m WHERE m.rentalId = :rentalId "
+            + "AND (m.createdAt < :createdAt OR (m.createdAt = :createdAt AND m.id < :id)) "
+            + "ORDER BY m.createdAt DESC, m.id DESC")
+    List<Message> findByRentalIdBefore(@Param("rentalId") Long rentalId,
+                                       @Param("createdAt") LocalDateTime createdAt,
+                                       @Param("id") Long id,
+                                       Limit limit);
+
+    /**
+     * Première page des messages envoyés par un utilisateur (les plus récents)
      *
      * @param userId l'ID de l'utilisateur
-     * @return liste des messages de l'utilisateur
+     * @param limit le nombre maximal de messages
+     * @return les messages, du plus récent au plus ancien
+     */
+    @Query("SELECT m FROM Message m WHERE m.userId = :userId ORDER BY m.createdAt DESC, m.id DESC")
+    List<Message> findByUserId(@Param("userId") Long userId, Limit limit);
+
+    /**
+     * Page suivante des messages envoyés par un utilisateur : messages antérieurs au curseur (createdAt, id)
+     */
+    @Query("SELECT m FROM Message m WHERE m.userId = :userId "
+            + "AND (m.createdAt < :createdAt OR (m.createdAt = :createdAt AND m.id < :id)) "
+            + "ORDER BY m.createdAt DESC, m.id DESC")
+    List<Message> findByUserIdBefore(@Param("userId") Long userId,
+                                     @Param("createdAt") LocalDateTime createdAt,
+                                     @Param("id") Long id,
+                                     Limit limit);
+
+    /**
+     * Première page des messages reçus par un propriétaire, toutes locations confondues (les plus récents)
+     * Un seul parcours de l'index (owner_id, created_at, id), sans jointure avec RENTALS
+     *
+     * @param ownerId l'ID du propriétaire
+     * @param limit le nombre maximal de messages
+     * @return les messages, du plus récent au plus ancien
+     */
+    @Query("SELECT m FROM Message m WHERE m.ownerId = :ownerId ORDER BY m.createdAt DESC, m.id DESC")
+    List<Message> findByOwnerId(@Param("ownerId") Long ownerId, Limit limit);
+
+    /**
+     * Page suivante des messages reçus par un propriétaire : messages antérieurs au curseur (createdAt, id)
+     */
+    @Query("SELECT m FROM Message m WHERE m.ownerId = :ownerId "
+            + "AND (m.createdAt < :createdAt OR (m.createdAt = :createdAt AND m.id < :id)) "
+            + "ORDER BY m.createdAt DESC, m.id DESC")
+    List<Message> findByOwnerIdBefore(@Param("ownerId") Long ownerId,
+                                      @Param("createdAt") LocalDateTime createdAt,
+                                      @Param("id") Long id,
+                                      Limit limit);
+
+    /**
+     * Plus grand ID parmi les messages sans propriétaire (antérieurs à la dénormalisation)
+     *
+     * @return l'ID, null si tous les messages ont leur propriétaire
+     */
+    @Query("SELECT MAX(m.id) FROM Message m WHERE m.ownerId IS NULL")
+    Long findMaxIdWithoutOwner();
+
+    /**
+     * Renseigne le propriétaire des messages d'une tranche d'IDs (from exclu, to inclus)
+     * Sans effet sur les messages déjà renseignés : peut être relancé ou exécuté par plusieurs nœuds
+     *
+     * @return le nombre de messages mis à jour
      */
-    List<Message> findByUserId(Long userId);
-}
\ No newline at end of file
+    @Modifying
+    @Query(value = "UPDATE MESSAGES SET owner_id = (SELECT r.owner_id FROM RENTALS r WHERE r.id = MESSAGES.rental_id) "
+            + "WHERE owner_id IS NULL AND id > :fromId AND id <= :toId", nativeQuery = true)
+    int backfillOwner(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    /**
+     * Expéditeur et destinataire d'un message en une seule requête (deux lectures par clé unique)
+     *
+     * @param rentalId l'ID de la location
+     * @param email l'email de l'expéditeur
+     * @return vide si la location ou l'utilisateur n'existe pas
+     */
+    @Query("SELECT u.id AS senderId, r.ownerId AS ownerId FROM User u, Rental r WHERE u.email = :email AND r.id = :rentalId")
+    Optional<MessageRoute> findRoute(@Param("rentalId") Long rentalId, @Param("email") String email);
+
+    /**
+     * Projection : expéditeur et propriétaire de la location
+     */
+    interface MessageRoute {
+        Long getSenderId();
+
+        Long getOwnerId();
+    }
+}
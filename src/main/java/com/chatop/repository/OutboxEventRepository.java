@@ -0,0 +1,36 @@
+package com.chatop.repository;
+
+import com.chatop.model.OutboxEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository pour l'entité OutboxEvent
+ */
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Notifications à envoyer, verrouillées jusqu'à la fin de la transaction
+     * SKIP LOCKED (délai de verrou -2) : les lignes déjà prises par un autre nœud sont ignorées,
+     * plusieurs dispatchers se partagent la file sans s'attendre
+     *
+     * @param now l'instant courant
+     * @param limit la taille du lot
+     * @return les notifications dues, les plus anciennes en premier
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT e FROM OutboxEvent e WHERE e.nextAttemptAt <= :now ORDER BY e.nextAttemptAt, e.id")
+    List<OutboxEvent> findDueForUpdate(@Param("now") LocalDateTime now, Limit limit);
+}
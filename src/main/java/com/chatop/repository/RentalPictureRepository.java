@@ -0,0 +1,52 @@
+package com.chatop.repository;
+
+import com.chatop.model.RentalPicture;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository pour l'entité RentalPicture
+ */
+@Repository
+public interface RentalPictureRepository extends JpaRepository<RentalPicture, Long> {
+
+    /**
+     * Galerie d'une location dans l'ordre d'affichage (index rental_id, position)
+     */
+    List<RentalPicture> findByRentalIdOrderByPositionAsc(Long rentalId);
+
+    /**
+     * Nombre de photos des locations données, en une requête
+     * (liste des locations : jamais une requête par location, ni un regroupement de toute la table)
+     */
+    @Query("SELECT p.rentalId AS rentalId, COUNT(p) AS total FROM RentalPicture p "
+            + "WHERE p.rentalId IN :rentalIds GROUP BY p.rentalId")
+    List<PictureCount> countByRental(@Param("rentalIds") Collection<Long> rentalIds);
+
+    /**
+     * Parmi les URLs données, retourne celles utilisées dans une galerie
+     * Une seule requête IN par lot (index idx_rental_pictures_url)
+     */
+    @Query("SELECT DISTINCT p.url FROM RentalPicture p WHERE p.url IN :urls")
+    List<String> findUrlsIn(@Param("urls") Collection<String> urls);
+
+    /**
+     * Une galerie utilise-t-elle une image dont l'URL se termine par ce suffixe (/clé de stockage) ?
+     * Parcours complet de la table : réservé à la confirmation d'une suppression (OrphanFileSweeper)
+     */
+    boolean existsByUrlEndingWith(String suffix);
+
+    /**
+     * Projection : nombre de photos d'une location
+     */
+    interface PictureCount {
+        Long getRentalId();
+
+        long getTotal();
+    }
+}
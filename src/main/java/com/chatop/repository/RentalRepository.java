@@ -1,10 +1,18 @@
 package com.chatop.repository;
 
 import com.chatop.model.Rental;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository pour l'entité Rental
@@ -21,4 +29,55 @@ public interface RentalRepository extends JpaRepository<Rental, Long> {
      * @return liste des locations du propriétaire
      */
     List<Rental> findByOwnerId(Long ownerId);
-}
\ No newline at end of file
+
+    /**
+     * Parmi les URLs données, retourne celles utilisées comme image d'une location
+     * Une seule requête IN par lot (index idx_rentals_picture)
+     *
+     * @param pictures les URLs à vérifier
+     * @return les URLs référencées par au moins une location
+     */
+    @Query("SELECT DISTINCT r.picture FROM Rental r WHERE r.picture IN :pictures")
+    List<String> findPicturesIn(@Param("pictures") Collection<String> pictures);
+
+    /**
+     * Une location utilise-t-elle une image dont l'URL se termine par ce suffixe (/clé de stockage) ?
+     * Indépendant de l'URL publique (upload.url, storage.s3.public-url), qui peut changer ;
+     * parcours complet de la table : réservé à la confirmation d'une suppression (OrphanFileSweeper)
+     */
+    boolean existsByPictureEndingWith(String suffix);
+
+    /**
+     * Propriétaire d'une location, sans charger l'entité
+     *
+     * @param id l'ID de la location
+     * @return l'ID du propriétaire, vide si la location n'existe pas
+     */
+    @Query("SELECT r.ownerId FROM Rental r WHERE r.id = :id")
+    Optional<Long> findOwnerIdById(@Param("id") Long id);
+
+    /**
+     * IDs des locations au-delà d'un ID, dans l'ordre (chargement par pages de RentalExistenceFilter)
+     *
+     * @param after le dernier ID de la page précédente (0 pour la première page)
+     * @param limit la taille de la page
+     */
+    @Query("SELECT r.id FROM Rental r WHERE r.id > :after ORDER BY r.id")
+    List<Long> findIdsAfter(@Param("after") Long after, Limit limit);
+
+    /**
+     * Plus grand ID parmi les locations créées avant une date
+     *
+     * @return l'ID, null si aucune location
+     */
+    @Query("SELECT MAX(r.id) FROM Rental r WHERE r.createdAt < :before")
+    Long findMaxIdCreatedBefore(@Param("before") LocalDateTime before);
+
+    /**
+     * Verrouille la location (SELECT ... FOR UPDATE) jusqu'à la fin de la transaction
+     * Sérialise les modifications de sa galerie (positions, couverture)
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Rental r WHERE r.id = :id")
+    Optional<Rental> findForUpdate(@Param("id") Long id);
+}
@@ -0,0 +1,50 @@
+package com.chatop.repository;
+
+import com.chatop.model.StorageUsage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repository pour l'entité StorageUsage
+ * L'espace utilisé est modifié par des requêtes atomiques
+ */
+@Repository
+public interface StorageUsageRepository extends JpaRepository<StorageUsage, Long> {
+
+    /**
+     * Crée la ligne de l'utilisateur si elle n'existe pas encore (sans effet sinon)
+     */
+    @Modifying
+    @Query(value = "INSERT INTO STORAGE_USAGE (owner_id, used_bytes, updated_at) "
+            + "VALUES (:ownerId, 0, :now) "
+            + "ON DUPLICATE KEY UPDATE owner_id = owner_id", nativeQuery = true)
+    int createIfAbsent(@Param("ownerId") Long ownerId, @Param("now") LocalDateTime now);
+
+    /**
+     * Ajoute des octets à l'espace utilisé, seulement si le quota n'est pas dépassé
+     * Vérification et mise à jour dans la même requête : deux uploads simultanés
+     * ne peuvent pas dépasser le quota ensemble
+     *
+     * @return 1 si les octets ont été ajoutés, 0 si le quota serait dépassé
+     */
+    @Modifying
+    @Query("UPDATE StorageUsage u SET u.usedBytes = u.usedBytes + :bytes, u.updatedAt = :now "
+            + "WHERE u.ownerId = :ownerId AND u.usedBytes + :bytes <= :quota")
+    int charge(@Param("ownerId") Long ownerId,
+               @Param("bytes") long bytes,
+               @Param("quota") long quota,
+               @Param("now") LocalDateTime now);
+
+    /**
+     * Rend des octets au quota (photo supprimée), sans descendre sous zéro
+     */
+    @Modifying
+    @Query("UPDATE StorageUsage u SET u.usedBytes = CASE WHEN u.usedBytes > :bytes THEN u.usedBytes - :bytes ELSE 0 END, "
+            + "u.updatedAt = :now WHERE u.ownerId = :ownerId")
+    int release(@Param("ownerId") Long ownerId, @Param("bytes") long bytes, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,90 @@
+package com.chatop.repository;
+
+import com.chatop.model.StoredFile;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository pour l'entité StoredFile
+ * Les compteurs de références sont modifiés par des requêtes atomiques
+ */
+@Repository
+public interface StoredFileRepository extends JpaRepository<StoredFile, String> {
+
+    /**
+     * Ajoute une référence au fichier, en le créant si besoin
+     * Une seule requête atomique : deux uploads simultanés du même contenu
+     * ne peuvent pas créer deux lignes (le verrou de ligne les sérialise)
+     *
+     * @return le nombre de lignes affectées (1 = création, 2 = référence ajoutée)
+     */
+    @Modifying
+    @Query(value = "INSERT INTO STORED_FILES (hash, path, size, ref_count, created_at) "
+            + "VALUES (:hash, :path, :size, 1, :createdAt) "
+            + "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1", nativeQuery = true)
+    int addReference(@Param("hash") String hash,
+                     @Param("path") String path,
+                     @Param("size") long size,
+                     @Param("createdAt") LocalDateTime createdAt);
+
+    /**
+     * Retire une référence au fichier
+     *
+     * @return 1 si une référence a été retirée
+     */
+    @Modifying
+    @Query("UPDATE StoredFile f SET f.refCount = f.refCount - 1 WHERE f.hash = :hash AND f.refCount > 0")
+    int removeReference(@Param("hash") String hash);
+
+    /**
+     * Supprime le fichier s'il n'est plus référencé
+     *
+     * @return 1 si la ligne a été supprimée (le fichier peut être effacé du disque)
+     */
+    @Modifying
+    @Query("DELETE FROM StoredFile f WHERE f.hash = :hash AND f.refCount <= 0")
+    int deleteIfUnreferenced(@Param("hash") String hash);
+
+    /**
+     * Verrouille la ligne du fichier (SELECT ... FOR UPDATE) jusqu'à la fin de la transaction
+     * Sans ligne, le verrou d'intervalle bloque aussi un addReference concurrent
+     *
+     * @return le fichier, vide s'il n'est pas enregistré
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT f FROM StoredFile f WHERE f.hash = :hash")
+    Optional<StoredFile> findForUpdate(@Param("hash") String hash);
+
+    /**
+     * Enregistre les dimensions d'une image (appelée par le thread des miniatures, hors transaction de service)
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE StoredFile f SET f.width = :width, f.height = :height WHERE f.hash = :hash")
+    int updateDimensions(@Param("hash") String hash, @Param("width") int width, @Param("height") int height);
+
+    /**
+     * Images dont les miniatures n'ont pas encore été générées (dimensions inconnues), plus anciennes d'abord
+     * Rattrapage des générations refusées (file pleine) ou interrompues (redémarrage)
+     */
+    @Query("SELECT f FROM StoredFile f WHERE f.width IS NULL ORDER BY f.createdAt")
+    List<StoredFile> findWithoutDimensions(Limit limit);
+
+    /**
+     * Taille totale des fichiers stockés (une fois par contenu)
+     * Utilisée pour recaler le compteur global de StorageQuotaService
+     */
+    @Query("SELECT COALESCE(SUM(f.size), 0) FROM StoredFile f")
+    long totalSize();
+}
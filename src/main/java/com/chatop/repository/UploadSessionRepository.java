@@ -0,0 +1,44 @@
+package com.chatop.repository;
+
+import com.chatop.model.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository pour l'entité UploadSession
+ */
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    /**
+     * Avance la longueur reçue (jamais de recul : des morceaux renvoyés peuvent se chevaucher)
+     * Une seule requête atomique, sans relire la session (transaction propre : appelée
+     * pendant l'écriture d'un morceau, hors transaction de service)
+     *
+     * @return 1 si la session existe encore
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE UploadSession s SET s.received = CASE WHEN s.received < :end THEN :end ELSE s.received END, "
+            + "s.updatedAt = :now WHERE s.id = :id AND s.hash IS NULL")
+    int advance(@Param("id") String id, @Param("end") long end, @Param("now") LocalDateTime now);
+
+    /**
+     * Sessions inactives depuis la date donnée (expirées), par lots
+     */
+    List<UploadSession> findTop500ByUpdatedAtBefore(LocalDateTime updatedAt);
+
+    /**
+     * Taille totale des uploads en plusieurs morceaux ouverts par un utilisateur
+     * (fichiers partiels pas encore rattachés, comptés dans son quota)
+     */
+    @Query("SELECT COALESCE(SUM(s.size), 0) FROM UploadSession s WHERE s.ownerId = :ownerId")
+    long sumSizeByOwnerId(@Param("ownerId") Long ownerId);
+}
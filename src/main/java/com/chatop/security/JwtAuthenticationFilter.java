@@ -91,4 +91,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Les images publiques ne portent pas de token : inutile d'analyser le header
+     * (le filtre est aussi enregistré comme filtre servlet par Spring Boot)
+     */
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith(request.getContextPath() + "/uploads/");
+    }
+
     }
\ No newline at end of file
@@ -3,6 +3,8 @@ import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
@@ -33,6 +35,21 @@ public class JwtUtil {
     @Value("${jwt.expiration:86400000}")
     private Long expiration;
 
+    // Timers "chatop.jwt" (génération et vérification de signature)
+    private final Timer generateTimer;
+    private final Timer verifyTimer;
+
+    public JwtUtil(MeterRegistry meterRegistry) {
+        this.generateTimer = Timer.builder("chatop.jwt")
+                .description("Durée des opérations JWT")
+                .tag("operation", "generate")
+                .register(meterRegistry);
+        this.verifyTimer = Timer.builder("chatop.jwt")
+                .description("Durée des opérations JWT")
+                .tag("operation", "verify")
+                .register(meterRegistry);
+    }
+
     /**
      * Génère la clé de signature à partir du secret
      */
@@ -48,7 +65,7 @@ public class JwtUtil {
      */
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
-        return createToken(claims, userDetails.getUsername());
+        return generateTimer.record(() -> createToken(claims, userDetails.getUsername()));
     }
 
     /**
@@ -91,13 +108,14 @@ public class JwtUtil {
 
     /**
      * Extrait tous les claims du token
+     * Chaque appel vérifie la signature (timer "chatop.jwt", operation = verify)
      */
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
+        return verifyTimer.record(() -> Jwts.parser()
                 .setSigningKey(getSigningKey())
                 .build()
                 .parseClaimsJws(token)
-                .getBody();
+                .getBody());
     }
 
     /**
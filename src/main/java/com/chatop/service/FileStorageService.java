@@ -1,100 +1,456 @@
 package com.chatop.service;
 
+import com.chatop.dto.DirectUploadResponse;
+import com.chatop.model.StoredFile;
+import com.chatop.repository.StoredFileRepository;
+import com.chatop.storage.PresignedUpload;
+import com.chatop.storage.StorageBackend;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
 import java.util.UUID;
+import java.util.regex.Pattern;
 
 /**
  * Service pour gérer l'upload de fichiers (images)
  *
  * Fonctionnalités :
- * - Validation du type de fichier (images uniquement)
- * - Génération d'un nom unique pour éviter les conflits
- * - Stockage dans un dossier local
+ * - Réception en une seule passe depuis le flux de la requête (voir receive())
+ * - Validation du type de fichier d'après son contenu (images uniquement)
+ * - Stockage adressé par le contenu : le nom du fichier est le SHA-256 de ses octets,
+ *   calculé pendant l'écriture
+ * - Arborescence à deux niveaux (ab/cd/abcd...ef.jpg) : aucun dossier ne grossit indéfiniment
+ * - Déduplication : un contenu déjà stocké n'est pas réécrit, son URL existante est retournée
+ * - Compteur de références (table STORED_FILES) : un fichier n'est effacé du disque
+ *   que lorsque plus aucune annonce ne le référence
+ * - Stockage final via StorageBackend (dossier local ou S3), réception dans un dossier local temporaire
+ * - Upload direct pré-signé (S3) : le client envoie l'image au stockage, l'application
+ *   ne reçoit que sa clé (voir prepareDirectUpload() et receiveUploaded())
  * - Retour de l'URL publique du fichier
+ * - Déclenchement de la génération des miniatures (ThumbnailService), rattrapée d'après STORED_FILES
+ *   pour les images restées sans dimensions (file pleine, redémarrage)
  */
 @Service
 @Slf4j
 public class FileStorageService {
 
+    // Dossier des fichiers en cours d'écriture (même système de fichiers : renommage atomique)
+    public static final String TEMP_DIR = ".tmp";
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     @Value("${upload.path}")
     private String uploadPath;
 
-    @Value("${upload.url}")
-    private String uploadUrl;
+    @Value("${upload.max-file-size:10MB}")
+    private DataSize maxFileSize = DataSize.ofMegabytes(10);
+
+    // Compteurs d'uploads (nombre de fichiers, octets reçus, doublons évités)
+    private final Counter uploadedFiles;
+    private final Counter uploadedBytes;
+    private final Counter deduplicatedFiles;
+
+    // Génération asynchrone des miniatures
+    private final ThumbnailService thumbnailService;
+
+    private final StoredFileRepository storedFileRepository;
+
+    // Stockage final des images (local ou S3)
+    private final StorageBackend storage;
+
+    // Compteur global des octets stockés (quota)
+    private final StorageQuotaService storageQuotaService;
+
+    // Transaction propre à l'effacement différé (après le commit de la suppression)
+    private final TransactionTemplate deletionTransaction;
+
+    public FileStorageService(MeterRegistry meterRegistry, ThumbnailService thumbnailService,
+                              StoredFileRepository storedFileRepository, StorageBackend storage,
+                              StorageQuotaService storageQuotaService, PlatformTransactionManager transactionManager) {
+        this.thumbnailService = thumbnailService;
+        this.storedFileRepository = storedFileRepository;
+        this.storage = storage;
+        this.storageQuotaService = storageQuotaService;
+        this.deletionTransaction = new TransactionTemplate(transactionManager);
+        this.deletionTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.uploadedFiles = Counter.builder("chatop.uploads")
+                .description("Nombre de fichiers uploadés")
+                .register(meterRegistry);
+        this.uploadedBytes = Counter.builder("chatop.uploads.bytes")
+                .description("Octets écrits par les uploads")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.deduplicatedFiles = Counter.builder("chatop.uploads.deduplicated")
+                .description("Uploads dont le contenu était déjà stocké")
+                .register(meterRegistry);
+    }
 
     /**
-     * Sauvegarde un fichier uploadé
+     * Reçoit un fichier en une seule passe, directement depuis le flux de la requête
      *
-     * @param file le fichier à sauvegarder
-     * @return l'URL publique du fichier sauvegardé
-     * @throws IOException si erreur lors de la sauvegarde
-     * @throws IllegalArgumentException si le fichier n'est pas une image
+     * Pendant la lecture :
+     * - écriture dans un fichier temporaire du dossier d'upload (même système de fichiers)
+     * - calcul du SHA-256
+     * - vérification des "magic bytes" : le type réel est déduit du contenu, pas de l'en-tête client
+     * - arrêt immédiat dès que la taille maximale est dépassée
+     *
+     * Aucun accès base de données : le fichier est rattaché par commit(), puis discard() nettoie
+     *
+     * @param input le flux du fichier (lu une seule fois, non fermé)
+     * @return le fichier reçu, en attente de commit
+     * @throws IllegalArgumentException si le fichier est vide, trop gros ou n'est pas une image
      */
-    public String saveFile(MultipartFile file) throws IOException {
+    public ReceivedFile receive(InputStream input) throws IOException {
+
+        // 1. Créer les dossiers uploads et temporaire s'ils n'existent pas
+        Path uploadDir = Paths.get(uploadPath);
+        Path tempDir = uploadDir.resolve(TEMP_DIR);
+        if (!Files.exists(tempDir)) {
+            Files.createDirectories(tempDir);
+            log.info("Dossier uploads créé : {}", uploadDir.toAbsolutePath());
+        }
+
+        // 2. Copie du flux vers le fichier temporaire avec hash, détection du type et limite de taille
+        Path temp = tempDir.resolve(UUID.randomUUID() + ".upload");
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        byte[] header = new byte[ImageType.HEADER_LENGTH];
+        int headerLength = 0;
+        long size = 0;
+        long maxSize = maxFileSize.toBytes();
+
+        try (OutputStream output = Files.newOutputStream(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                size += read;
+                if (size > maxSize) {
+                    throw new IllegalArgumentException("Le fichier dépasse la taille maximale autorisée (" + maxFileSize + ")");
+                }
+                if (headerLength < header.length) {
+                    int copied = Math.min(read, header.length - headerLength);
+                    System.arraycopy(buffer, 0, header, headerLength, copied);
+                    headerLength += copied;
+                    // Rejet dès les premiers octets : inutile de recevoir 10MB qui ne sont pas une image
+                    if (headerLength == header.length && ImageType.detect(header, headerLength) == null) {
+                        throw new IllegalArgumentException("Le fichier doit être une image (jpg, png, etc.)");
+                    }
+                }
+                digest.update(buffer, 0, read);
+                output.write(buffer, 0, read);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
 
-        // 1. Validation : le fichier ne doit pas être vide
-        if (file.isEmpty()) {
-            throw new IllegalArgumentException("Le fichier est vide");
+        // 3. Validations finales (fichiers plus courts que l'en-tête)
+        ImageType type = ImageType.detect(header, headerLength);
+        if (size == 0 || type == null) {
+            Files.deleteIfExists(temp);
+            throw new IllegalArgumentException(size == 0 ? "Le fichier est vide" : "Le fichier doit être une image (jpg, png, etc.)");
         }
 
-        // 2. Validation : vérifier que c'est bien une image
-        String contentType = file.getContentType();
-        if (contentType == null || !contentType.startsWith("image/")) {
+        uploadedFiles.increment();
+        uploadedBytes.increment(size);
+        return new ReceivedFile(temp, HexFormat.of().formatHex(digest.digest()), size, type);
+    }
+
+    /**
+     * Prépare l'upload direct d'une image vers le stockage (URL pré-signée)
+     *
+     * Le client calcule le SHA-256 de son fichier : la clé en est déduite et le stockage
+     * refuse tout contenu dont le hash ou la taille diffère de ceux annoncés.
+     * Contenu déjà stocké : aucune URL, le client utilise directement la clé.
+     *
+     * @param contentType le type MIME de l'image
+     * @param size la taille du fichier en octets
+     * @param sha256 le SHA-256 du fichier (hexadécimal)
+     * @return la clé de l'image et, si nécessaire, l'upload pré-signé
+     * @throws IllegalArgumentException si les données sont invalides ou si le stockage ne permet pas l'upload direct
+     */
+    public DirectUploadResponse prepareDirectUpload(String contentType, long size, String sha256) throws IOException {
+        ImageType type = ImageType.fromContentType(contentType);
+        if (type == null) {
             throw new IllegalArgumentException("Le fichier doit être une image (jpg, png, etc.)");
         }
+        if (size <= 0 || size > maxFileSize.toBytes()) {
+            throw new IllegalArgumentException("Le fichier dépasse la taille maximale autorisée (" + maxFileSize + ")");
+        }
+        String hash = sha256 == null ? "" : sha256.toLowerCase();
+        if (!HASH.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Le SHA-256 doit comporter 64 caractères hexadécimaux");
+        }
 
-        // 3. Créer le dossier uploads s'il n'existe pas
-        Path uploadDir = Paths.get(uploadPath);
-        if (!Files.exists(uploadDir)) {
-            Files.createDirectories(uploadDir);
-            log.info("Dossier uploads créé : {}", uploadDir.toAbsolutePath());
+        String key = shardedPath(hash, type.getExtension());
+        if (storage.exists(key)) {
+            deduplicatedFiles.increment();
+            return new DirectUploadResponse(key, true, null, null, null, null);
+        }
+
+        PresignedUpload upload = storage.presignUpload(key, type.getContentType(), size, hash)
+                .orElseThrow(() -> new IllegalArgumentException("L'upload direct n'est pas disponible avec ce stockage"));
+        return new DirectUploadResponse(key, false, upload.method(), upload.url(), upload.headers(), upload.expiresAt());
+    }
+
+    /**
+     * Vérifie une image envoyée directement au stockage (upload pré-signé)
+     *
+     * Seuls les premiers octets sont relus (type réel et taille) : le contenu
+     * ne transite pas par l'application
+     *
+     * @param key la clé retournée par prepareDirectUpload()
+     * @return le fichier reçu, en attente de commit
+     * @throws IllegalArgumentException si la clé est invalide, l'image absente, trop grosse ou pas une image
+     */
+    public ReceivedFile receiveUploaded(String key) throws IOException {
+        String hash = key == null ? null : hashOf(key);
+        if (hash == null) {
+            throw new IllegalArgumentException("Clé d'image invalide");
+        }
+
+        StorageBackend.ObjectHeader header = storage.readHeader(key, ImageType.HEADER_LENGTH);
+        if (header == null) {
+            throw new IllegalArgumentException("Image introuvable : l'upload direct n'a pas abouti");
+        }
+        if (header.size() > maxFileSize.toBytes()) {
+            throw new IllegalArgumentException("Le fichier dépasse la taille maximale autorisée (" + maxFileSize + ")");
+        }
+        ImageType type = ImageType.detect(header.header(), header.header().length);
+        if (header.size() == 0 || type == null || !key.equals(shardedPath(hash, type.getExtension()))) {
+            throw new IllegalArgumentException("Le fichier doit être une image (jpg, png, etc.)");
         }
+        return new ReceivedFile(null, hash, header.size(), type);
+    }
 
-        // 4. Générer un nom de fichier unique
-        String originalFilename = file.getOriginalFilename();
-        String extension = "";
-        if (originalFilename != null && originalFilename.contains(".")) {
-            extension = originalFilename.substring(originalFilename.lastIndexOf("."));
+    /**
+     * Rattache un fichier reçu au stockage adressé par le contenu
+     *
+     * @param received le fichier reçu par receive() ou receiveUploaded()
+     * @return l'URL publique du fichier
+     */
+    @Transactional
+    public String commit(ReceivedFile received) throws IOException {
+        String relativePath = shardedPath(received.hash(), received.type().getExtension());
+
+        // 1. Référence en base AVANT de toucher au disque :
+        // le verrou de ligne sérialise les uploads et suppressions du même contenu
+        if (storedFileRepository.addReference(received.hash(), relativePath, received.size(), LocalDateTime.now()) == 1) {
+            // Nouveau contenu : il occupe de l'espace (un doublon ne coûte rien)
+            storageQuotaService.stored(received.size());
         }
-        String uniqueFilename = UUID.randomUUID().toString() + extension;
+        String storedPath = storedFileRepository.findById(received.hash())
+                .map(StoredFile::getPath)
+                .orElse(relativePath);
 
-        // 5. Chemin complet du fichier
-        Path filePath = uploadDir.resolve(uniqueFilename);
+        // 2. Upload direct : l'image est déjà dans le stockage (miniatures régénérées si besoin)
+        // Revérifiée sous le verrou : une suppression concurrente du même contenu a pu l'effacer
+        if (received.tempFile() == null) {
+            if (!storage.exists(storedPath)) {
+                throw new IllegalArgumentException("Image introuvable : l'upload direct n'a pas abouti");
+            }
+            generateThumbnails(storedPath, received.hash());
+        } else if (storage.exists(storedPath)) {
+            // 3. Contenu déjà présent : le fichier temporaire est simplement supprimé
+            Files.delete(received.tempFile());
+            deduplicatedFiles.increment();
+            log.info("Fichier déjà stocké (doublon) : {}", storedPath);
+        } else {
+            // 4. Enregistrement dans le stockage (renommage atomique en local) :
+            // le fichier n'est jamais visible à moitié écrit
+            storage.store(storedPath, received.tempFile(), received.type().getContentType());
+            log.info("Fichier sauvegardé : {}", storedPath);
 
-        // 6. Sauvegarder le fichier
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+            // 5. Miniatures générées en arrière-plan (la requête n'attend pas)
+            generateThumbnails(storedPath, received.hash());
+        }
 
-        log.info("Fichier sauvegardé : {}", filePath.toAbsolutePath());
+        // 6. Retourner l'URL publique
+        return storage.publicUrl(storedPath);
+    }
 
-        // 7. Retourner l'URL publique
-        return uploadUrl + uniqueFilename;
+    /**
+     * Supprime le fichier temporaire s'il n'a pas été rattaché (erreur, rollback)
+     * Sans effet après un commit réussi ou pour un upload direct
+     */
+    public void discard(ReceivedFile received) {
+        if (received.tempFile() == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(received.tempFile());
+        } catch (IOException e) {
+            log.warn("Impossible de supprimer le fichier temporaire : {}", received.tempFile(), e);
+        }
     }
 
     /**
      * Supprime un fichier par son URL
-     * Utile si on veut implémenter la suppression de locations
+     * Retire une référence : le fichier (et ses miniatures) n'est effacé du stockage
+     * qu'après le commit, lorsque plus aucune annonce ne le référence
+     * (revérifié à ce moment-là, voir deleteIfStillUnreferenced())
      *
      * @param fileUrl l'URL du fichier à supprimer
      */
+    @Transactional
     public void deleteFile(String fileUrl) {
+        String relativePath = storage.keyOf(fileUrl);
+        if (relativePath == null) {
+            return;
+        }
+        String hash = hashOf(relativePath);
+
+        // Fichier antérieur au stockage adressé par le contenu : pas de compteur,
+        // effacé après le commit (un rollback de la suppression retrouve son fichier)
+        if (hash == null) {
+            afterCommit(() -> deleteFromStorage(relativePath));
+            return;
+        }
+
+        long size = storedFileRepository.findById(hash).map(StoredFile::getSize).orElse(0L);
+        storedFileRepository.removeReference(hash);
+        if (storedFileRepository.deleteIfUnreferenced(hash) == 1) {
+            storageQuotaService.removed(size);
+            afterCommit(() -> deleteIfStillUnreferenced(hash, relativePath));
+        }
+    }
+
+    /**
+     * Efface un fichier après le commit de sa dernière référence, sous le verrou de sa ligne STORED_FILES :
+     * - un upload concurrent du même contenu a recréé la ligne entre-temps : le fichier est conservé
+     * - sinon, le verrou d'intervalle fait attendre un upload concurrent (addReference) jusqu'à la fin
+     *   de l'effacement ; il trouve alors le stockage vide et réécrit le fichier
+     */
+    private void deleteIfStillUnreferenced(String hash, String relativePath) {
+        try {
+            deletionTransaction.executeWithoutResult(status -> {
+                if (storedFileRepository.findForUpdate(hash).isEmpty()) {
+                    deleteFromStorage(relativePath);
+                } else {
+                    log.info("Fichier de nouveau référencé, conservé : {}", relativePath);
+                }
+            });
+        } catch (RuntimeException e) {
+            // Fichier conservé : récupéré par OrphanFileSweeper s'il n'est plus référencé
+            log.error("Erreur lors de la suppression du fichier : {}", relativePath, e);
+        }
+    }
+
+    /**
+     * Planifie les miniatures après le commit (rien pour un upload annulé) ;
+     * les dimensions lues au passage sont enregistrées dans STORED_FILES
+     */
+    private void generateThumbnails(String storedPath, String hash) {
+        afterCommit(() -> thumbnailService.submit(storedPath, dimensions -> recordDimensions(hash, dimensions)));
+    }
+
+    /**
+     * Rattrapage des miniatures d'après STORED_FILES (dimensions inconnues) et non d'une file en mémoire :
+     * générations refusées par la file pleine, perdues par un redémarrage ou en échec
+     * Au plus les places libres de la file : une rafale d'uploads ne fait jamais grossir la file
+     * Sur plusieurs nœuds, une même image peut être générée deux fois (variantes identiques)
+     */
+    @Scheduled(fixedDelayString = "${thumbnail.retry-interval:PT10S}")
+    public void resubmitMissingThumbnails() {
+        int capacity = thumbnailService.remainingCapacity();
+        if (capacity == 0) {
+            return;
+        }
+        for (StoredFile file : storedFileRepository.findWithoutDimensions(Limit.of(capacity))) {
+            String hash = file.getHash();
+            if (!thumbnailService.submit(file.getPath(), dimensions -> recordDimensions(hash, dimensions))) {
+                return;
+            }
+        }
+    }
+
+    private void recordDimensions(String hash, ThumbnailService.Dimensions dimensions) {
+        storedFileRepository.updateDimensions(hash, dimensions.width(), dimensions.height());
+    }
+
+    private void deleteFromStorage(String relativePath) {
         try {
-            if (fileUrl != null && fileUrl.startsWith(uploadUrl)) {
-                String filename = fileUrl.substring(uploadUrl.length());
-                Path filePath = Paths.get(uploadPath).resolve(filename);
-                Files.deleteIfExists(filePath);
-                log.info("Fichier supprimé : {}", filePath.toAbsolutePath());
+            storage.delete(relativePath);
+            for (String variant : thumbnailService.variantFilenames(relativePath)) {
+                storage.delete(variant);
             }
+            log.info("Fichier supprimé : {}", relativePath);
         } catch (IOException e) {
-            log.error("Erreur lors de la suppression du fichier : {}", fileUrl, e);
+            log.error("Erreur lors de la suppression du fichier : {}", relativePath, e);
+        }
+    }
+
+    /**
+     * Chemin à deux niveaux de dossiers : ab/cd/abcd...ef.jpg
+     */
+    static String shardedPath(String hash, String extension) {
+        return hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + extension;
+    }
+
+    /**
+     * Extrait le hash d'un chemin de fichier adressé par le contenu
+     *
+     * @return le hash, ou null pour un ancien fichier (nom UUID)
+     */
+    public static String hashOf(String relativePath) {
+        String filename = relativePath.substring(relativePath.lastIndexOf('/') + 1);
+        int dot = filename.indexOf('.');
+        String name = dot >= 0 ? filename.substring(0, dot) : filename;
+        return HASH.matcher(name).matches() ? name : null;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+
+    /**
+     * Fichier reçu dans le dossier temporaire, en attente de commit
+     *
+     * @param tempFile le fichier temporaire, null pour un upload direct déjà présent dans le stockage
+     * @param hash le SHA-256 du contenu (hexadécimal)
+     * @param size la taille en octets
+     * @param type le type d'image détecté d'après le contenu
+     */
+    public record ReceivedFile(Path tempFile, String hash, long size, ImageType type) {
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
         }
     }
-}
\ No newline at end of file
+}
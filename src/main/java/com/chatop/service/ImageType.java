@@ -0,0 +1,81 @@
+package com.chatop.service;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Types d'images acceptés à l'upload, reconnus par leurs "magic bytes"
+ *
+ * Le type déclaré par le client (Content-Type, extension) n'est pas fiable :
+ * seuls les premiers octets du fichier font foi.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum ImageType {
+
+    JPEG("image/jpeg", ".jpg"),
+    PNG("image/png", ".png"),
+    GIF("image/gif", ".gif"),
+    WEBP("image/webp", ".webp"),
+    BMP("image/bmp", ".bmp");
+
+    // Nombre d'octets nécessaires pour reconnaître tous les types
+    public static final int HEADER_LENGTH = 12;
+
+    private final String contentType;
+    private final String extension;
+
+    /**
+     * Détecte le type d'image d'après les premiers octets
+     *
+     * @param header les premiers octets du fichier
+     * @param length le nombre d'octets valides dans header
+     * @return le type détecté, ou null si ce n'est pas une image acceptée
+     */
+    public static ImageType detect(byte[] header, int length) {
+        if (startsWith(header, length, 0xFF, 0xD8, 0xFF)) {
+            return JPEG;
+        }
+        if (startsWith(header, length, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return PNG;
+        }
+        if (startsWith(header, length, 'G', 'I', 'F', '8')) {
+            return GIF;
+        }
+        if (startsWith(header, length, 'R', 'I', 'F', 'F') && length >= 12
+                && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P') {
+            return WEBP;
+        }
+        if (startsWith(header, length, 'B', 'M')) {
+            return BMP;
+        }
+        return null;
+    }
+
+    /**
+     * Retrouve un type d'image par son type MIME (upload direct : le contenu n'est pas encore disponible)
+     *
+     * @param contentType le type MIME annoncé
+     * @return le type, ou null si ce n'est pas une image acceptée
+     */
+    public static ImageType fromContentType(String contentType) {
+        for (ImageType type : values()) {
+            if (type.contentType.equalsIgnoreCase(contentType)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] header, int length, int... magic) {
+        if (length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((header[i] & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,148 @@
+package com.chatop.service;
+
+import com.chatop.dto.InboxEntryResponse;
+import com.chatop.dto.InboxResponse;
+import com.chatop.model.User;
+import com.chatop.repository.InboxSummaryRepository;
+import com.chatop.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Service gérant la boîte de réception des propriétaires (table INBOX_SUMMARY)
+ *
+ * - Chaque message incrémente le compteur de sa location dans la transaction d'envoi
+ *   (MessageCreatedEvent, avant le commit) : message et compteur sont enregistrés ensemble ou pas du tout
+ * - Les messages d'une même transaction (lot de MessageIngestService) sont cumulés : une mise à jour
+ *   par location et non par message, dans l'ordre des IDs de location (verrous toujours pris dans le même ordre)
+ * - La lecture coûte une ligne par location du propriétaire, quel que soit le nombre de messages
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InboxService {
+
+    private final InboxSummaryRepository inboxSummaryRepository;
+    private final UserRepository userRepository;
+
+    /**
+     * Compte le message dans la boîte de réception du propriétaire (même transaction que le message)
+     * Un message du propriétaire sur sa propre location n'est pas compté comme non lu
+     *
+     * Le message est cumulé avec les autres messages de la transaction, écrits juste avant le commit ;
+     * sans transaction (aucun appelant), il est ignoré comme avec un écouteur BEFORE_COMMIT
+     */
+    @EventListener
+    public void onMessageCreated(MessageCreatedEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Map<Long, PendingCount> pending = (Map<Long, PendingCount>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Map<Long, PendingCount> counts = new TreeMap<>();
+            TransactionSynchronizationManager.bindResource(this, counts);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    record(counts);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(InboxService.this);
+                }
+            });
+            pending = counts;
+        }
+        int unread = event.ownerId().equals(event.senderId()) ? 0 : 1;
+        pending.merge(event.rentalId(), new PendingCount(event.ownerId(), unread, event.createdAt()), PendingCount::plus);
+    }
+
+    /**
+     * Une mise à jour par location : non lus cumulés, date du message le plus récent
+     */
+    private void record(Map<Long, PendingCount> counts) {
+        LocalDateTime now = LocalDateTime.now();
+        counts.forEach((rentalId, count) ->
+                inboxSummaryRepository.recordMessage(rentalId, count.ownerId(), count.unread(), count.lastMessageAt(), now));
+    }
+
+    /**
+     * Boîte de réception de l'utilisateur connecté
+     *
+     * @param userEmail l'email de l'utilisateur (extrait du JWT)
+     * @return les locations ayant reçu des messages, avec leurs messages non lus
+     * @throws IllegalArgumentException si l'utilisateur n'existe pas
+     */
+    @Transactional(readOnly = true)
+    public InboxResponse getInbox(String userEmail) {
+        User user = findUser(userEmail);
+
+        List<InboxEntryResponse> entries = inboxSummaryRepository.findByOwnerIdOrderByLastMessageAtDesc(user.getId()).stream()
+                .map(summary -> new InboxEntryResponse(summary.getRentalId(), summary.getUnreadCount(), summary.getLastMessageAt()))
+                .collect(Collectors.toList());
+        long unreadTotal = entries.stream().mapToLong(InboxEntryResponse::getUnreadCount).sum();
+        int unreadRentals = (int) entries.stream().filter(entry -> entry.getUnreadCount() > 0).count();
+        return new InboxResponse(unreadTotal, unreadRentals, entries);
+    }
+
+    /**
+     * Marque comme lus les messages reçus sur une location
+     *
+     * @param rentalId l'ID de la location
+     * @param userEmail l'email de l'utilisateur (extrait du JWT)
+     * @throws IllegalArgumentException si l'utilisateur n'existe pas, ou si la location n'a pas reçu
+     *                                  de message ou ne lui appartient pas
+     */
+    @Transactional
+    public void markAsRead(Long rentalId, String userEmail) {
+        User user = findUser(userEmail);
+        if (inboxSummaryRepository.markAsRead(rentalId, user.getId(), LocalDateTime.now()) == 0) {
+            throw new IllegalArgumentException("Aucun message reçu sur la location avec l'ID " + rentalId);
+        }
+    }
+
+    /**
+     * Complète INBOX_SUMMARY à partir des messages existants, à chaque démarrage
+     * (les messages antérieurs sont considérés comme lus)
+     * Idempotent : une location déjà présente n'est pas modifiée. Aucune condition sur le contenu de la table :
+     * un message reçu avant cette initialisation (rejeu du journal, première requête) ne l'empêche pas
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void initialize() {
+        int rentals = inboxSummaryRepository.initializeFromMessages(LocalDateTime.now());
+        if (rentals > 0) {
+            log.info("Boîte de réception complétée pour {} location(s)", rentals);
+        }
+    }
+
+    private User findUser(String userEmail) {
+        return userRepository.findByEmail(userEmail)
+                .orElseThrow(() -> new IllegalArgumentException("Utilisateur non trouvé"));
+    }
+
+    /**
+     * Messages d'une location pas encore comptés dans INBOX_SUMMARY (transaction en cours)
+     */
+    private record PendingCount(Long ownerId, int unread, LocalDateTime lastMessageAt) {
+
+        PendingCount plus(PendingCount other) {
+            return new PendingCount(ownerId, unread + other.unread,
+                    lastMessageAt.isAfter(other.lastMessageAt) ? lastMessageAt : other.lastMessageAt);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.chatop.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Archivage des anciens messages et partitionnement mensuel de MESSAGES
+ *
+ * Archivage (message.archive.enabled, chaque nuit selon message.archive.cron) :
+ * - Les messages antérieurs au début du mois d'il y a message.archive.retention-months mois sont déplacés
+ *   vers MESSAGES_ARCHIVE, par lots de message.archive.batch-size (copie et suppression dans la même transaction)
+ * - Ils restent lisibles par les routes paginées (MessageService poursuit dans l'archive)
+ * - MESSAGES et ses index restent bornés aux mois récents, qui tiennent dans le buffer pool
+ *
+ * Partitionnement (message.partitioning.enabled, MySQL uniquement) :
+ * - MESSAGES est partitionné par mois de created_at (RANGE COLUMNS), clé primaire (id, created_at)
+ * - La conversion d'une table existante la reconstruit : à activer lors d'une fenêtre de maintenance
+ * - Les partitions des message.partitioning.months-ahead prochains mois sont créées à l'avance
+ * - Une partition vidée par l'archivage est supprimée (DROP PARTITION) : l'espace est rendu immédiatement,
+ *   contrairement à un DELETE
+ */
+@Service
+@Slf4j
+public class MessageArchiveService {
+
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+    private static final String COLUMNS = "id, rental_id, user_id, owner_id, message, created_at, updated_at";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean archiveEnabled;
+    private final int retentionMonths;
+    private final int batchSize;
+    private final boolean partitioningEnabled;
+    private final int monthsAhead;
+
+    public MessageArchiveService(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${message.archive.enabled:true}") boolean archiveEnabled,
+            @Value("${message.archive.retention-months:12}") int retentionMonths,
+            @Value("${message.archive.batch-size:5000}") int batchSize,
+            @Value("${message.partitioning.enabled:false}") boolean partitioningEnabled,
+            @Value("${message.partitioning.months-ahead:3}") int monthsAhead
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.archiveEnabled = archiveEnabled;
+        this.retentionMonths = retentionMonths;
+        this.batchSize = batchSize;
+        this.partitioningEnabled = partitioningEnabled;
+        this.monthsAhead = monthsAhead;
+    }
+
+    /**
+     * Partitionne MESSAGES au démarrage si nécessaire
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initializePartitions() {
+        if (!partitioningActive()) {
+            return;
+        }
+        if (partitions().isEmpty()) {
+            partitionTable();
+        }
+        addFuturePartitions();
+    }
+
+    /**
+     * Archive les messages anciens puis supprime les partitions vidées
+     */
+    @Scheduled(cron = "${message.archive.cron:0 30 3 * * *}")
+    public void archive() {
+        boolean partitioned = partitioningActive();
+        if (partitioned) {
+            addFuturePartitions();
+        }
+        if (!archiveEnabled) {
+            return;
+        }
+
+        // Début de mois : les partitions antérieures sont entièrement archivées
+        LocalDateTime cutoff = YearMonth.now().minusMonths(retentionMonths).atDay(1).atStartOfDay();
+        long start = System.currentTimeMillis();
+        long moved = 0;
+        int rows;
+        do {
+            Integer batch = transactionTemplate.execute(status -> moveBatch(cutoff));
+            rows = batch != null ? batch : 0;
+            moved += rows;
+        } while (rows == batchSize);
+        if (moved > 0) {
+            log.info("{} message(s) antérieur(s) au {} archivé(s) en {} s", moved, cutoff.toLocalDate(),
+                    (System.currentTimeMillis() - start) / 1000);
+        }
+
+        if (partitioned) {
+            dropPartitionsBefore(YearMonth.from(cutoff));
+        }
+    }
+
+    /**
+     * Copie un lot de messages dans l'archive et les supprime de MESSAGES (même transaction)
+     *
+     * @return le nombre de messages déplacés
+     */
+    private int moveBatch(LocalDateTime cutoff) {
+        List<Long> ids = namedJdbcTemplate.queryForList(
+                "SELECT id FROM MESSAGES WHERE created_at < :cutoff ORDER BY id LIMIT " + batchSize,
+                new MapSqlParameterSource("cutoff", cutoff), Long.class);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", ids);
+        namedJdbcTemplate.update("INSERT INTO MESSAGES_ARCHIVE (" + COLUMNS + ") SELECT " + COLUMNS
+                + " FROM MESSAGES WHERE id IN (:ids)", params);
+        namedJdbcTemplate.update("DELETE FROM MESSAGES WHERE id IN (:ids)", params);
+        return ids.size();
+    }
+
+    // ----- Partitionnement (MySQL) -----
+
+    private boolean partitioningActive() {
+        if (!partitioningEnabled) {
+            return false;
+        }
+        String product = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        if (!"MySQL".equalsIgnoreCase(product)) {
+            log.warn("Partitionnement de MESSAGES ignoré : base {} (MySQL uniquement)", product);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Mois des partitions existantes, dans l'ordre (hors pmax)
+     */
+    private List<YearMonth> partitions() {
+        List<String> names = jdbcTemplate.queryForList("SELECT PARTITION_NAME FROM INFORMATION_SCHEMA.PARTITIONS "
+                + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'MESSAGES' AND PARTITION_NAME IS NOT NULL "
+                + "ORDER BY PARTITION_ORDINAL_POSITION", String.class);
+        List<YearMonth> months = new ArrayList<>();
+        for (String name : names) {
+            try {
+                months.add(YearMonth.parse(name, PARTITION_NAME));
+            } catch (DateTimeParseException e) {
+                // pmax
+            }
+        }
+        return months;
+    }
+
+    /**
+     * Conversion de la table : une partition par mois, du plus ancien message aux mois à venir
+     * La clé de partitionnement doit faire partie de la clé primaire
+     */
+    private void partitionTable() {
+        LocalDateTime oldest = jdbcTemplate.queryForObject("SELECT MIN(created_at) FROM MESSAGES", LocalDateTime.class);
+        YearMonth first = oldest != null ? YearMonth.from(oldest) : YearMonth.now();
+        YearMonth last = YearMonth.now().plusMonths(monthsAhead);
+
+        StringJoiner definitions = new StringJoiner(", ", "(", ")");
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            definitions.add(partitionDefinition(month));
+        }
+        definitions.add("PARTITION pmax VALUES LESS THAN (MAXVALUE)");
+
+        log.info("Partitionnement de MESSAGES par mois ({} à {}), reconstruction de la table", first, last);
+        jdbcTemplate.update("UPDATE MESSAGES SET created_at = COALESCE(updated_at, NOW(6)) WHERE created_at IS NULL");
+        jdbcTemplate.execute("ALTER TABLE MESSAGES MODIFY created_at DATETIME(6) NOT NULL, "
+                + "DROP PRIMARY KEY, ADD PRIMARY KEY (id, created_at)");
+        jdbcTemplate.execute("ALTER TABLE MESSAGES PARTITION BY RANGE COLUMNS(created_at) " + definitions);
+    }
+
+    /**
+     * Crée les partitions des prochains mois en découpant pmax (vide : opération instantanée)
+     */
+    private void addFuturePartitions() {
+        List<YearMonth> months = partitions();
+        if (months.isEmpty()) {
+            return;
+        }
+        YearMonth last = months.get(months.size() - 1);
+        YearMonth target = YearMonth.now().plusMonths(monthsAhead);
+        if (!last.isBefore(target)) {
+            return;
+        }
+        StringJoiner definitions = new StringJoiner(", ", "(", ")");
+        for (YearMonth month = last.plusMonths(1); !month.isAfter(target); month = month.plusMonths(1)) {
+            definitions.add(partitionDefinition(month));
+        }
+        definitions.add("PARTITION pmax VALUES LESS THAN (MAXVALUE)");
+        jdbcTemplate.execute("ALTER TABLE MESSAGES REORGANIZE PARTITION pmax INTO " + definitions);
+        log.info("Partitions de MESSAGES créées jusqu'à {}", target);
+    }
+
+    /**
+     * Supprime les partitions antérieures au mois donné, vidées par l'archivage
+     * (une partition qui contiendrait encore des messages est conservée)
+     */
+    private void dropPartitionsBefore(YearMonth limit) {
+        for (YearMonth month : partitions()) {
+            if (!month.isBefore(limit)) {
+                break;
+            }
+            String name = month.format(PARTITION_NAME);
+            Integer remaining = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM (SELECT 1 FROM MESSAGES PARTITION (" + name + ") LIMIT 1) t", Integer.class);
+            if (remaining != null && remaining == 0) {
+                jdbcTemplate.execute("ALTER TABLE MESSAGES DROP PARTITION " + name);
+                log.info("Partition {} de MESSAGES supprimée", name);
+            }
+        }
+    }
+
+    private static String partitionDefinition(YearMonth month) {
+        LocalDate upperBound = month.plusMonths(1).atDay(1);
+        return "PARTITION " + month.format(PARTITION_NAME) + " VALUES LESS THAN ('" + upperBound + "')";
+    }
+}
@@ -0,0 +1,21 @@
+package com.chatop.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Événement publié par MessageService.sendMessage, dans la transaction d'envoi
+ *
+ * Les abonnés qui notifient l'extérieur l'écoutent après le commit
+ * (@TransactionalEventListener AFTER_COMMIT) : un message annulé n'est jamais poussé.
+ *
+ * @param messageId l'ID du message
+ * @param rentalId l'ID de la location
+ * @param senderId l'ID de l'expéditeur
+ * @param ownerId l'ID du propriétaire de la location (destinataire)
+ * @param message le contenu du message
+ * @param createdAt la date d'envoi
+ * @param publishedNanos l'instant de publication (System.nanoTime, avant le commit), pour la latence de livraison
+ */
+public record MessageCreatedEvent(Long messageId, Long rentalId, Long senderId, Long ownerId,
+                                  String message, LocalDateTime createdAt, long publishedNanos) {
+}
@@ -0,0 +1,555 @@
+package com.chatop.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Enregistrement différé des messages (write-behind), activé par message.ingest.write-behind=true
+ *
+ * - POST /api/messages valide le message (location, expéditeur) puis le dépose dans une file bornée
+ *   (message.ingest.queue-capacity) et répond 202 sans attendre la base
+ * - Un virtual thread unique vide la file : un INSERT multi-lignes par lot de message.ingest.batch-size
+ *   messages au plus, ou après message.ingest.flush-interval (délai d'attente des messages suivants)
+ * - File pleine (base trop lente ou indisponible) : le message est refusé (503), jamais mis en attente
+ *
+ * Durabilité (message.ingest.durability) :
+ * - none : les messages en file sont perdus si le processus s'arrête brutalement
+ * - journal : chaque message est ajouté au journal local (message.ingest.journal-path) avant la réponse,
+ *   rejoué au démarrage ; un crash de la machine peut perdre les dernières écritures non synchronisées
+ * - fsync : idem, avec synchronisation disque à chaque message (plus lent, aucun message accepté perdu)
+ *
+ * Le journal contient une ligne par message (M) et un point de reprise (C) après chaque lot enregistré.
+ * Au redémarrage, les messages postérieurs au dernier point de reprise sont réinsérés : un crash entre
+ * le commit d'un lot et l'écriture de son point de reprise produit des doublons (au moins une fois).
+ * Le journal est vidé dès que tous les messages sont enregistrés et qu'il dépasse
+ * message.ingest.journal-compact-size.
+ *
+ * Métriques : chatop.messages.ingest.queue (profondeur de la file), chatop.messages.ingest.batch.size,
+ * chatop.messages.ingest.flush (durée d'un lot) et chatop.messages.ingest.rejected.
+ */
+@Service
+@Slf4j
+public class MessageIngestService {
+
+    /**
+     * Garantie apportée à un message accepté (202)
+     */
+    public enum Durability {
+        NONE,
+        JOURNAL,
+        FSYNC
+    }
+
+    private static final String INSERT_SQL =
+            "INSERT INTO MESSAGES (rental_id, user_id, owner_id, message, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+    // Attente maximale entre deux tentatives d'enregistrement d'un lot
+    private static final long MAX_BACKOFF_MILLIS = 5000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final boolean enabled;
+    private final ArrayBlockingQueue<PendingMessage> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Durability durability;
+    private final Path journalPath;
+    private final long journalCompactBytes;
+
+    // Ordre du journal = ordre de la file : numérotation, écriture et dépôt sous le même verrou
+    private final ReentrantLock journalLock = new ReentrantLock();
+    private FileChannel journal;
+    private long lastSequence;
+    private long lastCheckpoint;
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    private final DistributionSummary batchSizes;
+    private final Timer flushTimer;
+    private final Counter rejected;
+
+    public MessageIngestService(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            ApplicationEventPublisher eventPublisher,
+            MeterRegistry meterRegistry,
+            @Value("${message.ingest.write-behind:false}") boolean enabled,
+            @Value("${message.ingest.queue-capacity:10000}") int queueCapacity,
+            @Value("${message.ingest.batch-size:500}") int batchSize,
+            @Value("${message.ingest.flush-interval:5ms}") Duration flushInterval,
+            @Value("${message.ingest.durability:journal}") String durability,
+            @Value("${message.ingest.journal-path:./data/messages.journal}") String journalPath,
+            @Value("${message.ingest.journal-compact-size:16MB}") DataSize journalCompactSize
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.durability = Durability.valueOf(durability.trim().toUpperCase(Locale.ROOT));
+        this.journalPath = Path.of(journalPath);
+        this.journalCompactBytes = journalCompactSize.toBytes();
+
+        Gauge.builder("chatop.messages.ingest.queue", queue, ArrayBlockingQueue::size)
+                .description("Messages acceptés en attente d'enregistrement")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("chatop.messages.ingest.batch.size")
+                .description("Nombre de messages par INSERT multi-lignes")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("chatop.messages.ingest.flush")
+                .description("Durée d'enregistrement d'un lot de messages")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("chatop.messages.ingest.rejected")
+                .description("Messages refusés (file pleine)")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Rejoue le journal (messages acceptés mais pas encore enregistrés) puis démarre l'enregistrement
+     * Une fois l'application prête : les abonnés aux MessageCreatedEvent sont tous enregistrés
+     * (avant, les messages sont refusés avec 503)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        if (durability != Durability.NONE) {
+            replayJournal();
+        }
+        running = true;
+        flusher = Thread.ofVirtual().name("message-flusher").start(this::run);
+        log.info("Enregistrement différé des messages actif (lots de {} messages, durabilité {})", batchSize, durability);
+    }
+
+    /**
+     * Accepte un message validé : journalisé (selon la durabilité) puis mis en file
+     *
+     * @throws MessageRejectedException (503) si la file est pleine ou si l'application démarre ou s'arrête,
+     *         (500) si le journal ne peut pas être écrit
+     */
+    public void submit(Long rentalId, Long senderId, Long ownerId, String message, LocalDateTime createdAt) {
+        journalLock.lock();
+        try {
+            // Seul le flusher retire de la file : une place libre ici le reste jusqu'au put
+            if (!running) {
+                throw new MessageRejectedException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Envoi de messages momentanément indisponible, réessayez dans quelques instants");
+            }
+            if (queue.remainingCapacity() == 0) {
+                rejected.increment();
+                throw new MessageRejectedException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Trop de messages en attente, réessayez dans quelques instants");
+            }
+            PendingMessage pending = new PendingMessage(lastSequence + 1, rentalId, senderId, ownerId, message, createdAt);
+            if (journal != null) {
+                journalMessage(pending);
+            }
+            lastSequence = pending.sequence();
+            queue.add(pending);
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    /**
+     * Ajoute le message au journal avant sa mise en file
+     * Écriture en échec : la ligne partielle est retirée, elle ne doit pas corrompre la suivante
+     */
+    private void journalMessage(PendingMessage pending) {
+        long position = -1;
+        try {
+            position = journal.position();
+            append(pending.toJournalLine());
+            if (durability == Durability.FSYNC) {
+                journal.force(false);
+            }
+        } catch (IOException e) {
+            if (position >= 0) {
+                try {
+                    journal.truncate(position);
+                } catch (IOException truncate) {
+                    e.addSuppressed(truncate);
+                }
+            }
+            log.error("Écriture du journal des messages impossible", e);
+            throw new MessageRejectedException(HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Le message n'a pas pu être enregistré, réessayez plus tard", e);
+        }
+    }
+
+    /**
+     * Arrêt : plus aucun message accepté, la file est vidée avant la fermeture de la base
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        journalLock.lock();
+        try {
+            running = false;
+        } finally {
+            journalLock.unlock();
+        }
+        if (flusher != null) {
+            flusher.join(Duration.ofSeconds(30));
+        }
+        closeJournal();
+    }
+
+    /**
+     * Boucle du flusher : ne s'arrête qu'avec l'application, quelle que soit l'erreur
+     * Un lot en échec est retenté tel quel (il reste dans le journal jusqu'à son point de reprise)
+     */
+    private void run() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        long backoff = 50;
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty() && !collect(batch)) {
+                    continue;
+                }
+                if (!flush(batch)) {
+                    return;
+                }
+                batch.clear();
+                backoff = 50;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                if (!running) {
+                    log.error("Arrêt : {} message(s) non enregistré(s), conservés dans le journal", batch.size() + queue.size(), e);
+                    return;
+                }
+                log.error("Erreur inattendue lors de l'enregistrement de {} message(s), nouvelle tentative dans {} ms",
+                        batch.size(), backoff, e);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoff = Math.min(MAX_BACKOFF_MILLIS, backoff * 2);
+            }
+        }
+    }
+
+    /**
+     * Prend un lot dans la file : batch-size messages au plus, en attendant les suivants pendant flush-interval
+     *
+     * @return false si la file est restée vide
+     */
+    private boolean collect(List<PendingMessage> batch) throws InterruptedException {
+        PendingMessage first = queue.poll(200, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return false;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                break;
+            }
+            PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return true;
+    }
+
+    /**
+     * Enregistre un lot
+     * - base indisponible : nouvelles tentatives jusqu'au retour de la base (la file se remplit, les
+     *   nouveaux messages sont refusés)
+     * - contrainte violée : insertion ligne par ligne, un message invalide n'empêche pas les autres
+     *
+     * @return false si le lot n'a pas pu être enregistré avant l'arrêt (il reste dans le journal)
+     */
+    private boolean flush(List<PendingMessage> batch) throws InterruptedException {
+        long sequence = batch.get(batch.size() - 1).sequence();
+        long backoff = 50;
+        while (true) {
+            try {
+                flushTimer.record(() -> transactionTemplate.executeWithoutResult(status -> insert(batch)));
+                batchSizes.record(batch.size());
+                checkpoint(sequence);
+                return true;
+            } catch (DataIntegrityViolationException e) {
+                return insertOneByOne(batch);
+            } catch (RuntimeException e) {
+                if (!running) {
+                    log.error("Arrêt : {} message(s) non enregistré(s), conservés dans le journal : {}",
+                            batch.size() + queue.size(), e.getMessage());
+                    return false;
+                }
+                log.warn("Enregistrement d'un lot de {} messages impossible, nouvelle tentative dans {} ms : {}",
+                        batch.size(), backoff, e.getMessage());
+                Thread.sleep(backoff);
+                backoff = Math.min(MAX_BACKOFF_MILLIS, backoff * 2);
+            }
+        }
+    }
+
+    /**
+     * Insertion ligne par ligne, dans l'ordre : chaque message traité (enregistré ou abandonné) est retiré
+     * du lot et couvert par un point de reprise, une nouvelle tentative ne le réinsère donc jamais
+     * Base indisponible pendant ce traitement : nouvelles tentatives, comme pour un lot
+     *
+     * @return false si le reste du lot n'a pas pu être enregistré avant l'arrêt (il reste dans le journal)
+     */
+    private boolean insertOneByOne(List<PendingMessage> batch) throws InterruptedException {
+        long backoff = 50;
+        while (!batch.isEmpty()) {
+            PendingMessage pending = batch.get(0);
+            try {
+                transactionTemplate.executeWithoutResult(status -> insert(List.of(pending)));
+                batchSizes.record(1);
+            } catch (DataIntegrityViolationException e) {
+                log.error("Message abandonné (location {}, expéditeur {}) : {}",
+                        pending.rentalId(), pending.senderId(), e.getMessage());
+            } catch (RuntimeException e) {
+                if (!running) {
+                    log.error("Arrêt : {} message(s) non enregistré(s), conservés dans le journal : {}",
+                            batch.size() + queue.size(), e.getMessage());
+                    return false;
+                }
+                log.warn("Enregistrement d'un message impossible, nouvelle tentative dans {} ms : {}", backoff, e.getMessage());
+                Thread.sleep(backoff);
+                backoff = Math.min(MAX_BACKOFF_MILLIS, backoff * 2);
+                continue;
+            }
+            batch.remove(0);
+            checkpoint(pending.sequence());
+            backoff = 50;
+        }
+        return true;
+    }
+
+    /**
+     * INSERT multi-lignes (lot JDBC réécrit par le driver MySQL, rewriteBatchedStatements)
+     * Les IDs générés servent aux MessageCreatedEvent, publiés dans la transaction du lot
+     */
+    private void insert(List<PendingMessage> batch) {
+        GeneratedKeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(INSERT_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        PendingMessage pending = batch.get(i);
+                        Timestamp createdAt = Timestamp.valueOf(pending.createdAt());
+                        ps.setLong(1, pending.rentalId());
+                        ps.setLong(2, pending.senderId());
+                        ps.setLong(3, pending.ownerId());
+                        ps.setString(4, pending.message());
+                        ps.setTimestamp(5, createdAt);
+                        ps.setTimestamp(6, createdAt);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return batch.size();
+                    }
+                }, keys);
+
+        List<Map<String, Object>> keyList = keys.getKeyList();
+        for (int i = 0; i < batch.size() && i < keyList.size(); i++) {
+            PendingMessage pending = batch.get(i);
+            Long id = ((Number) keyList.get(i).values().iterator().next()).longValue();
+            eventPublisher.publishEvent(new MessageCreatedEvent(id, pending.rentalId(), pending.senderId(),
+                    pending.ownerId(), pending.message(), pending.createdAt(), System.nanoTime()));
+        }
+    }
+
+    // ----- Journal -----
+
+    /**
+     * Relit le journal, réinsère les messages postérieurs au dernier point de reprise puis le vide
+     * (appelé avant le démarrage du flusher et l'acceptation des messages : aucun accès concurrent)
+     */
+    private void replayJournal() throws IOException {
+        if (journalPath.getParent() != null) {
+            Files.createDirectories(journalPath.getParent());
+        }
+        List<PendingMessage> pending = new ArrayList<>();
+        if (Files.exists(journalPath)) {
+            long checkpoint = 0;
+            // Chaque ligne est écrite avec son retour à la ligne : une dernière ligne sans lui est tronquée
+            // (arrêt brutal pendant l'écriture) et peut sembler complète (Base64 coupé sur 4 caractères)
+            boolean lastLineComplete = endsWithNewline(journalPath);
+            try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+                String line = reader.readLine();
+                while (line != null) {
+                    String next = reader.readLine();
+                    if (next == null && !lastLineComplete) {
+                        log.warn("Dernière ligne du journal des messages tronquée, ignorée");
+                        break;
+                    }
+                    try {
+                        if (line.startsWith("C ")) {
+                            checkpoint = Long.parseLong(line.substring(2).trim());
+                            long done = checkpoint;
+                            pending.removeIf(message -> message.sequence() <= done);
+                        } else if (line.startsWith("M ")) {
+                            PendingMessage message = PendingMessage.fromJournalLine(line);
+                            if (message.sequence() > checkpoint) {
+                                pending.add(message);
+                            }
+                        }
+                    } catch (RuntimeException e) {
+                        log.warn("Ligne du journal des messages ignorée : {}", e.getMessage());
+                    }
+                    line = next;
+                }
+            }
+        }
+
+        for (int from = 0; from < pending.size(); from += batchSize) {
+            List<PendingMessage> batch = pending.subList(from, Math.min(pending.size(), from + batchSize));
+            transactionTemplate.executeWithoutResult(status -> insert(batch));
+        }
+        if (!pending.isEmpty()) {
+            log.info("{} message(s) du journal réinséré(s)", pending.size());
+        }
+
+        journal = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        journal.truncate(0);
+        journal.force(true);
+    }
+
+    /**
+     * Point de reprise après l'enregistrement d'un lot ; journal vidé si tout est enregistré
+     */
+    private void checkpoint(long sequence) {
+        if (journal == null) {
+            return;
+        }
+        journalLock.lock();
+        try {
+            lastCheckpoint = sequence;
+            if (lastCheckpoint == lastSequence && journal.size() > journalCompactBytes) {
+                journal.truncate(0);
+                journal.position(0);
+            } else {
+                append("C " + sequence + "\n");
+            }
+            if (durability == Durability.FSYNC) {
+                journal.force(false);
+            }
+        } catch (IOException e) {
+            // Sans point de reprise, ces messages seraient réinsérés au prochain démarrage
+            log.error("Écriture du point de reprise du journal impossible", e);
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    private static boolean endsWithNewline(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() == 0) {
+                return true;
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, channel.size() - 1);
+            return last.get(0) == '\n';
+        }
+    }
+
+    private void append(String line) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            journal.write(buffer);
+        }
+    }
+
+    private void closeJournal() {
+        journalLock.lock();
+        try {
+            if (journal != null) {
+                journal.force(true);
+                journal.close();
+                journal = null;
+            }
+        } catch (IOException e) {
+            log.warn("Fermeture du journal des messages impossible : {}", e.getMessage());
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    /**
+     * Message accepté, en attente d'enregistrement
+     */
+    record PendingMessage(long sequence, Long rentalId, Long senderId, Long ownerId,
+                          String message, LocalDateTime createdAt) {
+
+        String toJournalLine() {
+            String text = Base64.getEncoder().encodeToString(message.getBytes(StandardCharsets.UTF_8));
+            return "M " + sequence + " " + rentalId + " " + senderId + " " + ownerId + " " + createdAt + " " + text + "\n";
+        }
+
+        static PendingMessage fromJournalLine(String line) {
+            String[] parts = line.split(" ");
+            if (parts.length != 7) {
+                throw new IllegalArgumentException("ligne incomplète");
+            }
+            String text = new String(Base64.getDecoder().decode(parts[6]), StandardCharsets.UTF_8);
+            return new PendingMessage(Long.parseLong(parts[1]), Long.parseLong(parts[2]), Long.parseLong(parts[3]),
+                    Long.parseLong(parts[4]), text, LocalDateTime.parse(parts[5]));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.chatop.service;
+
+import com.chatop.repository.MessageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+/**
+ * Rattrapage de MESSAGES.owner_id pour les messages antérieurs à sa dénormalisation
+ *
+ * Lancé une fois l'application prête, en arrière-plan (virtual thread) : les nouveaux messages
+ * sont déjà enregistrés avec leur propriétaire, seuls les anciens sont concernés.
+ * - Par tranches d'IDs (message.backfill.batch-size), une transaction courte par tranche :
+ *   jamais de verrou sur toute la table, les envois de messages continuent pendant le rattrapage
+ * - Pause de message.backfill.pause entre deux tranches, pour ménager la base
+ * - Idempotent (WHERE owner_id IS NULL) : un redémarrage reprend simplement, plusieurs nœuds
+ *   peuvent l'exécuter en même temps
+ *
+ * Tant qu'il n'est pas terminé, GET /api/messages/received ne voit pas les messages non rattrapés.
+ */
+@Component
+@Slf4j
+public class MessageOwnerBackfill {
+
+    private final MessageRepository messageRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration pause;
+
+    public MessageOwnerBackfill(
+            MessageRepository messageRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${message.backfill.enabled:true}") boolean enabled,
+            @Value("${message.backfill.batch-size:5000}") int batchSize,
+            @Value("${message.backfill.pause:50ms}") Duration pause
+    ) {
+        this.messageRepository = messageRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.pause = pause;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        Thread.ofVirtual().name("message-owner-backfill").start(this::run);
+    }
+
+    private void run() {
+        try {
+            Long maxId = messageRepository.findMaxIdWithoutOwner();
+            if (maxId == null) {
+                return;
+            }
+            log.info("Rattrapage du propriétaire des messages jusqu'à l'ID {}", maxId);
+
+            long updated = 0;
+            long start = System.currentTimeMillis();
+            for (long from = 0; from < maxId; from += batchSize) {
+                long to = Math.min(maxId, from + batchSize);
+                long fromId = from;
+                Integer rows = transactionTemplate.execute(status -> messageRepository.backfillOwner(fromId, to));
+                updated += rows != null ? rows : 0;
+                if (rows != null && rows > 0 && !pause.isZero()) {
+                    Thread.sleep(pause);
+                }
+            }
+            log.info("Rattrapage terminé : {} message(s) mis à jour en {} s", updated,
+                    (System.currentTimeMillis() - start) / 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // Repris au prochain démarrage
+            log.error("Rattrapage du propriétaire des messages interrompu", e);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.chatop.service;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Message valide refusé par l'enregistrement différé (MessageIngestService), sans être enregistré
+ *
+ * - 503 Service Unavailable : file pleine, démarrage ou arrêt en cours (réessayer plus tard)
+ * - 500 Internal Server Error : écriture du journal impossible (disque plein ou en erreur)
+ */
+@Getter
+public class MessageRejectedException extends RuntimeException {
+
+    private final HttpStatus status;
+
+    public MessageRejectedException(HttpStatus status, String message, Throwable cause) {
+        super(message, cause);
+        this.status = status;
+    }
+
+    public MessageRejectedException(HttpStatus status, String message) {
+        this(status, message, null);
+    }
+}
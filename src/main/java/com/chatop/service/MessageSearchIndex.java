@@ -0,0 +1,549 @@
+package com.chatop.service;
+
+import com.chatop.model.Message;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.fr.FrenchAnalyzer;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.util.ElisionFilter;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Index plein texte des messages, embarqué (Lucene), pour la recherche d'un propriétaire dans ses messages reçus
+ *
+ * - Un document par message : texte, propriétaire (filtre), date et ID (tri du plus récent au plus ancien)
+ * - Mis à jour après le commit de chaque message (MessageCreatedEvent, y compris les lots write-behind),
+ *   visible par la recherche sous search.refresh-interval
+ * - Rattrapage périodique (search.sync-interval) des messages enregistrés sans passer par ce nœud
+ *   (autres nœuds, arrêt brutal) : même principe que RentalExistenceFilter, les IDs jusqu'à indexedUpTo
+ *   sont indexés, et indexedUpTo ne dépasse que les messages envoyés depuis plus de search.settle-delay.
+ * - Premier rattrapage de chaque démarrage (construction complète au premier lancement, à partir de MESSAGES
+ *   et MESSAGES_ARCHIVE) exécuté en arrière-plan, sur un thread dédié : il ne bloque ni le démarrage ni
+ *   les tâches planifiées ; les passages suivants ne reprennent que les nouveaux messages
+ * - Indexer deux fois un message le remplace (clé : son ID)
+ *
+ * L'index est propre à chaque nœud (search.index-path local, jamais partagé). Il est ouvert au premier
+ * usage, pas au démarrage : un dossier inaccessible ou verrouillé (autre instance sur le même chemin)
+ * n'empêche pas l'application de démarrer. La recherche répond alors 503 et l'ouverture est retentée
+ * (au plus une fois par OPEN_RETRY) ; les messages non indexés entre-temps sont rattrapés par sync().
+ *
+ * Requêtes : mots (tous requis), "expression exacte", préfixe* ; sans accents ni casse
+ * ("reponse" trouve "Réponse"), articles élidés ignorés ("appartement" trouve "l'appartement").
+ *
+ * Métriques : chatop.messages.search (durée des recherches), chatop.messages.search.documents.
+ */
+@Service
+@Slf4j
+public class MessageSearchIndex {
+
+    // Longueur maximale d'une recherche
+    public static final int MAX_QUERY_LENGTH = 200;
+
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int PAGE_SIZE = 5_000;
+    private static final Duration OPEN_RETRY = Duration.ofSeconds(30);
+    private static final String COMMIT_INDEXED_UP_TO = "indexedUpTo";
+    private static final Pattern QUERY_PART = Pattern.compile("\"([^\"]*)\"?|(\\S+)");
+
+    private static final String ID = "id";
+    private static final String ID_SORT = "id_sort";
+    private static final String OWNER = "owner";
+    private static final String RENTAL = "rental";
+    private static final String SENDER = "sender";
+    private static final String TEXT = "text";
+    private static final String CREATED = "created";
+    private static final Sort NEWEST_FIRST = new Sort(
+            new SortField(CREATED, SortField.Type.LONG, true),
+            new SortField(ID_SORT, SortField.Type.LONG, true));
+
+    private static final String SELECT = "SELECT m.id, m.rental_id, m.user_id, r.owner_id, m.message, m.created_at FROM ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Path indexPath;
+    private final Duration settleDelay;
+    private final Analyzer analyzer = new MessageAnalyzer();
+    private final Timer searchTimer;
+
+    // Ouverture de l'index (une seule tentative à la fois)
+    private final ReentrantLock openLock = new ReentrantLock();
+    // Rattrapages (construction en arrière-plan, puis passages planifiés) : un seul à la fois
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final AtomicBoolean building = new AtomicBoolean();
+
+    // Null tant que l'index n'est pas ouvert ; searcherManager est publié avant writer
+    private volatile IndexWriter writer;
+    private volatile SearcherManager searcherManager;
+    private volatile long nextOpenAttempt;
+
+    // Premier rattrapage terminé depuis le démarrage
+    private volatile boolean built;
+
+    // Plus grand ID en dessous duquel tous les messages sont dans l'index (enregistré à chaque commit)
+    private volatile long indexedUpTo;
+
+    public MessageSearchIndex(
+            JdbcTemplate jdbcTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${search.index-path:./data/search-index}") Path indexPath,
+            @Value("${search.settle-delay:PT1M}") Duration settleDelay
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.indexPath = indexPath;
+        this.settleDelay = settleDelay;
+        this.searchTimer = Timer.builder("chatop.messages.search")
+                .description("Durée des recherches dans les messages reçus")
+                .register(meterRegistry);
+        Gauge.builder("chatop.messages.search.documents", this, index -> {
+                    IndexWriter current = index.writer;
+                    return current != null ? current.getDocStats().numDocs : 0;
+                })
+                .description("Messages présents dans l'index de recherche")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Indexe le message après le commit (un message annulé n'est jamais trouvé)
+     * Un échec, ou un index pas encore ouvert, est rattrapé par sync()
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onMessageCreated(MessageCreatedEvent event) {
+        if (!open()) {
+            return;
+        }
+        try {
+            index(event.messageId(), event.rentalId(), event.senderId(), event.ownerId(), event.message(), event.createdAt());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Message {} non indexé (rattrapé au prochain passage) : {}", event.messageId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Messages reçus par un propriétaire correspondant à la recherche, du plus récent au plus ancien
+     *
+     * @param ownerId l'ID du propriétaire
+     * @param query la recherche : mots, "expression exacte", préfixe*
+     * @param before le dernier message de la page précédente (null pour la première page)
+     * @param limit le nombre de messages au plus
+     * @return les messages trouvés
+     * @throws IllegalArgumentException si la recherche est vide, trop longue ou contient un préfixe trop court
+     * @throws IllegalStateException si l'index ne peut pas être ouvert
+     */
+    public List<Message> search(Long ownerId, String query, MessageService.Cursor before, int limit) {
+        List<Query> parts = parse(query);
+        if (!open()) {
+            throw new IllegalStateException("La recherche est momentanément indisponible, réessayez plus tard");
+        }
+        BooleanQuery.Builder builder = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(OWNER, String.valueOf(ownerId))), BooleanClause.Occur.FILTER);
+        for (Query part : parts) {
+            builder.add(part, BooleanClause.Occur.MUST);
+        }
+        Query luceneQuery = builder.build();
+
+        return searchTimer.record(() -> {
+            try {
+                IndexSearcher searcher = searcherManager.acquire();
+                try {
+                    TopDocs hits = before == null
+                            ? searcher.search(luceneQuery, limit, NEWEST_FIRST)
+                            // Valeurs de tri uniques (ID) : le numéro de document du curseur n'intervient pas
+                            : searcher.searchAfter(new FieldDoc(0, Float.NaN,
+                                    new Object[]{toMicros(before.createdAt()), before.id()}), luceneQuery, limit, NEWEST_FIRST);
+                    StoredFields storedFields = searcher.storedFields();
+                    List<Message> messages = new ArrayList<>(hits.scoreDocs.length);
+                    for (ScoreDoc hit : hits.scoreDocs) {
+                        messages.add(toMessage(storedFields.document(hit.doc), ownerId));
+                    }
+                    return messages;
+                } finally {
+                    searcherManager.release(searcher);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Rend visibles les derniers messages indexés
+     */
+    @Scheduled(fixedDelayString = "${search.refresh-interval:PT1S}")
+    public void refresh() throws IOException {
+        SearcherManager current = searcherManager;
+        if (current != null) {
+            current.maybeRefresh();
+        }
+    }
+
+    /**
+     * Indexe les messages enregistrés depuis le dernier passage, puis valide l'index (commit)
+     *
+     * Premier passage depuis le démarrage : lancé sur un thread dédié (construction complète possible),
+     * la tâche planifiée rend la main aussitôt ; les passages suivants, courts, s'exécutent ici
+     */
+    @Scheduled(fixedDelayString = "${search.sync-interval:PT1M}")
+    public void sync() {
+        if (!built) {
+            startBuild();
+            return;
+        }
+        if (!syncLock.tryLock()) {
+            return;
+        }
+        try {
+            catchUp();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Rattrapage de l'index de recherche interrompu (repris au prochain passage) : {}", e.getMessage());
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Premier rattrapage en arrière-plan ; en cas d'échec, relancé au prochain passage de sync()
+     */
+    private void startBuild() {
+        if (!building.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofVirtual().name("search-index-build").start(() -> {
+            syncLock.lock();
+            try {
+                long started = System.nanoTime();
+                long indexed = catchUp();
+                built = true;
+                log.info("Index de recherche à jour : {} message(s) indexé(s) en {} s", indexed,
+                        Duration.ofNanos(System.nanoTime() - started).toSeconds());
+            } catch (IOException | RuntimeException e) {
+                log.warn("Construction de l'index de recherche interrompue (reprise au prochain passage) : {}", e.getMessage());
+            } finally {
+                syncLock.unlock();
+                building.set(false);
+            }
+        });
+    }
+
+    /**
+     * @return le nombre de messages indexés, 0 si l'index n'est pas ouvert
+     */
+    private long catchUp() throws IOException {
+        if (!open()) {
+            return 0;
+        }
+        // Lu avant l'indexation : tous ces messages sont déjà commités, donc indexés ci-dessous
+        long settled = settledMaxId();
+
+        long after = indexedUpTo;
+        long indexed = 0;
+        for (String table : List.of("MESSAGES_ARCHIVE", "MESSAGES")) {
+            indexed += indexAfter(table, after);
+        }
+
+        long upTo = Math.max(indexedUpTo, settled);
+        writer.setLiveCommitData(Map.of(COMMIT_INDEXED_UP_TO, String.valueOf(upTo)).entrySet());
+        writer.commit();
+        indexedUpTo = upTo;
+        searcherManager.maybeRefresh();
+        if (indexed > 0) {
+            log.debug("Index de recherche : {} message(s) indexé(s), complet jusqu'à l'ID {}", indexed, upTo);
+        }
+        return indexed;
+    }
+
+    /**
+     * Ouvre l'index au premier usage
+     *
+     * @return false si l'index ne peut pas être ouvert (dossier verrouillé par une autre instance,
+     *         inaccessible...) : nouvelle tentative après OPEN_RETRY
+     */
+    private boolean open() {
+        if (writer != null) {
+            return true;
+        }
+        openLock.lock();
+        try {
+            if (writer != null) {
+                return true;
+            }
+            if (nextOpenAttempt != 0 && System.nanoTime() - nextOpenAttempt < 0) {
+                return false;
+            }
+            Directory directory = null;
+            try {
+                directory = FSDirectory.open(indexPath);
+                IndexWriterConfig config = new IndexWriterConfig(analyzer).setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+                IndexWriter opened = new IndexWriter(directory, config);
+                for (Map.Entry<String, String> entry : opened.getLiveCommitData()) {
+                    if (COMMIT_INDEXED_UP_TO.equals(entry.getKey())) {
+                        indexedUpTo = Long.parseLong(entry.getValue());
+                    }
+                }
+                searcherManager = new SearcherManager(opened, null);
+                writer = opened;
+                log.info("Index de recherche ouvert ({}), messages indexés jusqu'à l'ID {}", indexPath, indexedUpTo);
+                return true;
+            } catch (IOException | RuntimeException e) {
+                nextOpenAttempt = System.nanoTime() + OPEN_RETRY.toNanos();
+                log.warn("Index de recherche indisponible ({}), nouvelle tentative dans {} s : {}",
+                        indexPath, OPEN_RETRY.toSeconds(), e.getMessage());
+                closeQuietly(directory);
+                return false;
+            }
+        } finally {
+            openLock.unlock();
+        }
+    }
+
+    private static void closeQuietly(Directory directory) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            directory.close();
+        } catch (IOException e) {
+            log.debug("Fermeture du dossier de l'index : {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        openLock.lock();
+        try {
+            if (writer != null) {
+                searcherManager.close();
+                writer.close();
+                writer = null;
+                searcherManager = null;
+            }
+        } finally {
+            openLock.unlock();
+        }
+    }
+
+    /**
+     * Traduit une recherche en requêtes Lucene (toutes requises)
+     */
+    List<Query> parse(String query) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("La recherche ne peut pas être vide");
+        }
+        if (query.length() > MAX_QUERY_LENGTH) {
+            throw new IllegalArgumentException("La recherche ne peut pas dépasser " + MAX_QUERY_LENGTH + " caractères");
+        }
+        List<Query> parts = new ArrayList<>();
+        Matcher matcher = QUERY_PART.matcher(query);
+        while (matcher.find()) {
+            String phrase = matcher.group(1);
+            String word = matcher.group(2);
+            if (phrase != null) {
+                addTerms(parts, phrase);
+            } else if (word.endsWith("*")) {
+                addPrefix(parts, word.replaceAll("\\*+$", ""));
+            } else {
+                addTerms(parts, word);
+            }
+        }
+        if (parts.isEmpty()) {
+            throw new IllegalArgumentException("La recherche ne contient aucun mot");
+        }
+        return parts;
+    }
+
+    /**
+     * Mots consécutifs : un terme, ou une expression exacte ("place de parking", l'appartement)
+     */
+    private void addTerms(List<Query> parts, String text) {
+        List<String> terms = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        analyze(text, terms, positions);
+        if (terms.size() == 1) {
+            parts.add(new TermQuery(new Term(TEXT, terms.get(0))));
+        } else if (!terms.isEmpty()) {
+            PhraseQuery.Builder phrase = new PhraseQuery.Builder();
+            for (int i = 0; i < terms.size(); i++) {
+                phrase.add(new Term(TEXT, terms.get(i)), positions.get(i));
+            }
+            parts.add(phrase.build());
+        }
+    }
+
+    /**
+     * Préfixe (park* trouve parking) ; les mots qui le précèdent dans le même mot composé sont requis
+     */
+    private void addPrefix(List<Query> parts, String text) {
+        List<String> terms = new ArrayList<>();
+        analyze(text, terms, new ArrayList<>());
+        if (terms.isEmpty()) {
+            return;
+        }
+        String prefix = terms.remove(terms.size() - 1);
+        if (prefix.length() < MIN_PREFIX_LENGTH) {
+            throw new IllegalArgumentException("Un préfixe doit compter au moins " + MIN_PREFIX_LENGTH + " caractères");
+        }
+        for (String term : terms) {
+            parts.add(new TermQuery(new Term(TEXT, term)));
+        }
+        parts.add(new PrefixQuery(new Term(TEXT, new BytesRef(prefix))));
+    }
+
+    private void analyze(String text, List<String> terms, List<Integer> positions) {
+        try (TokenStream stream = analyzer.tokenStream(TEXT, text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            PositionIncrementAttribute increment = stream.addAttribute(PositionIncrementAttribute.class);
+            stream.reset();
+            int position = -1;
+            while (stream.incrementToken()) {
+                position += increment.getPositionIncrement();
+                terms.add(term.toString());
+                positions.add(position);
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long indexAfter(String table, long after) throws IOException {
+        long indexed = 0;
+        long cursor = after;
+        int rows;
+        do {
+            List<Long> ids = new ArrayList<>();
+            jdbcTemplate.query(SELECT + table + " m JOIN RENTALS r ON r.id = m.rental_id WHERE m.id > ? ORDER BY m.id LIMIT ?",
+                    (RowCallbackHandler) resultSet -> {
+                        long id = resultSet.getLong(1);
+                        try {
+                            index(id, resultSet.getLong(2), resultSet.getLong(3), resultSet.getLong(4),
+                                    resultSet.getString(5), resultSet.getObject(6, LocalDateTime.class));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        ids.add(id);
+                    }, cursor, PAGE_SIZE);
+            rows = ids.size();
+            if (rows > 0) {
+                cursor = ids.get(rows - 1);
+            }
+            indexed += rows;
+        } while (rows == PAGE_SIZE);
+        return indexed;
+    }
+
+    /**
+     * Plus grand ID parmi les messages envoyés depuis plus de search.settle-delay (0 si aucun)
+     */
+    private long settledMaxId() {
+        LocalDateTime before = LocalDateTime.now().minus(settleDelay);
+        List<Long> active = jdbcTemplate.queryForList(
+                "SELECT id FROM MESSAGES WHERE created_at < ? ORDER BY id DESC LIMIT 1", Long.class, before);
+        Long archived = jdbcTemplate.queryForObject("SELECT MAX(id) FROM MESSAGES_ARCHIVE", Long.class);
+        return Math.max(active.isEmpty() ? 0 : active.get(0), archived != null ? archived : 0);
+    }
+
+    private void index(Long id, Long rentalId, Long senderId, Long ownerId, String text, LocalDateTime createdAt) throws IOException {
+        Document document = new Document();
+        document.add(new StringField(ID, String.valueOf(id), Field.Store.YES));
+        document.add(new NumericDocValuesField(ID_SORT, id));
+        document.add(new StringField(OWNER, String.valueOf(ownerId), Field.Store.NO));
+        document.add(new StoredField(RENTAL, rentalId));
+        document.add(new StoredField(SENDER, senderId));
+        document.add(new TextField(TEXT, text, Field.Store.YES));
+        long created = toMicros(createdAt);
+        document.add(new NumericDocValuesField(CREATED, created));
+        document.add(new StoredField(CREATED, created));
+        writer.updateDocument(new Term(ID, String.valueOf(id)), document);
+    }
+
+    private static Message toMessage(Document document, Long ownerId) {
+        long created = document.getField(CREATED).numericValue().longValue();
+        return new Message(Long.valueOf(document.get(ID)), document.getField(RENTAL).numericValue().longValue(),
+                document.getField(SENDER).numericValue().longValue(), ownerId, document.get(TEXT),
+                fromMicros(created), null);
+    }
+
+    private static long toMicros(LocalDateTime dateTime) {
+        if (dateTime == null) {
+            return 0;
+        }
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + dateTime.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        if (micros == 0) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000), (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * Découpage en mots, sans articles élidés, minuscules et sans accents
+     * (appliqué aussi aux recherches, préfixes compris)
+     */
+    private static final class MessageAnalyzer extends Analyzer {
+
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            Tokenizer source = new StandardTokenizer();
+            TokenStream result = new ElisionFilter(source, FrenchAnalyzer.DEFAULT_ARTICLES);
+            result = new LowerCaseFilter(result);
+            result = new ASCIIFoldingFilter(result);
+            return new TokenStreamComponents(source, result);
+        }
+    }
+}
@@ -1,16 +1,29 @@
 package com.chatop.service;
 
 import com.chatop.dto.MessageRequest;
+import com.chatop.dto.MessageResponse;
+import com.chatop.dto.MessagesPageResponse;
+import com.chatop.model.ArchivedMessage;
 import com.chatop.model.Message;
+import com.chatop.model.Rental;
 import com.chatop.model.User;
+import com.chatop.repository.ArchivedMessageRepository;
 import com.chatop.repository.MessageRepository;
 import com.chatop.repository.RentalRepository;
 import com.chatop.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Service gérant la logique métier des messages
@@ -19,12 +32,21 @@ import java.time.LocalDateTime;
 @RequiredArgsConstructor
 public class MessageService {
 
+    // Taille maximale d'une page de messages
+    public static final int MAX_PAGE_SIZE = 100;
+
     private final MessageRepository messageRepository;
+    private final ArchivedMessageRepository archivedMessageRepository;
     private final RentalRepository rentalRepository;
     private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MessageIngestService messageIngestService;
+    private final RentalExistenceFilter rentalExistenceFilter;
+    private final MessageSearchIndex messageSearchIndex;
 
     /**
      * Envoie un nouveau message sur une location
+     * Publie un MessageCreatedEvent (notification du propriétaire après le commit)
      *
      * @param request les données du message (rental_id, user_id, message)
      * @return le message créé
@@ -33,26 +55,265 @@ public class MessageService {
     @Transactional
     public Message sendMessage(MessageRequest request,String userEmail) {
 
-        // 1. Vérification que la location existe
-        if (!rentalRepository.existsById(request.getRentalId())) {
-            throw new IllegalArgumentException("La location avec l'ID " + request.getRentalId() + " n'existe pas");
-        }
-
-        // 2. Récupération de l'utilisateur depuis l'email (JWT)
-        User user = userRepository.findByEmail(userEmail)
-                .orElseThrow(() -> new IllegalArgumentException("Utilisateur non trouvé"));
+        // 1. Location (filtre en mémoire puis base) et expéditeur (depuis l'email du JWT) en une requête
+        MessageRepository.MessageRoute route = findRoute(request.getRentalId(), userEmail);
 
-        // 3. Création du message
+        // 2. Création du message
         Message message = new Message();
         message.setRentalId(request.getRentalId());
-        message.setUserId(user.getId());  // L'userId vient du JWT (pas du client)
+        message.setUserId(route.getSenderId());  // L'userId vient du JWT (pas du client)
+        message.setOwnerId(route.getOwnerId());  // Dénormalisé : messages reçus sans jointure
         message.setMessage(request.getMessage());
 
-        // 4. Dates automatiques
+        // 3. Dates automatiques
         message.setCreatedAt(LocalDateTime.now());
         message.setUpdatedAt(LocalDateTime.now());
 
-        // 5. Sauvegarde en base de données
-        return messageRepository.save(message);
+        // 4. Sauvegarde en base de données
+        Message saved = messageRepository.save(message);
+
+        // 5. Notification (les abonnés temps réel attendent le commit)
+        eventPublisher.publishEvent(new MessageCreatedEvent(saved.getId(), saved.getRentalId(), saved.getUserId(),
+                route.getOwnerId(), saved.getMessage(), saved.getCreatedAt(), System.nanoTime()));
+        return saved;
+    }
+
+    /**
+     * Accepte un message sans attendre son enregistrement (message.ingest.write-behind=true)
+     * Mêmes vérifications que sendMessage ; l'INSERT est fait par lot par MessageIngestService
+     *
+     * @param request les données du message (rental_id, message)
+     * @param userEmail l'email de l'expéditeur (extrait du JWT)
+     * @throws IllegalArgumentException si la location ou l'utilisateur n'existe pas
+     * @throws MessageRejectedException si le message ne peut pas être accepté (file pleine, journal en erreur)
+     */
+    @Transactional(readOnly = true)
+    public void acceptMessage(MessageRequest request, String userEmail) {
+        MessageRepository.MessageRoute route = findRoute(request.getRentalId(), userEmail);
+
+        messageIngestService.submit(request.getRentalId(), route.getSenderId(), route.getOwnerId(),
+                request.getMessage(), LocalDateTime.now());
+    }
+
+    /**
+     * Enregistrement des messages différé (réponse 202) ou immédiat (réponse 200)
+     */
+    public boolean isWriteBehind() {
+        return messageIngestService.isEnabled();
+    }
+
+    /**
+     * Messages reçus sur une location, réservés à son propriétaire
+     *
+     * @param rentalId l'ID de la location
+     * @param before le curseur de la page précédente (null pour la première page)
+     * @param limit le nombre de messages par page (1 à MAX_PAGE_SIZE)
+     * @param userEmail l'email de l'utilisateur (extrait du JWT)
+     * @return la page de messages, du plus récent au plus ancien
+     * @throws IllegalArgumentException si la location n'existe pas, si l'utilisateur n'en est pas
+     *                                  le propriétaire ou si le curseur est invalide
+     */
+    @Transactional(readOnly = true)
+    public MessagesPageResponse getRentalMessages(Long rentalId, String before, int limit, String userEmail) {
+        User user = findUser(userEmail);
+        Rental rental = rentalRepository.findById(rentalId)
+                .orElseThrow(() -> new IllegalArgumentException("La location avec l'ID " + rentalId + " n'existe pas"));
+        if (!rental.getOwnerId().equals(user.getId())) {
+            throw new IllegalArgumentException("Vous n'êtes pas autorisé à lire les messages de cette location");
+        }
+
+        int size = pageSize(limit);
+        Cursor cursor = Cursor.decode(before);
+        List<Message> messages = cursor == null
+                ? messageRepository.findByRentalId(rentalId, Limit.of(size + 1))
+                : messageRepository.findByRentalIdBefore(rentalId, cursor.createdAt(), cursor.id(), Limit.of(size + 1));
+        messages = continueInArchive(messages, size, cursor,
+                (createdAt, id, remaining) -> archivedMessageRepository.findByRentalIdBefore(rentalId, createdAt, id, remaining));
+        return toPage(messages, size);
+    }
+
+    /**
+     * Messages envoyés par l'utilisateur connecté
+     *
+     * @param before le curseur de la page précédente (null pour la première page)
+     * @param limit le nombre de messages par page (1 à MAX_PAGE_SIZE)
+     * @param userEmail l'email de l'utilisateur (extrait du JWT)
+     * @return la page de messages, du plus récent au plus ancien
+     * @throws IllegalArgumentException si le curseur est invalide
+     */
+    @Transactional(readOnly = true)
+    public MessagesPageResponse getSentMessages(String before, int limit, String userEmail) {
+        User user = findUser(userEmail);
+
+        int size = pageSize(limit);
+        Cursor cursor = Cursor.decode(before);
+        List<Message> messages = cursor == null
+                ? messageRepository.findByUserId(user.getId(), Limit.of(size + 1))
+                : messageRepository.findByUserIdBefore(user.getId(), cursor.createdAt(), cursor.id(), Limit.of(size + 1));
+        messages = continueInArchive(messages, size, cursor,
+                (createdAt, id, remaining) -> archivedMessageRepository.findByUserIdBefore(user.getId(), createdAt, id, remaining));
+        return toPage(messages, size);
+    }
+
+    /**
+     * Messages reçus sur l'ensemble des locations de l'utilisateur connecté
+     *
+     * @param before le curseur de la page précédente (null pour la première page)
+     * @param limit le nombre de messages par page (1 à MAX_PAGE_SIZE)
+     * @param userEmail l'email de l'utilisateur (extrait du JWT)
+     * @return la page de messages, du plus récent au plus ancien
+     * @throws IllegalArgumentException si le curseur est invalide
+     */
+    @Transactional(readOnly = true)
+    public MessagesPageResponse getReceivedMessages(String before, int limit, String userEmail) {
+        User user = findUser(userEmail);
+
+        int size = pageSize(limit);
+        Cursor cursor = Cursor.decode(before);
+        List<Message> messages = cursor == null
+                ? messageRepository.findByOwnerId(user.getId(), Limit.of(size + 1))
+                : messageRepository.findByOwnerIdBefore(user.getId(), cursor.createdAt(), cursor.id(), Limit.of(size + 1));
+        messages = continueInArchive(messages, size, cursor,
+                (createdAt, id, remaining) -> archivedMessageRepository.findByOwnerIdBefore(user.getId(), createdAt, id, remaining));
+        return toPage(messages, size);
+    }
+
+    /**
+     * Recherche dans les messages reçus sur l'ensemble des locations de l'utilisateur connecté
+     * (index plein texte MessageSearchIndex, archives comprises)
+     *
+     * @param query la recherche : mots (tous requis), "expression exacte", préfixe*
+     * @param before le curseur de la page précédente (null pour la première page)
+     * @param limit le nombre de messages par page (1 à MAX_PAGE_SIZE)
+     * @param userEmail l'email de l'utilisateur (extrait du JWT)
+     * @return la page de messages trouvés, du plus récent au plus ancien
+     * @throws IllegalArgumentException si la recherche ou le curseur est invalide
+     * @throws IllegalStateException si l'index de recherche est indisponible
+     */
+    public MessagesPageResponse searchReceivedMessages(String query, String before, int limit, String userEmail) {
+        User user = findUser(userEmail);
+
+        int size = pageSize(limit);
+        Cursor cursor = Cursor.decode(before);
+        return toPage(messageSearchIndex.search(user.getId(), query, cursor, size + 1), size);
+    }
+
+    /**
+     * ID de l'utilisateur connecté (abonnement aux messages en temps réel)
+     *
+     * @throws IllegalArgumentException si l'utilisateur n'existe pas
+     */
+    public Long getUserId(String userEmail) {
+        return findUser(userEmail).getId();
+    }
+
+    /**
+     * Expéditeur et propriétaire de la location
+     * Une location inconnue du filtre est refusée sans requête ; sinon une seule requête
+     * (la cause d'un échec n'est recherchée que dans ce cas, rare)
+     */
+    private MessageRepository.MessageRoute findRoute(Long rentalId, String userEmail) {
+        if (!rentalExistenceFilter.mightContain(rentalId)) {
+            throw rentalNotFound(rentalId);
+        }
+        return messageRepository.findRoute(rentalId, userEmail)
+                .orElseThrow(() -> rentalRepository.existsById(rentalId)
+                        ? new IllegalArgumentException("Utilisateur non trouvé")
+                        : rentalNotFound(rentalId));
+    }
+
+    private static IllegalArgumentException rentalNotFound(Long rentalId) {
+        return new IllegalArgumentException("La location avec l'ID " + rentalId + " n'existe pas");
+    }
+
+    private User findUser(String userEmail) {
+        return userRepository.findByEmail(userEmail)
+                .orElseThrow(() -> new IllegalArgumentException("Utilisateur non trouvé"));
+    }
+
+    private static int pageSize(int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Le nombre de messages par page doit être compris entre 1 et " + MAX_PAGE_SIZE);
+        }
+        return limit;
+    }
+
+    /**
+     * Complète une page incomplète avec les messages archivés (MessageArchiveService)
+     * Tous les messages archivés sont antérieurs aux messages actifs : la lecture reprend dans l'archive
+     * après le dernier message lu. Une requête de plus, seulement sur la dernière page des messages actifs.
+     */
+    private static List<Message> continueInArchive(List<Message> messages, int size, Cursor cursor, ArchiveQuery query) {
+        if (messages.size() > size) {
+            return messages;
+        }
+        Cursor from = cursor;
+        if (!messages.isEmpty()) {
+            Message last = messages.get(messages.size() - 1);
+            from = new Cursor(last.getCreatedAt(), last.getId());
+        }
+        List<ArchivedMessage> archived = query.find(from != null ? from.createdAt() : null, from != null ? from.id() : null,
+                Limit.of(size + 1 - messages.size()));
+        if (archived.isEmpty()) {
+            return messages;
+        }
+        List<Message> all = new ArrayList<>(messages);
+        for (ArchivedMessage message : archived) {
+            all.add(new Message(message.getId(), message.getRentalId(), message.getUserId(), message.getOwnerId(),
+                    message.getMessage(), message.getCreatedAt(), message.getUpdatedAt()));
+        }
+        return all;
+    }
+
+    /**
+     * Lecture par clé dans l'archive : (createdAt, id) du dernier message lu, null pour commencer au plus récent
+     */
+    @FunctionalInterface
+    private interface ArchiveQuery {
+        List<ArchivedMessage> find(LocalDateTime createdAt, Long id, Limit limit);
+    }
+
+    /**
+     * Une ligne de plus que la page est lue : sa présence indique qu'une page suivante existe
+     */
+    private static MessagesPageResponse toPage(List<Message> messages, int size) {
+        boolean hasMore = messages.size() > size;
+        List<Message> page = hasMore ? messages.subList(0, size) : messages;
+        List<MessageResponse> responses = page.stream()
+                .map(message -> new MessageResponse(message.getId(), message.getRentalId(), message.getUserId(),
+                        message.getMessage(), message.getCreatedAt()))
+                .collect(Collectors.toList());
+
+        String next = null;
+        if (hasMore) {
+            Message last = page.get(page.size() - 1);
+            next = new Cursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new MessagesPageResponse(responses, next);
+    }
+
+    /**
+     * Position dans la liste des messages : (created_at, id) du dernier message lu
+     * Transmis au client sous forme opaque (Base64 URL)
+     */
+    record Cursor(LocalDateTime createdAt, Long id) {
+
+        String encode() {
+            String raw = createdAt + "_" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String value) {
+            if (value == null || value.isBlank()) {
+                return null;
+            }
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+                int separator = raw.lastIndexOf('_');
+                return new Cursor(LocalDateTime.parse(raw.substring(0, separator)), Long.parseLong(raw.substring(separator + 1)));
+            } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Curseur de pagination invalide");
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,165 @@
+package com.chatop.service;
+
+import com.chatop.repository.RentalRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Ensemble en mémoire des IDs de location existants (un bit par ID, 1,25 Mo pour 10 millions d'IDs)
+ *
+ * Répond "absente" sans requête pour un ID inconnu (envoi de message sur une location inexistante).
+ * Seule une réponse négative fait foi : "peut-être présente" est toujours confirmé par la base.
+ *
+ * - Chargé au démarrage puis complété périodiquement (rental.filter.refresh-interval), par pages d'IDs
+ * - Les IDs jusqu'à loadedUpTo sont connus : au-delà (locations créées depuis, y compris sur un
+ *   autre nœud), la réponse est "peut-être" et la base tranche
+ * - loadedUpTo ne dépasse que les locations créées depuis plus de rental.filter.settle-delay : un ID
+ *   plus petit, encore en cours de transaction ailleurs, n'est jamais déclaré absent à tort
+ * - created()/deleted() mettent le bit à jour après le commit sur le nœud courant
+ *
+ * Métrique : chatop.rentals.filter (result=absent, present ou unknown).
+ */
+@Service
+@Slf4j
+public class RentalExistenceFilter {
+
+    private static final int PAGE_SIZE = 50_000;
+
+    private final RentalRepository rentalRepository;
+    private final Duration settleDelay;
+
+    private final BitSet ids = new BitSet();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Plus grand ID dont l'absence du bitset prouve l'absence en base
+    private volatile long loadedUpTo;
+
+    private final Counter absent;
+    private final Counter present;
+    private final Counter unknown;
+
+    public RentalExistenceFilter(
+            RentalRepository rentalRepository,
+            MeterRegistry meterRegistry,
+            @Value("${rental.filter.settle-delay:PT1M}") Duration settleDelay
+    ) {
+        this.rentalRepository = rentalRepository;
+        this.settleDelay = settleDelay;
+        this.absent = counter(meterRegistry, "absent");
+        this.present = counter(meterRegistry, "present");
+        this.unknown = counter(meterRegistry, "unknown");
+    }
+
+    /**
+     * @param rentalId l'ID de la location
+     * @return false si la location n'existe certainement pas, true si elle existe peut-être
+     */
+    public boolean mightContain(Long rentalId) {
+        if (rentalId == null || rentalId <= 0) {
+            absent.increment();
+            return false;
+        }
+        if (rentalId > loadedUpTo || rentalId > Integer.MAX_VALUE) {
+            unknown.increment();
+            return true;
+        }
+        boolean found;
+        lock.readLock().lock();
+        try {
+            found = ids.get(rentalId.intValue());
+        } finally {
+            lock.readLock().unlock();
+        }
+        (found ? present : absent).increment();
+        return found;
+    }
+
+    /**
+     * Location créée (prise en compte après le commit)
+     */
+    public void created(Long rentalId) {
+        afterCommit(() -> set(List.of(rentalId), true));
+    }
+
+    /**
+     * Location supprimée (prise en compte après le commit)
+     * Les autres nœuds ne l'apprennent pas : ils la croient peut-être présente, et la base tranche
+     */
+    public void deleted(Long rentalId) {
+        afterCommit(() -> set(List.of(rentalId), false));
+    }
+
+    /**
+     * Charge les IDs créés depuis le dernier chargement (au démarrage puis périodiquement)
+     */
+    @Scheduled(fixedDelayString = "${rental.filter.refresh-interval:PT1M}")
+    public void refresh() {
+        // Lu avant le chargement : toutes ces locations sont déjà commitées, donc chargées ci-dessous
+        Long settled = rentalRepository.findMaxIdCreatedBefore(LocalDateTime.now().minus(settleDelay));
+
+        long after = loadedUpTo;
+        int loaded = 0;
+        List<Long> page;
+        do {
+            page = rentalRepository.findIdsAfter(after, Limit.of(PAGE_SIZE));
+            if (page.isEmpty()) {
+                break;
+            }
+            set(page, true);
+            loaded += page.size();
+            after = page.get(page.size() - 1);
+        } while (page.size() == PAGE_SIZE);
+
+        if (settled != null && settled > loadedUpTo) {
+            loadedUpTo = settled;
+        }
+        if (loaded > 0) {
+            log.debug("Filtre des locations : {} ID(s) chargé(s), connus jusqu'à {}", loaded, loadedUpTo);
+        }
+    }
+
+    private void set(List<Long> rentalIds, boolean value) {
+        lock.writeLock().lock();
+        try {
+            for (Long id : rentalIds) {
+                if (id != null && id > 0 && id <= Integer.MAX_VALUE) {
+                    ids.set(id.intValue(), value);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("chatop.rentals.filter")
+                .description("Réponses du filtre d'existence des locations")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.chatop.service;
+
+import com.chatop.dto.RentalPictureResponse;
+import com.chatop.model.Rental;
+import com.chatop.model.RentalPicture;
+import com.chatop.model.StoredFile;
+import com.chatop.model.User;
+import com.chatop.repository.RentalPictureRepository;
+import com.chatop.repository.RentalRepository;
+import com.chatop.repository.StoredFileRepository;
+import com.chatop.repository.UserRepository;
+import com.chatop.storage.StorageBackend;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Service gérant la galerie de photos des locations (table RENTAL_PICTURES)
+ *
+ * - La photo en position 0 est la couverture, recopiée dans RENTALS.picture :
+ *   GET /api/rentals ne lit que la couverture, la galerie complète n'est chargée que par GET /api/rentals/:id
+ * - Galerie d'une location chargée en deux requêtes quel que soit le nombre de photos
+ *   (photos, puis dimensions de toutes les images en une requête IN sur STORED_FILES)
+ * - Chaque photo détient une référence sur son fichier (STORED_FILES) et sa taille est imputée
+ *   au quota du propriétaire
+ * - Les modifications d'une galerie sont sérialisées par le verrou de la location
+ */
+@Service
+@RequiredArgsConstructor
+public class RentalPictureService {
+
+    private final RentalPictureRepository rentalPictureRepository;
+    private final RentalRepository rentalRepository;
+    private final UserRepository userRepository;
+    private final StoredFileRepository storedFileRepository;
+    private final FileStorageService fileStorageService;
+    private final StorageQuotaService storageQuotaService;
+    private final ThumbnailService thumbnailService;
+    private final StorageBackend storage;
+
+    @Value("${rental.gallery.max-pictures:20}")
+    private int maxPictures = 20;
+
+    /**
+     * Galerie complète d'une location, dans l'ordre d'affichage
+     *
+     * @param rental la location
+     * @return les photos (la seule image d'une location antérieure aux galeries, sans identifiant)
+     */
+    public List<RentalPictureResponse> gallery(Rental rental) {
+        List<RentalPicture> pictures = rentalPictureRepository.findByRentalIdOrderByPositionAsc(rental.getId());
+        if (pictures.isEmpty() && rental.getPicture() != null) {
+            pictures = List.of(new RentalPicture(null, rental.getId(), 0, rental.getPicture(), 0L, rental.getCreatedAt()));
+        }
+        Map<String, StoredFile> files = storedFiles(pictures);
+        return pictures.stream()
+                .map(picture -> toResponse(picture, files))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Enregistre l'image envoyée à la création d'une location comme couverture de sa galerie
+     * (dans la transaction de création, fichier déjà rattaché et quota déjà imputé)
+     */
+    public void createCover(Long rentalId, String url, long size) {
+        rentalPictureRepository.save(new RentalPicture(null, rentalId, 0, url, size, LocalDateTime.now()));
+    }
+
+    /**
+     * Ajoute une photo à la fin de la galerie
+     * La première photo d'une location sans image devient sa couverture
+     *
+     * @param rentalId l'ID de la location
+     * @param picture l'image déjà reçue (FileStorageService.receive, receiveUploaded ou UploadSessionService.receive)
+     * @param userEmail l'email du propriétaire (extrait du JWT)
+     * @return la photo ajoutée
+     * @throws IllegalArgumentException si la location n'existe pas, n'appartient pas à l'utilisateur ou si la galerie est pleine
+     */
+    @Transactional
+    public RentalPictureResponse addPicture(Long rentalId, FileStorageService.ReceivedFile picture, String userEmail) throws IOException {
+        Rental rental = lockOwnedRental(rentalId, userEmail);
+        List<RentalPicture> pictures = loadGallery(rental);
+        if (pictures.size() >= maxPictures) {
+            throw new IllegalArgumentException("La galerie est limitée à " + maxPictures + " photos");
+        }
+
+        // Quota vérifié et imputé avant de rattacher le fichier (annulé avec la transaction)
+        storageQuotaService.charge(rental.getOwnerId(), picture.size());
+        String url = fileStorageService.commit(picture);
+
+        LocalDateTime now = LocalDateTime.now();
+        RentalPicture saved = rentalPictureRepository.save(
+                new RentalPicture(null, rentalId, pictures.size(), url, picture.size(), now));
+        if (rental.getPicture() == null) {
+            rental.setPicture(url);
+        }
+        rental.setUpdatedAt(now);
+        rentalRepository.save(rental);
+
+        return toResponse(saved, storedFiles(List.of(saved)));
+    }
+
+    /**
+     * Supprime une photo de la galerie
+     * Le fichier perd une référence (effacé après le commit s'il n'est plus utilisé),
+     * sa taille est rendue au quota et la photo suivante devient la couverture si besoin
+     *
+     * @throws IllegalArgumentException si la location ou la photo n'existe pas, ou si l'utilisateur n'est pas le propriétaire
+     */
+    @Transactional
+    public void deletePicture(Long rentalId, Long pictureId, String userEmail) {
+        Rental rental = lockOwnedRental(rentalId, userEmail);
+        List<RentalPicture> pictures = new ArrayList<>(loadGallery(rental));
+        RentalPicture picture = pictures.stream()
+                .filter(p -> p.getId().equals(pictureId))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Photo non trouvée avec l'ID : " + pictureId));
+
+        pictures.remove(picture);
+        rentalPictureRepository.delete(picture);
+        fileStorageService.deleteFile(picture.getUrl());
+        storageQuotaService.release(rental.getOwnerId(), picture.getSize());
+
+        renumber(rental, pictures);
+    }
+
+    /**
+     * Réordonne la galerie : la première photo devient la couverture
+     *
+     * @param pictureIds les identifiants de toutes les photos, dans le nouvel ordre
+     * @return la galerie réordonnée
+     * @throws IllegalArgumentException si la liste ne contient pas exactement les photos de la location
+     */
+    @Transactional
+    public List<RentalPictureResponse> reorder(Long rentalId, List<Long> pictureIds, String userEmail) {
+        Rental rental = lockOwnedRental(rentalId, userEmail);
+        Map<Long, RentalPicture> byId = loadGallery(rental).stream()
+                .collect(Collectors.toMap(RentalPicture::getId, Function.identity()));
+        if (pictureIds.size() != byId.size() || !byId.keySet().equals(new HashSet<>(pictureIds))) {
+            throw new IllegalArgumentException("La liste doit contenir chaque photo de la location une seule fois");
+        }
+
+        List<RentalPicture> pictures = pictureIds.stream().map(byId::get).collect(Collectors.toList());
+        renumber(rental, pictures);
+
+        Map<String, StoredFile> files = storedFiles(pictures);
+        return pictures.stream()
+                .map(picture -> toResponse(picture, files))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Galerie d'une location verrouillée, en créant la ligne de couverture
+     * d'une location antérieure aux galeries
+     *
+     * La couverture reçoit la taille réelle de son fichier (STORED_FILES) : elle a été imputée au quota
+     * à la création de la location et doit lui être rendue à la suppression de la photo.
+     * Ancienne image jamais imputée (nom UUID, sans ligne STORED_FILES) : taille 0
+     */
+    private List<RentalPicture> loadGallery(Rental rental) {
+        List<RentalPicture> pictures = rentalPictureRepository.findByRentalIdOrderByPositionAsc(rental.getId());
+        if (pictures.isEmpty() && rental.getPicture() != null) {
+            String hash = hashOf(rental.getPicture());
+            long size = hash != null ? storedFileRepository.findById(hash).map(StoredFile::getSize).orElse(0L) : 0L;
+            pictures = List.of(rentalPictureRepository.save(
+                    new RentalPicture(null, rental.getId(), 0, rental.getPicture(), size, rental.getCreatedAt())));
+        }
+        return pictures;
+    }
+
+    /**
+     * Positions consécutives à partir de 0 et couverture recopiée dans RENTALS.picture
+     */
+    private void renumber(Rental rental, List<RentalPicture> pictures) {
+        for (int i = 0; i < pictures.size(); i++) {
+            pictures.get(i).setPosition(i);
+        }
+        rentalPictureRepository.saveAll(pictures);
+
+        rental.setPicture(pictures.isEmpty() ? null : pictures.get(0).getUrl());
+        rental.setUpdatedAt(LocalDateTime.now());
+        rentalRepository.save(rental);
+    }
+
+    private Rental lockOwnedRental(Long rentalId, String userEmail) {
+        User user = userRepository.findByEmail(userEmail)
+                .orElseThrow(() -> new IllegalArgumentException("Utilisateur non trouvé"));
+        Rental rental = rentalRepository.findForUpdate(rentalId)
+                .orElseThrow(() -> new IllegalArgumentException("Location non trouvée avec l'ID : " + rentalId));
+        if (!rental.getOwnerId().equals(user.getId())) {
+            throw new IllegalArgumentException("Vous n'êtes pas autorisé à modifier cette location");
+        }
+        return rental;
+    }
+
+    /**
+     * Métadonnées (dimensions) de toutes les images en une requête, indexées par hash
+     */
+    private Map<String, StoredFile> storedFiles(List<RentalPicture> pictures) {
+        Set<String> hashes = new HashSet<>();
+        for (RentalPicture picture : pictures) {
+            String hash = hashOf(picture.getUrl());
+            if (hash != null) {
+                hashes.add(hash);
+            }
+        }
+        if (hashes.isEmpty()) {
+            return Map.of();
+        }
+        return storedFileRepository.findAllById(hashes).stream()
+                .collect(Collectors.toMap(StoredFile::getHash, Function.identity()));
+    }
+
+    private RentalPictureResponse toResponse(RentalPicture picture, Map<String, StoredFile> files) {
+        String hash = hashOf(picture.getUrl());
+        StoredFile file = hash != null ? files.get(hash) : null;
+        // Largeur 0 : format illisible, dimensions inconnues et aucune variante
+        boolean known = file != null && file.getWidth() != null && file.getWidth() > 0;
+        return new RentalPictureResponse(
+                picture.getId(),
+                picture.getPosition(),
+                picture.getUrl(),
+                known ? file.getWidth() : null,
+                known ? file.getHeight() : null,
+                thumbnailService.variantUrls(picture.getUrl(), file != null ? file.getWidth() : null)
+        );
+    }
+
+    private String hashOf(String url) {
+        String key = storage.keyOf(url);
+        return key != null ? FileStorageService.hashOf(key) : null;
+    }
+}
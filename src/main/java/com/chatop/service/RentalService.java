@@ -4,17 +4,25 @@ import com.chatop.dto.RentalRequest;
 import com.chatop.dto.RentalResponse;
 import com.chatop.dto.RentalsListResponse;
 import com.chatop.model.Rental;
+import com.chatop.model.StoredFile;
 import com.chatop.model.User;
+import com.chatop.repository.RentalPictureRepository;
 import com.chatop.repository.RentalRepository;
+import com.chatop.repository.StoredFileRepository;
 import com.chatop.repository.UserRepository;
+import com.chatop.storage.StorageBackend;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -25,43 +33,68 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class RentalService {
 
+    // Identifiants par requête IN (liste des locations)
+    private static final int IN_BATCH = 1000;
+
     private final RentalRepository rentalRepository;
     private final UserRepository userRepository;
     private final FileStorageService fileStorageService;
+    private final ThumbnailService thumbnailService;
+    private final StorageQuotaService storageQuotaService;
+    private final RentalPictureService rentalPictureService;
+    private final RentalPictureRepository rentalPictureRepository;
+    private final RentalExistenceFilter rentalExistenceFilter;
+    private final StoredFileRepository storedFileRepository;
+    private final StorageBackend storage;
 
     /**
      * Récupère toutes les locations
+     * Seule la couverture est retournée (RENTALS.picture) ; le nombre de photos des galeries
+     * et la largeur des couvertures sont lus par requêtes IN sur les locations listées
+     * (IN_BATCH identifiants par requête)
      */
     public RentalsListResponse getAllRentals() {
         List<Rental> rentals = rentalRepository.findAll();
+        Map<String, Integer> coverWidths = coverWidths(rentals);
+        Map<Long, Long> pictureCounts = pictureCounts(rentals);
 
         List<RentalResponse> rentalResponses = rentals.stream()
-                .map(this::convertToResponse)
+                .map(rental -> {
+                    RentalResponse response = convertToResponse(rental, coverWidth(rental, coverWidths));
+                    Long count = pictureCounts.get(rental.getId());
+                    if (count != null) {
+                        response.setPictureCount(count.intValue());
+                    }
+                    return response;
+                })
                 .collect(Collectors.toList());
 
         return new RentalsListResponse(rentalResponses);
     }
 
     /**
-     * Récupère une location par son ID
+     * Récupère une location par son ID, avec sa galerie complète
      */
     public RentalResponse getRentalById(Long id) {
         Rental rental = rentalRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Location non trouvée avec l'ID : " + id));
 
-        return convertToResponse(rental);
+        RentalResponse response = convertToResponse(rental);
+        response.setPictures(rentalPictureService.gallery(rental));
+        response.setPictureCount(response.getPictures().size());
+        return response;
     }
 
     /**
      * Crée une nouvelle location AVEC upload d'image
      *
      * @param request les données de la location
-     * @param picture le fichier image (optionnel)
+     * @param picture l'image déjà reçue par FileStorageService.receive (optionnelle)
      * @param userEmail l'email du propriétaire (extrait du JWT)
      * @return RentalResponse contenant les informations de la location créée
      */
     @Transactional
-    public RentalResponse createRental(RentalRequest request, MultipartFile picture, String userEmail) {
+    public RentalResponse createRental(RentalRequest request, FileStorageService.ReceivedFile picture, String userEmail) {
 
         // Récupération de l'utilisateur depuis l'email
         User user = userRepository.findByEmail(userEmail)
@@ -74,10 +107,12 @@ public class RentalService {
         rental.setDescription(request.getDescription());
         rental.setOwnerId(user.getId()); //L'ownerId vient du JWT
 
-        // Upload de l'image si présente
-        if (picture != null && !picture.isEmpty()) {
+        // Rattachement de l'image si présente (même transaction que la location)
+        if (picture != null) {
+            // Quota de l'utilisateur vérifié et mis à jour atomiquement (annulé avec la transaction)
+            storageQuotaService.charge(user.getId(), picture.size());
             try {
-                String pictureUrl = fileStorageService.saveFile(picture);
+                String pictureUrl = fileStorageService.commit(picture);
                 rental.setPicture(pictureUrl);
             } catch (IOException e) {
                 throw new RuntimeException("Erreur lors de l'upload de l'image : " + e.getMessage());
@@ -89,13 +124,20 @@ public class RentalService {
         rental.setUpdatedAt(LocalDateTime.now());
 
         Rental savedRental = rentalRepository.save(rental);
+        // Messages acceptés sur cette location dès le commit
+        rentalExistenceFilter.created(savedRental.getId());
+
+        // L'image devient la couverture de la galerie (la photo détient la référence du fichier)
+        if (picture != null) {
+            rentalPictureService.createCover(savedRental.getId(), savedRental.getPicture(), picture.size());
+        }
 
         return convertToResponse(savedRental);
     }
 
     /**
      * Met à jour une location existante
-     * Note : L'image ne peut pas être modifiée dans cette version
+     * Note : Les photos se gèrent par la galerie (RentalPictureService)
      */
     @Transactional
     public RentalResponse updateRental(Long id, RentalRequest request, String userEmail) {
@@ -119,7 +161,7 @@ public class RentalService {
         rental.setDescription(request.getDescription());
         rental.setUpdatedAt(LocalDateTime.now());
 
-        // L'image n'est pas modifiable (on garde l'ancienne)
+        // Les photos ne changent pas ici : voir les routes /api/rentals/:id/pictures
 
         Rental updatedRental = rentalRepository.save(rental);
 
@@ -127,19 +169,80 @@ public class RentalService {
     }
 
     /**
-     * Convertit une entité Rental en RentalResponse
+     * Nombre de photos de chaque location listée
+     */
+    private Map<Long, Long> pictureCounts(List<Rental> rentals) {
+        List<Long> ids = rentals.stream().map(Rental::getId).toList();
+        Map<Long, Long> counts = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += IN_BATCH) {
+            for (RentalPictureRepository.PictureCount count
+                    : rentalPictureRepository.countByRental(ids.subList(from, Math.min(from + IN_BATCH, ids.size())))) {
+                counts.put(count.getRentalId(), count.getTotal());
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Largeur de l'original des couvertures (STORED_FILES.width), indexée par hash
+     */
+    private Map<String, Integer> coverWidths(List<Rental> rentals) {
+        Set<String> hashes = new HashSet<>();
+        for (Rental rental : rentals) {
+            String hash = coverHash(rental);
+            if (hash != null) {
+                hashes.add(hash);
+            }
+        }
+        List<String> ids = new ArrayList<>(hashes);
+        Map<String, Integer> widths = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += IN_BATCH) {
+            for (StoredFile file : storedFileRepository.findAllById(ids.subList(from, Math.min(from + IN_BATCH, ids.size())))) {
+                if (file.getWidth() != null) {
+                    widths.put(file.getHash(), file.getWidth());
+                }
+            }
+        }
+        return widths;
+    }
+
+    private Integer coverWidth(Rental rental, Map<String, Integer> coverWidths) {
+        String hash = coverHash(rental);
+        return hash != null ? coverWidths.get(hash) : null;
+    }
+
+    private String coverHash(Rental rental) {
+        String key = rental.getPicture() != null ? storage.keyOf(rental.getPicture()) : null;
+        return key != null ? FileStorageService.hashOf(key) : null;
+    }
+
+    /**
+     * Convertit une location seule, en lisant la largeur de sa couverture
      */
     private RentalResponse convertToResponse(Rental rental) {
+        return convertToResponse(rental, coverWidth(rental, coverWidths(List.of(rental))));
+    }
+
+    /**
+     * Convertit une entité Rental en RentalResponse
+     * Visibilité package pour les benchmarks JMH
+     *
+     * @param coverWidth la largeur de l'original de la couverture, null si inconnue
+     */
+    RentalResponse convertToResponse(Rental rental, Integer coverWidth) {
         return new RentalResponse(
                 rental.getId(),
                 rental.getName(),
                 rental.getSurface(),
                 rental.getPrice(),
                 rental.getPicture(),
+                thumbnailService.variantUrls(rental.getPicture(), coverWidth),
                 rental.getDescription(),
                 rental.getOwnerId(),
                 rental.getCreatedAt(),
-                rental.getUpdatedAt()
+                rental.getUpdatedAt(),
+                rental.getPicture() != null ? 1 : 0,
+                null
         );
     }
 }
\ No newline at end of file
@@ -0,0 +1,175 @@
+package com.chatop.service;
+
+import com.chatop.model.StorageUsage;
+import com.chatop.model.User;
+import com.chatop.repository.StorageUsageRepository;
+import com.chatop.repository.StoredFileRepository;
+import com.chatop.repository.UploadSessionRepository;
+import com.chatop.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Quotas de stockage des images, tenus à jour au fil des uploads (jamais de parcours du stockage)
+ *
+ * - Quota par utilisateur (upload.quota.per-user) : table STORAGE_USAGE, incrémentée dans la
+ *   transaction qui rattache l'image à la location, plus les uploads en plusieurs morceaux ouverts
+ * - Quota global (upload.quota.global) : compteur en mémoire des octets réellement stockés
+ *   (une fois par contenu), ajusté à chaque fichier écrit ou supprimé et recalé périodiquement
+ *   sur STORED_FILES (upload.quota.resync-interval), ce qui absorbe aussi les écritures des autres nœuds
+ *
+ * checkAvailable() refuse un upload (507) avant d'en recevoir le moindre octet ;
+ * charge() fait foi au moment du rattachement.
+ */
+@Service
+@Slf4j
+public class StorageQuotaService {
+
+    private final StorageUsageRepository storageUsageRepository;
+    private final StoredFileRepository storedFileRepository;
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UserRepository userRepository;
+    private final DataSize userQuota;
+    private final DataSize globalQuota;
+
+    // Octets stockés (tous utilisateurs confondus)
+    private final AtomicLong globalUsed = new AtomicLong();
+
+    private final Counter rejectedUser;
+    private final Counter rejectedGlobal;
+
+    public StorageQuotaService(
+            StorageUsageRepository storageUsageRepository,
+            StoredFileRepository storedFileRepository,
+            UploadSessionRepository uploadSessionRepository,
+            UserRepository userRepository,
+            MeterRegistry meterRegistry,
+            @Value("${upload.quota.per-user:1GB}") DataSize userQuota,
+            @Value("${upload.quota.global:100GB}") DataSize globalQuota
+    ) {
+        this.storageUsageRepository = storageUsageRepository;
+        this.storedFileRepository = storedFileRepository;
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.userRepository = userRepository;
+        this.userQuota = userQuota;
+        this.globalQuota = globalQuota;
+        this.rejectedUser = Counter.builder("chatop.uploads.rejected")
+                .description("Uploads refusés par le contrôle d'admission")
+                .tag("reason", "user-quota")
+                .register(meterRegistry);
+        this.rejectedGlobal = Counter.builder("chatop.uploads.rejected")
+                .description("Uploads refusés par le contrôle d'admission")
+                .tag("reason", "global-quota")
+                .register(meterRegistry);
+        Gauge.builder("chatop.storage.used", globalUsed, AtomicLong::get)
+                .description("Octets d'images stockés")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Vérifie qu'un upload tient dans les quotas, avant de le recevoir
+     *
+     * @param userEmail l'email de l'utilisateur (extrait du JWT)
+     * @param bytes la taille annoncée de l'upload
+     * @throws UploadRejectedException (507) si un quota serait dépassé
+     */
+    public void checkAvailable(String userEmail, long bytes) {
+        long size = Math.max(0, bytes);
+        if (globalUsed.get() + size > globalQuota.toBytes()) {
+            rejectedGlobal.increment();
+            throw new UploadRejectedException(HttpStatus.INSUFFICIENT_STORAGE,
+                    "Espace de stockage insuffisant, réessayez plus tard");
+        }
+
+        User user = userRepository.findByEmail(userEmail)
+                .orElseThrow(() -> new IllegalArgumentException("Utilisateur non trouvé"));
+        long used = storageUsageRepository.findById(user.getId())
+                .map(StorageUsage::getUsedBytes)
+                .orElse(0L)
+                + uploadSessionRepository.sumSizeByOwnerId(user.getId());
+        if (used + size > userQuota.toBytes()) {
+            throw userQuotaExceeded();
+        }
+    }
+
+    /**
+     * Impute une image au quota de l'utilisateur (dans la transaction de la location)
+     *
+     * @throws UploadRejectedException (507) si le quota serait dépassé
+     */
+    @Transactional
+    public void charge(Long ownerId, long bytes) {
+        LocalDateTime now = LocalDateTime.now();
+        storageUsageRepository.createIfAbsent(ownerId, now);
+        if (storageUsageRepository.charge(ownerId, bytes, userQuota.toBytes(), now) == 0) {
+            throw userQuotaExceeded();
+        }
+    }
+
+    /**
+     * Rend au quota de l'utilisateur la taille d'une image détachée (dans la transaction de suppression)
+     */
+    @Transactional
+    public void release(Long ownerId, long bytes) {
+        storageUsageRepository.release(ownerId, bytes, LocalDateTime.now());
+    }
+
+    /**
+     * Un nouveau contenu a été écrit dans le stockage (pris en compte après le commit)
+     */
+    public void stored(long bytes) {
+        afterCommit(() -> globalUsed.addAndGet(bytes));
+    }
+
+    /**
+     * Un contenu a été supprimé du stockage (pris en compte après le commit)
+     */
+    public void removed(long bytes) {
+        afterCommit(() -> globalUsed.addAndGet(-bytes));
+    }
+
+    /**
+     * Recale le compteur global sur STORED_FILES (au démarrage puis périodiquement)
+     */
+    @Scheduled(fixedDelayString = "${upload.quota.resync-interval:PT15M}")
+    public void resync() {
+        long total = storedFileRepository.totalSize();
+        long previous = globalUsed.getAndSet(total);
+        if (previous != total) {
+            log.debug("Compteur de stockage recalé : {} -> {} octets", previous, total);
+        }
+    }
+
+    private UploadRejectedException userQuotaExceeded() {
+        rejectedUser.increment();
+        return new UploadRejectedException(HttpStatus.INSUFFICIENT_STORAGE,
+                "Quota de stockage atteint (" + userQuota + " par utilisateur)");
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.chatop.service;
+
+import com.chatop.storage.StorageBackend;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Service de génération des miniatures (variantes redimensionnées) des images uploadées
+ *
+ * Pour chaque upload, des variantes JPEG sont produites en arrière-plan
+ * à côté de l'original : photo.jpg -> photo_w320.jpg, photo_w640.jpg, ...
+ *
+ * - Pool de threads borné (le redimensionnement consomme du CPU : threads plateforme,
+ *   pas de virtual threads) avec une file d'attente bornée
+ * - File pleine : la génération n'est pas conservée en mémoire ; l'image reste sans dimensions dans
+ *   STORED_FILES (width NULL) et FileStorageService la soumet à nouveau (thumbnail.retry-interval),
+ *   y compris après un redémarrage. En attendant, ImageServlet sert l'original à la place de la
+ *   variante manquante (stockage local)
+ * - Lecture de l'original et écriture des variantes via StorageBackend (local ou S3)
+ * - Décodage sous-échantillonné : une photo de 10MB n'est jamais décodée en pleine résolution
+ * - Dimensions de l'original lues au passage (en-tête seulement) et remontées à l'appelant :
+ *   seules les variantes plus petites que l'original sont annoncées (variantUrls) ; 0 x 0 pour un format
+ *   illisible (aucune variante, jamais soumis à nouveau)
+ */
+@Service
+@Slf4j
+public class ThumbnailService {
+
+    private static final String VARIANT_FORMAT = "%s_w%d.jpg";
+
+    private final StorageBackend storage;
+    private final Path tempDir;
+    private final int[] widths;
+    private final float quality;
+    private final ThreadPoolExecutor executor;
+
+    // Images en file ou en cours de génération : une image n'est jamais soumise deux fois
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    public ThumbnailService(
+            StorageBackend storage,
+            @Value("${upload.path}") String uploadPath,
+            @Value("${thumbnail.widths:320,640,1280}") int[] widths,
+            @Value("${thumbnail.quality:0.82}") float quality,
+            @Value("${thumbnail.threads:2}") int threads,
+            @Value("${thumbnail.queue-capacity:200}") int queueCapacity
+    ) {
+        this.storage = storage;
+        this.tempDir = Paths.get(uploadPath).resolve(FileStorageService.TEMP_DIR);
+        this.widths = Arrays.stream(widths).sorted().toArray();
+        this.quality = quality;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("thumbnail-", 0).daemon(true).factory());
+    }
+
+    /**
+     * Planifie la génération des variantes d'une image uploadée
+     *
+     * @param filename la clé de l'image dans le stockage
+     * @param onDimensions appelé (thread de génération) avec les dimensions de l'original,
+     *                     0 x 0 si son format n'est pas lisible
+     * @return false si la file est pleine (rien n'est conservé : l'appelant soumet à nouveau plus tard)
+     */
+    public boolean submit(String filename, Consumer<Dimensions> onDimensions) {
+        if (!pending.add(filename)) {
+            return true;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    Dimensions dimensions = generate(filename);
+                    onDimensions.accept(dimensions != null ? dimensions : new Dimensions(0, 0));
+                } catch (Exception e) {
+                    log.warn("Échec de génération des miniatures de {} : {}", filename, e.getMessage());
+                } finally {
+                    pending.remove(filename);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.remove(filename);
+            log.debug("File des miniatures pleine, variantes de {} générées au prochain rattrapage", filename);
+            return false;
+        }
+    }
+
+    /**
+     * Places libres dans la file de génération (rattrapage de FileStorageService)
+     */
+    public int remainingCapacity() {
+        return executor.getQueue().remainingCapacity();
+    }
+
+    /**
+     * Retourne l'URL de chaque variante d'une image (clé = largeur en pixels)
+     * Les URLs sont déduites du nom de l'original : aucun accès au stockage
+     *
+     * @param pictureUrl l'URL publique de l'original
+     * @param sourceWidth la largeur de l'original (STORED_FILES.width), null si pas encore connue
+     *                    (toutes les largeurs sont annoncées, ImageServlet sert l'original à leur place)
+     * @return les URLs des variantes plus petites que l'original, vide si l'image n'appartient pas au stockage
+     */
+    public Map<String, String> variantUrls(String pictureUrl, Integer sourceWidth) {
+        Map<String, String> variants = new LinkedHashMap<>();
+        String key = storage.keyOf(pictureUrl);
+        if (key == null) {
+            return variants;
+        }
+        String base = baseName(key);
+        for (int width : widths) {
+            // Pas de variante aussi large que l'original : generate ne la produit jamais
+            if (sourceWidth != null && width >= sourceWidth) {
+                break;
+            }
+            variants.put(String.valueOf(width), storage.publicUrl(String.format(VARIANT_FORMAT, base, width)));
+        }
+        return variants;
+    }
+
+    /**
+     * Retourne les noms des fichiers de variantes d'une image
+     *
+     * @param filename la clé de l'original
+     * @return les clés des variantes
+     */
+    public List<String> variantFilenames(String filename) {
+        String base = baseName(filename);
+        List<String> filenames = new ArrayList<>(widths.length);
+        for (int width : widths) {
+            filenames.add(String.format(VARIANT_FORMAT, base, width));
+        }
+        return filenames;
+    }
+
+    /**
+     * Génère les variantes plus petites que l'original
+     *
+     * @return les dimensions de l'original, null si le format n'est pas lisible
+     */
+    Dimensions generate(String filename) throws IOException {
+        String base = baseName(filename);
+        Dimensions dimensions;
+
+        try (InputStream original = storage.open(filename);
+             ImageInputStream input = new MemoryCacheImageInputStream(original)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                log.warn("Format d'image non supporté pour les miniatures : {}", filename);
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int sourceWidth = reader.getWidth(0);
+                dimensions = new Dimensions(sourceWidth, reader.getHeight(0));
+
+                int largest = Arrays.stream(widths).filter(width -> width < sourceWidth).max().orElse(0);
+                if (largest == 0) {
+                    return dimensions;
+                }
+
+                // Décodage sous-échantillonné : au plus 2x la plus grande variante
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, sourceWidth / (largest * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage decoded = reader.read(0, param);
+
+                // Du plus grand au plus petit : chaque variante part de la précédente
+                BufferedImage current = decoded;
+                for (int i = widths.length - 1; i >= 0; i--) {
+                    if (widths[i] >= sourceWidth) {
+                        continue;
+                    }
+                    current = resize(current, widths[i]);
+                    write(current, String.format(VARIANT_FORMAT, base, widths[i]));
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+        log.debug("Miniatures générées pour {}", filename);
+        return dimensions;
+    }
+
+    /**
+     * Redimensionne par divisions successives par 2 (qualité correcte avec une interpolation bilinéaire)
+     */
+    private BufferedImage resize(BufferedImage source, int targetWidth) {
+        BufferedImage current = source;
+        while (current.getWidth() / 2 >= targetWidth) {
+            current = scale(current, current.getWidth() / 2);
+        }
+        return current.getWidth() == targetWidth ? toRgb(current) : scale(current, targetWidth);
+    }
+
+    private BufferedImage scale(BufferedImage source, int width) {
+        int height = Math.max(1, (int) Math.round((double) source.getHeight() * width / source.getWidth()));
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        // Fond blanc pour les images avec transparence (PNG, GIF)
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, width, height);
+        graphics.drawImage(source, 0, 0, width, height, null);
+        graphics.dispose();
+        return target;
+    }
+
+    private BufferedImage toRgb(BufferedImage image) {
+        return image.getType() == BufferedImage.TYPE_INT_RGB ? image : scale(image, image.getWidth());
+    }
+
+    /**
+     * Écrit la variante dans un fichier temporaire puis l'enregistre dans le stockage
+     * (renommage atomique en local) : une variante n'est jamais servie à moitié écrite
+     */
+    private void write(BufferedImage image, String key) throws IOException {
+        Files.createDirectories(tempDir);
+        Path temp = Files.createTempFile(tempDir, "variant-", ".jpg");
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try {
+            try (ImageOutputStream output = ImageIO.createImageOutputStream(temp.toFile())) {
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(quality);
+                writer.setOutput(output);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            storage.store(key, temp, "image/jpeg");
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String baseName(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return dot > filename.lastIndexOf('/') ? filename.substring(0, dot) : filename;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Dimensions d'une image en pixels
+     */
+    public record Dimensions(int width, int height) {
+    }
+}
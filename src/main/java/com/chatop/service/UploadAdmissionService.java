@@ -0,0 +1,131 @@
+package com.chatop.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contrôle d'admission des uploads (bulkhead)
+ *
+ * Deux sémaphores bornent ce qui passe par le disque en même temps :
+ * - le nombre d'uploads simultanés (upload.admission.max-concurrent)
+ * - les octets en cours de réception (upload.admission.max-in-flight), d'après le Content-Length
+ *
+ * Au-delà, l'upload attend au plus upload.admission.max-wait puis est refusé (429) :
+ * une rafale d'uploads ne ralentit plus toutes les autres routes.
+ *
+ * Les octets sont comptés par Ko (un permis = 1 Ko) pour rester dans les limites d'un int.
+ */
+@Service
+public class UploadAdmissionService {
+
+    private static final int BYTES_PER_PERMIT = 1024;
+
+    private final Semaphore uploads;
+    private final Semaphore bytes;
+    private final int maxConcurrent;
+    private final int maxBytePermits;
+    private final long maxWaitNanos;
+
+    private final Counter rejectedConcurrency;
+    private final Counter rejectedBytes;
+
+    public UploadAdmissionService(
+            MeterRegistry meterRegistry,
+            @Value("${upload.admission.max-concurrent:16}") int maxConcurrent,
+            @Value("${upload.admission.max-in-flight:256MB}") DataSize maxInFlight,
+            @Value("${upload.admission.max-wait:200ms}") Duration maxWait
+    ) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxBytePermits = (int) Math.min(Integer.MAX_VALUE, Math.max(1, maxInFlight.toBytes() / BYTES_PER_PERMIT));
+        this.maxWaitNanos = maxWait.toNanos();
+        this.uploads = new Semaphore(maxConcurrent);
+        // Équitable : un gros upload n'est pas doublé indéfiniment par des petits
+        this.bytes = new Semaphore(maxBytePermits, true);
+
+        this.rejectedConcurrency = Counter.builder("chatop.uploads.rejected")
+                .description("Uploads refusés par le contrôle d'admission")
+                .tag("reason", "concurrency")
+                .register(meterRegistry);
+        this.rejectedBytes = Counter.builder("chatop.uploads.rejected")
+                .description("Uploads refusés par le contrôle d'admission")
+                .tag("reason", "in-flight-bytes")
+                .register(meterRegistry);
+        Gauge.builder("chatop.uploads.in-flight", uploads, s -> this.maxConcurrent - s.availablePermits())
+                .description("Uploads en cours de réception")
+                .register(meterRegistry);
+        Gauge.builder("chatop.uploads.in-flight.bytes", bytes, s -> (double) (maxBytePermits - s.availablePermits()) * BYTES_PER_PERMIT)
+                .description("Octets réservés par les uploads en cours")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Réserve une place pour un upload
+     *
+     * @param expectedBytes la taille annoncée (Content-Length), négative si inconnue :
+     *                      une part égale du budget est alors réservée
+     * @return la réservation, à libérer avec close() (try-with-resources)
+     * @throws UploadRejectedException (429) si aucune place ne se libère à temps
+     */
+    public Permit admit(long expectedBytes) {
+        long requested = expectedBytes < 0
+                ? maxBytePermits / maxConcurrent
+                : (expectedBytes + BYTES_PER_PERMIT - 1) / BYTES_PER_PERMIT;
+        // Un upload plus gros que le budget passe seul plutôt que jamais
+        int bytePermits = (int) Math.max(1, Math.min(maxBytePermits, requested));
+
+        long deadline = System.nanoTime() + maxWaitNanos;
+        if (!tryAcquire(uploads, 1, maxWaitNanos)) {
+            rejectedConcurrency.increment();
+            throw new UploadRejectedException(HttpStatus.TOO_MANY_REQUESTS,
+                    "Trop d'uploads en cours, réessayez dans quelques instants");
+        }
+        if (!tryAcquire(bytes, bytePermits, deadline - System.nanoTime())) {
+            uploads.release();
+            rejectedBytes.increment();
+            throw new UploadRejectedException(HttpStatus.TOO_MANY_REQUESTS,
+                    "Trop de données en cours d'envoi, réessayez dans quelques instants");
+        }
+        return new Permit(bytePermits);
+    }
+
+    private static boolean tryAcquire(Semaphore semaphore, int permits, long timeoutNanos) {
+        try {
+            return semaphore.tryAcquire(permits, Math.max(0, timeoutNanos), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Réservation d'un upload : libérée une seule fois, à la fin de la réception
+     */
+    public final class Permit implements AutoCloseable {
+
+        private final int bytePermits;
+        private boolean released;
+
+        private Permit(int bytePermits) {
+            this.bytePermits = bytePermits;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                bytes.release(bytePermits);
+                uploads.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.chatop.service;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Upload refusé avant d'être reçu, sans dégrader les autres requêtes
+ *
+ * - 429 Too Many Requests : trop d'uploads ou d'octets en cours (réessayer plus tard)
+ * - 507 Insufficient Storage : quota de stockage de l'utilisateur ou global atteint
+ */
+@Getter
+public class UploadRejectedException extends RuntimeException {
+
+    private final HttpStatus status;
+
+    public UploadRejectedException(HttpStatus status, String message) {
+        super(message);
+        this.status = status;
+    }
+}
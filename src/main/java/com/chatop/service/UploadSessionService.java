@@ -0,0 +1,277 @@
+package com.chatop.service;
+
+import com.chatop.dto.UploadSessionResponse;
+import com.chatop.model.UploadSession;
+import com.chatop.model.User;
+import com.chatop.repository.UploadSessionRepository;
+import com.chatop.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Service des uploads d'images en plusieurs morceaux (reprenables)
+ *
+ * Protocole :
+ * 1. create() : ouverture d'une session pour une taille donnée
+ * 2. writeChunk() : chaque morceau est écrit à son offset (écritures positionnelles FileChannel) ;
+ *    après une coupure, le client relit l'offset (status()) et reprend à partir de là
+ * 3. complete() : SHA-256 et type d'image calculés en une lecture séquentielle du fichier assemblé
+ * 4. receive() : la location est créée avec upload_id, le fichier rejoint le stockage comme un upload classique
+ *
+ * Chaque morceau est une requête courte : la taille maximale (upload.chunked.max-file-size)
+ * peut dépasser celle du multipart sans bloquer un thread de requête pendant des minutes.
+ * Les fichiers partiels sont locaux (upload.path/.tmp) : avec plusieurs nœuds,
+ * les requêtes d'une même session doivent arriver sur le même nœud (affinité).
+ */
+@Service
+@Slf4j
+public class UploadSessionService {
+
+    // Fichiers partiels : upload.path/.tmp/{id}.part (conservés par OrphanFileSweeper tant que la session existe)
+    public static final String PART_SUFFIX = ".part";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UserRepository userRepository;
+    private final Path tempDir;
+    private final DataSize maxFileSize;
+    private final DataSize maxChunkSize;
+    private final Duration sessionTtl;
+
+    public UploadSessionService(
+            UploadSessionRepository uploadSessionRepository,
+            UserRepository userRepository,
+            @Value("${upload.path}") String uploadPath,
+            @Value("${upload.chunked.max-file-size:50MB}") DataSize maxFileSize,
+            @Value("${upload.chunked.max-chunk-size:8MB}") DataSize maxChunkSize,
+            @Value("${upload.chunked.session-ttl:24h}") Duration sessionTtl
+    ) {
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.userRepository = userRepository;
+        this.tempDir = Paths.get(uploadPath).resolve(FileStorageService.TEMP_DIR);
+        this.maxFileSize = maxFileSize;
+        this.maxChunkSize = maxChunkSize;
+        this.sessionTtl = sessionTtl;
+    }
+
+    /**
+     * Ouvre une session d'upload
+     *
+     * @param size la taille totale du fichier
+     * @param userEmail l'email de l'utilisateur (extrait du JWT)
+     * @return l'état de la session (offset 0)
+     * @throws IllegalArgumentException si la taille dépasse la limite
+     */
+    @Transactional
+    public UploadSessionResponse create(long size, String userEmail) throws IOException {
+        if (size <= 0 || size > maxFileSize.toBytes()) {
+            throw new IllegalArgumentException("Le fichier dépasse la taille maximale autorisée (" + maxFileSize + ")");
+        }
+        User user = userRepository.findByEmail(userEmail)
+                .orElseThrow(() -> new IllegalArgumentException("Utilisateur non trouvé"));
+
+        LocalDateTime now = LocalDateTime.now();
+        UploadSession session = new UploadSession(UUID.randomUUID().toString(), user.getId(), size, 0L,
+                null, null, now, now);
+        Files.createDirectories(tempDir);
+        Files.createFile(partFile(session.getId()));
+        uploadSessionRepository.save(session);
+        return toResponse(session);
+    }
+
+    /**
+     * État d'une session : le client reprend l'envoi à l'offset retourné
+     */
+    public UploadSessionResponse status(String id, String userEmail) {
+        return toResponse(find(id, userEmail));
+    }
+
+    /**
+     * Écrit un morceau à son offset
+     *
+     * Le morceau doit commencer au plus à l'offset déjà reçu (pas de trou) ; un morceau
+     * renvoyé après une coupure peut chevaucher des octets déjà reçus, il les réécrit à l'identique.
+     * Coupure au milieu du morceau : les octets écrits sont comptés, le client reprend après eux.
+     *
+     * @param id l'identifiant de la session
+     * @param offset la position du morceau dans le fichier
+     * @param input le corps de la requête (lu une seule fois, non fermé)
+     * @param userEmail l'email de l'utilisateur (extrait du JWT)
+     * @return l'état de la session après écriture
+     * @throws IllegalArgumentException si la session est inconnue ou terminée, l'offset invalide ou le morceau trop gros
+     */
+    public UploadSessionResponse writeChunk(String id, long offset, InputStream input, String userEmail) throws IOException {
+        UploadSession session = find(id, userEmail);
+        if (session.getHash() != null) {
+            throw new IllegalArgumentException("Upload déjà finalisé");
+        }
+        if (offset < 0 || offset > session.getReceived()) {
+            throw new IllegalArgumentException("Offset invalide : reprendre à l'offset " + session.getReceived());
+        }
+
+        long limit = Math.min(session.getSize(), offset + maxChunkSize.toBytes());
+        long position = offset;
+        try (FileChannel channel = FileChannel.open(partFile(id), StandardOpenOption.WRITE)) {
+            byte[] bytes = new byte[BUFFER_SIZE];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            int read;
+            while ((read = input.read(bytes)) != -1) {
+                if (position + read > limit) {
+                    throw new IllegalArgumentException(position + read > session.getSize()
+                            ? "Le morceau dépasse la taille annoncée du fichier"
+                            : "Le morceau dépasse la taille maximale autorisée (" + maxChunkSize + ")");
+                }
+                buffer.clear().limit(read);
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+            }
+        } finally {
+            // Octets écrits comptés même si la connexion a été coupée
+            if (position > offset) {
+                uploadSessionRepository.advance(id, position, LocalDateTime.now());
+            }
+        }
+
+        session.setReceived(Math.max(session.getReceived(), position));
+        return toResponse(session);
+    }
+
+    /**
+     * Finalise l'upload : calcule le SHA-256 et vérifie le type réel de l'image
+     *
+     * @throws IllegalArgumentException si le fichier est incomplet ou n'est pas une image
+     */
+    @Transactional
+    public UploadSessionResponse complete(String id, String userEmail) throws IOException {
+        UploadSession session = find(id, userEmail);
+        if (session.getHash() != null) {
+            return toResponse(session);
+        }
+        if (session.getReceived() < session.getSize()) {
+            throw new IllegalArgumentException("Upload incomplet : " + session.getReceived() + " octets reçus sur " + session.getSize());
+        }
+
+        // Lecture séquentielle unique : hash et en-tête
+        MessageDigest digest = sha256();
+        byte[] header = new byte[ImageType.HEADER_LENGTH];
+        int headerLength = 0;
+        try (InputStream input = Files.newInputStream(partFile(id))) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long remaining = session.getSize();
+            int read;
+            while (remaining > 0 && (read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                if (headerLength < header.length) {
+                    int copied = Math.min(read, header.length - headerLength);
+                    System.arraycopy(buffer, 0, header, headerLength, copied);
+                    headerLength += copied;
+                }
+                digest.update(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+
+        ImageType type = ImageType.detect(header, headerLength);
+        if (type == null) {
+            throw new IllegalArgumentException("Le fichier doit être une image (jpg, png, etc.)");
+        }
+        session.setHash(HexFormat.of().formatHex(digest.digest()));
+        session.setContentType(type.getContentType());
+        session.setUpdatedAt(LocalDateTime.now());
+        uploadSessionRepository.save(session);
+        return toResponse(session);
+    }
+
+    /**
+     * Remet un upload finalisé à FileStorageService (création de location avec upload_id)
+     * La session est supprimée : le fichier appartient désormais au fichier reçu
+     *
+     * @return le fichier reçu, en attente de commit
+     * @throws IllegalArgumentException si l'upload est inconnu ou pas encore finalisé
+     */
+    @Transactional
+    public FileStorageService.ReceivedFile receive(String id, String userEmail) throws IOException {
+        UploadSession session = find(id, userEmail);
+        if (session.getHash() == null) {
+            throw new IllegalArgumentException("Upload non finalisé");
+        }
+        Path part = partFile(id);
+        if (!Files.exists(part)) {
+            throw new IllegalArgumentException("Upload introuvable : " + id);
+        }
+        // Sans session, le fichier n'est plus protégé que par sa date : remise à maintenant pour que
+        // OrphanFileSweeper ne l'efface pas pendant la création de la location
+        Files.setLastModifiedTime(part, FileTime.from(Instant.now()));
+        uploadSessionRepository.delete(session);
+        return new FileStorageService.ReceivedFile(part, session.getHash(), session.getSize(),
+                ImageType.fromContentType(session.getContentType()));
+    }
+
+    /**
+     * Supprime les sessions inactives depuis plus de upload.chunked.session-ttl et leurs fichiers partiels
+     */
+    @Scheduled(fixedDelayString = "${upload.chunked.cleanup-interval:PT1H}")
+    @Transactional
+    public void deleteExpiredSessions() {
+        List<UploadSession> expired = uploadSessionRepository.findTop500ByUpdatedAtBefore(LocalDateTime.now().minus(sessionTtl));
+        for (UploadSession session : expired) {
+            try {
+                Files.deleteIfExists(partFile(session.getId()));
+            } catch (IOException e) {
+                log.warn("Impossible de supprimer le fichier partiel de l'upload {}", session.getId(), e);
+            }
+        }
+        uploadSessionRepository.deleteAll(expired);
+        if (!expired.isEmpty()) {
+            log.info("{} uploads expirés supprimés", expired.size());
+        }
+    }
+
+    private UploadSession find(String id, String userEmail) {
+        User user = userRepository.findByEmail(userEmail)
+                .orElseThrow(() -> new IllegalArgumentException("Utilisateur non trouvé"));
+        return uploadSessionRepository.findById(id)
+                .filter(session -> session.getOwnerId().equals(user.getId()))
+                .orElseThrow(() -> new IllegalArgumentException("Upload introuvable : " + id));
+    }
+
+    private Path partFile(String id) {
+        // L'identifiant vient de l'URL : seul un UUID est accepté (pas de path traversal)
+        return tempDir.resolve(UUID.fromString(id) + PART_SUFFIX);
+    }
+
+    private static UploadSessionResponse toResponse(UploadSession session) {
+        return new UploadSessionResponse(session.getId(), session.getSize(), session.getReceived(), session.getHash() != null);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.chatop.storage;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Stockage dans un dossier local (upload.path)
+ *
+ * - Écriture par renommage atomique : un fichier n'est jamais visible à moitié écrit
+ * - Lecture publique par ImageServlet (/uploads/*)
+ * - Pas d'upload pré-signé : les images passent par POST /api/rentals
+ *
+ * Limité à un seul nœud : plusieurs instances derrière un load balancer
+ * doivent utiliser S3StorageBackend.
+ */
+public class LocalStorageBackend implements StorageBackend {
+
+    @Getter
+    private final Path root;
+    private final String baseUrl;
+
+    /**
+     * @param root le dossier racine des uploads
+     * @param baseUrl l'URL publique de ce dossier (upload.url)
+     */
+    public LocalStorageBackend(Path root, String baseUrl) {
+        this.root = root.toAbsolutePath().normalize();
+        this.baseUrl = baseUrl;
+    }
+
+    @Override
+    public void store(String key, Path source, String contentType) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Même clé écrite entre-temps par un autre upload : le contenu est identique
+            Files.delete(source);
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(resolve(key));
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    @Override
+    public ObjectHeader readHeader(String key, int length) throws IOException {
+        Path file = resolve(key);
+        try (InputStream input = Files.newInputStream(file)) {
+            return new ObjectHeader(Files.size(file), input.readNBytes(length));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parcours en profondeur, entrées triées par nom dans chaque dossier
+     * Seuls les noms sont lus pour se placer après startAfter : les attributs (stat) ne sont lus
+     * que pour les entrées retournées et les dossiers traversés, un lot coûte O(limit) et non
+     * O(nombre de fichiers), même dans un dossier plat
+     * Les fichiers et dossiers cachés (dont .tmp) sont ignorés
+     */
+    @Override
+    public List<ObjectInfo> list(String startAfter, int limit) throws IOException {
+        List<ObjectInfo> objects = new ArrayList<>(limit);
+        if (Files.isDirectory(root)) {
+            collect(root, "", startAfter, limit, objects);
+        }
+        return objects;
+    }
+
+    /**
+     * @param startAfter la clé du curseur si elle se trouve sous ce dossier, null sinon
+     */
+    private void collect(Path dir, String prefix, String startAfter, int limit, List<ObjectInfo> objects) throws IOException {
+        // Entrée du curseur dans ce dossier, et curseur situé plus bas (dans ce sous-dossier) ou non
+        String cursorName = null;
+        boolean cursorBelow = false;
+        if (startAfter != null) {
+            String rest = startAfter.substring(prefix.length());
+            int slash = rest.indexOf('/');
+            cursorName = slash >= 0 ? rest.substring(0, slash) : rest;
+            cursorBelow = slash >= 0;
+        }
+
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+            for (Path child : children) {
+                String name = child.getFileName().toString();
+                if (!name.startsWith(".") && (cursorName == null || name.compareTo(cursorName) >= 0)) {
+                    names.add(name);
+                }
+            }
+        }
+        Collections.sort(names);
+
+        for (String name : names) {
+            if (objects.size() >= limit) {
+                return;
+            }
+            boolean onCursor = name.equals(cursorName);
+            if (onCursor && !cursorBelow) {
+                // Dernier fichier du lot précédent
+                continue;
+            }
+            Path child = dir.resolve(name);
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(child, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                // Supprimé pendant le parcours
+                continue;
+            }
+            if (attributes.isDirectory()) {
+                collect(child, prefix + name + "/", onCursor ? startAfter : null, limit, objects);
+            } else if (attributes.isRegularFile()) {
+                objects.add(new ObjectInfo(prefix + name, attributes.size(), attributes.lastModifiedTime().toInstant()));
+            }
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    @Override
+    public String publicUrl(String key) {
+        return baseUrl + key;
+    }
+
+    @Override
+    public String keyOf(String url) {
+        return url != null && url.startsWith(baseUrl) ? url.substring(baseUrl.length()) : null;
+    }
+
+    @Override
+    public Optional<PresignedUpload> presignUpload(String key, String contentType, long size, String sha256) {
+        return Optional.empty();
+    }
+
+    /**
+     * Résout une clé sous la racine (protection contre le path traversal)
+     */
+    private Path resolve(String key) {
+        Path file = root.resolve(key).normalize();
+        if (!file.startsWith(root) || file.equals(root)) {
+            throw new IllegalArgumentException("Clé de stockage invalide : " + key);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,345 @@
+package com.chatop.storage;
+
+import com.chatop.model.StoredFile;
+import com.chatop.repository.RentalPictureRepository;
+import com.chatop.repository.RentalRepository;
+import com.chatop.repository.StoredFileRepository;
+import com.chatop.repository.UploadSessionRepository;
+import com.chatop.service.FileStorageService;
+import com.chatop.service.ImageType;
+import com.chatop.service.StorageQuotaService;
+import com.chatop.service.UploadSessionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Balayage en arrière-plan des images orphelines
+ *
+ * Une création de location en échec, une image remplacée ou un upload direct jamais rattaché
+ * laissent des fichiers qu'aucune location ne référence. Le balayage :
+ * - parcourt le stockage par lots bornés (StorageBackend.list) en reprenant à la dernière clé
+ *   vue : chaque exécution avance de quelques lots, un passage complet s'étale sur plusieurs exécutions
+ * - vérifie chaque lot contre RENTALS.picture et RENTAL_PICTURES.url (une requête IN chacune)
+ * - confirme chaque candidat sous le verrou de sa ligne STORED_FILES (compteur de références),
+ *   jamais d'après l'URL publique seule
+ * - supprime les fichiers non référencés plus anciens que le délai de grâce (et leur ligne STORED_FILES)
+ * - nettoie les fichiers temporaires abandonnés (upload.path/.tmp), par lots tournants ; les fichiers
+ *   partiels d'une session d'upload encore enregistrée appartiennent à UploadSessionService (expiration)
+ * - limite son propre débit (fichiers examinés par seconde) pour ne pas concurrencer les requêtes
+ *
+ * Octets et fichiers récupérés : compteurs chatop.sweeper.files et chatop.sweeper.bytes,
+ * et un bilan dans les logs à la fin de chaque passage.
+ *
+ * Avec le stockage S3 partagé, activer le balayage sur un seul nœud (sweeper.enabled).
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "sweeper.enabled", havingValue = "true", matchIfMissing = true)
+public class OrphanFileSweeper {
+
+    private static final Pattern VARIANT = Pattern.compile("(.+)_w\\d+\\.jpg");
+
+    private final StorageBackend storage;
+    private final RentalRepository rentalRepository;
+    private final RentalPictureRepository rentalPictureRepository;
+    private final StoredFileRepository storedFileRepository;
+    private final UploadSessionRepository uploadSessionRepository;
+    private final StorageQuotaService storageQuotaService;
+    private final TransactionTemplate transactionTemplate;
+    private final Path tempDir;
+    private final Duration gracePeriod;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final int maxFilesPerSecond;
+
+    private final Counter reclaimedFiles;
+    private final Counter reclaimedBytes;
+
+    // État du passage en cours (une seule exécution à la fois : fixedDelay)
+    private String cursor;
+    private String tempCursor;
+    private long passScanned;
+    private long passFiles;
+    private long passBytes;
+
+    public OrphanFileSweeper(
+            StorageBackend storage,
+            RentalRepository rentalRepository,
+            RentalPictureRepository rentalPictureRepository,
+            StoredFileRepository storedFileRepository,
+            UploadSessionRepository uploadSessionRepository,
+            StorageQuotaService storageQuotaService,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${upload.path}") String uploadPath,
+            @Value("${sweeper.grace-period:24h}") Duration gracePeriod,
+            @Value("${sweeper.batch-size:500}") int batchSize,
+            @Value("${sweeper.max-batches-per-run:20}") int maxBatchesPerRun,
+            @Value("${sweeper.max-files-per-second:200}") int maxFilesPerSecond
+    ) {
+        this.storage = storage;
+        this.rentalRepository = rentalRepository;
+        this.rentalPictureRepository = rentalPictureRepository;
+        this.storedFileRepository = storedFileRepository;
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.storageQuotaService = storageQuotaService;
+        this.transactionTemplate = transactionTemplate;
+        this.tempDir = Paths.get(uploadPath).resolve(FileStorageService.TEMP_DIR);
+        this.gracePeriod = gracePeriod;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.maxFilesPerSecond = maxFilesPerSecond;
+        this.reclaimedFiles = Counter.builder("chatop.sweeper.files")
+                .description("Fichiers orphelins supprimés")
+                .register(meterRegistry);
+        this.reclaimedBytes = Counter.builder("chatop.sweeper.bytes")
+                .description("Octets récupérés par la suppression des fichiers orphelins")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${sweeper.initial-delay:PT5M}", fixedDelayString = "${sweeper.interval:PT10M}")
+    public void sweep() {
+        Instant threshold = Instant.now().minus(gracePeriod);
+        try {
+            sweepTempFiles(threshold);
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                long started = System.nanoTime();
+                List<StorageBackend.ObjectInfo> objects = storage.list(cursor, batchSize);
+                if (!objects.isEmpty()) {
+                    sweepBatch(objects, threshold);
+                    cursor = objects.get(objects.size() - 1).key();
+                }
+                if (objects.size() < batchSize) {
+                    endPass();
+                    return;
+                }
+                throttle(objects.size(), started);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Balayage des fichiers orphelins interrompu (reprise au prochain passage) : {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Vérifie un lot contre les images des locations et des galeries et supprime les orphelins
+     */
+    private void sweepBatch(List<StorageBackend.ObjectInfo> objects, Instant threshold) {
+        passScanned += objects.size();
+
+        List<StorageBackend.ObjectInfo> candidates = new ArrayList<>();
+        Set<String> urls = new LinkedHashSet<>();
+        for (StorageBackend.ObjectInfo object : objects) {
+            if (object.lastModified().isBefore(threshold)) {
+                candidates.add(object);
+                urls.addAll(referenceUrls(object.key()));
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        Set<String> referenced = referencedAmong(urls);
+        for (StorageBackend.ObjectInfo candidate : candidates) {
+            if (referenceUrls(candidate.key()).stream().noneMatch(referenced::contains) && deleteOrphan(candidate)) {
+                passFiles++;
+                passBytes += candidate.size();
+                reclaimedFiles.increment();
+                reclaimedBytes.increment(candidate.size());
+                log.debug("Fichier orphelin supprimé : {}", candidate.key());
+            }
+        }
+    }
+
+    /**
+     * Supprime un orphelin sous le verrou de sa ligne STORED_FILES :
+     * un upload concurrent du même contenu attend la fin de la suppression
+     * (puis réécrit le fichier) au lieu de réutiliser un fichier en cours d'effacement
+     *
+     * La décision ne dépend jamais de l'URL publique (upload.url, storage.s3.public-url peuvent changer) :
+     * - fichier enregistré dans STORED_FILES : son compteur de références fait foi
+     * - sinon (ancien fichier, upload direct jamais rattaché) : recherche de sa clé à la fin des URLs
+     *
+     * @return true si le fichier a été supprimé
+     */
+    private boolean deleteOrphan(StorageBackend.ObjectInfo object) {
+        Matcher variant = VARIANT.matcher(object.key());
+        String hash = FileStorageService.hashOf(variant.matches() ? variant.group(1) : object.key());
+
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            Optional<StoredFile> storedFile = hash != null ? storedFileRepository.findForUpdate(hash) : Optional.empty();
+
+            // Nouvelle vérification sous le verrou : une location a pu être créée entre-temps
+            if (storedFile.isPresent() ? storedFile.get().getRefCount() > 0 : referencedByKey(object.key())) {
+                return false;
+            }
+            if (!variant.matches()) {
+                storedFile.ifPresent(file -> {
+                    storedFileRepository.delete(file);
+                    storageQuotaService.removed(file.getSize());
+                });
+            }
+            try {
+                storage.delete(object.key());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return true;
+        }));
+    }
+
+    /**
+     * URLs référencées par une location (couverture) ou une galerie
+     * Premier filtre du lot (une requête IN) : une URL publique modifiée ne trouve rien, la décision
+     * finale revient donc à deleteOrphan()
+     */
+    private Set<String> referencedAmong(Collection<String> urls) {
+        Set<String> referenced = new HashSet<>(rentalRepository.findPicturesIn(urls));
+        referenced.addAll(rentalPictureRepository.findUrlsIn(urls));
+        return referenced;
+    }
+
+    /**
+     * Une location ou une galerie référence-t-elle ce fichier, quelle que soit l'URL publique ?
+     */
+    private boolean referencedByKey(String key) {
+        for (String referenceKey : referenceKeys(key)) {
+            String suffix = "/" + referenceKey;
+            if (rentalRepository.existsByPictureEndingWith(suffix) || rentalPictureRepository.existsByUrlEndingWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * URLs sous lesquelles un fichier peut être référencé par RENTALS.picture ou RENTAL_PICTURES.url
+     */
+    private List<String> referenceUrls(String key) {
+        return referenceKeys(key).stream().map(storage::publicUrl).toList();
+    }
+
+    /**
+     * Clés dont l'URL référence le fichier : la sienne, ou celle de l'original pour une miniature
+     * (quelle que soit son extension)
+     */
+    private static List<String> referenceKeys(String key) {
+        Matcher variant = VARIANT.matcher(key);
+        if (!variant.matches()) {
+            return List.of(key);
+        }
+        List<String> keys = new ArrayList<>();
+        for (ImageType type : ImageType.values()) {
+            keys.add(variant.group(1) + type.getExtension());
+        }
+        keys.add(variant.group(1) + ".jpeg");
+        return keys;
+    }
+
+    /**
+     * Supprime les fichiers temporaires abandonnés (arrêt brutal pendant un upload)
+     *
+     * Au plus batchSize fichiers examinés par exécution, en reprenant après le dernier nom vu :
+     * chaque fichier finit par être examiné, même si le dossier en contient davantage
+     * Fichier partiel (.part) : conservé tant que sa session existe, même inactive (reprise possible
+     * jusqu'à upload.chunked.session-ttl, puis suppression par UploadSessionService)
+     */
+    private void sweepTempFiles(Instant threshold) throws IOException {
+        if (!Files.isDirectory(tempDir)) {
+            return;
+        }
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(tempDir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (tempCursor == null || name.compareTo(tempCursor) > 0) {
+                    names.add(name);
+                }
+            }
+        }
+        Collections.sort(names);
+        List<String> batch = names.subList(0, Math.min(batchSize, names.size()));
+        // Fin du dossier atteinte : le prochain lot repart du début
+        tempCursor = names.size() > batchSize ? batch.get(batch.size() - 1) : null;
+
+        for (String name : batch) {
+            Path file = tempDir.resolve(name);
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                continue;
+            }
+            if (!attributes.isRegularFile() || !attributes.lastModifiedTime().toInstant().isBefore(threshold)
+                    || hasUploadSession(name)) {
+                continue;
+            }
+            if (Files.deleteIfExists(file)) {
+                passFiles++;
+                passBytes += attributes.size();
+                reclaimedFiles.increment();
+                reclaimedBytes.increment(attributes.size());
+            }
+        }
+    }
+
+    /**
+     * Fichier partiel d'une session d'upload encore enregistrée (UPLOAD_SESSIONS)
+     */
+    private boolean hasUploadSession(String name) {
+        if (!name.endsWith(UploadSessionService.PART_SUFFIX)) {
+            return false;
+        }
+        return uploadSessionRepository.existsById(name.substring(0, name.length() - UploadSessionService.PART_SUFFIX.length()));
+    }
+
+    /**
+     * Attend si nécessaire pour rester sous maxFilesPerSecond
+     */
+    private void throttle(int examined, long startedNanos) throws InterruptedException {
+        long minimumNanos = TimeUnit.SECONDS.toNanos(examined) / Math.max(1, maxFilesPerSecond);
+        long elapsed = System.nanoTime() - startedNanos;
+        if (elapsed < minimumNanos) {
+            TimeUnit.NANOSECONDS.sleep(minimumNanos - elapsed);
+        }
+    }
+
+    private void endPass() {
+        log.info("Balayage des fichiers orphelins terminé : {} fichiers examinés, {} supprimés, {} octets récupérés",
+                passScanned, passFiles, passBytes);
+        cursor = null;
+        passScanned = 0;
+        passFiles = 0;
+        passBytes = 0;
+    }
+}
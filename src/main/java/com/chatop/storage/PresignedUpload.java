@@ -0,0 +1,15 @@
+package com.chatop.storage;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Upload direct pré-signé : le client envoie le fichier lui-même vers le stockage
+ *
+ * @param method la méthode HTTP à utiliser (PUT)
+ * @param url l'URL signée
+ * @param headers les en-têtes signés que le client doit envoyer à l'identique
+ * @param expiresAt la date d'expiration de la signature
+ */
+public record PresignedUpload(String method, String url, Map<String, String> headers, Instant expiresAt) {
+}
@@ -0,0 +1,200 @@
+package com.chatop.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Stockage objet compatible S3 (AWS S3, MinIO, Ceph...)
+ *
+ * - Partagé entre tous les nœuds de l'application
+ * - Images servies directement par le stockage ou un CDN (storage.s3.public-url),
+ *   sans passer par l'application
+ * - Upload direct pré-signé : le SHA-256 et la taille font partie de la signature,
+ *   le stockage refuse tout contenu différent de celui annoncé
+ */
+@Slf4j
+public class S3StorageBackend implements StorageBackend {
+
+    private static final int NOT_FOUND = 404;
+    private static final int RANGE_NOT_SATISFIABLE = 416;
+
+    private final S3Client client;
+    private final S3Presigner presigner;
+    private final String bucket;
+    private final String publicUrl;
+    private final Duration presignDuration;
+
+    /**
+     * @param client le client S3
+     * @param presigner le générateur d'URLs pré-signées
+     * @param bucket le bucket des images
+     * @param publicUrl l'URL publique du bucket (ou du CDN), terminée par "/"
+     * @param presignDuration la durée de validité d'une URL pré-signée
+     */
+    public S3StorageBackend(S3Client client, S3Presigner presigner, String bucket, String publicUrl,
+                            Duration presignDuration) {
+        this.client = client;
+        this.presigner = presigner;
+        this.bucket = bucket;
+        this.publicUrl = publicUrl;
+        this.presignDuration = presignDuration;
+    }
+
+    @Override
+    public void store(String key, Path source, String contentType) throws IOException {
+        try {
+            client.putObject(PutObjectRequest.builder()
+                            .bucket(bucket)
+                            .key(key)
+                            .contentType(contentType)
+                            .build(),
+                    RequestBody.fromFile(source));
+        } catch (SdkException e) {
+            throw new IOException("Échec de l'envoi de " + key + " vers S3 : " + e.getMessage(), e);
+        }
+        Files.delete(source);
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        try {
+            client.headObject(request -> request.bucket(bucket).key(key));
+            return true;
+        } catch (S3Exception e) {
+            if (e.statusCode() == NOT_FOUND) {
+                return false;
+            }
+            throw new IOException("Échec de la lecture de " + key + " sur S3 : " + e.getMessage(), e);
+        } catch (SdkException e) {
+            throw new IOException("Échec de la lecture de " + key + " sur S3 : " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        try {
+            return client.getObject(request -> request.bucket(bucket).key(key));
+        } catch (S3Exception e) {
+            if (e.statusCode() == NOT_FOUND) {
+                throw new NoSuchFileException(key);
+            }
+            throw new IOException("Échec de la lecture de " + key + " sur S3 : " + e.getMessage(), e);
+        } catch (SdkException e) {
+            throw new IOException("Échec de la lecture de " + key + " sur S3 : " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public ObjectHeader readHeader(String key, int length) throws IOException {
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .range("bytes=0-" + (length - 1))
+                .build();
+        try (ResponseInputStream<GetObjectResponse> input = client.getObject(request)) {
+            byte[] header = input.readNBytes(length);
+            // Taille totale dans Content-Range ("bytes 0-11/123456")
+            String contentRange = input.response().contentRange();
+            long size = contentRange != null
+                    ? Long.parseLong(contentRange.substring(contentRange.lastIndexOf('/') + 1))
+                    : input.response().contentLength();
+            return new ObjectHeader(size, header);
+        } catch (S3Exception e) {
+            if (e.statusCode() == NOT_FOUND) {
+                return null;
+            }
+            if (e.statusCode() == RANGE_NOT_SATISFIABLE) {
+                // Objet vide : aucune plage satisfiable
+                return new ObjectHeader(0, new byte[0]);
+            }
+            throw new IOException("Échec de la lecture de " + key + " sur S3 : " + e.getMessage(), e);
+        } catch (SdkException e) {
+            throw new IOException("Échec de la lecture de " + key + " sur S3 : " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<ObjectInfo> list(String startAfter, int limit) throws IOException {
+        try {
+            ListObjectsV2Response response = client.listObjectsV2(request -> request
+                    .bucket(bucket)
+                    .startAfter(startAfter)
+                    .maxKeys(limit));
+            List<ObjectInfo> objects = new ArrayList<>(response.contents().size());
+            response.contents().forEach(object ->
+                    objects.add(new ObjectInfo(object.key(), object.size(), object.lastModified())));
+            return objects;
+        } catch (SdkException e) {
+            throw new IOException("Échec du listage du bucket " + bucket + " : " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            client.deleteObject(request -> request.bucket(bucket).key(key));
+        } catch (SdkException e) {
+            throw new IOException("Échec de la suppression de " + key + " sur S3 : " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String publicUrl(String key) {
+        return publicUrl + key;
+    }
+
+    @Override
+    public String keyOf(String url) {
+        return url != null && url.startsWith(publicUrl) ? url.substring(publicUrl.length()) : null;
+    }
+
+    @Override
+    public Optional<PresignedUpload> presignUpload(String key, String contentType, long size, String sha256) {
+        PutObjectRequest put = PutObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .contentType(contentType)
+                .contentLength(size)
+                // Vérifié par le stockage : le contenu reçu doit avoir exactement ce hash
+                .checksumSHA256(Base64.getEncoder().encodeToString(HexFormat.of().parseHex(sha256)))
+                .build();
+        PresignedPutObjectRequest presigned = presigner.presignPutObject(request -> request
+                .signatureDuration(presignDuration)
+                .putObjectRequest(put));
+
+        // Host et Content-Length sont positionnés par le client HTTP lui-même
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> header : presigned.signedHeaders().entrySet()) {
+            String name = header.getKey();
+            if (!name.equalsIgnoreCase("host") && !name.equalsIgnoreCase("content-length")) {
+                headers.put(name, String.join(",", header.getValue()));
+            }
+        }
+        log.debug("Upload pré-signé pour {} (expire le {})", key, presigned.expiration());
+        return Optional.of(new PresignedUpload("PUT", presigned.url().toString(), headers, presigned.expiration()));
+    }
+}
@@ -0,0 +1,113 @@
+package com.chatop.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Stockage des images uploadées (originaux et miniatures)
+ *
+ * Les fichiers sont désignés par une clé relative (ab/cd/abcd...ef.jpg) :
+ * le même contenu a toujours la même clé, un objet stocké n'est donc jamais modifié.
+ *
+ * Implémentations :
+ * - LocalStorageBackend : dossier local (upload.path), servi par ImageServlet
+ * - S3StorageBackend : stockage objet compatible S3 (AWS, MinIO...), partagé entre plusieurs nœuds
+ *
+ * Le choix se fait par la propriété storage.backend (voir StorageConfig).
+ */
+public interface StorageBackend {
+
+    /**
+     * Enregistre un fichier local sous la clé donnée
+     * Le fichier source est consommé (déplacé ou supprimé)
+     *
+     * @param key la clé de l'objet
+     * @param source le fichier à enregistrer
+     * @param contentType le type MIME du contenu
+     */
+    void store(String key, Path source, String contentType) throws IOException;
+
+    /**
+     * @return true si un objet existe sous cette clé
+     */
+    boolean exists(String key) throws IOException;
+
+    /**
+     * Ouvre le contenu d'un objet en lecture
+     *
+     * @throws java.nio.file.NoSuchFileException si l'objet n'existe pas
+     */
+    InputStream open(String key) throws IOException;
+
+    /**
+     * Lit les premiers octets d'un objet et sa taille totale (une seule requête)
+     *
+     * @param key la clé de l'objet
+     * @param length le nombre d'octets à lire
+     * @return l'en-tête de l'objet, ou null si l'objet n'existe pas
+     */
+    ObjectHeader readHeader(String key, int length) throws IOException;
+
+    /**
+     * Liste les objets par ordre des clés, par lots
+     * (lexicographique ; LocalStorageBackend : par nom dans chaque dossier, parcours en profondeur)
+     * (parcours incrémental : le lot suivant reprend après la dernière clé reçue)
+     *
+     * @param startAfter la dernière clé du lot précédent, null pour commencer au début
+     * @param limit le nombre maximal d'objets retournés
+     * @return les objets suivants, moins de limit à la fin du parcours
+     */
+    List<ObjectInfo> list(String startAfter, int limit) throws IOException;
+
+    /**
+     * Supprime un objet (sans effet s'il n'existe pas)
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * @return l'URL publique d'un objet
+     */
+    String publicUrl(String key);
+
+    /**
+     * Retrouve la clé d'un objet à partir de son URL publique
+     *
+     * @return la clé, ou null si l'URL ne désigne pas un objet de ce stockage
+     */
+    String keyOf(String url);
+
+    /**
+     * Prépare un upload direct du client vers le stockage (URL pré-signée)
+     * Les octets de l'image ne transitent pas par l'application
+     *
+     * @param key la clé de l'objet à créer
+     * @param contentType le type MIME annoncé
+     * @param size la taille exacte du fichier en octets
+     * @param sha256 le SHA-256 du contenu (hexadécimal), vérifié par le stockage à la réception
+     * @return l'upload pré-signé, vide si le stockage ne le permet pas
+     */
+    Optional<PresignedUpload> presignUpload(String key, String contentType, long size, String sha256);
+
+    /**
+     * Premiers octets et taille d'un objet stocké
+     *
+     * @param size la taille totale en octets
+     * @param header les premiers octets (au plus la longueur demandée)
+     */
+    record ObjectHeader(long size, byte[] header) {
+    }
+
+    /**
+     * Objet stocké, tel que retourné par list()
+     *
+     * @param key la clé de l'objet
+     * @param size la taille en octets
+     * @param lastModified la date de dernière écriture
+     */
+    record ObjectInfo(String key, long size, Instant lastModified) {
+    }
+}
@@ -0,0 +1,261 @@
+package com.chatop.web;
+
+import com.chatop.model.IdempotencyRecord;
+import com.chatop.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Requêtes idempotentes : en-tête Idempotency-Key de POST /api/messages et POST /api/rentals
+ *
+ * Un client qui renvoie une requête après un timeout, avec la même clé, reçoit la réponse d'origine
+ * (en-tête Idempotent-Replayed: true) sans que la requête soit traitée à nouveau.
+ *
+ * - La clé est propre à l'utilisateur et à la route ; elle est réservée en base (IDEMPOTENCY_KEYS)
+ *   avant le traitement : deux envois simultanés ne sont jamais traités tous les deux (409 pour le second)
+ * - Réservation limitée à idempotency.pending-lease : une requête interrompue sans libérer sa clé
+ *   (arrêt du nœud, réponse non enregistrée...) ne bloque ses répétitions (409) que pendant ce bail ;
+ *   au-delà, la clé est reprise et la répétition est traitée
+ * - Réponse enregistrée pendant idempotency.ttl ; les réponses terminées sont aussi gardées dans un cache
+ *   mémoire borné (idempotency.cache-size) : une répétition récente ne touche pas la base
+ * - Clé réutilisée pour une requête différente (empreinte du contenu) : 422
+ * - Seules les réponses 2xx sont enregistrées : après une erreur, la clé est libérée et une nouvelle
+ *   tentative est traitée
+ *
+ * Métrique : chatop.idempotency.requests (result=processed, replayed, conflict, mismatch).
+ */
+@Component
+@Slf4j
+public class IdempotencyGuard {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration pendingLease;
+    private final int cacheSize;
+
+    // Réponses terminées (immuables), de la moins récemment utilisée à la plus récente
+    private final LinkedHashMap<String, IdempotencyRecord> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Counter processed;
+    private final Counter replayed;
+    private final Counter conflicts;
+    private final Counter mismatches;
+
+    public IdempotencyGuard(
+            IdempotencyRecordRepository idempotencyRecordRepository,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${idempotency.ttl:24h}") Duration ttl,
+            @Value("${idempotency.pending-lease:PT5M}") Duration pendingLease,
+            @Value("${idempotency.cache-size:10000}") int cacheSize
+    ) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.pendingLease = pendingLease;
+        this.cacheSize = cacheSize;
+        this.processed = counter(meterRegistry, "processed");
+        this.replayed = counter(meterRegistry, "replayed");
+        this.conflicts = counter(meterRegistry, "conflict");
+        this.mismatches = counter(meterRegistry, "mismatch");
+    }
+
+    /**
+     * Traite la requête une seule fois par clé
+     *
+     * @param route la route (POST /api/messages...), la même clé pouvant servir sur deux routes
+     * @param userEmail l'email de l'utilisateur (extrait du JWT)
+     * @param key la valeur de l'en-tête Idempotency-Key, null pour un traitement sans garantie
+     * @param fingerprint le contenu de la requête, null s'il n'est pas connu avant le traitement
+     * @param action le traitement de la requête
+     * @return la réponse du traitement, ou la réponse d'origine pour une répétition
+     */
+    public ResponseEntity<?> execute(String route, String userEmail, String key, String fingerprint,
+                                     Supplier<ResponseEntity<?>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            return error(HttpStatus.BAD_REQUEST, "L'en-tête " + HEADER + " ne peut pas dépasser " + MAX_KEY_LENGTH + " caractères");
+        }
+        String keyHash = sha256(userEmail + "\n" + route + "\n" + key);
+        String requestHash = fingerprint != null ? sha256(fingerprint) : null;
+        // À la seconde : la date de réservation identifie la tentative (quelle que soit la précision de la colonne)
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        // 1. Répétition récente : réponse en mémoire
+        IdempotencyRecord cached = cached(keyHash, now);
+        if (cached != null) {
+            return replay(cached, requestHash);
+        }
+
+        // 2. Réservation de la clé (ou réponse enregistrée par une requête précédente, sur ce nœud ou un autre)
+        if (!claim(keyHash, requestHash, now)) {
+            IdempotencyRecord existing = idempotencyRecordRepository.findById(keyHash).orElse(null);
+            if (existing == null && claim(keyHash, requestHash, now)) {
+                // Clé libérée entre-temps (échec du premier traitement, ou bail expiré)
+                return process(keyHash, requestHash, now, action);
+            }
+            if (existing == null || existing.getStatusCode() == null) {
+                conflicts.increment();
+                return error(HttpStatus.CONFLICT, "Une requête avec la même clé " + HEADER + " est en cours de traitement");
+            }
+            remember(existing);
+            return replay(existing, requestHash);
+        }
+
+        // 3. Premier envoi
+        return process(keyHash, requestHash, now, action);
+    }
+
+    /**
+     * Purge des clés expirées
+     */
+    @Scheduled(fixedDelayString = "${idempotency.purge-interval:PT1H}")
+    public void purge() {
+        int deleted = idempotencyRecordRepository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            log.debug("{} clé(s) d'idempotence expirée(s) supprimée(s)", deleted);
+        }
+    }
+
+    private ResponseEntity<?> process(String keyHash, String requestHash, LocalDateTime now,
+                                      Supplier<ResponseEntity<?>> action) {
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            idempotencyRecordRepository.release(keyHash, now);
+            throw e;
+        }
+
+        // Seul un succès est enregistré : après une erreur (souvent temporaire : 429, 507, upload
+        // interrompu...), la prochaine tentative est traitée
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            idempotencyRecordRepository.release(keyHash, now);
+            return response;
+        }
+        int status = response.getStatusCode().value();
+        try {
+            String body = response.getBody() != null ? objectMapper.writeValueAsString(response.getBody()) : null;
+            LocalDateTime expiresAt = LocalDateTime.now().plus(ttl);
+            if (idempotencyRecordRepository.complete(keyHash, now, status, body, expiresAt) > 0) {
+                remember(new IdempotencyRecord(keyHash, requestHash, status, body, now, expiresAt));
+            } else {
+                // Traitement plus long que le bail : la clé a été reprise par une répétition
+                log.warn("Réponse idempotente non enregistrée : réservation expirée après {}", pendingLease);
+            }
+        } catch (JsonProcessingException | RuntimeException e) {
+            // La requête a été traitée : sa réponse est retournée, une répétition obtiendra 409 jusqu'à
+            // la fin du bail, puis sera traitée à nouveau
+            log.warn("Réponse idempotente non enregistrée : {}", e.getMessage());
+        }
+        processed.increment();
+        return response;
+    }
+
+    private boolean claim(String keyHash, String requestHash, LocalDateTime now) {
+        try {
+            idempotencyRecordRepository.claim(keyHash, requestHash, now, now.plus(pendingLease));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // Clé expirée (réponse au-delà du ttl, ou réservation au-delà du bail) pas encore purgée : réutilisable
+            if (idempotencyRecordRepository.deleteIfExpired(keyHash, now) > 0) {
+                return claim(keyHash, requestHash, now);
+            }
+            return false;
+        }
+    }
+
+    private ResponseEntity<?> replay(IdempotencyRecord record, String requestHash) {
+        if (requestHash != null && record.getRequestHash() != null && !Objects.equals(requestHash, record.getRequestHash())) {
+            mismatches.increment();
+            return error(HttpStatus.UNPROCESSABLE_ENTITY, "La clé " + HEADER + " a déjà servi pour une autre requête");
+        }
+        replayed.increment();
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(record.getStatusCode()).header(REPLAYED_HEADER, "true");
+        if (record.getResponseBody() == null) {
+            return builder.build();
+        }
+        return builder.contentType(MediaType.APPLICATION_JSON).body(record.getResponseBody());
+    }
+
+    private IdempotencyRecord cached(String keyHash, LocalDateTime now) {
+        lock.lock();
+        try {
+            IdempotencyRecord record = cache.get(keyHash);
+            if (record != null && record.getExpiresAt().isBefore(now)) {
+                cache.remove(keyHash);
+                return null;
+            }
+            return record;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void remember(IdempotencyRecord record) {
+        lock.lock();
+        try {
+            cache.put(record.getKeyHash(), record);
+            while (cache.size() > cacheSize) {
+                cache.remove(cache.keySet().iterator().next());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static ResponseEntity<Map<String, String>> error(HttpStatus status, String message) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", message);
+        return ResponseEntity.status(status).body(error);
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("chatop.idempotency.requests")
+                .description("Requêtes reçues avec un en-tête Idempotency-Key")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,317 @@
+package com.chatop.web;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache mémoire des images les plus demandées, pour ImageServlet
+ *
+ * - Contenu hors tas (ByteBuffer direct) : le GC ne copie ni ne parcourt les octets des images,
+ *   seuls quelques petits objets par entrée restent sur le tas
+ * - Budget en octets (image-cache.max-size), fichiers volumineux jamais mis en cache
+ * - Éviction LRU, admission TinyLFU : une nouvelle image n'entre dans un cache plein
+ *   que si elle est plus demandée que les entrées qu'elle évincerait (un parcours
+ *   ponctuel de nombreuses images ne vide pas le cache des images populaires)
+ * - Une requête servie par le cache ne touche pas au système de fichiers ; les fichiers
+ *   étant immuables (adressés par le contenu), une entrée n'est revérifiée qu'après
+ *   image-cache.max-age (fichier supprimé entre-temps)
+ *
+ * Mémoire d'une entrée évincée : elle n'est pas libérée à l'éviction mais quand le GC collecte son
+ * ByteBuffer (une requête peut encore être en train de l'écrire, d'où l'absence de libération
+ * explicite ou de réutilisation). Le tas étant peu sollicité par le cache, cette collecte peut tarder :
+ * la mémoire hors tas réellement occupée dépasse alors le budget. -XX:MaxDirectMemorySize doit laisser
+ * une marge (2 fois image-cache.max-size, plus les buffers d'E/S de Tomcat) ; à la limite, le JDK
+ * déclenche lui-même un GC (à ne pas désactiver par -XX:+DisableExplicitGC) et une image qui ne peut
+ * toujours pas être chargée est servie depuis le disque.
+ *
+ * Métriques : chatop.image.cache.requests (result=hit|miss), chatop.image.cache.hit.ratio,
+ * chatop.image.cache.resident (octets) et chatop.image.cache.entries.
+ */
+public class ImageCache {
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final long maxAgeNanos;
+
+    // Ordre d'accès : l'entrée la plus ancienne est la prochaine évincée (LRU)
+    // Verrou explicite (pas de synchronized) : les requêtes tournent sur des virtual threads
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private long residentBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    /**
+     * @param maxBytes le budget total en octets
+     * @param maxEntryBytes la taille maximale d'un fichier mis en cache
+     * @param maxAge la durée après laquelle une entrée est revérifiée sur disque
+     * @param meterRegistry le registre des métriques
+     */
+    public ImageCache(long maxBytes, long maxEntryBytes, Duration maxAge, MeterRegistry meterRegistry) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, Math.min(maxBytes, Integer.MAX_VALUE));
+        this.maxAgeNanos = maxAge.toNanos();
+        // Dimensionné pour le nombre d'entrées attendu (miniatures de ~32KB)
+        this.sketch = new FrequencySketch((int) Math.max(64, Math.min(1 << 20, maxBytes / (32 * 1024))));
+
+        this.hits = Counter.builder("chatop.image.cache.requests")
+                .description("Requêtes d'images, par résultat du cache")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("chatop.image.cache.requests")
+                .description("Requêtes d'images, par résultat du cache")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("chatop.image.cache.hit.ratio", this, ImageCache::hitRatio)
+                .description("Part des requêtes d'images servies par le cache")
+                .register(meterRegistry);
+        Gauge.builder("chatop.image.cache.resident", this, ImageCache::residentBytes)
+                .description("Octets d'images en cache (mémoire hors tas)")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("chatop.image.cache.entries", this, ImageCache::size)
+                .description("Nombre d'images en cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Cherche une image en cache (et compte la demande pour l'admission)
+     *
+     * @param file le fichier demandé
+     * @return l'entrée, ou null si absente ou à revérifier
+     */
+    public Entry get(Path file) {
+        Entry entry;
+        lock.lock();
+        try {
+            sketch.increment(file.hashCode());
+            entry = entries.get(file);
+            if (entry != null && System.nanoTime() - entry.loadedAt() > maxAgeNanos) {
+                remove(file);
+                entry = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        (entry != null ? hits : misses).increment();
+        return entry;
+    }
+
+    /**
+     * Charge un fichier en cache s'il est admis
+     *
+     * @param file le fichier (déjà demandé via get())
+     * @param attributes ses attributs, lus par l'appelant
+     * @return l'entrée chargée, ou null si le fichier n'est pas admis (trop gros, pas assez demandé)
+     */
+    public Entry load(Path file, BasicFileAttributes attributes) throws IOException {
+        long size = attributes.size();
+        if (size <= 0 || size > maxEntryBytes || !admissible(file, size)) {
+            return null;
+        }
+
+        ByteBuffer content;
+        try {
+            content = ByteBuffer.allocateDirect((int) size);
+        } catch (OutOfMemoryError e) {
+            // -XX:MaxDirectMemorySize atteint (entrées évincées pas encore collectées) : servi depuis le disque
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (content.hasRemaining()) {
+                if (channel.read(content) < 0) {
+                    break;
+                }
+            }
+        }
+        // Fichier tronqué depuis la lecture des attributs : servi depuis le disque
+        if (content.hasRemaining()) {
+            return null;
+        }
+        content.flip();
+        Entry entry = new Entry(content.asReadOnlyBuffer(), attributes.lastModifiedTime().toMillis(), System.nanoTime());
+
+        lock.lock();
+        try {
+            List<Path> victims = victims(file, size);
+            if (victims == null) {
+                return entry;
+            }
+            victims.forEach(this::remove);
+            Entry previous = entries.put(file, entry);
+            if (previous != null) {
+                residentBytes -= previous.length();
+            }
+            residentBytes += size;
+        } finally {
+            lock.unlock();
+        }
+        return entry;
+    }
+
+    public long residentBytes() {
+        lock.lock();
+        try {
+            return residentBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    /**
+     * Test rapide avant la lecture du fichier : inutile de lire une image qui ne serait pas admise
+     */
+    private boolean admissible(Path file, long size) {
+        lock.lock();
+        try {
+            return victims(file, size) != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Admission TinyLFU : entrées LRU à évincer pour faire de la place
+     *
+     * @return les entrées à évincer (vide s'il reste de la place),
+     *         null si l'une d'elles est plus demandée que le candidat
+     */
+    private List<Path> victims(Path candidate, long size) {
+        List<Path> victims = new ArrayList<>();
+        long needed = residentBytes + size - maxBytes;
+        Entry existing = entries.get(candidate);
+        if (existing != null) {
+            needed -= existing.length();
+        }
+        if (needed <= 0) {
+            return victims;
+        }
+
+        int candidateFrequency = sketch.frequency(candidate.hashCode());
+        Iterator<Map.Entry<Path, Entry>> eldest = entries.entrySet().iterator();
+        while (needed > 0 && eldest.hasNext()) {
+            Map.Entry<Path, Entry> victim = eldest.next();
+            if (victim.getKey().equals(candidate)) {
+                continue;
+            }
+            if (sketch.frequency(victim.getKey().hashCode()) >= candidateFrequency) {
+                return null;
+            }
+            victims.add(victim.getKey());
+            needed -= victim.getValue().length();
+        }
+        return needed <= 0 ? victims : null;
+    }
+
+    private void remove(Path file) {
+        Entry removed = entries.remove(file);
+        if (removed != null) {
+            residentBytes -= removed.length();
+        }
+    }
+
+    /**
+     * Image en cache
+     *
+     * @param content le contenu (lecture seule, mémoire hors tas) : utiliser duplicate() pour le lire
+     * @param lastModified la date de modification du fichier (ms)
+     * @param loadedAt l'instant du chargement (System.nanoTime)
+     */
+    public record Entry(ByteBuffer content, long lastModified, long loadedAt) {
+
+        public long length() {
+            return content.capacity();
+        }
+    }
+
+    /**
+     * Estimation de la fréquence des demandes (count-min sketch, 4 lignes de compteurs plafonnés à 15)
+     * Tous les compteurs sont divisés par 2 après 10 demandes par entrée attendue :
+     * la popularité passée s'efface au profit de la popularité récente
+     */
+    private static final class FrequencySketch {
+
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+        private final byte[][] counters;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int expectedEntries) {
+            int width = Integer.highestOneBit(Math.max(16, expectedEntries - 1) << 1);
+            this.counters = new byte[DEPTH][width];
+            this.mask = width - 1;
+            this.sampleSize = 10 * expectedEntries;
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int row = 0; row < DEPTH; row++) {
+                int index = index(hash, row);
+                if (counters[row][index] < MAX_COUNT) {
+                    counters[row][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(int hash) {
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < DEPTH; row++) {
+                frequency = Math.min(frequency, counters[row][index(hash, row)]);
+            }
+            return frequency;
+        }
+
+        private int index(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * SEEDS[(row + 1) % DEPTH];
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        private void reset() {
+            for (byte[] row : counters) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] >>= 1;
+                }
+            }
+            additions /= 2;
+        }
+    }
+}
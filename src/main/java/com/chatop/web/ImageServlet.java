@@ -0,0 +1,305 @@
+package com.chatop.web;
+
+import com.chatop.service.FileStorageService;
+import com.chatop.service.ImageType;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Servlet dédiée au service des images uploadées (/uploads/*)
+ *
+ * Remplace le ResourceHandler Spring MVC :
+ * - Hors de la chaîne Spring Security et du filtre JWT (voir SecurityConfig)
+ * - Envoi zero-copy : sendfile de Tomcat si disponible, sinon FileChannel.transferTo
+ * - Requêtes HEAD et Range (une seule plage "bytes=début-fin")
+ * - Cache longue durée : le nom d'un fichier est le hash SHA-256 de son contenu (UUID pour les
+ *   anciens fichiers, jamais réutilisé), le contenu est donc immuable (Cache-Control immutable + ETag)
+ * - Miniature pas encore générée : l'original est servi à sa place, sans cache
+ *   (chemin lu dans STORED_FILES, sans parcourir le dossier)
+ * - Cache mémoire optionnel des images les plus demandées (ImageCache, image-cache.enabled)
+ *
+ * Les erreurs sont renvoyées par setStatus (sans sendError) : pas de forward
+ * vers /error, qui repasserait par la chaîne de sécurité.
+ */
+@Slf4j
+public class ImageServlet extends HttpServlet {
+
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    // Miniature pas encore générée : l'original est servi sans cache longue durée
+    private static final String FALLBACK_CACHE_CONTROL = "no-cache";
+    private static final Pattern VARIANT = Pattern.compile("(.+)_w\\d+\\.jpg");
+
+    // Attributs de requête du support sendfile de Tomcat (connecteur NIO)
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final Path root;
+
+    // Cache des images les plus demandées, null si désactivé
+    private final ImageCache cache;
+
+    // Chemin de l'original d'après son hash (STORED_FILES.path), null s'il n'est pas enregistré
+    private final Function<String, String> storedPaths;
+
+    /**
+     * @param root le dossier racine des uploads
+     * @param cache le cache mémoire, null pour toujours servir depuis le disque
+     * @param storedPaths le chemin relatif d'un fichier d'après son hash, null s'il n'est pas enregistré
+     */
+    public ImageServlet(Path root, ImageCache cache, Function<String, String> storedPaths) {
+        this.root = root.toAbsolutePath().normalize();
+        this.cache = cache;
+        this.storedPaths = storedPaths;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        serve(request, response, true);
+    }
+
+    @Override
+    protected void doHead(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        serve(request, response, false);
+    }
+
+    private void serve(HttpServletRequest request, HttpServletResponse response, boolean sendBody) throws IOException {
+
+        // 1. Résolution du fichier (protection contre le path traversal)
+        Path file = resolve(request.getPathInfo());
+        if (file == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        // 2. Image en cache : aucun accès au système de fichiers
+        String cacheControl = CACHE_CONTROL;
+        ImageCache.Entry cached = cache != null ? cache.get(file) : null;
+        long length;
+        long lastModified;
+        if (cached != null) {
+            length = cached.length();
+            lastModified = cached.lastModified();
+        } else {
+            BasicFileAttributes attributes = readAttributes(file);
+            if (attributes == null) {
+                Path original = findOriginal(file);
+                if (original != null) {
+                    file = original;
+                    attributes = readAttributes(original);
+                    cacheControl = FALLBACK_CACHE_CONTROL;
+                }
+            }
+            if (attributes == null || !attributes.isRegularFile()) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            length = attributes.size();
+            lastModified = attributes.lastModifiedTime().toMillis();
+
+            // Chargement en cache si l'image est admise (jamais l'original servi à la place d'une miniature)
+            if (cache != null && cacheControl.equals(CACHE_CONTROL) && sendBody) {
+                cached = cache.load(file, attributes);
+            }
+        }
+
+        String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+
+        // 3. En-têtes de cache
+        response.setHeader("Cache-Control", cacheControl);
+        response.setHeader("ETag", etag);
+        response.setDateHeader("Last-Modified", lastModified);
+        response.setHeader("Accept-Ranges", "bytes");
+
+        // 4. Requête conditionnelle : le client a déjà la bonne version
+        if (matchesEtag(request.getHeader("If-None-Match"), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        // 5. Plage demandée (ignorée si If-Range ne correspond plus)
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader("Range");
+        String ifRange = request.getHeader("If-Range");
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == null) {
+                response.setHeader("Content-Range", "bytes */" + length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        String contentType = getServletContext().getMimeType(file.getFileName().toString());
+        response.setContentType(contentType != null ? contentType : "application/octet-stream");
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+
+        if (!sendBody || count <= 0) {
+            return;
+        }
+
+        // 6. Envoi : depuis le cache, sinon sendfile par Tomcat après le retour de la servlet, sinon transferTo
+        if (cached != null) {
+            ByteBuffer content = cached.content().duplicate();
+            content.limit((int) (end + 1)).position((int) start);
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            while (content.hasRemaining()) {
+                out.write(content);
+            }
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    /**
+     * Résout le chemin demandé sous la racine des uploads
+     *
+     * @return le fichier, ou null si le chemin sort de la racine ou désigne un fichier caché
+     */
+    private Path resolve(String pathInfo) {
+        if (pathInfo == null || pathInfo.length() < 2 || pathInfo.indexOf('\\') >= 0 || pathInfo.indexOf('\0') >= 0) {
+            return null;
+        }
+        // Fichiers et dossiers cachés (dont .tmp, uploads en cours) jamais servis
+        if (pathInfo.contains("/.")) {
+            return null;
+        }
+        Path file = root.resolve(pathInfo.substring(1)).normalize();
+        return file.startsWith(root) ? file : null;
+    }
+
+    private static BasicFileAttributes readAttributes(Path file) throws IOException {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Retrouve l'original d'une miniature absente (photo_w320.jpg -> photo.png)
+     *
+     * Fichier adressé par le contenu : extension lue dans STORED_FILES (une requête indexée)
+     * Ancien fichier (nom UUID) : une lecture d'attributs par extension acceptée à l'upload
+     *
+     * @return l'original, ou null si le fichier demandé n'est pas une miniature ou si l'original est introuvable
+     */
+    private Path findOriginal(Path variant) throws IOException {
+        Matcher matcher = VARIANT.matcher(variant.getFileName().toString());
+        if (!matcher.matches()) {
+            return null;
+        }
+        String base = matcher.group(1);
+        String hash = FileStorageService.hashOf(base);
+        if (hash != null) {
+            String storedPath = storedPaths.apply(hash);
+            Path original = storedPath != null ? root.resolve(storedPath).normalize() : null;
+            return original != null && original.startsWith(root) ? original : null;
+        }
+        for (ImageType type : ImageType.values()) {
+            Path candidate = variant.resolveSibling(base + type.getExtension());
+            if (readAttributes(candidate) != null) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static boolean matchesEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*") || value.equals(etag) || value.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Analyse un en-tête Range
+     *
+     * @return {début, fin} inclusifs, un tableau vide si l'en-tête est ignoré
+     *         (plusieurs plages ou unité inconnue : réponse complète),
+     *         null si la plage n'est pas satisfiable (416)
+     */
+    private static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // Suffixe : les N derniers octets
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            }
+            if (start >= length || start > end) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+}
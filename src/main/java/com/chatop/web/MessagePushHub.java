@@ -0,0 +1,265 @@
+package com.chatop.web;
+
+import com.chatop.dto.MessageResponse;
+import com.chatop.service.MessageCreatedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Diffusion en temps réel des nouveaux messages aux propriétaires connectés (Server-Sent Events)
+ *
+ * - Abonnement : GET /api/messages/stream, une connexion SSE par onglet
+ * - Publication : MessageService.sendMessage publie un MessageCreatedEvent, reçu ici après le commit
+ *   (un message annulé n'est jamais poussé) ; la publication ne fait que déposer le message dans
+ *   la file de chaque connexion du propriétaire, sans jamais attendre le réseau
+ * - Chaque connexion a sa file bornée (push.queue-capacity) et son virtual thread d'envoi :
+ *   un client lent ne ralentit ni l'envoi du message ni les autres clients
+ * - File pleine (client trop lent) : push.overflow=drop-oldest abandonne le plus ancien message
+ *   en attente, disconnect ferme la connexion (le client se reconnecte et relit GET /api/rentals/{id}/messages)
+ * - Heartbeat : commentaire SSE après push.heartbeat-interval sans message (proxys, détection des clients partis)
+ *
+ * Le hub est local au nœud : derrière un load balancer, un propriétaire ne reçoit que les messages
+ * envoyés sur le nœud auquel il est connecté.
+ *
+ * Métriques : chatop.push.connections, chatop.push.delivery.latency (de la publication de l'événement,
+ * dans la transaction d'envoi, à l'écriture : la durée du commit est comprise),
+ * chatop.push.dropped et chatop.push.disconnected (reason=slow-consumer).
+ */
+@Component
+@Slf4j
+public class MessagePushHub {
+
+    /**
+     * Politique appliquée quand la file d'une connexion est pleine
+     */
+    public enum OverflowPolicy {
+        DROP_OLDEST,
+        DISCONNECT
+    }
+
+    // Connexions par propriétaire (quelques-unes au plus : ordre d'arrivée conservé)
+    private final ConcurrentHashMap<Long, CopyOnWriteArrayList<Connection>> connections = new ConcurrentHashMap<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final long heartbeatNanos;
+    private final Duration timeout;
+    private final int maxConnectionsPerUser;
+    private final int maxConnections;
+
+    private final Timer deliveryLatency;
+    private final Counter dropped;
+    private final Counter disconnected;
+
+    public MessagePushHub(
+            MeterRegistry meterRegistry,
+            @Value("${push.queue-capacity:64}") int queueCapacity,
+            @Value("${push.overflow:drop-oldest}") String overflow,
+            @Value("${push.heartbeat-interval:15s}") Duration heartbeatInterval,
+            @Value("${push.timeout:30m}") Duration timeout,
+            @Value("${push.max-connections-per-user:5}") int maxConnectionsPerUser,
+            @Value("${push.max-connections:10000}") int maxConnections
+    ) {
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = OverflowPolicy.valueOf(overflow.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        this.heartbeatNanos = heartbeatInterval.toNanos();
+        this.timeout = timeout;
+        this.maxConnectionsPerUser = maxConnectionsPerUser;
+        this.maxConnections = maxConnections;
+
+        Gauge.builder("chatop.push.connections", connectionCount, AtomicInteger::get)
+                .description("Connexions SSE ouvertes")
+                .register(meterRegistry);
+        this.deliveryLatency = Timer.builder("chatop.push.delivery.latency")
+                .description("Délai entre la publication d'un message (avant le commit) et son écriture vers le client")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("chatop.push.dropped")
+                .description("Messages abandonnés (file d'une connexion pleine)")
+                .register(meterRegistry);
+        this.disconnected = Counter.builder("chatop.push.disconnected")
+                .description("Connexions fermées par le hub")
+                .tag("reason", "slow-consumer")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ouvre une connexion SSE pour un utilisateur
+     * Au-delà de push.max-connections-per-user, sa plus ancienne connexion est fermée
+     *
+     * @param userId l'ID de l'utilisateur (destinataire des messages de ses locations)
+     * @return l'émetteur SSE à retourner par le contrôleur
+     * @throws IllegalStateException si le nombre maximal de connexions du nœud est atteint
+     */
+    public SseEmitter subscribe(Long userId) {
+        if (connectionCount.incrementAndGet() > maxConnections) {
+            connectionCount.decrementAndGet();
+            throw new IllegalStateException("Trop de connexions temps réel ouvertes, réessayez plus tard");
+        }
+
+        SseEmitter emitter = createEmitter(timeout.toMillis());
+        Connection connection = new Connection(userId, emitter);
+        List<Connection> evicted = new ArrayList<>();
+        connections.compute(userId, (id, list) -> {
+            CopyOnWriteArrayList<Connection> userConnections = list != null ? list : new CopyOnWriteArrayList<>();
+            userConnections.add(connection);
+            while (userConnections.size() > maxConnectionsPerUser) {
+                evicted.add(userConnections.remove(0));
+            }
+            return userConnections;
+        });
+        // Hors de compute() : close() modifie la map
+        evicted.forEach(Connection::close);
+
+        emitter.onCompletion(connection::close);
+        emitter.onTimeout(connection::close);
+        emitter.onError(error -> connection.close());
+        connection.start();
+        return emitter;
+    }
+
+    /**
+     * Dépose le message dans la file de chaque connexion du propriétaire (jamais bloquant)
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onMessageCreated(MessageCreatedEvent event) {
+        List<Connection> targets = connections.get(event.ownerId());
+        if (targets == null) {
+            return;
+        }
+        Delivery delivery = new Delivery(event.messageId(), new MessageResponse(event.messageId(), event.rentalId(),
+                event.senderId(), event.message(), event.createdAt()), event.publishedNanos());
+        for (Connection connection : targets) {
+            connection.offer(delivery);
+        }
+    }
+
+    /**
+     * Émetteur SSE d'une nouvelle connexion (redéfini par les tests pour contrôler les envois)
+     */
+    SseEmitter createEmitter(long timeoutMillis) {
+        return new SseEmitter(timeoutMillis);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        connections.values().forEach(list -> list.forEach(Connection::close));
+    }
+
+    private void unregister(Connection connection) {
+        connections.computeIfPresent(connection.userId, (id, list) -> {
+            list.remove(connection);
+            return list.isEmpty() ? null : list;
+        });
+        connectionCount.decrementAndGet();
+    }
+
+    /**
+     * Message en attente d'envoi
+     */
+    private record Delivery(Long messageId, MessageResponse payload, long publishedNanos) {
+    }
+
+    /**
+     * Connexion SSE : file bornée vidée par un seul virtual thread (seul à écrire sur l'émetteur)
+     */
+    private final class Connection {
+
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final ArrayBlockingQueue<Delivery> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile Thread sender;
+
+        private Connection(Long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        private void start() {
+            sender = Thread.ofVirtual().name("sse-user-" + userId).start(this::run);
+        }
+
+        private void offer(Delivery delivery) {
+            if (queue.offer(delivery)) {
+                return;
+            }
+            if (overflowPolicy == OverflowPolicy.DISCONNECT) {
+                disconnected.increment();
+                close();
+                return;
+            }
+            // DROP_OLDEST : le plus ancien message en attente laisse sa place
+            if (queue.poll() != null) {
+                dropped.increment();
+            }
+            if (!queue.offer(delivery)) {
+                dropped.increment();
+            }
+        }
+
+        private void run() {
+            try {
+                emitter.send(SseEmitter.event().reconnectTime(3000).comment("connected"));
+                while (!closed.get()) {
+                    Delivery delivery = queue.poll(heartbeatNanos, TimeUnit.NANOSECONDS);
+                    if (delivery == null) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                        continue;
+                    }
+                    emitter.send(SseEmitter.event()
+                            .id(String.valueOf(delivery.messageId()))
+                            .name("message")
+                            .data(delivery.payload(), MediaType.APPLICATION_JSON));
+                    deliveryLatency.record(System.nanoTime() - delivery.publishedNanos(), TimeUnit.NANOSECONDS);
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Client parti ou émetteur déjà terminé
+                log.debug("Connexion SSE de l'utilisateur {} interrompue : {}", userId, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        private void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            unregister(this);
+            queue.clear();
+            Thread thread = sender;
+            if (thread != null && thread != Thread.currentThread()) {
+                thread.interrupt();
+            }
+            try {
+                emitter.complete();
+            } catch (IllegalStateException e) {
+                // Déjà terminé (timeout, erreur réseau)
+            }
+        }
+    }
+}
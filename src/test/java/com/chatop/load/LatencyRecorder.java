@@ -0,0 +1,70 @@
+package com.chatop.load;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Enregistre les latences d'un worker, par endpoint
+ *
+ * Chaque worker possède son propre recorder (aucune contention pendant la mesure),
+ * les recorders sont fusionnés à la fin du test pour calculer les percentiles.
+ */
+final class LatencyRecorder {
+
+    private final Map<String, List<Long>> latencies = new TreeMap<>();
+    private final Map<String, Integer> errors = new TreeMap<>();
+
+    void record(String endpoint, long nanos, boolean success) {
+        latencies.computeIfAbsent(endpoint, key -> new ArrayList<>()).add(nanos);
+        if (!success) {
+            errors.merge(endpoint, 1, Integer::sum);
+        }
+    }
+
+    void merge(LatencyRecorder other) {
+        other.latencies.forEach((endpoint, values) ->
+                latencies.computeIfAbsent(endpoint, key -> new ArrayList<>()).addAll(values));
+        other.errors.forEach((endpoint, count) -> errors.merge(endpoint, count, Integer::sum));
+    }
+
+    int totalErrors() {
+        return errors.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * Construit le rapport : débit et p50/p95/p99 par endpoint
+     *
+     * @param elapsedSeconds durée de la mesure
+     */
+    String report(double elapsedSeconds) {
+        StringBuilder builder = new StringBuilder(String.format(Locale.ROOT,
+                "%-28s %8s %8s %10s %10s %10s %10s%n",
+                "endpoint", "count", "errors", "req/s", "p50 (ms)", "p95 (ms)", "p99 (ms)"));
+
+        latencies.forEach((endpoint, values) -> {
+            long[] sorted = values.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+            builder.append(String.format(Locale.ROOT, "%-28s %8d %8d %10.1f %10.2f %10.2f %10.2f%n",
+                    endpoint,
+                    sorted.length,
+                    errors.getOrDefault(endpoint, 0),
+                    sorted.length / elapsedSeconds,
+                    percentile(sorted, 0.50),
+                    percentile(sorted, 0.95),
+                    percentile(sorted, 0.99)));
+        });
+        return builder.toString();
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+}
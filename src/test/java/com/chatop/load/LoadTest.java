@@ -0,0 +1,279 @@
+package com.chatop.load;
+
+import com.chatop.model.Message;
+import com.chatop.model.Rental;
+import com.chatop.model.User;
+import com.chatop.repository.MessageRepository;
+import com.chatop.repository.RentalRepository;
+import com.chatop.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Test de charge de bout en bout
+ *
+ * Démarre l'application complète (filtres de sécurité, JWT, services, JPA)
+ * sur une base H2 en mode MySQL et un dossier d'upload temporaire, sans réseau :
+ * les requêtes passent par MockMvc.
+ *
+ * Charge mixte par client :
+ * - login, liste des locations, détail d'une location,
+ * - envoi de message, création d'une location avec image.
+ *
+ * Paramètres (propriétés système) :
+ * - load.concurrency : nombre de clients simultanés (défaut 32)
+ * - load.durationSeconds : durée de la mesure (défaut 30)
+ * - load.users / load.rentals / load.messages : volume du jeu de données
+ *
+ * Exécution : mvn -Pperf test -Dtest=LoadTest -Dload.concurrency=64
+ */
+@Tag("load")
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("loadtest")
+class LoadTest {
+
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 32);
+    private static final int DURATION_SECONDS = Integer.getInteger("load.durationSeconds", 30);
+    private static final int USERS = Integer.getInteger("load.users", 200);
+    private static final int RENTALS = Integer.getInteger("load.rentals", 2_000);
+    private static final int MESSAGES = Integer.getInteger("load.messages", 20_000);
+    private static final String PASSWORD = "password123";
+    private static final String BOUNDARY = "chatop-load-test-boundary";
+
+    private static final Path UPLOAD_DIR = createUploadDir();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RentalRepository rentalRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final List<String> emails = new ArrayList<>();
+    private final List<Long> rentalIds = new ArrayList<>();
+    private byte[] rentalForm;
+
+    @DynamicPropertySource
+    static void uploadProperties(DynamicPropertyRegistry registry) {
+        registry.add("upload.path", UPLOAD_DIR::toString);
+    }
+
+    @BeforeEach
+    void seedDataset() throws IOException {
+        SplittableRandom random = new SplittableRandom(42);
+        LocalDateTime now = LocalDateTime.now();
+
+        // Un seul hash BCrypt pour tous les utilisateurs : le seed reste rapide
+        String hash = passwordEncoder.encode(PASSWORD);
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setName("Load User " + i);
+            user.setEmail("load" + i + "@chatop.test");
+            user.setPassword(hash);
+            user.setCreatedAt(now);
+            user.setUpdatedAt(now);
+            users.add(user);
+        }
+        List<Long> userIds = userRepository.saveAll(users).stream().map(User::getId).toList();
+        users.forEach(user -> emails.add(user.getEmail()));
+
+        List<Rental> rentals = new ArrayList<>();
+        for (int i = 0; i < RENTALS; i++) {
+            Rental rental = new Rental();
+            rental.setName("Location " + i);
+            rental.setSurface(BigDecimal.valueOf(20 + random.nextInt(180)));
+            rental.setPrice(BigDecimal.valueOf(400 + random.nextInt(2600)));
+            rental.setDescription("Description de la location " + i);
+            rental.setOwnerId(userIds.get(random.nextInt(userIds.size())));
+            rental.setCreatedAt(now);
+            rental.setUpdatedAt(now);
+            rentals.add(rental);
+        }
+        rentalRepository.saveAll(rentals).forEach(rental -> rentalIds.add(rental.getId()));
+
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < MESSAGES; i++) {
+            Message message = new Message();
+            message.setRentalId(rentalIds.get(random.nextInt(rentalIds.size())));
+            message.setUserId(userIds.get(random.nextInt(userIds.size())));
+            message.setMessage("Bonjour, la location est-elle toujours disponible ? #" + i);
+            message.setCreatedAt(now);
+            message.setUpdatedAt(now);
+            messages.add(message);
+        }
+        messageRepository.saveAll(messages);
+
+        rentalForm = rentalForm(jpeg(800, 600));
+    }
+
+    @Test
+    void mixedWorkload() throws Exception {
+        long deadline = System.nanoTime() + DURATION_SECONDS * 1_000_000_000L;
+        List<Future<LatencyRecorder>> workers = new ArrayList<>();
+
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newFixedThreadPool(CONCURRENCY)) {
+            for (int i = 0; i < CONCURRENCY; i++) {
+                int workerId = i;
+                workers.add(executor.submit(() -> runClient(workerId, deadline)));
+            }
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        LatencyRecorder total = new LatencyRecorder();
+        for (Future<LatencyRecorder> worker : workers) {
+            total.merge(worker.get());
+        }
+
+        System.out.printf("%nCharge mixte : %d clients, %.1fs, %d utilisateurs, %d locations, %d messages%n%n",
+                CONCURRENCY, elapsedSeconds, USERS, RENTALS, MESSAGES);
+        System.out.println(total.report(elapsedSeconds));
+
+        assertThat(total.totalErrors()).isZero();
+    }
+
+    /**
+     * Boucle d'un client : login puis requêtes tirées selon la répartition du trafic
+     */
+    private LatencyRecorder runClient(int workerId, long deadline) throws Exception {
+        LatencyRecorder recorder = new LatencyRecorder();
+        SplittableRandom random = new SplittableRandom(workerId);
+        String email = emails.get(workerId % emails.size());
+        String token = login(recorder, email);
+
+        while (System.nanoTime() < deadline) {
+            int dice = random.nextInt(100);
+            Long rentalId = rentalIds.get(random.nextInt(rentalIds.size()));
+
+            if (dice < 40) {
+                execute(recorder, "GET /api/rentals", get("/api/rentals")
+                        .header("Authorization", "Bearer " + token));
+            } else if (dice < 75) {
+                execute(recorder, "GET /api/rentals/{id}", get("/api/rentals/" + rentalId)
+                        .header("Authorization", "Bearer " + token));
+            } else if (dice < 93) {
+                execute(recorder, "POST /api/messages", post("/api/messages")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"rental_id\": " + rentalId + ", \"message\": \"Toujours disponible ?\"}"));
+            } else if (dice < 98) {
+                // Corps multipart brut : le contrôleur lit le flux de la requête en streaming
+                execute(recorder, "POST /api/rentals", post("/api/rentals")
+                        .contentType("multipart/form-data; boundary=" + BOUNDARY)
+                        .content(rentalForm)
+                        .header("Authorization", "Bearer " + token));
+            } else {
+                token = login(recorder, email);
+            }
+        }
+        return recorder;
+    }
+
+    private String login(LatencyRecorder recorder, String email) throws Exception {
+        MvcResult result = execute(recorder, "POST /api/auth/login", post("/api/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\": \"" + email + "\", \"password\": \"" + PASSWORD + "\"}"));
+        JsonNode body = objectMapper.readTree(result.getResponse().getContentAsByteArray());
+        return body.get("token").asText();
+    }
+
+    private MvcResult execute(LatencyRecorder recorder, String endpoint, RequestBuilder request) throws Exception {
+        long start = System.nanoTime();
+        MvcResult result = mockMvc.perform(request).andReturn();
+        int status = result.getResponse().getStatus();
+        recorder.record(endpoint, System.nanoTime() - start, status >= 200 && status < 300);
+        return result;
+    }
+
+    /**
+     * Construit le corps multipart/form-data de POST /api/rentals
+     */
+    private static byte[] rentalForm(byte[] picture) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        String fields = field("name", "Nouvelle location")
+                + field("surface", "42")
+                + field("price", "900")
+                + field("description", "Créée par le test de charge")
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"picture\"; filename=\"photo.jpg\"\r\n"
+                + "Content-Type: image/jpeg\r\n\r\n";
+        body.write(fields.getBytes(StandardCharsets.UTF_8));
+        body.write(picture);
+        body.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return body.toByteArray();
+    }
+
+    private static String field(String name, String value) {
+        return "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + name + "\"\r\n\r\n"
+                + value + "\r\n";
+    }
+
+    private static byte[] jpeg(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, (x * 255 / width) << 16 | (y * 255 / height) << 8 | 128);
+            }
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", output);
+        return output.toByteArray();
+    }
+
+    private static Path createUploadDir() {
+        try {
+            return Files.createTempDirectory("chatop-load-uploads");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.chatop.notification;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Boîte mail locale en mémoire pour les tests : enregistre les récapitulatifs envoyés
+ * et peut simuler un serveur indisponible pour certains propriétaires
+ */
+class FakeMailSink implements NotificationSink {
+
+    /**
+     * Récapitulatif reçu par un propriétaire
+     */
+    record Mail(Long ownerId, List<MessageNotification> messages) {
+    }
+
+    private final List<Mail> inbox = new ArrayList<>();
+    private final Set<Long> unreachableOwners = new HashSet<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @Override
+    public void send(Long ownerId, List<MessageNotification> messages) throws Exception {
+        lock.lock();
+        try {
+            if (unreachableOwners.contains(ownerId)) {
+                throw new IllegalStateException("Serveur SMTP indisponible");
+            }
+            inbox.add(new Mail(ownerId, List.copyOf(messages)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void failFor(Long ownerId) {
+        lock.lock();
+        try {
+            unreachableOwners.add(ownerId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    List<Mail> inbox() {
+        lock.lock();
+        try {
+            return List.copyOf(inbox);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.chatop.notification;
+
+import com.chatop.model.OutboxEvent;
+import com.chatop.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests d'OutboxDispatcher avec une boîte mail locale (FakeMailSink)
+ */
+class OutboxDispatcherTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private OutboxEventRepository repository;
+    private FakeMailSink mailSink;
+    private SimpleMeterRegistry meterRegistry;
+    private OutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(OutboxEventRepository.class);
+        mailSink = new FakeMailSink();
+        meterRegistry = new SimpleMeterRegistry();
+        dispatcher = new OutboxDispatcher(repository, mailSink, mock(PlatformTransactionManager.class), meterRegistry,
+                true, 100, Duration.ofMinutes(1), Duration.ofSeconds(5), Duration.ofSeconds(30), MAX_ATTEMPTS);
+    }
+
+    @Test
+    void sendsOneMailPerOwnerAndDeletesDeliveredEvents() {
+        OutboxEvent first = event(1L, 10L, 0);
+        OutboxEvent second = event(2L, 20L, 0);
+        OutboxEvent third = event(3L, 10L, 0);
+        when(repository.findDueForUpdate(any(LocalDateTime.class), any(Limit.class))).thenReturn(List.of(first, second, third));
+
+        assertThat(dispatcher.dispatchBatch()).isEqualTo(3);
+
+        assertThat(mailSink.inbox()).hasSize(2);
+        FakeMailSink.Mail ownerMail = mailSink.inbox().stream().filter(mail -> mail.ownerId() == 10L).findFirst().orElseThrow();
+        assertThat(ownerMail.messages()).extracting(MessageNotification::messageId).containsExactly(101L, 103L);
+        assertThat(deletedIds()).containsExactlyInAnyOrder(1L, 2L, 3L);
+        assertThat(counter("delivered")).isEqualTo(3);
+    }
+
+    @Test
+    void reschedulesFailedOwnerWithoutBlockingOthers() {
+        OutboxEvent failing = event(1L, 10L, 0);
+        OutboxEvent delivered = event(2L, 20L, 0);
+        when(repository.findDueForUpdate(any(LocalDateTime.class), any(Limit.class))).thenReturn(List.of(failing, delivered));
+        mailSink.failFor(10L);
+        LocalDateTime before = LocalDateTime.now();
+
+        dispatcher.dispatchBatch();
+
+        assertThat(deletedIds()).containsExactly(2L);
+        assertThat(failing.getAttempts()).isEqualTo(1);
+        assertThat(failing.getLastError()).contains("Serveur SMTP indisponible");
+        assertThat(failing.getNextAttemptAt()).isAfterOrEqualTo(before.plusSeconds(5)).isBefore(before.plusSeconds(30));
+        assertThat(counter("retried")).isEqualTo(1);
+    }
+
+    @Test
+    void abandonsAfterMaxAttempts() {
+        OutboxEvent event = event(1L, 10L, MAX_ATTEMPTS - 1);
+        when(repository.findDueForUpdate(any(LocalDateTime.class), any(Limit.class))).thenReturn(List.of(event));
+        mailSink.failFor(10L);
+
+        dispatcher.dispatchBatch();
+
+        assertThat(event.getAttempts()).isEqualTo(MAX_ATTEMPTS);
+        assertThat(event.getNextAttemptAt()).isNull();
+        verify(repository).saveAll(List.of(event));
+        assertThat(counter("dead")).isEqualTo(1);
+    }
+
+    @Test
+    void backoffDoublesUpToMaximum() {
+        assertThat(dispatcher.backoff(1)).isEqualTo(Duration.ofSeconds(5));
+        assertThat(dispatcher.backoff(2)).isEqualTo(Duration.ofSeconds(10));
+        assertThat(dispatcher.backoff(3)).isEqualTo(Duration.ofSeconds(20));
+        assertThat(dispatcher.backoff(4)).isEqualTo(Duration.ofSeconds(30));
+        assertThat(dispatcher.backoff(40)).isEqualTo(Duration.ofSeconds(30));
+    }
+
+    @Test
+    void emptyQueueSendsNothing() {
+        when(repository.findDueForUpdate(any(LocalDateTime.class), any(Limit.class))).thenReturn(List.of());
+
+        assertThat(dispatcher.dispatchBatch()).isZero();
+
+        assertThat(mailSink.inbox()).isEmpty();
+        verify(repository, never()).deleteAllByIdInBatch(any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Long> deletedIds() {
+        ArgumentCaptor<Iterable<Long>> captor = ArgumentCaptor.forClass(Iterable.class);
+        verify(repository).deleteAllByIdInBatch(captor.capture());
+        return (List<Long>) captor.getValue();
+    }
+
+    private double counter(String result) {
+        return meterRegistry.get("chatop.outbox.notifications").tag("result", result).counter().count();
+    }
+
+    private static OutboxEvent event(Long id, Long ownerId, int attempts) {
+        LocalDateTime now = LocalDateTime.now();
+        return new OutboxEvent(id, 100L + id, 1L, 2L, ownerId, "Bonjour", attempts, now, null, now);
+    }
+}
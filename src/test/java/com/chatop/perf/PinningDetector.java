@@ -0,0 +1,115 @@
+package com.chatop.perf;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Détecteur d'épinglage (pinning) des virtual threads basé sur JFR
+ *
+ * Un virtual thread est "épinglé" sur son carrier thread lorsqu'il bloque
+ * à l'intérieur d'un bloc synchronized (notre code ou le driver JDBC) :
+ * le carrier ne peut plus servir d'autres requêtes.
+ *
+ * Utilisation :
+ * <pre>
+ * try (PinningDetector detector = PinningDetector.start()) {
+ *     ... charge à exécuter sur des virtual threads ...
+ *     assertThat(detector.pinnedStacksExcept()).isEmpty();
+ * }
+ * </pre>
+ * Toute pile compte, quel que soit le code qui épingle (le nôtre, une bibliothèque, le driver JDBC) :
+ * un épinglage ailleurs que dans com.chatop bloque le carrier tout autant.
+ * L'analyse arrête l'enregistrement : un détecteur ne sert qu'une fois.
+ */
+public final class PinningDetector implements AutoCloseable {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private final RecordingStream stream;
+    private final List<RecordedEvent> events = new CopyOnWriteArrayList<>();
+
+    private PinningDetector() {
+        this.stream = new RecordingStream();
+        this.stream.enable(PINNED_EVENT).withStackTrace().withThreshold(Duration.ZERO);
+        this.stream.onEvent(PINNED_EVENT, events::add);
+    }
+
+    /**
+     * Démarre l'enregistrement JFR des événements d'épinglage
+     */
+    public static PinningDetector start() {
+        PinningDetector detector = new PinningDetector();
+        detector.stream.startAsync();
+        return detector;
+    }
+
+    /**
+     * Retourne toutes les piles d'appels épinglées, sauf celles qui passent par un package autorisé
+     *
+     * @param allowedPrefixes préfixes de packages dont l'épinglage est connu et accepté (liste explicite)
+     * @return une description lisible de chaque pile épinglée non autorisée
+     */
+    public List<String> pinnedStacksExcept(String... allowedPrefixes) {
+        stream.stop();
+        return events.stream()
+                .filter(event -> event.getStackTrace() == null || event.getStackTrace().getFrames().stream()
+                        .noneMatch(frame -> matches(frame, allowedPrefixes)))
+                .map(PinningDetector::describe)
+                .toList();
+    }
+
+    /**
+     * Retourne les piles d'appels épinglées dont une frame appartient à l'un des packages donnés
+     *
+     * @param packagePrefixes préfixes de packages surveillés (ex : "com.chatop", "com.mysql")
+     * @return une description lisible de chaque pile épinglée
+     */
+    public List<String> pinnedStacks(String... packagePrefixes) {
+        // stop() vide les buffers JFR : tous les événements sont reçus avant l'analyse
+        stream.stop();
+        return events.stream()
+                .filter(event -> event.getStackTrace() != null)
+                .filter(event -> event.getStackTrace().getFrames().stream()
+                        .anyMatch(frame -> matches(frame, packagePrefixes)))
+                .map(PinningDetector::describe)
+                .toList();
+    }
+
+    private static boolean matches(RecordedFrame frame, String... packagePrefixes) {
+        String type = frame.getMethod().getType().getName();
+        for (String prefix : packagePrefixes) {
+            if (type.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String describe(RecordedEvent event) {
+        StringBuilder builder = new StringBuilder("Pinned ")
+                .append(event.getDuration().toMillis())
+                .append("ms");
+        if (event.getStackTrace() == null) {
+            return builder.append(" (pile d'appels indisponible)").toString();
+        }
+        for (RecordedFrame frame : event.getStackTrace().getFrames()) {
+            builder.append("\n    at ")
+                    .append(frame.getMethod().getType().getName())
+                    .append('.')
+                    .append(frame.getMethod().getName())
+                    .append(':')
+                    .append(frame.getLineNumber());
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public void close() {
+        stream.close();
+    }
+}
@@ -0,0 +1,167 @@
+package com.chatop.perf;
+
+import com.chatop.model.User;
+import com.chatop.repository.UserRepository;
+import com.chatop.security.JwtUtil;
+import com.chatop.service.FileStorageService;
+import com.chatop.service.StorageQuotaService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Vérifie que les chemins bloquants d'une requête (upload, JDBC, JWT) n'épinglent pas
+ * les virtual threads sur leur carrier thread.
+ *
+ * Contexte complet sur la base H2 du profil loadtest : chaque tâche exécute le chemin réel
+ * d'un upload (FileStorageService.receive(), puis charge() du quota et commit() dans une
+ * transaction), relit l'utilisateur et valide un JWT. Les appels JDBC traversent donc
+ * Hibernate, HikariCP et le driver.
+ *
+ * Toutes les piles épinglées comptent (JDK, bibliothèques, notre code), pas seulement celles
+ * qui traversent com.chatop.
+ */
+@SpringBootTest
+@ActiveProfiles("loadtest")
+class VirtualThreadPinningTest {
+
+    private static final int TASKS = 200;
+    private static final int WARM_UP = 5;
+
+    // Packages dont l'épinglage est connu et accepté : aucun à ce jour
+    private static final String[] ALLOWED_PINNING = {};
+
+    private static final Path UPLOAD_DIR = createUploadDir();
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private StorageQuotaService storageQuotaService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @DynamicPropertySource
+    static void uploadProperties(DynamicPropertyRegistry registry) {
+        registry.add("upload.path", UPLOAD_DIR::toString);
+    }
+
+    @Test
+    void requestPathsDoNotPinCarrierThreads() throws Exception {
+        User owner = new User();
+        owner.setName("Pinning");
+        owner.setEmail("pinning@chatop.test");
+        owner.setPassword("x");
+        owner.setCreatedAt(LocalDateTime.now());
+        owner.setUpdatedAt(LocalDateTime.now());
+        userRepository.save(owner);
+        UserDetails principal = org.springframework.security.core.userdetails.User
+                .withUsername(owner.getEmail()).password("x").build();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        // Contenus distincts : chaque upload insère une ligne STORED_FILES et écrit un fichier
+        List<byte[]> images = new ArrayList<>();
+        for (int i = 0; i < TASKS + WARM_UP; i++) {
+            images.add(jpeg(i));
+        }
+
+        // Préchauffage hors enregistrement : le premier chargement d'une classe (synchronized dans
+        // ClassLoader.loadClass) épinglerait les virtual threads sans rapport avec le code testé
+        for (int i = 0; i < WARM_UP; i++) {
+            request(transaction, owner, principal, images.get(TASKS + i));
+        }
+
+        try (PinningDetector detector = PinningDetector.start()) {
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < TASKS; i++) {
+                    byte[] image = images.get(i);
+                    futures.add(executor.submit(() -> request(transaction, owner, principal, image)));
+                }
+                for (Future<?> future : futures) {
+                    assertThat(future.get()).isEqualTo(true);
+                }
+            }
+
+            assertThat(detector.pinnedStacksExcept(ALLOWED_PINNING)).isEmpty();
+        }
+    }
+
+    /**
+     * Une requête d'upload authentifiée, telle que l'exécutent RentalController et RentalService
+     */
+    private boolean request(TransactionTemplate transaction, User owner, UserDetails principal, byte[] image)
+            throws IOException {
+        String token = jwtUtil.generateToken(principal);
+        if (!jwtUtil.validateToken(token, principal)) {
+            return false;
+        }
+        userRepository.findByEmail(owner.getEmail()).orElseThrow();
+
+        FileStorageService.ReceivedFile received = fileStorageService.receive(new ByteArrayInputStream(image));
+        try {
+            String url = transaction.execute(status -> {
+                storageQuotaService.charge(owner.getId(), received.size());
+                try {
+                    return fileStorageService.commit(received);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return url != null;
+        } finally {
+            fileStorageService.discard(received);
+        }
+    }
+
+    private static byte[] jpeg(int seed) throws IOException {
+        BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                image.setRGB(x, y, (x * 4) << 16 | (y * 4) << 8 | seed & 0xFF);
+            }
+        }
+        image.setRGB(0, 0, seed);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", output);
+        return output.toByteArray();
+    }
+
+    private static Path createUploadDir() {
+        try {
+            return Files.createTempDirectory("chatop-pinning-uploads");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
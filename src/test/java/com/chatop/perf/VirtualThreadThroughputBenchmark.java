@@ -0,0 +1,156 @@
+package com.chatop.perf;
+
+import com.chatop.service.FileStorageService;
+import com.chatop.service.StorageQuotaService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compare le débit des virtual threads et du pool de threads plateforme
+ * (200 threads, valeur par défaut de Tomcat) avec 1000 clients simultanés.
+ *
+ * Chaque requête simulée suit le chemin réel d'un upload sur la base H2 du profil loadtest :
+ * un aller-retour base de données, FileStorageService.receive(), puis charge() du quota et
+ * commit() dans une transaction. H2 étant en mémoire, la latence réseau de MySQL est reproduite
+ * dans le driver (DB_LATENCY) : la connexion reste occupée pendant l'attente, comme avec MySQL.
+ *
+ * Le pool de connexions (spring.datasource.hikari.maximum-pool-size) plafonne le débit
+ * des deux modèles : le gain mesuré est celui d'une requête qui attend la base.
+ *
+ * Exécution : mvn -Pperf test -Dtest=VirtualThreadThroughputBenchmark
+ */
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("loadtest")
+class VirtualThreadThroughputBenchmark {
+
+    private static final int CLIENTS = 1_000;
+    private static final int REQUESTS_PER_CLIENT = 20;
+    private static final int TOMCAT_MAX_THREADS = 200;
+    private static final long DB_LATENCY_MS = 5;
+
+    private static final Path UPLOAD_DIR = createUploadDir();
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private StorageQuotaService storageQuotaService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @DynamicPropertySource
+    static void uploadProperties(DynamicPropertyRegistry registry) {
+        registry.add("upload.path", UPLOAD_DIR::toString);
+    }
+
+    @Test
+    void compareVirtualAndPlatformThreads() throws Exception {
+        // Attente exécutée par H2 sur le thread appelant, connexion empruntée au pool
+        jdbcTemplate.execute("CREATE ALIAS IF NOT EXISTS DB_LATENCY FOR 'java.lang.Thread.sleep(long)'");
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        byte[] picture = jpeg();
+
+        // Préchauffage du JIT
+        run(Executors.newFixedThreadPool(TOMCAT_MAX_THREADS), transaction, picture);
+
+        double platform = run(Executors.newFixedThreadPool(TOMCAT_MAX_THREADS), transaction, picture);
+        double virtual = run(Executors.newVirtualThreadPerTaskExecutor(), transaction, picture);
+
+        System.out.printf("Clients simultanés : %d%n", CLIENTS);
+        System.out.printf("Pool plateforme (%d threads) : %.0f req/s%n", TOMCAT_MAX_THREADS, platform);
+        System.out.printf("Virtual threads              : %.0f req/s%n", virtual);
+        System.out.printf("Gain                         : x%.2f%n", virtual / platform);
+    }
+
+    /**
+     * Exécute la charge complète sur l'executor donné
+     *
+     * @return le débit en requêtes par seconde
+     */
+    private double run(ExecutorService executor, TransactionTemplate transaction, byte[] picture) {
+        AtomicLong completed = new AtomicLong();
+        long start = System.nanoTime();
+
+        try (executor) {
+            for (int client = 0; client < CLIENTS; client++) {
+                // Un propriétaire par client : pas de contention sur une même ligne STORAGE_USAGE
+                long ownerId = client + 1;
+                executor.submit(() -> {
+                    for (int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+                        jdbcTemplate.execute("CALL DB_LATENCY(" + DB_LATENCY_MS + ")");
+                        upload(transaction, ownerId, picture);
+                        completed.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        return completed.get() / seconds;
+    }
+
+    /**
+     * Upload tel que l'exécutent RentalController et RentalService (contenu dédoublonné après le premier)
+     */
+    private void upload(TransactionTemplate transaction, long ownerId, byte[] picture) throws IOException {
+        FileStorageService.ReceivedFile received = fileStorageService.receive(new ByteArrayInputStream(picture));
+        try {
+            transaction.executeWithoutResult(status -> {
+                storageQuotaService.charge(ownerId, received.size());
+                try {
+                    fileStorageService.commit(received);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } finally {
+            fileStorageService.discard(received);
+        }
+    }
+
+    private static byte[] jpeg() throws IOException {
+        BufferedImage image = new BufferedImage(128, 128, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 128; y++) {
+            for (int x = 0; x < 128; x++) {
+                image.setRGB(x, y, (x * 2) << 16 | (y * 2) << 8 | 128);
+            }
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", output);
+        return output.toByteArray();
+    }
+
+    private static Path createUploadDir() {
+        try {
+            return Files.createTempDirectory("chatop-bench-uploads");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
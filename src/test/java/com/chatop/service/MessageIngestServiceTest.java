@@ -0,0 +1,230 @@
+package com.chatop.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests de MessageIngestService sur une base H2 : journal, points de reprise, redémarrage
+ *
+ * Chaque redémarrage est une nouvelle instance sur le même journal et la même base :
+ * les assertions portent sur les lignes de MESSAGES, c'est-à-dire sur ce qui est perdu ou doublé.
+ */
+class MessageIngestServiceTest {
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 5, 1, 10, 30);
+
+    @TempDir
+    Path dir;
+
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+    private ApplicationEventPublisher eventPublisher;
+    private Path journal;
+    private MessageIngestService service;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:ingest-" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        // Contrainte pour provoquer l'échec d'un lot (location inexistante)
+        jdbcTemplate.execute("CREATE TABLE MESSAGES (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                + "rental_id BIGINT NOT NULL CHECK (rental_id > 0), user_id BIGINT NOT NULL, owner_id BIGINT, "
+                + "message VARCHAR(2000) NOT NULL, created_at TIMESTAMP, updated_at TIMESTAMP)");
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        journal = dir.resolve("messages.journal");
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void replayReinsertsOnlyMessagesAfterLastCheckpoint() throws IOException {
+        journal(line(1, "premier"), line(2, "deuxième"), "C 2\n", line(3, "troisième"), line(4, "quatrième"));
+
+        service = start("journal", DataSize.ofMegabytes(16));
+
+        assertThat(messages()).containsExactly("troisième", "quatrième");
+        assertThat(Files.size(journal)).isZero();
+        verify(eventPublisher, atLeastOnce()).publishEvent(any(MessageCreatedEvent.class));
+    }
+
+    @Test
+    void checkpointBeforeItsMessagesIsApplied() throws IOException {
+        // Point de reprise écrit pendant que d'autres messages étaient déjà journalisés
+        journal(line(1, "premier"), line(2, "deuxième"), line(3, "troisième"), "C 2\n", line(4, "quatrième"), "C 3\n");
+
+        service = start("journal", DataSize.ofMegabytes(16));
+
+        assertThat(messages()).containsExactly("quatrième");
+    }
+
+    @Test
+    void truncatedLastLineIsSkipped() throws IOException {
+        String torn = line(2, "coupé par un arrêt brutal");
+        // Coupure sur une frontière Base64 : la ligne semblerait complète sans son retour à la ligne
+        int cut = torn.lastIndexOf(' ') + 1 + 8;
+        journal(line(1, "complet"), torn.substring(0, cut));
+
+        service = start("journal", DataSize.ofMegabytes(16));
+
+        assertThat(messages()).containsExactly("complet");
+    }
+
+    @Test
+    void corruptLineIsSkipped() throws IOException {
+        journal(line(1, "avant"), "M 2 illisible\n", line(3, "après"));
+
+        service = start("journal", DataSize.ofMegabytes(16));
+
+        assertThat(messages()).containsExactly("avant", "après");
+    }
+
+    @Test
+    void acceptedMessagesAreNotReinsertedAfterRestart() throws Exception {
+        service = start("journal", DataSize.ofMegabytes(16));
+        for (int i = 1; i <= 5; i++) {
+            service.submit(10L, 20L, 30L, "message " + i, CREATED_AT);
+        }
+        await(() -> messages().size() == 5);
+
+        service.shutdown();
+        service = start("journal", DataSize.ofMegabytes(16));
+
+        assertThat(messages()).containsExactly("message 1", "message 2", "message 3", "message 4", "message 5");
+    }
+
+    @Test
+    void shutdownFlushesQueuedMessages() throws Exception {
+        service = start("journal", DataSize.ofMegabytes(16));
+        for (int i = 1; i <= 50; i++) {
+            service.submit(10L, 20L, 30L, "message " + i, CREATED_AT);
+        }
+
+        service.shutdown();
+        assertThat(messages()).hasSize(50);
+        assertThatThrownBy(() -> service.submit(10L, 20L, 30L, "trop tard", CREATED_AT))
+                .isInstanceOfSatisfying(MessageRejectedException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+
+        service = start("journal", DataSize.ofMegabytes(16));
+        assertThat(messages()).hasSize(50);
+    }
+
+    @Test
+    void invalidMessageIsDroppedWithoutLosingTheRestOfItsBatch() throws Exception {
+        service = start("journal", DataSize.ofMegabytes(16));
+        service.submit(10L, 20L, 30L, "valide 1", CREATED_AT);
+        service.submit(-1L, 20L, 30L, "location invalide", CREATED_AT);
+        service.submit(10L, 20L, 30L, "valide 2", CREATED_AT);
+        await(() -> messages().size() == 2);
+
+        // Les messages traités un par un sont couverts par un point de reprise : aucun rejeu
+        service.shutdown();
+        service = start("journal", DataSize.ofMegabytes(16));
+
+        assertThat(messages()).containsExactly("valide 1", "valide 2");
+    }
+
+    @Test
+    void journalIsCompactedOnceEverythingIsStored() throws Exception {
+        service = start("journal", DataSize.ofBytes(1));
+        for (int i = 1; i <= 3; i++) {
+            service.submit(10L, 20L, 30L, "message " + i, CREATED_AT);
+        }
+
+        await(() -> messages().size() == 3 && size(journal) == 0);
+
+        service.shutdown();
+        service = start("journal", DataSize.ofBytes(1));
+        assertThat(messages()).hasSize(3);
+    }
+
+    @Test
+    void messagesAreRefusedBeforeStart() {
+        service = newService("journal", DataSize.ofMegabytes(16));
+
+        assertThatThrownBy(() -> service.submit(10L, 20L, 30L, "trop tôt", CREATED_AT))
+                .isInstanceOfSatisfying(MessageRejectedException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+    }
+
+    @Test
+    void noJournalWithoutDurability() throws Exception {
+        service = start("none", DataSize.ofMegabytes(16));
+        service.submit(10L, 20L, 30L, "message", CREATED_AT);
+        await(() -> messages().size() == 1);
+
+        assertThat(journal).doesNotExist();
+    }
+
+    private MessageIngestService start(String durability, DataSize compactSize) throws IOException {
+        MessageIngestService started = newService(durability, compactSize);
+        started.start();
+        return started;
+    }
+
+    private MessageIngestService newService(String durability, DataSize compactSize) {
+        return new MessageIngestService(jdbcTemplate, transactionManager, eventPublisher, new SimpleMeterRegistry(),
+                true, 100, 10, Duration.ofMillis(5), durability, journal.toString(), compactSize);
+    }
+
+    private List<String> messages() {
+        return jdbcTemplate.queryForList("SELECT message FROM MESSAGES ORDER BY id", String.class);
+    }
+
+    private void journal(String... lines) throws IOException {
+        Files.writeString(journal, String.join("", lines), StandardCharsets.UTF_8);
+    }
+
+    private static String line(long sequence, String message) {
+        return new MessageIngestService.PendingMessage(sequence, 10L, 20L, 30L, message, CREATED_AT).toJournalLine();
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition non atteinte en 5 s").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
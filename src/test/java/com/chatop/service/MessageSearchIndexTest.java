@@ -0,0 +1,134 @@
+package com.chatop.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests de MessageSearchIndex : analyse des recherches et ouverture d'un index verrouillé
+ */
+class MessageSearchIndexTest {
+
+    @TempDir
+    Path indexPath;
+
+    private SimpleMeterRegistry meterRegistry;
+    private MessageSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        index = newIndex(meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        index.close();
+    }
+
+    @Test
+    void quotedWordsBecomeAPhrase() {
+        List<Query> parts = index.parse("\"place de parking\"");
+
+        assertThat(parts).hasSize(1);
+        PhraseQuery phrase = (PhraseQuery) parts.get(0);
+        assertThat(phrase.getTerms()).extracting(Term::text).containsExactly("place", "de", "parking");
+        assertThat(phrase.getPositions()).containsExactly(0, 1, 2);
+    }
+
+    @Test
+    void separateWordsAreAllRequired() {
+        assertThat(index.parse("parking dispo")).containsExactly(term("parking"), term("dispo"));
+    }
+
+    @Test
+    void trailingStarBecomesAPrefix() {
+        List<Query> parts = index.parse("Park*");
+
+        assertThat(parts).hasSize(1);
+        assertThat(((PrefixQuery) parts.get(0)).getPrefix()).isEqualTo(new Term("text", "park"));
+    }
+
+    @Test
+    void shortPrefixIsRejected() {
+        assertThatThrownBy(() -> index.parse("p*"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("préfixe");
+    }
+
+    @Test
+    void elidedArticleIsRemoved() {
+        assertThat(index.parse("l'Appartement")).containsExactly(term("appartement"));
+    }
+
+    @Test
+    void accentsAreFolded() {
+        assertThat(index.parse("Réponse")).containsExactly(term("reponse"));
+        assertThat(index.parse("\"Déjà Loué\"")).singleElement()
+                .satisfies(query -> assertThat(((PhraseQuery) query).getTerms())
+                        .extracting(Term::text).containsExactly("deja", "loue"));
+    }
+
+    @Test
+    void blankOrTooLongQueryIsRejected() {
+        assertThatThrownBy(() -> index.parse("   "))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> index.parse("\"\""))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> index.parse("a".repeat(201)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void lockedIndexFailsSoft() throws IOException {
+        // La première instance ouvre l'index (et prend son verrou) au premier message
+        index.onMessageCreated(event(1L));
+        assertThat(meterRegistry.get("chatop.messages.search.documents").gauge().value()).isEqualTo(1);
+
+        SimpleMeterRegistry otherRegistry = new SimpleMeterRegistry();
+        MessageSearchIndex other = newIndex(otherRegistry);
+        try {
+            assertThatCode(() -> other.onMessageCreated(event(2L))).doesNotThrowAnyException();
+            assertThatThrownBy(() -> other.search(7L, "parking", null, 20))
+                    .isInstanceOf(IllegalStateException.class);
+            assertThat(otherRegistry.get("chatop.messages.search.documents").gauge().value()).isZero();
+            // Une recherche invalide reste une erreur du client, même index indisponible
+            assertThatThrownBy(() -> other.search(7L, " ", null, 20))
+                    .isInstanceOf(IllegalArgumentException.class);
+        } finally {
+            other.close();
+        }
+    }
+
+    private MessageSearchIndex newIndex(SimpleMeterRegistry registry) {
+        return new MessageSearchIndex(mock(JdbcTemplate.class), registry, indexPath, Duration.ofMinutes(1));
+    }
+
+    private static TermQuery term(String text) {
+        return new TermQuery(new Term("text", text));
+    }
+
+    private static MessageCreatedEvent event(Long messageId) {
+        return new MessageCreatedEvent(messageId, 3L, 5L, 7L, "Place de parking disponible ?",
+                LocalDateTime.now(), System.nanoTime());
+    }
+}
@@ -0,0 +1,185 @@
+package com.chatop.service;
+
+import com.chatop.dto.UploadSessionResponse;
+import com.chatop.model.UploadSession;
+import com.chatop.model.User;
+import com.chatop.repository.UploadSessionRepository;
+import com.chatop.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests d'UploadSessionService : offsets, reprise après coupure et finalisation
+ */
+class UploadSessionServiceTest {
+
+    private static final String EMAIL = "owner@chatop.test";
+    private static final String ID = "3f1c2b9a-5e7d-4c1a-9b2e-8d6f0a4c7e21";
+    private static final int SIZE = 1000;
+
+    @TempDir
+    Path uploadDir;
+
+    private UploadSessionRepository uploadSessionRepository;
+    private UploadSessionService service;
+    private UploadSession session;
+    private byte[] image;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        uploadSessionRepository = mock(UploadSessionRepository.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        User owner = new User();
+        owner.setId(7L);
+        owner.setEmail(EMAIL);
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(owner));
+
+        // La même instance est relue à chaque appel : elle tient lieu de ligne UPLOAD_SESSIONS
+        session = new UploadSession(ID, 7L, (long) SIZE, 0L, null, null, LocalDateTime.now(), LocalDateTime.now());
+        when(uploadSessionRepository.findById(ID)).thenReturn(Optional.of(session));
+
+        service = new UploadSessionService(uploadSessionRepository, userRepository, uploadDir.toString(),
+                DataSize.ofKilobytes(10), DataSize.ofBytes(400), Duration.ofHours(24));
+
+        Files.createDirectories(uploadDir.resolve(FileStorageService.TEMP_DIR));
+        Files.createFile(part());
+
+        // En-tête PNG suivi d'octets quelconques
+        image = new byte[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            image[i] = (byte) (i * 31);
+        }
+        System.arraycopy(new byte[]{(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A}, 0, image, 0, 8);
+    }
+
+    @Test
+    void chunkAfterReceivedOffsetIsRejected() {
+        session.setReceived(300L);
+
+        assertThatThrownBy(() -> write(400, 500))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("reprendre à l'offset 300");
+        assertThatThrownBy(() -> write(-1, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(uploadSessionRepository, never()).advance(any(), anyLong(), any());
+    }
+
+    @Test
+    void chunkLargerThanLimitIsRejected() {
+        assertThatThrownBy(() -> write(0, 401))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("taille maximale");
+    }
+
+    @Test
+    void overlappingChunkRewritesReceivedBytes() throws IOException {
+        assertThat(write(0, 400).getOffset()).isEqualTo(400);
+
+        // Renvoi après une coupure : le morceau recommence avant l'offset reçu
+        UploadSessionResponse resumed = write(300, 700);
+
+        assertThat(resumed.getOffset()).isEqualTo(700);
+        verify(uploadSessionRepository).advance(eq(ID), eq(700L), any());
+        assertThat(Arrays.copyOf(Files.readAllBytes(part()), 700)).isEqualTo(Arrays.copyOf(image, 700));
+    }
+
+    @Test
+    void interruptedChunkCountsWrittenBytes() throws IOException {
+        InputStream cut = new InputStream() {
+            private int position;
+
+            @Override
+            public int read() throws IOException {
+                if (position == 250) {
+                    throw new IOException("Connexion coupée");
+                }
+                return image[position++] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (position == 250) {
+                    throw new IOException("Connexion coupée");
+                }
+                int count = Math.min(length, 250 - position);
+                System.arraycopy(image, position, buffer, offset, count);
+                position += count;
+                return count;
+            }
+        };
+
+        assertThatThrownBy(() -> service.writeChunk(ID, 0, cut, EMAIL)).isInstanceOf(IOException.class);
+
+        // Le client relit l'offset et reprend après les octets déjà écrits
+        verify(uploadSessionRepository).advance(eq(ID), eq(250L), any());
+    }
+
+    @Test
+    void completeRequiresAllBytesThenHashesFile() throws Exception {
+        write(0, 400);
+        assertThatThrownBy(() -> service.complete(ID, EMAIL))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Upload incomplet");
+
+        write(400, 800);
+        write(800, SIZE);
+        UploadSessionResponse completed = service.complete(ID, EMAIL);
+
+        assertThat(completed.isComplete()).isTrue();
+        assertThat(session.getContentType()).isEqualTo("image/png");
+        assertThat(session.getHash())
+                .isEqualTo(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(image)));
+        assertThatThrownBy(() -> write(0, 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("déjà finalisé");
+    }
+
+    @Test
+    void completeRejectsNonImage() throws IOException {
+        Arrays.fill(image, 0, 8, (byte) 0);
+        write(0, 400);
+        write(400, 800);
+        write(800, SIZE);
+
+        assertThatThrownBy(() -> service.complete(ID, EMAIL))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("image");
+        assertThat(session.getHash()).isNull();
+    }
+
+    /**
+     * Envoie les octets [from, to) de l'image comme un morceau
+     */
+    private UploadSessionResponse write(int from, int to) throws IOException {
+        byte[] chunk = from >= 0 ? Arrays.copyOfRange(image, from, to) : new byte[to];
+        return service.writeChunk(ID, from, new ByteArrayInputStream(chunk), EMAIL);
+    }
+
+    private Path part() {
+        return uploadDir.resolve(FileStorageService.TEMP_DIR).resolve(ID + UploadSessionService.PART_SUFFIX);
+    }
+}
@@ -0,0 +1,264 @@
+package com.chatop.storage;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Stockage objet S3 minimal en mémoire, pour les tests (accès par chemin : /bucket/clé)
+ *
+ * Gère PUT, GET (avec Range), HEAD, DELETE et le listage ListObjectsV2, et comme S3 :
+ * - décode les corps "aws-chunked" envoyés par le SDK
+ * - refuse un PUT dont le contenu ne correspond pas à x-amz-checksum-sha256 (400 BadDigest)
+ *
+ * Les signatures ne sont pas vérifiées.
+ */
+final class FakeS3Server implements AutoCloseable {
+
+    private final HttpServer server;
+    // Clés "bucket/clé" triées, comme le listage S3
+    private final NavigableMap<String, StoredObject> objects = new ConcurrentSkipListMap<>();
+
+    FakeS3Server() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    URI endpoint() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    /**
+     * @return le contenu stocké sous "bucket/clé", null si absent
+     */
+    byte[] content(String bucket, String key) {
+        StoredObject object = objects.get(bucket + "/" + key);
+        return object != null ? object.content() : null;
+    }
+
+    String contentType(String bucket, String key) {
+        StoredObject object = objects.get(bucket + "/" + key);
+        return object != null ? object.contentType() : null;
+    }
+
+    /**
+     * Modifie la date de dernière écriture d'un objet (objets anciens)
+     */
+    void setLastModified(String bucket, String key, Instant lastModified) {
+        objects.computeIfPresent(bucket + "/" + key,
+                (path, object) -> new StoredObject(object.content(), object.contentType(), lastModified));
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath().substring(1);
+            switch (exchange.getRequestMethod()) {
+                case "PUT" -> put(exchange, path);
+                case "GET" -> {
+                    int slash = path.indexOf('/');
+                    if (slash < 0 || slash == path.length() - 1) {
+                        list(exchange, slash < 0 ? path : path.substring(0, slash));
+                    } else {
+                        get(exchange, path, true);
+                    }
+                }
+                case "HEAD" -> get(exchange, path, false);
+                case "DELETE" -> {
+                    objects.remove(path);
+                    exchange.sendResponseHeaders(204, -1);
+                }
+                default -> exchange.sendResponseHeaders(405, -1);
+            }
+        }
+    }
+
+    private void put(HttpExchange exchange, String path) throws IOException {
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        String contentSha256 = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        if (contentSha256 != null && contentSha256.startsWith("STREAMING-")) {
+            body = decodeChunked(body);
+        }
+
+        String checksum = exchange.getRequestHeaders().getFirst("x-amz-checksum-sha256");
+        if (checksum != null && !checksum.equals(Base64.getEncoder().encodeToString(digest("SHA-256", body)))) {
+            error(exchange, 400, "BadDigest", "The SHA256 you specified did not match the calculated checksum.");
+            return;
+        }
+
+        objects.put(path, new StoredObject(body, exchange.getRequestHeaders().getFirst("Content-Type"),
+                Instant.now().truncatedTo(ChronoUnit.SECONDS)));
+        exchange.getResponseHeaders().set("ETag", etag(body));
+        exchange.sendResponseHeaders(200, -1);
+    }
+
+    private void get(HttpExchange exchange, String path, boolean sendBody) throws IOException {
+        StoredObject object = objects.get(path);
+        if (object == null) {
+            if (sendBody) {
+                error(exchange, 404, "NoSuchKey", "The specified key does not exist.");
+            } else {
+                exchange.sendResponseHeaders(404, -1);
+            }
+            return;
+        }
+
+        byte[] content = object.content();
+        int start = 0;
+        int end = content.length - 1;
+        int status = 200;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null && range.startsWith("bytes=")) {
+            String[] bounds = range.substring("bytes=".length()).split("-", 2);
+            start = Integer.parseInt(bounds[0]);
+            if (!bounds[1].isEmpty()) {
+                end = Math.min(end, Integer.parseInt(bounds[1]));
+            }
+            if (start >= content.length) {
+                error(exchange, 416, "InvalidRange", "The requested range is not satisfiable");
+                return;
+            }
+            status = 206;
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+        }
+
+        exchange.getResponseHeaders().set("ETag", etag(content));
+        if (object.contentType() != null) {
+            exchange.getResponseHeaders().set("Content-Type", object.contentType());
+        }
+        if (!sendBody) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, end - start + 1);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(content, start, end - start + 1);
+        }
+    }
+
+    /**
+     * ListObjectsV2 : paramètres start-after et max-keys
+     */
+    private void list(HttpExchange exchange, String bucket) throws IOException {
+        Map<String, String> query = new HashMap<>();
+        String rawQuery = exchange.getRequestURI().getRawQuery();
+        if (rawQuery != null) {
+            for (String parameter : rawQuery.split("&")) {
+                String[] pair = parameter.split("=", 2);
+                query.put(pair[0], pair.length > 1 ? URLDecoder.decode(pair[1], StandardCharsets.UTF_8) : "");
+            }
+        }
+        String prefix = bucket + "/";
+        String startAfter = prefix + query.getOrDefault("start-after", "");
+        int maxKeys = Integer.parseInt(query.getOrDefault("max-keys", "1000"));
+
+        StringBuilder contents = new StringBuilder();
+        int count = 0;
+        boolean truncated = false;
+        for (Map.Entry<String, StoredObject> entry : objects.tailMap(startAfter, false).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            if (count == maxKeys) {
+                truncated = true;
+                break;
+            }
+            StoredObject object = entry.getValue();
+            contents.append("<Contents><Key>").append(entry.getKey().substring(prefix.length())).append("</Key>")
+                    .append("<LastModified>").append(object.lastModified()).append("</LastModified>")
+                    .append("<ETag>").append(etag(object.content())).append("</ETag>")
+                    .append("<Size>").append(object.content().length).append("</Size>")
+                    .append("<StorageClass>STANDARD</StorageClass></Contents>");
+            count++;
+        }
+
+        byte[] body = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">"
+                + "<Name>" + bucket + "</Name><KeyCount>" + count + "</KeyCount><MaxKeys>" + maxKeys + "</MaxKeys>"
+                + "<IsTruncated>" + truncated + "</IsTruncated>" + contents + "</ListBucketResult>")
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    private static void error(HttpExchange exchange, int status, String code, String message) throws IOException {
+        byte[] body = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?><Error><Code>" + code + "</Code><Message>"
+                + message + "</Message></Error>").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    /**
+     * Décode un corps "aws-chunked" : "taille-hexa[;chunk-signature=...]\r\ndonnées\r\n" ... "0\r\n"
+     */
+    private static byte[] decodeChunked(byte[] body) throws IOException {
+        InputStream input = new ByteArrayInputStream(body);
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        while (true) {
+            String line = readLine(input);
+            int separator = line.indexOf(';');
+            int size = Integer.parseInt((separator >= 0 ? line.substring(0, separator) : line).trim(), 16);
+            if (size == 0) {
+                return decoded.toByteArray();
+            }
+            decoded.write(input.readNBytes(size));
+            readLine(input);
+        }
+    }
+
+    private static String readLine(InputStream input) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = input.read()) != -1 && c != '\n') {
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    private static String etag(byte[] content) {
+        return "\"" + HexFormat.of().formatHex(digest("MD5", content)) + "\"";
+    }
+
+    private static byte[] digest(String algorithm, byte[] content) {
+        try {
+            return MessageDigest.getInstance(algorithm).digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record StoredObject(byte[] content, String contentType, Instant lastModified) {
+    }
+}
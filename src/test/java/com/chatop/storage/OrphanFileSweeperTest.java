@@ -0,0 +1,161 @@
+package com.chatop.storage;
+
+import com.chatop.model.StoredFile;
+import com.chatop.repository.RentalPictureRepository;
+import com.chatop.repository.RentalRepository;
+import com.chatop.repository.StoredFileRepository;
+import com.chatop.repository.UploadSessionRepository;
+import com.chatop.service.StorageQuotaService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests d'OrphanFileSweeper et du parcours par lots de LocalStorageBackend
+ */
+class OrphanFileSweeperTest {
+
+    private static final String REFERENCED = "a".repeat(64);
+    private static final String ORPHAN = "b".repeat(64);
+
+    @TempDir
+    Path uploadDir;
+
+    private RentalRepository rentalRepository;
+    private RentalPictureRepository rentalPictureRepository;
+    private StoredFileRepository storedFileRepository;
+    private UploadSessionRepository uploadSessionRepository;
+
+    @BeforeEach
+    void setUp() {
+        rentalRepository = mock(RentalRepository.class);
+        rentalPictureRepository = mock(RentalPictureRepository.class);
+        storedFileRepository = mock(StoredFileRepository.class);
+        uploadSessionRepository = mock(UploadSessionRepository.class);
+    }
+
+    @Test
+    void changedPublicUrlSweepsNothingReferenced() throws Exception {
+        // Les locations référencent encore les anciennes URLs (http://localhost:3001/uploads/...) :
+        // aucune ne correspond à la nouvelle URL publique
+        LocalStorageBackend storage = new LocalStorageBackend(uploadDir, "https://cdn.chatop.test/images/");
+        Path referenced = file(shardedKey(REFERENCED, ".jpg"));
+        Path thumbnail = file(shardedKey(REFERENCED, "_w320.jpg"));
+        Path legacy = file("legacy-photo.jpg");
+        Path orphan = file(shardedKey(ORPHAN, ".jpg"));
+
+        when(storedFileRepository.findForUpdate(REFERENCED)).thenReturn(Optional.of(
+                new StoredFile(REFERENCED, shardedKey(REFERENCED, ".jpg"), 64L, 1, null, null, LocalDateTime.now())));
+        when(rentalRepository.existsByPictureEndingWith("/legacy-photo.jpg")).thenReturn(true);
+
+        sweeper(storage, 500).sweep();
+
+        assertThat(referenced).exists();
+        assertThat(thumbnail).exists();
+        assertThat(legacy).exists();
+        assertThat(orphan).doesNotExist();
+    }
+
+    @Test
+    void unreferencedStoredFileIsSwept() throws Exception {
+        LocalStorageBackend storage = new LocalStorageBackend(uploadDir, "http://localhost:3001/uploads/");
+        Path released = file(shardedKey(REFERENCED, ".jpg"));
+        when(storedFileRepository.findForUpdate(REFERENCED)).thenReturn(Optional.of(
+                new StoredFile(REFERENCED, shardedKey(REFERENCED, ".jpg"), 64L, 0, null, null, LocalDateTime.now())));
+
+        sweeper(storage, 500).sweep();
+
+        assertThat(released).doesNotExist();
+    }
+
+    @Test
+    void localListingResumesAfterCursor() throws Exception {
+        LocalStorageBackend storage = new LocalStorageBackend(uploadDir, "http://localhost:3001/uploads/");
+        for (String key : List.of("z.jpg", "ab/cd/2.jpg", "ab/cd/1.jpg", "a.jpg", "cd/ef/3.jpg", ".tmp/x.part")) {
+            file(key);
+        }
+
+        List<StorageBackend.ObjectInfo> first = storage.list(null, 2);
+        assertThat(first).extracting(StorageBackend.ObjectInfo::key).containsExactly("a.jpg", "ab/cd/1.jpg");
+        List<StorageBackend.ObjectInfo> second = storage.list("ab/cd/1.jpg", 2);
+        assertThat(second).extracting(StorageBackend.ObjectInfo::key).containsExactly("ab/cd/2.jpg", "cd/ef/3.jpg");
+        List<StorageBackend.ObjectInfo> last = storage.list("cd/ef/3.jpg", 2);
+        assertThat(last).extracting(StorageBackend.ObjectInfo::key).containsExactly("z.jpg");
+    }
+
+    @Test
+    void tempFilesKeepLiveUploadSessions() throws Exception {
+        LocalStorageBackend storage = new LocalStorageBackend(uploadDir, "http://localhost:3001/uploads/");
+        String live = "11111111-1111-1111-1111-111111111111";
+        String expired = "22222222-2222-2222-2222-222222222222";
+        Path livePart = file(".tmp/" + live + ".part");
+        Path expiredPart = file(".tmp/" + expired + ".part");
+        Path abandoned = file(".tmp/33333333-3333-3333-3333-333333333333.upload");
+        when(uploadSessionRepository.existsById(live)).thenReturn(true);
+
+        sweeper(storage, 500).sweep();
+
+        assertThat(livePart).exists();
+        assertThat(expiredPart).doesNotExist();
+        assertThat(abandoned).doesNotExist();
+    }
+
+    @Test
+    void tempFilesAreExaminedBeyondFirstBatch() throws Exception {
+        LocalStorageBackend storage = new LocalStorageBackend(uploadDir, "http://localhost:3001/uploads/");
+        List<String> live = List.of("a", "b", "c").stream()
+                .map(prefix -> prefix.repeat(8) + "-0000-0000-0000-000000000000").toList();
+        for (String id : live) {
+            file(".tmp/" + id + ".part");
+            when(uploadSessionRepository.existsById(id)).thenReturn(true);
+        }
+        Path abandoned = file(".tmp/dddddddd-0000-0000-0000-000000000000.upload");
+
+        // Lots de 2 : les sessions actives occupent les premiers noms, le fichier abandonné vient au second lot
+        OrphanFileSweeper sweeper = sweeper(storage, 2);
+        sweeper.sweep();
+        assertThat(abandoned).exists();
+        sweeper.sweep();
+        assertThat(abandoned).doesNotExist();
+        for (String id : live) {
+            assertThat(uploadDir.resolve(".tmp/" + id + ".part")).exists();
+        }
+    }
+
+    private OrphanFileSweeper sweeper(StorageBackend storage, int batchSize) {
+        return new OrphanFileSweeper(storage, rentalRepository, rentalPictureRepository, storedFileRepository,
+                uploadSessionRepository, mock(StorageQuotaService.class), new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                new SimpleMeterRegistry(), uploadDir.toString(), Duration.ofHours(24), batchSize, 10, 1_000_000);
+    }
+
+    /**
+     * Crée un fichier antérieur au délai de grâce
+     */
+    private Path file(String key) throws Exception {
+        Path file = uploadDir.resolve(key);
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[64]);
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(Duration.ofDays(3))));
+        return file;
+    }
+
+    private static String shardedKey(String hash, String suffix) {
+        return hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + suffix;
+    }
+}
@@ -0,0 +1,163 @@
+package com.chatop.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests de S3StorageBackend contre un stockage S3 local en mémoire (FakeS3Server)
+ */
+class S3StorageBackendTest {
+
+    private static final String BUCKET = "chatop-images";
+    private static final String PUBLIC_URL = "https://images.chatop.test/";
+    private static final String KEY = "ab/cd/abcdef.jpg";
+
+    @TempDir
+    Path tempDir;
+
+    private FakeS3Server server;
+    private S3Client client;
+    private S3Presigner presigner;
+    private S3StorageBackend backend;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeS3Server();
+        StaticCredentialsProvider credentials = StaticCredentialsProvider.create(AwsBasicCredentials.create("test", "test"));
+        client = S3Client.builder()
+                .region(Region.EU_WEST_3)
+                .endpointOverride(server.endpoint())
+                .forcePathStyle(true)
+                .credentialsProvider(credentials)
+                .build();
+        presigner = S3Presigner.builder()
+                .region(Region.EU_WEST_3)
+                .endpointOverride(server.endpoint())
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build())
+                .credentialsProvider(credentials)
+                .build();
+        backend = new S3StorageBackend(client, presigner, BUCKET, PUBLIC_URL, Duration.ofMinutes(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        presigner.close();
+        client.close();
+        server.close();
+    }
+
+    @Test
+    void storeReadAndDelete() throws Exception {
+        byte[] content = jpeg(4096);
+        Path source = Files.write(tempDir.resolve("upload.tmp"), content);
+
+        backend.store(KEY, source, "image/jpeg");
+
+        assertThat(source).doesNotExist();
+        assertThat(server.content(BUCKET, KEY)).isEqualTo(content);
+        assertThat(server.contentType(BUCKET, KEY)).isEqualTo("image/jpeg");
+        assertThat(backend.exists(KEY)).isTrue();
+
+        StorageBackend.ObjectHeader header = backend.readHeader(KEY, 12);
+        assertThat(header.size()).isEqualTo(content.length);
+        assertThat(header.header()).hasSize(12).startsWith((byte) 0xFF, (byte) 0xD8, (byte) 0xFF);
+
+        try (InputStream input = backend.open(KEY)) {
+            assertThat(input.readAllBytes()).isEqualTo(content);
+        }
+
+        assertThat(backend.publicUrl(KEY)).isEqualTo(PUBLIC_URL + KEY);
+        assertThat(backend.keyOf(PUBLIC_URL + KEY)).isEqualTo(KEY);
+        assertThat(backend.keyOf("http://localhost:3001/uploads/photo.jpg")).isNull();
+
+        backend.delete(KEY);
+        assertThat(backend.exists(KEY)).isFalse();
+    }
+
+    @Test
+    void missingObject() throws Exception {
+        assertThat(backend.exists(KEY)).isFalse();
+        assertThat(backend.readHeader(KEY, 12)).isNull();
+        assertThatThrownBy(() -> backend.open(KEY)).isInstanceOf(NoSuchFileException.class);
+    }
+
+    @Test
+    void listInBatches() throws Exception {
+        for (String key : new String[]{"cd/ef/3.jpg", "ab/cd/1.jpg", "ab/cd/2.jpg"}) {
+            backend.store(key, Files.write(tempDir.resolve("upload.tmp"), jpeg(64)), "image/jpeg");
+        }
+
+        List<StorageBackend.ObjectInfo> first = backend.list(null, 2);
+        assertThat(first).extracting(StorageBackend.ObjectInfo::key).containsExactly("ab/cd/1.jpg", "ab/cd/2.jpg");
+        assertThat(first.get(0).size()).isEqualTo(64);
+        assertThat(first.get(0).lastModified()).isNotNull();
+
+        List<StorageBackend.ObjectInfo> second = backend.list(first.get(1).key(), 2);
+        assertThat(second).extracting(StorageBackend.ObjectInfo::key).containsExactly("cd/ef/3.jpg");
+    }
+
+    @Test
+    void presignedUploadIsCheckedByStorage() throws Exception {
+        byte[] content = jpeg(2048);
+        String sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+
+        PresignedUpload upload = backend.presignUpload(KEY, "image/jpeg", content.length, sha256).orElseThrow();
+        assertThat(upload.method()).isEqualTo("PUT");
+        assertThat(upload.url()).startsWith(server.endpoint() + "/" + BUCKET + "/" + KEY);
+        assertThat(upload.headers()).containsKey("x-amz-checksum-sha256");
+
+        HttpClient http = HttpClient.newHttpClient();
+
+        // Contenu différent de celui annoncé : refusé par le stockage
+        byte[] tampered = content.clone();
+        tampered[100] ^= 1;
+        assertThat(send(http, upload, tampered).statusCode()).isEqualTo(400);
+        assertThat(server.content(BUCKET, KEY)).isNull();
+
+        // Contenu annoncé : accepté, sans passer par l'application
+        assertThat(send(http, upload, content).statusCode()).isEqualTo(200);
+        assertThat(server.content(BUCKET, KEY)).isEqualTo(content);
+    }
+
+    private static HttpResponse<Void> send(HttpClient http, PresignedUpload upload, byte[] content) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(upload.url()))
+                .method(upload.method(), HttpRequest.BodyPublishers.ofByteArray(content));
+        upload.headers().forEach(request::header);
+        return http.send(request.build(), HttpResponse.BodyHandlers.discarding());
+    }
+
+    private static byte[] jpeg(int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        content[0] = (byte) 0xFF;
+        content[1] = (byte) 0xD8;
+        content[2] = (byte) 0xFF;
+        return content;
+    }
+}
@@ -0,0 +1,261 @@
+package com.chatop.web;
+
+import com.chatop.model.IdempotencyRecord;
+import com.chatop.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests d'IdempotencyGuard sur une base H2 : réservation, bail, rejeu et empreinte
+ *
+ * Hors transaction de test : chaque opération du repository est validée dans sa propre
+ * transaction, comme en production, et les requêtes simultanées voient les réservations des autres.
+ */
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdempotencyGuardTest {
+
+    private static final String ROUTE = "POST /api/messages";
+    private static final String USER = "client@chatop.test";
+    private static final String KEY = "4f6c1d2e-retry";
+    private static final String FINGERPRINT = "{\"rental_id\":1,\"message\":\"Bonjour\"}";
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private IdempotencyGuard guard;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyRecordRepository.deleteAll();
+        meterRegistry = new SimpleMeterRegistry();
+        guard = new IdempotencyGuard(idempotencyRecordRepository, new ObjectMapper(), meterRegistry,
+                Duration.ofHours(24), Duration.ofMinutes(5), 100);
+    }
+
+    @Test
+    void concurrentRequestsWithSameKeyAreProcessedOnce() throws Exception {
+        int requests = 20;
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<ResponseEntity<?>>> futures = new ArrayList<>();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(requests)) {
+            for (int i = 0; i < requests; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return guard.execute(ROUTE, USER, KEY, FINGERPRINT, () -> {
+                        executions.incrementAndGet();
+                        sleep(100);
+                        return created("Message envoyé");
+                    });
+                }));
+            }
+            start.countDown();
+        }
+
+        assertThat(executions).hasValue(1);
+        int processed = 0;
+        for (Future<ResponseEntity<?>> future : futures) {
+            ResponseEntity<?> response = future.get();
+            if (response.getStatusCode() == HttpStatus.CONFLICT) {
+                continue;
+            }
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+            if (!response.getHeaders().containsKey(IdempotencyGuard.REPLAYED_HEADER)) {
+                processed++;
+            }
+        }
+        assertThat(processed).isEqualTo(1);
+        assertThat(counter("processed")).isEqualTo(1);
+        assertThat(counter("conflict") + counter("replayed")).isEqualTo(requests - 1);
+    }
+
+    @Test
+    void repeatedRequestReplaysStoredResponse() {
+        AtomicInteger executions = new AtomicInteger();
+        Supplier<ResponseEntity<?>> action = () -> {
+            executions.incrementAndGet();
+            return created("Message envoyé");
+        };
+
+        ResponseEntity<?> first = guard.execute(ROUTE, USER, KEY, FINGERPRINT, action);
+
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(first.getHeaders().containsKey(IdempotencyGuard.REPLAYED_HEADER)).isFalse();
+
+        // Depuis le cache mémoire, puis depuis la base (autre nœud, ou cache vidé)
+        ResponseEntity<?> fromCache = guard.execute(ROUTE, USER, KEY, FINGERPRINT, action);
+        ResponseEntity<?> fromDatabase = newGuard(Duration.ofMinutes(5)).execute(ROUTE, USER, KEY, FINGERPRINT, action);
+
+        for (ResponseEntity<?> replay : List.of(fromCache, fromDatabase)) {
+            assertThat(replay.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+            assertThat(replay.getHeaders().getFirst(IdempotencyGuard.REPLAYED_HEADER)).isEqualTo("true");
+            assertThat(replay.getBody()).isEqualTo("{\"message\":\"Message envoyé\"}");
+        }
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void sameKeyOnAnotherRouteOrUserIsProcessed() {
+        AtomicInteger executions = new AtomicInteger();
+        Supplier<ResponseEntity<?>> action = () -> {
+            executions.incrementAndGet();
+            return created("ok");
+        };
+
+        guard.execute(ROUTE, USER, KEY, FINGERPRINT, action);
+        guard.execute("POST /api/rentals", USER, KEY, FINGERPRINT, action);
+        guard.execute(ROUTE, "autre@chatop.test", KEY, FINGERPRINT, action);
+
+        assertThat(executions).hasValue(3);
+    }
+
+    @Test
+    void keyReusedForAnotherRequestIsRejected() {
+        guard.execute(ROUTE, USER, KEY, FINGERPRINT, () -> created("Message envoyé"));
+
+        ResponseEntity<?> response = guard.execute(ROUTE, USER, KEY, "{\"rental_id\":2,\"message\":\"Autre\"}",
+                () -> created("jamais exécuté"));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+        assertThat(response.getHeaders().containsKey(IdempotencyGuard.REPLAYED_HEADER)).isFalse();
+        assertThat(counter("mismatch")).isEqualTo(1);
+    }
+
+    @Test
+    void errorResponseIsNotStored() {
+        AtomicInteger executions = new AtomicInteger();
+
+        ResponseEntity<?> failed = guard.execute(ROUTE, USER, KEY, FINGERPRINT, () -> {
+            executions.incrementAndGet();
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        });
+        assertThat(failed.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(idempotencyRecordRepository.count()).isZero();
+
+        // Exception pendant le traitement : clé libérée elle aussi
+        assertThatThrownBy(() -> guard.execute(ROUTE, USER, KEY, FINGERPRINT, () -> {
+            executions.incrementAndGet();
+            throw new IllegalStateException("panne");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(idempotencyRecordRepository.count()).isZero();
+
+        ResponseEntity<?> retried = guard.execute(ROUTE, USER, KEY, FINGERPRINT, () -> {
+            executions.incrementAndGet();
+            return created("Message envoyé");
+        });
+        assertThat(retried.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(retried.getHeaders().containsKey(IdempotencyGuard.REPLAYED_HEADER)).isFalse();
+        assertThat(executions).hasValue(3);
+    }
+
+    @Test
+    void expiredPendingLeaseIsReclaimed() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+            // Première tentative bloquée pendant le traitement (réservation en cours)
+            Future<ResponseEntity<?>> stalled = executor.submit(() -> guard.execute(ROUTE, USER, KEY, FINGERPRINT, () -> {
+                started.countDown();
+                await(release);
+                return created("première tentative");
+            }));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // Pendant le bail : la répétition est refusée
+            ResponseEntity<?> during = guard.execute(ROUTE, USER, KEY, FINGERPRINT, () -> created("jamais exécuté"));
+            assertThat(during.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+
+            // Bail écoulé (traitement plus long que idempotency.pending-lease)
+            IdempotencyRecord pending = idempotencyRecordRepository.findAll().getFirst();
+            assertThat(pending.getStatusCode()).isNull();
+            pending.setCreatedAt(pending.getCreatedAt().minusMinutes(10));
+            pending.setExpiresAt(LocalDateTime.now().minusMinutes(5));
+            idempotencyRecordRepository.save(pending);
+
+            ResponseEntity<?> reclaimed = guard.execute(ROUTE, USER, KEY, FINGERPRINT, () -> created("reprise"));
+            assertThat(reclaimed.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+            assertThat(reclaimed.getHeaders().containsKey(IdempotencyGuard.REPLAYED_HEADER)).isFalse();
+
+            // La première tentative se termine : sa réponse est retournée mais n'écrase pas celle de la reprise
+            release.countDown();
+            assertThat(stalled.get(5, TimeUnit.SECONDS).getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        }
+
+        ResponseEntity<?> replay = newGuard(Duration.ofMinutes(5)).execute(ROUTE, USER, KEY, FINGERPRINT,
+                () -> created("jamais exécuté"));
+        assertThat(replay.getHeaders().getFirst(IdempotencyGuard.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(replay.getBody()).isEqualTo("{\"message\":\"reprise\"}");
+    }
+
+    @Test
+    void requestWithoutKeyIsAlwaysProcessed() {
+        AtomicInteger executions = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            guard.execute(ROUTE, USER, null, FINGERPRINT, () -> {
+                executions.incrementAndGet();
+                return created("ok");
+            });
+        }
+
+        assertThat(executions).hasValue(3);
+        assertThat(idempotencyRecordRepository.count()).isZero();
+    }
+
+    private IdempotencyGuard newGuard(Duration pendingLease) {
+        return new IdempotencyGuard(idempotencyRecordRepository, new ObjectMapper(), new SimpleMeterRegistry(),
+                Duration.ofHours(24), pendingLease, 100);
+    }
+
+    private double counter(String result) {
+        return meterRegistry.get("chatop.idempotency.requests").tag("result", result).counter().count();
+    }
+
+    private static ResponseEntity<?> created(String message) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("message", message));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
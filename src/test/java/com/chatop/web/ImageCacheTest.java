@@ -0,0 +1,144 @@
+package com.chatop.web;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests d'ImageCache : éviction LRU et admission TinyLFU
+ *
+ * Budget de 3 images de 100 octets : la quatrième doit en évincer une.
+ */
+class ImageCacheTest {
+
+    private static final int IMAGE_SIZE = 100;
+
+    @TempDir
+    Path dir;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ImageCache cache;
+    private Path a;
+    private Path b;
+    private Path c;
+    private Path d;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new ImageCache(3 * IMAGE_SIZE, IMAGE_SIZE, Duration.ofMinutes(10), meterRegistry);
+        a = image("a.jpg", (byte) 'a');
+        b = image("b.jpg", (byte) 'b');
+        c = image("c.jpg", (byte) 'c');
+        d = image("d.jpg", (byte) 'd');
+    }
+
+    @Test
+    void servesLoadedContent() throws IOException {
+        assertThat(request(a)).isNull();
+
+        ImageCache.Entry entry = cache.get(a);
+
+        assertThat(entry).isNotNull();
+        assertThat(entry.length()).isEqualTo(IMAGE_SIZE);
+        ByteBuffer content = entry.content().duplicate();
+        byte[] bytes = new byte[content.remaining()];
+        content.get(bytes);
+        assertThat(bytes).isEqualTo(Files.readAllBytes(a));
+        assertThat(cache.residentBytes()).isEqualTo(IMAGE_SIZE);
+        assertThat(meterRegistry.get("chatop.image.cache.requests").tag("result", "hit").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntry() throws IOException {
+        fill();
+        // a redevient la plus récente : b est désormais la plus ancienne
+        assertThat(cache.get(a)).isNotNull();
+
+        // d, plus demandée que les entrées en cache, est admise
+        for (int i = 0; i < 3; i++) {
+            request(d);
+        }
+
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(cache.residentBytes()).isEqualTo(3 * IMAGE_SIZE);
+        assertThat(cache.get(b)).isNull();
+        assertThat(cache.get(a)).isNotNull();
+        assertThat(cache.get(c)).isNotNull();
+        assertThat(cache.get(d)).isNotNull();
+    }
+
+    @Test
+    void rejectsCandidateLessRequestedThanVictim() throws IOException {
+        fill();
+        for (int i = 0; i < 3; i++) {
+            cache.get(a);
+            cache.get(b);
+            cache.get(c);
+        }
+
+        // Demandée une seule fois : le parcours ponctuel d'une image ne vide pas le cache
+        assertThat(request(d)).isNull();
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(cache.get(d)).isNull();
+
+        // Devenue plus demandée que l'entrée la plus ancienne : admise à sa place
+        for (int i = 0; i < 5; i++) {
+            request(d);
+        }
+        assertThat(cache.get(d)).isNotNull();
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(cache.residentBytes()).isEqualTo(3 * IMAGE_SIZE);
+    }
+
+    @Test
+    void neverCachesOversizedFile() throws IOException {
+        Path large = dir.resolve("large.jpg");
+        Files.write(large, new byte[IMAGE_SIZE + 1]);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(request(large)).isNull();
+        }
+        assertThat(cache.size()).isZero();
+    }
+
+    /**
+     * Remplit le cache avec a, b et c (dans cet ordre : a est la plus ancienne)
+     */
+    private void fill() throws IOException {
+        for (Path file : new Path[]{a, b, c}) {
+            request(file);
+        }
+        assertThat(cache.size()).isEqualTo(3);
+    }
+
+    /**
+     * Demande une image comme ImageServlet : cache, puis chargement si absente
+     *
+     * @return l'entrée servie par le cache, null si l'image a été lue sur disque
+     */
+    private ImageCache.Entry request(Path file) throws IOException {
+        ImageCache.Entry entry = cache.get(file);
+        if (entry == null) {
+            cache.load(file, Files.readAttributes(file, BasicFileAttributes.class));
+        }
+        return entry;
+    }
+
+    private Path image(String name, byte fill) throws IOException {
+        byte[] content = new byte[IMAGE_SIZE];
+        Arrays.fill(content, fill);
+        return Files.write(dir.resolve(name), content);
+    }
+}
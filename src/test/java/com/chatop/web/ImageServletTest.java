@@ -0,0 +1,270 @@
+package com.chatop.web;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletConfig;
+import org.springframework.mock.web.MockServletContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests d'ImageServlet : plages, requêtes conditionnelles, HEAD, résolution des chemins
+ * et original servi à la place d'une miniature absente
+ *
+ * Les fichiers sont lus depuis un dossier temporaire, sans cache mémoire sauf mention contraire.
+ */
+class ImageServletTest {
+
+    private static final int LENGTH = 100;
+    private static final String HASH = "ab" + "cd" + "0123456789abcdef".repeat(3) + "0123456789ab";
+    private static final String ORIGINAL = "ab/cd/" + HASH + ".png";
+
+    @TempDir
+    Path dir;
+
+    private Path root;
+    private byte[] content;
+    private final Map<String, String> storedPaths = new HashMap<>();
+    private ImageServlet servlet;
+
+    @BeforeEach
+    void setUp() throws IOException, ServletException {
+        root = Files.createDirectory(dir.resolve("uploads"));
+        content = new byte[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            content[i] = (byte) i;
+        }
+        Files.write(root.resolve("photo.jpg"), content);
+        servlet = newServlet(null);
+    }
+
+    @Test
+    void servesWholeFileWithCacheHeaders() throws Exception {
+        MockHttpServletResponse response = get("/photo.jpg");
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsByteArray()).isEqualTo(content);
+        assertThat(response.getContentLengthLong()).isEqualTo(LENGTH);
+        assertThat(response.getContentType()).isEqualTo("image/jpeg");
+        assertThat(response.getHeader("Cache-Control")).isEqualTo("public, max-age=31536000, immutable");
+        assertThat(response.getHeader("Accept-Ranges")).isEqualTo("bytes");
+        assertThat(response.getHeader("ETag")).isNotNull();
+    }
+
+    @Test
+    void headSendsHeadersWithoutBody() throws Exception {
+        MockHttpServletResponse response = serve(request("HEAD", "/photo.jpg"));
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentLengthLong()).isEqualTo(LENGTH);
+        assertThat(response.getHeader("ETag")).isEqualTo(get("/photo.jpg").getHeader("ETag"));
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void servesRequestedRange() throws Exception {
+        MockHttpServletResponse response = get("/photo.jpg", "Range", "bytes=10-19");
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getHeader("Content-Range")).isEqualTo("bytes 10-19/" + LENGTH);
+        assertThat(response.getContentAsByteArray()).isEqualTo(Arrays.copyOfRange(content, 10, 20));
+    }
+
+    @Test
+    void servesSuffixAndOpenEndedRanges() throws Exception {
+        MockHttpServletResponse suffix = get("/photo.jpg", "Range", "bytes=-30");
+        assertThat(suffix.getStatus()).isEqualTo(206);
+        assertThat(suffix.getHeader("Content-Range")).isEqualTo("bytes 70-99/" + LENGTH);
+        assertThat(suffix.getContentAsByteArray()).isEqualTo(Arrays.copyOfRange(content, 70, LENGTH));
+
+        // Suffixe plus long que le fichier : le fichier entier
+        MockHttpServletResponse longSuffix = get("/photo.jpg", "Range", "bytes=-500");
+        assertThat(longSuffix.getHeader("Content-Range")).isEqualTo("bytes 0-99/" + LENGTH);
+
+        // Fin absente ou au-delà du fichier : jusqu'au dernier octet
+        MockHttpServletResponse openEnded = get("/photo.jpg", "Range", "bytes=90-");
+        assertThat(openEnded.getHeader("Content-Range")).isEqualTo("bytes 90-99/" + LENGTH);
+        MockHttpServletResponse beyond = get("/photo.jpg", "Range", "bytes=95-500");
+        assertThat(beyond.getHeader("Content-Range")).isEqualTo("bytes 95-99/" + LENGTH);
+        assertThat(beyond.getContentAsByteArray()).isEqualTo(Arrays.copyOfRange(content, 95, LENGTH));
+    }
+
+    @Test
+    void unsatisfiableRangeIsRejected() throws Exception {
+        for (String range : new String[]{"bytes=100-", "bytes=150-200", "bytes=20-10", "bytes=-0"}) {
+            MockHttpServletResponse response = get("/photo.jpg", "Range", range);
+
+            assertThat(response.getStatus()).as(range).isEqualTo(416);
+            assertThat(response.getHeader("Content-Range")).as(range).isEqualTo("bytes */" + LENGTH);
+            assertThat(response.getContentAsByteArray()).as(range).isEmpty();
+        }
+    }
+
+    @Test
+    void unsupportedRangesAreIgnored() throws Exception {
+        // Plusieurs plages, unité inconnue, syntaxe invalide : réponse complète
+        for (String range : new String[]{"bytes=0-9,20-29", "items=0-9", "bytes=abc", "bytes=a-b"}) {
+            MockHttpServletResponse response = get("/photo.jpg", "Range", range);
+
+            assertThat(response.getStatus()).as(range).isEqualTo(200);
+            assertThat(response.getHeader("Content-Range")).as(range).isNull();
+            assertThat(response.getContentAsByteArray()).as(range).isEqualTo(content);
+        }
+    }
+
+    @Test
+    void rangeIsIgnoredWhenIfRangeDoesNotMatch() throws Exception {
+        String etag = get("/photo.jpg").getHeader("ETag");
+
+        MockHttpServletRequest stale = request("GET", "/photo.jpg");
+        stale.addHeader("Range", "bytes=10-19");
+        stale.addHeader("If-Range", "\"autre-version\"");
+        MockHttpServletResponse full = serve(stale);
+        assertThat(full.getStatus()).isEqualTo(200);
+        assertThat(full.getContentAsByteArray()).isEqualTo(content);
+
+        MockHttpServletRequest current = request("GET", "/photo.jpg");
+        current.addHeader("Range", "bytes=10-19");
+        current.addHeader("If-Range", etag);
+        MockHttpServletResponse partial = serve(current);
+        assertThat(partial.getStatus()).isEqualTo(206);
+        assertThat(partial.getContentAsByteArray()).hasSize(10);
+    }
+
+    @Test
+    void matchingIfNoneMatchReturnsNotModified() throws Exception {
+        String etag = get("/photo.jpg").getHeader("ETag");
+
+        for (String ifNoneMatch : new String[]{etag, "W/" + etag, "\"autre\", " + etag, "*"}) {
+            MockHttpServletResponse response = get("/photo.jpg", "If-None-Match", ifNoneMatch);
+
+            assertThat(response.getStatus()).as(ifNoneMatch).isEqualTo(304);
+            assertThat(response.getHeader("ETag")).isEqualTo(etag);
+            assertThat(response.getContentAsByteArray()).isEmpty();
+        }
+
+        MockHttpServletResponse changed = get("/photo.jpg", "If-None-Match", "\"autre\"");
+        assertThat(changed.getStatus()).isEqualTo(200);
+        assertThat(changed.getContentAsByteArray()).isEqualTo(content);
+    }
+
+    @Test
+    void pathsOutsideRootOrHiddenAreNotServed() throws Exception {
+        Files.write(dir.resolve("secret.jpg"), content);
+        Files.createDirectories(root.resolve(".tmp"));
+        Files.write(root.resolve(".tmp/upload.jpg"), content);
+        Files.write(root.resolve(".hidden.jpg"), content);
+
+        for (String path : new String[]{"/../secret.jpg", "/ab/../../secret.jpg", "\\..\\secret.jpg",
+                "/photo.jpg\0", "/.tmp/upload.jpg", "/.hidden.jpg", "/./photo.jpg", "/", ""}) {
+            assertThat(get(path).getStatus()).as(path).isEqualTo(404);
+        }
+        assertThat(serve(request("GET", null)).getStatus()).isEqualTo(404);
+    }
+
+    @Test
+    void missingFileIsNotFound() throws Exception {
+        Files.createDirectories(root.resolve("ab"));
+
+        assertThat(get("/absent.jpg").getStatus()).isEqualTo(404);
+        // Dossier : jamais servi
+        assertThat(get("/ab").getStatus()).isEqualTo(404);
+    }
+
+    @Test
+    void missingThumbnailFallsBackToStoredOriginal() throws Exception {
+        Files.createDirectories(root.resolve("ab/cd"));
+        Files.write(root.resolve(ORIGINAL), content);
+        storedPaths.put(HASH, ORIGINAL);
+
+        MockHttpServletResponse response = get("/ab/cd/" + HASH + "_w320.jpg");
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsByteArray()).isEqualTo(content);
+        assertThat(response.getContentType()).isEqualTo("image/png");
+        // Miniature générée plus tard sous ce nom : l'original ne doit pas rester en cache
+        assertThat(response.getHeader("Cache-Control")).isEqualTo("no-cache");
+
+        // Original non enregistré dans STORED_FILES : 404
+        storedPaths.clear();
+        assertThat(get("/ab/cd/" + HASH + "_w320.jpg").getStatus()).isEqualTo(404);
+    }
+
+    @Test
+    void storedPathOutsideRootIsNotServed() throws Exception {
+        Files.write(dir.resolve("secret.png"), content);
+        storedPaths.put(HASH, "../secret.png");
+
+        assertThat(get("/ab/cd/" + HASH + "_w320.jpg").getStatus()).isEqualTo(404);
+    }
+
+    @Test
+    void missingLegacyThumbnailFallsBackToSiblingOriginal() throws Exception {
+        String uuid = "3f2b8c1e-5a4d-4e7f-9b6a-1c2d3e4f5a6b";
+        Files.write(root.resolve(uuid + ".png"), content);
+
+        MockHttpServletResponse response = get("/" + uuid + "_w640.jpg");
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsByteArray()).isEqualTo(content);
+        assertThat(response.getHeader("Cache-Control")).isEqualTo("no-cache");
+
+        // Pas une miniature : aucune recherche d'original
+        assertThat(get("/" + uuid + ".jpg").getStatus()).isEqualTo(404);
+    }
+
+    @Test
+    void servesRangeFromMemoryCache() throws Exception {
+        servlet = newServlet(new ImageCache(10 * LENGTH, LENGTH, Duration.ofMinutes(10), new SimpleMeterRegistry()));
+        // Premier GET : chargement en cache
+        assertThat(get("/photo.jpg").getContentAsByteArray()).isEqualTo(content);
+
+        MockHttpServletResponse response = get("/photo.jpg", "Range", "bytes=-5");
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getContentAsByteArray()).isEqualTo(Arrays.copyOfRange(content, 95, LENGTH));
+        assertThat(response.getHeader("ETag")).isEqualTo(get("/photo.jpg").getHeader("ETag"));
+    }
+
+    private ImageServlet newServlet(ImageCache cache) throws ServletException {
+        ImageServlet created = new ImageServlet(root, cache, storedPaths::get);
+        created.init(new MockServletConfig(new MockServletContext()));
+        return created;
+    }
+
+    private MockHttpServletResponse get(String path) throws Exception {
+        return serve(request("GET", path));
+    }
+
+    private MockHttpServletResponse get(String path, String header, String value) throws Exception {
+        MockHttpServletRequest request = request("GET", path);
+        request.addHeader(header, value);
+        return serve(request);
+    }
+
+    private static MockHttpServletRequest request(String method, String pathInfo) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/uploads" + (pathInfo != null ? pathInfo : ""));
+        request.setServletPath("/uploads");
+        request.setPathInfo(pathInfo);
+        return request;
+    }
+
+    private MockHttpServletResponse serve(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        servlet.service(request, response);
+        return response;
+    }
+}
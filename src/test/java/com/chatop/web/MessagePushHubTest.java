@@ -0,0 +1,163 @@
+package com.chatop.web;
+
+import com.chatop.service.MessageCreatedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests de MessagePushHub : file pleine (drop-oldest, disconnect) et décompte des connexions
+ *
+ * Les émetteurs bloquent leur premier envoi jusqu'à release : la file d'une connexion
+ * n'est vidée que lorsque le test le décide (client lent).
+ */
+class MessagePushHubTest {
+
+    private static final int QUEUE_CAPACITY = 2;
+    private static final long OWNER_ID = 7L;
+    private static final Pattern EVENT_ID = Pattern.compile("id:(\\d+)");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final BlockingQueue<String> sent = new LinkedBlockingQueue<>();
+    private MessagePushHub hub;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (hub != null) {
+            hub.shutdown();
+        }
+    }
+
+    @Test
+    void dropOldestKeepsLatestMessagesWhenQueueIsFull() throws InterruptedException {
+        hub = newHub("drop-oldest", 5);
+        hub.subscribe(OWNER_ID);
+
+        for (long id = 1; id <= QUEUE_CAPACITY + 1; id++) {
+            hub.onMessageCreated(event(id));
+        }
+
+        assertThat(counter("chatop.push.dropped")).isEqualTo(1);
+        assertThat(connections()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(nextSent()).contains("connected");
+        assertThat(List.of(nextSent(), nextSent())).map(MessagePushHubTest::eventId).containsExactly(2L, 3L);
+    }
+
+    @Test
+    void disconnectClosesSlowConnection() {
+        hub = newHub("disconnect", 5);
+        hub.subscribe(OWNER_ID);
+
+        for (long id = 1; id <= QUEUE_CAPACITY; id++) {
+            hub.onMessageCreated(event(id));
+        }
+        assertThat(counter("chatop.push.disconnected")).isZero();
+
+        hub.onMessageCreated(event(QUEUE_CAPACITY + 1));
+
+        assertThat(counter("chatop.push.disconnected")).isEqualTo(1);
+        assertThat(counter("chatop.push.dropped")).isZero();
+        assertThat(connections()).isZero();
+
+        // Connexion fermée : les messages suivants ne sont plus déposés
+        hub.onMessageCreated(event(QUEUE_CAPACITY + 2));
+        assertThat(counter("chatop.push.disconnected")).isEqualTo(1);
+    }
+
+    @Test
+    void connectionCountReturnsToZeroAfterEvictionAndShutdown() {
+        hub = newHub("drop-oldest", 2);
+
+        for (int i = 0; i < 3; i++) {
+            hub.subscribe(OWNER_ID);
+        }
+        hub.subscribe(OWNER_ID + 1);
+
+        // Au-delà de 2 connexions, la plus ancienne du propriétaire a été fermée
+        assertThat(connections()).isEqualTo(3);
+
+        hub.shutdown();
+        assertThat(connections()).isZero();
+
+        // Fermetures répétées (fin du flux après l'arrêt) : jamais décomptées deux fois
+        hub.shutdown();
+        assertThat(connections()).isZero();
+    }
+
+    private MessagePushHub newHub(String overflow, int maxConnectionsPerUser) {
+        return new MessagePushHub(meterRegistry, QUEUE_CAPACITY, overflow, Duration.ofHours(1), Duration.ofMinutes(30),
+                maxConnectionsPerUser, 100) {
+            @Override
+            SseEmitter createEmitter(long timeoutMillis) {
+                return new SlowEmitter(timeoutMillis);
+            }
+        };
+    }
+
+    private double connections() {
+        return meterRegistry.get("chatop.push.connections").gauge().value();
+    }
+
+    private double counter(String name) {
+        return meterRegistry.get(name).counter().count();
+    }
+
+    private String nextSent() throws InterruptedException {
+        String event = sent.poll(5, TimeUnit.SECONDS);
+        assertThat(event).as("événement SSE envoyé").isNotNull();
+        return event;
+    }
+
+    private static long eventId(String event) {
+        Matcher matcher = EVENT_ID.matcher(event);
+        assertThat(matcher.find()).as("id de l'événement %s", event).isTrue();
+        return Long.parseLong(matcher.group(1));
+    }
+
+    private static MessageCreatedEvent event(long messageId) {
+        return new MessageCreatedEvent(messageId, 3L, 5L, OWNER_ID, "Message " + messageId, LocalDateTime.now(),
+                System.nanoTime());
+    }
+
+    /**
+     * Émetteur d'un client lent : chaque envoi attend release, puis est enregistré dans sent
+     */
+    private final class SlowEmitter extends SseEmitter {
+
+        private SlowEmitter(long timeoutMillis) {
+            super(timeoutMillis);
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Connexion fermée", e);
+            }
+            sent.add(builder.build().stream()
+                    .map(part -> String.valueOf(part.getData()))
+                    .collect(Collectors.joining()));
+        }
+    }
+}